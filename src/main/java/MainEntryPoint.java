@@ -2,6 +2,7 @@
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -11,9 +12,12 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import algorithms.Algorithm_Selector;
 import algorithms.Configuration;
+import algorithms.Rank_Join;
 import algorithms.Yannakakis;
 import algorithms.YannakakisSorting;
+import algorithms.YannakakisStreaming;
 import algorithms.paths.DP_All;
 import algorithms.paths.DP_Eager;
 import algorithms.paths.DP_Iterator;
@@ -25,6 +29,9 @@ import algorithms.paths.DP_Take2;
 import algorithms.paths.DP_Unranked_Iterator;
 import algorithms.paths.Path_Batch;
 import algorithms.paths.Path_BatchSorting;
+import algorithms.paths.Path_External_BatchSorting;
+import algorithms.paths.Path_Parallel_BatchSorting;
+import algorithms.paths.Path_Hybrid;
 import algorithms.trees.TDP_All;
 import algorithms.trees.TDP_Eager;
 import algorithms.trees.TDP_Iterator;
@@ -36,6 +43,10 @@ import algorithms.trees.TDP_Take2;
 import algorithms.trees.TDP_Unranked_Iterator;
 import algorithms.trees.Tree_Batch;
 import algorithms.trees.Tree_BatchSorting;
+import algorithms.trees.Tree_External_BatchSorting;
+import algorithms.trees.Tree_Parallel_BatchSorting;
+import algorithms.trees.Tree_Hybrid;
+import entities.Graph_Statistics;
 import entities.Tuple;
 import entities.paths.DP_Path_ThetaJoin_Instance;
 import entities.paths.DP_Solution;
@@ -56,6 +67,16 @@ public class MainEntryPoint {
         return className;
     }
 
+    /**
+     * Picks an any-k algorithm with a cost model and logs the decision (in the standard error).
+     */
+    private static String choose_algorithm(Graph_Statistics stats, int max_k, double weight_cutoff) {
+        Algorithm_Selector selector = new Algorithm_Selector();
+        String choice = selector.choose(stats, max_k, weight_cutoff);
+        System.err.println(selector.explanation);
+        return choice;
+    }
+
     public static void main(String args[]) throws IOException {
         Options options = new Options();
 
@@ -81,6 +102,11 @@ public class MainEntryPoint {
         timings_file_path_opt.setRequired(false);
         options.addOption(timings_file_path_opt);
 
+        Option delays_file_path_opt = new Option("d", "delays_output_file", true,
+                "path to file with delay percentiles (p50, p99, p99.9, max) to be written");
+        delays_file_path_opt.setRequired(false);
+        options.addOption(delays_file_path_opt);
+
         Option algorithm_opt = new Option("a", "algorithm", true, "algorithm to use");
         algorithm_opt.setRequired(false);
         options.addOption(algorithm_opt);
@@ -118,6 +144,21 @@ public class MainEntryPoint {
         path_optimization_opt.setRequired(false);
         options.addOption(path_optimization_opt);
 
+        Option bottom_up_opt = new Option("bu", "bottom_up", true,
+                "bottom-up implementation (recursive, parallel or demand)");
+        bottom_up_opt.setRequired(false);
+        options.addOption(bottom_up_opt);
+
+        Option run_size_opt = new Option("rs", "run_size", true,
+                "number of answers per sorted run of ExternalBatchSorting");
+        run_size_opt.setRequired(false);
+        options.addOption(run_size_opt);
+
+        Option pq_memory_limit_opt = new Option("pqm", "pq_memory_limit", true,
+                "maximum number of candidates kept in memory by the global PQ of Anyk-Part (the rest are spilled to disk); not supported by QuickPlus");
+        pq_memory_limit_opt.setRequired(false);
+        options.addOption(pq_memory_limit_opt);
+
         // ===================================================================================
         // ===================================================================================
 
@@ -158,6 +199,14 @@ public class MainEntryPoint {
         if (cmd.hasOption("timings_output_file"))
             timings_file_path = cmd.getOptionValue("timings_output_file");
 
+        String delays_file_path = null;
+        if (jsonOption != null)
+            delays_file_path = jsonOption.getDelays_Output_File();
+        if (cmd.hasOption("delays_output_file"))
+            delays_file_path = cmd.getOptionValue("delays_output_file");
+        boolean record_delays = delays_file_path != null;
+        long call_start = 0;
+
         Integer max_k = Integer.MAX_VALUE;
         if (jsonOption != null && jsonOption.getMax_k() != null)
             max_k = jsonOption.getMax_k();
@@ -223,7 +272,31 @@ public class MainEntryPoint {
         if (cmd.hasOption("path_optimization"))
             path_optimization = true;
 
+        String bottom_up = "recursive";
+        if (jsonOption != null && jsonOption.getBottom_up() != null)
+            bottom_up = jsonOption.getBottom_up();
+        if (cmd.hasOption("bottom_up"))
+            bottom_up = cmd.getOptionValue("bottom_up");
+        if (!bottom_up.equals("recursive") && !bottom_up.equals("parallel") && !bottom_up.equals("demand")) {
+            System.err.println("Invalid value for bottom_up (recursive, parallel or demand).");
+            System.exit(1);
+        }
+
+        int run_size = Path_External_BatchSorting.DEFAULT_RUN_SIZE;
+        if (jsonOption != null && jsonOption.getRun_size() != null)
+            run_size = jsonOption.getRun_size();
+        if (cmd.hasOption("run_size"))
+            run_size = Integer.parseInt(cmd.getOptionValue("run_size"));
+
         Configuration conf = new Configuration();
+        if (jsonOption != null && jsonOption.getPq_memory_limit() != null)
+            conf.set_pq_memory_limit(jsonOption.getPq_memory_limit());
+        if (cmd.hasOption("pq_memory_limit"))
+            conf.set_pq_memory_limit(Integer.parseInt(cmd.getOptionValue("pq_memory_limit")));
+        if (conf.pq_memory_limit > 0 && algorithm.equals("QuickPlus")) {
+            System.err.println("pq_memory_limit is not supported by QuickPlus.");
+            System.exit(1);
+        }
 
         // ======= Run the query =======
         // Keep results in memory, then write to a file at the end to not include I/O in
@@ -250,6 +323,40 @@ public class MainEntryPoint {
             }
             return;
         }
+        if (algorithm.equals("Explain")) {
+            // Build the graph and report its structure instead of enumerating answers
+            Graph_Statistics stats;
+            long construction_start = System.nanoTime();
+            double construction_time, bottom_up_time;
+            if (!path_optimization) {
+                TDP_Thetajoin_Instance instance = new TDP_Thetajoin_Instance(tree_query, factorization_method);
+                construction_time = (System.nanoTime() - construction_start) / 1_000_000_000.0;
+                long bottom_up_start = System.nanoTime();
+                instance.set_bottom_up_implementation(bottom_up);
+                instance.bottom_up();
+                bottom_up_time = (System.nanoTime() - bottom_up_start) / 1_000_000_000.0;
+                stats = instance.collect_statistics();
+            } else {
+                DP_Path_ThetaJoin_Instance instance = new DP_Path_ThetaJoin_Instance(path_query, factorization_method);
+                construction_time = (System.nanoTime() - construction_start) / 1_000_000_000.0;
+                long bottom_up_start = System.nanoTime();
+                instance.set_bottom_up_implementation(bottom_up);
+                instance.bottom_up();
+                bottom_up_time = (System.nanoTime() - bottom_up_start) / 1_000_000_000.0;
+                stats = instance.collect_statistics();
+            }
+            String report = stats.report() + "Construction time: " + construction_time + " sec\n"
+                    + "Bottom-up time: " + bottom_up_time + " sec\n";
+            System.out.print(report);
+            if (result_file_path != null) {
+                OpenCsvWriter openCsv = new OpenCsvWriter(result_file_path);
+                for (String line : report.split("\n"))
+                    openCsv.writeLine(line);
+                openCsv.flushWriter();
+                openCsv.closeWriter();
+            }
+            return;
+        }
         if (algorithm.equals("Boolean")) {
             if (!path_optimization) {
                 System.err.println("Algorithm not currently supported for tree queries");
@@ -264,9 +371,13 @@ public class MainEntryPoint {
             Yannakakis yann = new Yannakakis(tree_query);
             Tuple t;
             for (int k = 1; k <= max_k; k++) {
+                if (record_delays)
+                    call_start = System.nanoTime();
                 t = yann.get_next();
                 if (t == null)
                     break;
+                if (record_delays)
+                    measurements.add_delay(System.nanoTime() - call_start);
                 if (result_file_path != null) {
                     resultList.add(Common.tuple_to_output_string(t));
                 }
@@ -281,9 +392,60 @@ public class MainEntryPoint {
             YannakakisSorting yann = new YannakakisSorting(tree_query);
             Tuple t;
             for (int k = 1; k <= max_k; k++) {
+                if (record_delays)
+                    call_start = System.nanoTime();
                 t = yann.get_next();
                 if (t == null)
                     break;
+                if (record_delays)
+                    measurements.add_delay(System.nanoTime() - call_start);
+                if (result_file_path != null) {
+                    resultList.add(Common.tuple_to_output_string(t));
+                }
+                if (timings_file_path != null)
+                    measurements.add_k(t);
+                if (t.cost > weight_cutoff)
+                    break;
+            }
+        }
+
+        else if (algorithm.equals("YannakakisStreaming")) {
+            // Results are enumerated lazily and never materialized as new tuples
+            YannakakisStreaming yann = new YannakakisStreaming(tree_query);
+            List<Tuple> tuples;
+            for (int k = 1; k <= max_k; k++) {
+                if (record_delays)
+                    call_start = System.nanoTime();
+                tuples = yann.get_next_tuples();
+                if (tuples == null)
+                    break;
+                if (record_delays)
+                    measurements.add_delay(System.nanoTime() - call_start);
+                double cost = 0.0;
+                for (Tuple t : tuples)
+                    cost += t.cost;
+                if (result_file_path != null) {
+                    resultList.add(Common.tuple_list_to_output_string(tuples, cost));
+                }
+                if (timings_file_path != null)
+                    measurements.add_k(tuples);
+                if (cost > weight_cutoff)
+                    break;
+            }
+        }
+
+        else if (algorithm.equals("RankJoin")) {
+            // Reads the relations in ascending cost order without constructing the graph
+            Rank_Join rank_join = new Rank_Join(tree_query, false);
+            Tuple t;
+            for (int k = 1; k <= max_k; k++) {
+                if (record_delays)
+                    call_start = System.nanoTime();
+                t = rank_join.get_next();
+                if (t == null)
+                    break;
+                if (record_delays)
+                    measurements.add_delay(System.nanoTime() - call_start);
                 if (result_file_path != null) {
                     resultList.add(Common.tuple_to_output_string(t));
                 }
@@ -297,8 +459,12 @@ public class MainEntryPoint {
         else {
             if (path_optimization) {
                 DP_Path_ThetaJoin_Instance instance = new DP_Path_ThetaJoin_Instance(path_query, factorization_method);
-                if (!algorithm.equals("UnrankedEnum"))
+                if (!algorithm.equals("UnrankedEnum")) {
+                    instance.set_bottom_up_implementation(bottom_up);
                     instance.bottom_up();
+                }
+                if (algorithm.equals("Auto"))
+                    algorithm = choose_algorithm(instance.collect_statistics(), max_k, weight_cutoff);
 
                 // // Return the first result in a uniform way (DP) for all algorithms
                 // int k = 1;
@@ -325,8 +491,14 @@ public class MainEntryPoint {
                     iter = new DP_Recursive(instance, conf);
                 else if (algorithm.equals("BatchSorting"))
                     iter = new Path_BatchSorting(instance, conf);
+                else if (algorithm.equals("ParallelBatchSorting"))
+                    iter = new Path_Parallel_BatchSorting(instance, conf, max_k);
+                else if (algorithm.equals("ExternalBatchSorting"))
+                    iter = new Path_External_BatchSorting(instance, conf, max_k, run_size);
                 else if (algorithm.equals("Batch"))
                     iter = new Path_Batch(instance, conf);
+                else if (algorithm.equals("Hybrid"))
+                    iter = new Path_Hybrid(instance, conf);
                 else if (algorithm.equals("UnrankedEnum"))
                     iter = new DP_Unranked_Iterator(instance, conf);
                 else {
@@ -336,9 +508,13 @@ public class MainEntryPoint {
 
                 DP_Solution solution;
                 for (int k = 1; k <= max_k; k++) {
+                    if (record_delays)
+                        call_start = System.nanoTime();
                     solution = iter.get_next();
                     if (solution == null)
                         break;
+                    if (record_delays)
+                        measurements.add_delay(System.nanoTime() - call_start);
                     if (result_file_path != null) {
                         resultList.add(Common.solution_to_output_string(solution));
                     }
@@ -349,8 +525,12 @@ public class MainEntryPoint {
                 }
             } else {
                 TDP_Thetajoin_Instance instance = new TDP_Thetajoin_Instance(tree_query, factorization_method);
-                if (!algorithm.equals("UnrankedEnum"))
+                if (!algorithm.equals("UnrankedEnum")) {
+                    instance.set_bottom_up_implementation(bottom_up);
                     instance.bottom_up();
+                }
+                if (algorithm.equals("Auto"))
+                    algorithm = choose_algorithm(instance.collect_statistics(), max_k, weight_cutoff);
 
                 // Return the first result in a uniform way (DP) for all algorithms
                 // int k = 1;
@@ -379,8 +559,14 @@ public class MainEntryPoint {
                     iter = new TDP_Recursive(instance, conf);
                 else if (algorithm.equals("BatchSorting"))
                     iter = new Tree_BatchSorting(instance, conf);
+                else if (algorithm.equals("ParallelBatchSorting"))
+                    iter = new Tree_Parallel_BatchSorting(instance, conf, max_k);
+                else if (algorithm.equals("ExternalBatchSorting"))
+                    iter = new Tree_External_BatchSorting(instance, conf, max_k, run_size);
                 else if (algorithm.equals("Batch"))
                     iter = new Tree_Batch(instance, conf);
+                else if (algorithm.equals("Hybrid"))
+                    iter = new Tree_Hybrid(instance, conf);
                 else if (algorithm.equals("UnrankedEnum"))
                     iter = new TDP_Unranked_Iterator(instance, conf);
                 else {
@@ -393,9 +579,13 @@ public class MainEntryPoint {
 
                 TDP_Solution solution;
                 for (int k = 1; k <= max_k; k++) {
+                    if (record_delays)
+                        call_start = System.nanoTime();
                     solution = iter.get_next();
                     if (solution == null)
                         break;
+                    if (record_delays)
+                        measurements.add_delay(System.nanoTime() - call_start);
                     if (result_file_path != null) {
                         resultList.add(Common.solution_to_output_string(solution));
                     }
@@ -410,6 +600,10 @@ public class MainEntryPoint {
         // ======= Finalize and print everyting =======
         if (timings_file_path != null)
             measurements.print_to_csv_file(timings_file_path);
+        if (delays_file_path != null) {
+            System.err.println("Delay: " + measurements.get_delay_histogram().summary());
+            measurements.print_delays_to_csv_file(delays_file_path);
+        }
         if (result_file_path != null) {
             OpenCsvWriter openCsv = new OpenCsvWriter(result_file_path);
             for (String record : resultList)
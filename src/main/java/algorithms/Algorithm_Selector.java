@@ -0,0 +1,198 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import entities.Graph_Statistics;
+
+/**
+ * A cost model that picks an any-k algorithm for a given (T-)DP instance.
+ * The estimates rely on statistics gathered cheaply after the graph has been constructed
+ * ({@link entities.Graph_Statistics}): the number of answers N, the depth l (stages that a solution goes through),
+ * and the histogram of the fan-outs d of the decision sets, as well as the number of answers k that will be requested.
+ * Each variant is assigned an estimated time in nanoseconds.
+ * The any-k algorithms share the cost of the global PQ: every answer inserts up to l candidates in a PQ that grows to k*l,
+ * i.e., k * l * (C_STEP + C_PQ * log(k * l)).
+ * They differ in the work done on the decision sets: a set is touched the first time a successor is requested from it,
+ * so about T = min(#sets, k * l) sets are touched and j = min(d, k * l / T) successors are requested from a set of fan-out d.
+ * The touched sets are assumed to be spread over the buckets of the histogram in proportion to their sizes,
+ * thus the per-set costs below are summed over the buckets (with the fan-out in the middle of each bucket,
+ * scaled so that the total matches the number of decisions).
+ * The per-set costs grow faster than linearly in d, so a few large sets cost more than the average fan-out suggests.
+ * <ul>
+ * <li>Quick: incremental partitioning, which finds the best decision with ~2d comparisons
+ * and then the next j with ~j * log(j) more, i.e., C_PART * (2d + j * log(j)) per set.</li>
+ * <li>Lazy: a heap over the decision set, which is built with ~2d comparisons
+ * and popped j times with ~2 * log(d) comparisons each, i.e., C_HEAP * (2d + 2j * log(d)) per set.
+ * Heapify is cheaper than partitioning, so Lazy wins when few successors are requested per set.</li>
+ * <li>Eager: a full sort of the decision set, after which every successor is found in constant time,
+ * i.e., C_SORT_SET * d * log(d) per set. The sort pays off when most of each set is consumed (large k).</li>
+ * <li>Recursive: every answer pays a PQ operation per stage among the suffixes of a decision set,
+ * i.e., k * l * (C_REC + C_PQ * log(d)) + k * C_PQ * log(k) with the average of log(d) over the sets,
+ * plus a suffix object for every decision of a touched set and a heap over them, i.e., C_SUFFIX * d + C_HEAP * 2d per set.</li>
+ * <li>BatchSorting: has to produce and sort all N answers regardless of k,
+ * i.e., N * (C_ENUM * l + C_SORT * log(N)). It is excluded if the answers do not fit in half of the heap.</li>
+ * </ul>
+ * The constants were calibrated on full and partial enumeration of a 4-path equi-join with 7.6M answers
+ * and on partial enumeration of 4-path equi-joins with average fan-out 13 to 600.
+ * @author Nikolaos Tziavelis
+*/
+public class Algorithm_Selector
+{
+    // Calibrated costs (in nanoseconds) of the elementary steps
+    static final double C_STEP = 30.0;
+    static final double C_PQ = 3.2;
+    static final double C_REC = 65.0;
+    static final double C_ENUM = 50.0;
+    static final double C_SORT = 32.0;
+    // Calibrated costs (in nanoseconds) of a comparison within a decision set and of a suffix object
+    static final double C_PART = 4.0;
+    static final double C_HEAP = 3.0;
+    static final double C_SORT_SET = 3.5;
+    static final double C_SUFFIX = 10.0;
+    /**
+     * Approximate memory (in bytes) of a materialized answer per stage, used to exclude batch algorithms.
+    */
+    static final double BATCH_BYTES_PER_STAGE = 24.0;
+    /**
+     * With a weight cutoff but no limit on k, we cannot know k in advance.
+     * We assume that the cutoff is selective and only this fraction of the answers is needed.
+    */
+    static final double CUTOFF_FRACTION = 0.01;
+
+    /**
+     * The estimated cost of each candidate algorithm after {@link #choose} has been called.
+    */
+    public Map<String, Double> estimates;
+    /**
+     * A one-line explanation of the last decision, suitable for logging.
+    */
+    public String explanation;
+
+    public Algorithm_Selector()
+    {
+        this.estimates = new LinkedHashMap<String, Double>();
+        this.explanation = null;
+    }
+
+    /**
+     * Picks the algorithm with the smallest estimated cost.
+     * @param stats Statistics of the constructed graph (including the number of answers).
+     * @param max_k The maximum number of answers requested (Integer.MAX_VALUE if unlimited).
+     * @param weight_cutoff The maximum weight of answers requested (Double.MAX_VALUE if unlimited).
+     * @return String The name of the algorithm as accepted by MainEntryPoint.
+    */
+    public String choose(Graph_Statistics stats, long max_k, double weight_cutoff)
+    {
+        estimates.clear();
+        double n = stats.answers == null ? 0.0 : stats.answers.doubleValue();
+        double k = Math.min((double) max_k, n);
+        if (max_k == Integer.MAX_VALUE && weight_cutoff < Double.MAX_VALUE)
+            k = Math.max(1.0, Math.ceil(n * CUTOFF_FRACTION));
+        k = Math.max(k, 1.0);
+        // Every solution goes through one node per relation and (at least) one per factorized join
+        double l = Math.max(1.0, stats.nodes_per_stage.size() + stats.intermediate_nodes_per_edge.size());
+        double d = Math.max(1.0, stats.avg_fanout());
+
+        double kl = k * l;
+        double sets = Math.max(1.0, (double) stats.decision_sets);
+        double touched_sets = Math.max(1.0, Math.min(sets, kl));
+        double requested = kl / touched_sets;
+        double quick = 0.0, lazy = 0.0, eager = 0.0, recursive_sets = 0.0, avg_log_d = 0.0;
+        for (double[] bucket : fanout_buckets(stats))
+        {
+            double touched = bucket[0] * touched_sets / sets, fanout = bucket[1];
+            double j = Math.min(fanout, requested);
+            quick += touched * C_PART * (2 * fanout + j * log2(j + 1));
+            lazy += touched * C_HEAP * (2 * fanout + 2 * j * log2(fanout + 1));
+            eager += touched * C_SORT_SET * fanout * log2(fanout + 1);
+            recursive_sets += touched * (C_SUFFIX * fanout + C_HEAP * 2 * fanout);
+            avg_log_d += bucket[0] / sets * log2(fanout + 1);
+        }
+        double pq = kl * (C_STEP + C_PQ * log2(kl + 1));
+        estimates.put("Quick", pq + quick);
+        estimates.put("Lazy", pq + lazy);
+        estimates.put("Eager", pq + eager);
+        estimates.put("Recursive", kl * (C_REC + C_PQ * avg_log_d) + k * C_PQ * log2(k + 1) + recursive_sets);
+        double batch_bytes = n * l * BATCH_BYTES_PER_STAGE;
+        if (batch_bytes < Runtime.getRuntime().maxMemory() / 2)
+            estimates.put("BatchSorting", n * (C_ENUM * l + C_SORT * log2(n + 1)));
+
+        String best = null;
+        for (Map.Entry<String, Double> e : estimates.entrySet())
+            if (best == null || e.getValue() < estimates.get(best)) best = e.getKey();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Auto: chose " + best + " (answers= " + stats.answers + " k= " + (long) k +
+            " depth= " + (long) l + " avg_fanout= " + String.format("%.2f", d) + " max_fanout= " + stats.max_fanout +
+            "; estimated sec:");
+        for (Map.Entry<String, Double> e : estimates.entrySet())
+            sb.append(" " + e.getKey() + "= " + String.format("%.4f", e.getValue() / 1_000_000_000.0));
+        sb.append(")");
+        this.explanation = sb.toString();
+        return best;
+    }
+
+    /**
+     * The number of answers after which an iterator that started with Quick should switch to
+     * a parallel enumeration and sort of the answers not returned yet
+     * ({@link algorithms.paths.Path_Hybrid}, {@link algorithms.trees.Tree_Hybrid}).
+     * As in ski rental, the switch happens when the time spent on Quick equals the estimated time of the switch,
+     * i.e., k * q = (N - k) * (e + s), where q is the cost of an answer with Quick,
+     * e the cost of enumerating an answer and s the cost of sorting it (both divided among the processors).
+     * The enumeration prunes the answers that have been returned, so it is charged only for the remaining ones.
+     * If an answer costs less with Quick than with the switch, then we never switch.
+     * @param answers The number of answers N.
+     * @param depth The number of nodes that an answer goes through.
+     * @return long The number of answers after which to switch (N means never).
+    */
+    public static long switch_point(double answers, double depth)
+    {
+        double n = answers;
+        if (n < 1) return 0;
+        double l = Math.max(1.0, depth);
+        int processors = Runtime.getRuntime().availableProcessors();
+        double q = l * (C_STEP + C_PQ * log2(n * l + 1));
+        double e = C_ENUM * l / processors;
+        double s = C_SORT * log2(n + 1) / processors;
+        if (q <= e + s) return (long) n;
+        return Math.max(1L, (long) Math.ceil(n * (e + s) / (q + e + s)));
+    }
+
+    /**
+     * Groups the decision sets by the buckets of {@link entities.Graph_Statistics#fanout_histogram}.
+     * The fan-out of a bucket is the middle of its range, scaled so that the sets have as many decisions in total as the graph.
+     * Without a histogram, all the sets have the average fan-out.
+     * @return List<double[]> The number of sets and their fan-out for each non-empty bucket.
+    */
+    static List<double[]> fanout_buckets(Graph_Statistics stats)
+    {
+        List<double[]> buckets = new ArrayList<double[]>();
+        double sets = 0.0, decisions = 0.0;
+        for (int i = 1; i < Graph_Statistics.FANOUT_BUCKETS; i++)
+        {
+            long count = stats.fanout_histogram[i];
+            if (count == 0) continue;
+            double lo = (double) (1L << (i - 1));
+            double hi = Math.max(lo, Math.min((double) ((1L << i) - 1), (double) stats.max_fanout));
+            buckets.add(new double[]{ count, (lo + hi) / 2 });
+            sets += count;
+            decisions += count * (lo + hi) / 2;
+        }
+        if (buckets.isEmpty())
+        {
+            buckets.add(new double[]{ Math.max(1.0, (double) stats.decision_sets), Math.max(1.0, stats.avg_fanout()) });
+            return buckets;
+        }
+        double scale = stats.decisions > 0 ? stats.decisions / decisions : 1.0;
+        for (double[] bucket : buckets) bucket[1] = Math.max(1.0, bucket[1] * scale);
+        return buckets;
+    }
+
+    private static double log2(double x)
+    {
+        return Math.log(x) / Math.log(2);
+    }
+}
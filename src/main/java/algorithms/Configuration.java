@@ -18,6 +18,12 @@ public class Configuration
      * By default, it is set to true.
 	*/	
     public boolean initialization_laziness = true;
+	/** 
+	 * The maximum number of candidates that the global PQ of the Anyk-Part algorithms keeps in memory.
+     * The rest are spilled to disk. By default (0), there is no limit.
+     * The Anyk-PartPlus algorithms do not support it and exit if it is set.
+	*/	
+    public int pq_memory_limit = 0;
     
 
     public Configuration(){}
@@ -31,4 +37,9 @@ public class Configuration
     {
         this.initialization_laziness = il;
     }
+
+    public void set_pq_memory_limit(int limit)
+    {
+        this.pq_memory_limit = limit;
+    }
 }
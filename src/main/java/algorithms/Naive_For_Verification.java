@@ -5,7 +5,9 @@ import java.util.List;
 import entities.Join_Predicate;
 import entities.Relation;
 import entities.Tuple;
+import entities.cycles.Cyclic_Equijoin_Query;
 import entities.paths.Path_ThetaJoin_Query;
+import entities.trees.Tree_ThetaJoin_Query;
 
 public class Naive_For_Verification 
 {
@@ -337,4 +339,72 @@ public class Naive_For_Verification
         }
         return ret;
     }
+
+    /** 
+     * Joins the atoms one by one with nested loops, keeping the combinations that agree on the shared variables.
+     * @return ArrayList<Tuple> One tuple per answer with the values of the variables (in the order of the query)
+     *  and the sum of the costs of the joining tuples (in the order of the atoms).
+     */
+    public static ArrayList<Tuple> produce_all_result_tuples_cyclic(Cyclic_Equijoin_Query q)
+    {
+        List<String> variables = q.get_variables();
+        ArrayList<Tuple> ret = new ArrayList<Tuple>();
+        Relation out_relation = new Relation("Rout", variables.toArray(new String[0]));
+        join_atoms_naively(q, variables, 0, new Double[variables.size()], 0.0, out_relation, ret);
+        return ret;
+    }
+
+    private static void join_atoms_naively(Cyclic_Equijoin_Query q, List<String> variables, int atom, Double[] binding, double cost, Relation out_relation, ArrayList<Tuple> ret)
+    {
+        if (atom == q.length)
+        {
+            double[] vals = new double[binding.length];
+            for (int i = 0; i < vals.length; i++) vals[i] = binding[i];
+            ret.add(new Tuple(vals, cost, out_relation));
+            return;
+        }
+        String[] atom_variables = q.variables.get(atom);
+        for (Tuple t : q.relations.get(atom).tuples)
+        {
+            Double[] extended = binding.clone();
+            boolean consistent = true;
+            for (int i = 0; i < atom_variables.length && consistent; i++)
+            {
+                int var = variables.indexOf(atom_variables[i]);
+                if (extended[var] == null) extended[var] = t.values[i];
+                else if (extended[var] != t.values[i]) consistent = false;
+            }
+            if (consistent) join_atoms_naively(q, variables, atom + 1, extended, cost + t.cost, out_relation, ret);
+        }
+    }
+
+    /** 
+     * Enumerates the combinations of tuples of the relations in the order of their indexes,
+     * keeping the ones in which every tuple satisfies the join condition with the tuple of its parent.
+     * @return ArrayList<ArrayList<Tuple>> The answers with their tuples in the order of the relations.
+     */
+    public static ArrayList<ArrayList<Tuple>> produce_all_result_tuples_tree(Tree_ThetaJoin_Query q)
+    {
+        ArrayList<ArrayList<Tuple>> ret = new ArrayList<ArrayList<Tuple>>();
+        join_tree_naively(q, new ArrayList<Tuple>(), ret);
+        return ret;
+    }
+
+    private static void join_tree_naively(Tree_ThetaJoin_Query q, ArrayList<Tuple> prefix, ArrayList<ArrayList<Tuple>> ret)
+    {
+        int r = prefix.size();
+        if (r == q.length)
+        {
+            ret.add(new ArrayList<Tuple>(prefix));
+            return;
+        }
+        for (Tuple t : q.relations.get(r).tuples)
+        {
+            int parent = q.parents.get(r);
+            if (parent >= 0 && !condition_satisfied(prefix.get(parent), t, q.join_conditions.get(r))) continue;
+            prefix.add(t);
+            join_tree_naively(q, prefix, ret);
+            prefix.remove(r);
+        }
+    }
 }
@@ -0,0 +1,304 @@
+package algorithms;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.trees.Tree_ThetaJoin_Query;
+import util.Common;
+
+/**
+ * A multi-way rank-join operator for acyclic equi-joins in the style of HRJN
+ * <a href="https://dl.acm.org/doi/10.5555/1315451.1315507">https://dl.acm.org/doi/10.5555/1315451.1315507</a>
+ * and the threshold algorithm.
+ * Unlike the any-k algorithms, it does not construct the state-space graph of the whole database.
+ * Every relation is read in ascending order of tuple cost and every new tuple is joined with the tuples
+ * that have already been read from the other relations by probing hash indexes over those prefixes.
+ * The produced answers wait in a priority queue until their cost is at most the threshold,
+ * i.e., the minimum possible cost of an answer that contains some tuple that has not been read yet:
+ * min_i (last cost read from R_i + sum of the minimum costs of the other relations).
+ * The next tuple is always read from the relation that determines the threshold.
+ * For small k, only a short prefix of each relation has to be read.
+ * <br><br>
+ * Sorted access is provided by a heap over each relation (linear-time construction, logarithmic per tuple read),
+ * unless the relations are already sorted by cost (e.g., with {@link entities.Relation#sort}),
+ * in which case they are scanned in order.
+ * @author Nikolaos Tziavelis
+*/
+public class Rank_Join
+{
+    // The relations in the join
+    List<Relation> relations;
+    // The number of relations in the join
+    int relation_no;
+    Relation out_relation;
+    /**
+     * The tuples of each relation that have not been read yet (heap-based sorted access).
+     * Null if the relations are scanned in order.
+    */
+    List<PriorityQueue<Tuple>> unread;
+    /**
+     * The number of tuples read from each relation.
+    */
+    int[] read_no;
+    boolean[] exhausted;
+    double[] min_cost;
+    double[] last_cost;
+    /**
+     * For each relation i and each of its neighbors j in the join tree,
+     * an index over the tuples read from i on the attributes that join with j.
+    */
+    List<HashMap<Integer, HashMap<List<Double>, List<Tuple>>>> indexes;
+    /**
+     * The attributes of relation i that join with its neighbor j.
+    */
+    List<HashMap<Integer, int[]>> join_attributes;
+    /**
+     * For each relation i, the order in which the other relations are joined with a new tuple of i
+     * and for each one, the neighbor that has been assigned before it.
+    */
+    int[][] probe_order, probe_anchor;
+    /**
+     * The answers produced so far that have not been returned yet.
+    */
+    PriorityQueue<Rank_Join_Answer> output;
+
+    /**
+     * Constructs the operator without reading any tuples.
+     * The query has to be a conjunction of equalities.
+     * @param query The join tree.
+     * @param presorted True if the tuples of every relation are already sorted by cost.
+    */
+	public Rank_Join(Tree_ThetaJoin_Query query, boolean presorted)
+    {
+        this.relations = query.relations;
+        this.relation_no = query.length;
+        String[] schema = new String[0];
+        for (Relation r : relations) schema = Common.concatenate_string_arrays(schema, r.schema);
+        this.out_relation = new Relation("R_out", schema);
+
+        // Index the join attributes of every edge of the tree in both directions
+        List<List<Integer>> neighbors = new ArrayList<List<Integer>>();
+        this.join_attributes = new ArrayList<HashMap<Integer, int[]>>();
+        this.indexes = new ArrayList<HashMap<Integer, HashMap<List<Double>, List<Tuple>>>>();
+        for (int i = 0; i < relation_no; i++)
+        {
+            neighbors.add(new ArrayList<Integer>());
+            join_attributes.add(new HashMap<Integer, int[]>());
+            indexes.add(new HashMap<Integer, HashMap<List<Double>, List<Tuple>>>());
+        }
+        for (int i = 0; i < relation_no; i++)
+        {
+            int parent_idx = query.parents.get(i);
+            if (parent_idx < 0) continue;
+            List<List<Join_Predicate>> join_predicates = query.join_conditions.get(i);
+            if (!Common.is_conjunction_of_simple_equalities(join_predicates))
+            {
+                System.err.println("Rank join cannot currently handle join conditions that are not a conjunction of simple equalities");
+                System.exit(1);
+            }
+            join_attributes.get(parent_idx).put(i, join_predicates.get(0).stream().mapToInt(p -> p.attr_idx_1).toArray());
+            join_attributes.get(i).put(parent_idx, join_predicates.get(0).stream().mapToInt(p -> p.attr_idx_2).toArray());
+            indexes.get(parent_idx).put(i, new HashMap<List<Double>, List<Tuple>>());
+            indexes.get(i).put(parent_idx, new HashMap<List<Double>, List<Tuple>>());
+            neighbors.get(parent_idx).add(i);
+            neighbors.get(i).add(parent_idx);
+        }
+
+        // A BFS from every relation gives the order in which the others are probed
+        this.probe_order = new int[relation_no][];
+        this.probe_anchor = new int[relation_no][];
+        for (int i = 0; i < relation_no; i++)
+        {
+            probe_order[i] = new int[relation_no];
+            probe_anchor[i] = new int[relation_no];
+            boolean[] visited = new boolean[relation_no];
+            ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+            queue.add(i);
+            visited[i] = true;
+            probe_anchor[i][0] = -1;
+            int pos = 0;
+            while (!queue.isEmpty())
+            {
+                int r = queue.poll();
+                probe_order[i][pos++] = r;
+                for (int neighbor : neighbors.get(r))
+                {
+                    if (visited[neighbor]) continue;
+                    visited[neighbor] = true;
+                    probe_anchor[i][neighbor] = r;
+                    queue.add(neighbor);
+                }
+            }
+        }
+
+        this.read_no = new int[relation_no];
+        this.exhausted = new boolean[relation_no];
+        this.min_cost = new double[relation_no];
+        this.last_cost = new double[relation_no];
+        if (!presorted)
+        {
+            this.unread = new ArrayList<PriorityQueue<Tuple>>();
+            for (Relation r : relations) unread.add(new PriorityQueue<Tuple>(r.tuples));
+        }
+        this.output = new PriorityQueue<Rank_Join_Answer>();
+
+        // Read the first tuple of every relation to find the minimum costs
+        for (int i = 0; i < relation_no; i++)
+        {
+            Tuple t = read_next(i);
+            if (t == null)
+            {
+                // There are no answers at all
+                Arrays.fill(exhausted, true);
+                output.clear();
+                return;
+            }
+            min_cost[i] = t.cost;
+        }
+    }
+
+    /**
+     * Computes the next query answer in ranked order (ascending cost).
+     * Ties are broken arbitrarily.
+     * @return Tuple The concatenation of the tuples of the answer or null if there are no other answers.
+     */
+    public Tuple get_next()
+    {
+        List<Tuple> answer = get_next_answer();
+        if (answer == null) return null;
+        return new Tuple(answer, out_relation);
+    }
+
+    /**
+     * Like {@link #get_next}, but without concatenating the tuples.
+     * @return List<Tuple> The tuples of the next answer (one per relation in the order of the query)
+     *  or null if there are no other answers.
+     */
+    public List<Tuple> get_next_answer()
+    {
+        while (true)
+        {
+            // The relation whose next tuple could give the cheapest unseen answer
+            int next_relation = -1;
+            double threshold = Double.POSITIVE_INFINITY;
+            double min_cost_sum = 0.0;
+            for (int i = 0; i < relation_no; i++) min_cost_sum += min_cost[i];
+            for (int i = 0; i < relation_no; i++)
+            {
+                if (exhausted[i]) continue;
+                double bound = last_cost[i] + min_cost_sum - min_cost[i];
+                if (bound < threshold)
+                {
+                    threshold = bound;
+                    next_relation = i;
+                }
+            }
+            // The top of the output is final if no unseen answer can be cheaper
+            if (!output.isEmpty() && output.peek().cost <= threshold) break;
+            if (next_relation == -1) break;
+            read_next(next_relation);
+        }
+        Rank_Join_Answer res = output.poll();
+        if (res == null) return null;
+        return Arrays.asList(res.tuples);
+    }
+
+    /**
+     * @return int The total number of tuples read from the relations so far.
+     */
+    public int tuples_read()
+    {
+        int sum = 0;
+        for (int i = 0; i < relation_no; i++) sum += read_no[i];
+        return sum;
+    }
+
+    /**
+     * Reads the next tuple of a relation in sorted order and joins it with the tuples read so far.
+     * @param i The index of the relation.
+     * @return Tuple The tuple read or null if the relation has been exhausted.
+     */
+    private Tuple read_next(int i)
+    {
+        Tuple t;
+        if (unread == null) t = read_no[i] < relations.get(i).get_size() ? relations.get(i).get(read_no[i]) : null;
+        else t = unread.get(i).poll();
+        if (t == null)
+        {
+            exhausted[i] = true;
+            return null;
+        }
+        read_no[i]++;
+        last_cost[i] = t.cost;
+        if (unread != null && unread.get(i).isEmpty()) exhausted[i] = true;
+        if (unread == null && read_no[i] == relations.get(i).get_size()) exhausted[i] = true;
+
+        // Add the tuple to the indexes of the relation
+        for (int neighbor : indexes.get(i).keySet())
+        {
+            List<Double> key = Common.createSublist(t.values, join_attributes.get(i).get(neighbor));
+            indexes.get(i).get(neighbor).computeIfAbsent(key, k -> new ArrayList<Tuple>()).add(t);
+        }
+
+        // Every new answer contains the new tuple
+        Tuple[] assignment = new Tuple[relation_no];
+        assignment[i] = t;
+        join(i, 1, assignment, t.cost);
+        return t;
+    }
+
+    /**
+     * Recursively extends a partial answer with the tuples read so far from the remaining relations.
+     * @param start The relation of the new tuple.
+     * @param pos The position of the next relation in the probe order.
+     * @param assignment The tuples of the partial answer.
+     * @param cost The cost of the partial answer.
+     */
+    private void join(int start, int pos, Tuple[] assignment, double cost)
+    {
+        if (pos == relation_no)
+        {
+            output.add(new Rank_Join_Answer(assignment.clone(), cost));
+            return;
+        }
+        int r = probe_order[start][pos];
+        int anchor = probe_anchor[start][r];
+        List<Double> key = Common.createSublist(assignment[anchor].values, join_attributes.get(anchor).get(r));
+        List<Tuple> matches = indexes.get(r).get(anchor).get(key);
+        if (matches == null) return;
+        for (Tuple match : matches)
+        {
+            assignment[r] = match;
+            join(start, pos + 1, assignment, cost + match.cost);
+        }
+        assignment[r] = null;
+    }
+
+    /**
+     * An answer that has been produced but not returned yet.
+    */
+    private static class Rank_Join_Answer implements Comparable<Rank_Join_Answer>
+    {
+        Tuple[] tuples;
+        double cost;
+
+        Rank_Join_Answer(Tuple[] tuples, double cost)
+        {
+            this.tuples = tuples;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(Rank_Join_Answer other)
+        {
+            return Double.compare(this.cost, other.cost);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import algorithms.trees.TDP_Unranked_Iterator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+import util.Common;
+
+/**
+ * Pipelined implementation of the Yannakakis algorithm for acyclic queries.
+ * Unlike {@link algorithms.Yannakakis}, the query results are not materialized.
+ * After the bottom-up semi-join sweep, the surviving tuples of every relation are indexed by
+ * the attributes that join with their parent, and {@link #get_next_row_ids} enumerates the results
+ * lazily with constant delay (in data complexity), since every surviving tuple is guaranteed to extend to a result.
+ * A result is returned as the row ids (positions in the input relations) of its tuples, without copying any values.
+ * The results are returned in no particular order.
+ * <br><br>
+ * If some join condition is not a conjunction of simple equalities, the semi-join reduction is replaced
+ * by the factorized T-DP graph of {@link entities.trees.TDP_Thetajoin_Instance}
+ * and the results are enumerated with {@link algorithms.trees.TDP_Unranked_Iterator}.
+ * In contrast to {@link algorithms.Yannakakis}, the query object and the relations are not modified.
+ * @author Nikolaos Tziavelis
+*/
+public class YannakakisStreaming
+{
+    // The relations in the join
+    List<Relation> relations;
+    // The number of relations in the join
+    int relation_no;
+    Tree_ThetaJoin_Query query;
+    Relation out_relation;
+    /**
+     * The row ids of the root relation that survived the semi-joins.
+    */
+    int[] root_rows;
+    /**
+     * For every non-root relation, the row ids that survived the semi-joins grouped by the values
+     * of the attributes that join with the parent.
+    */
+    List<HashMap<List<Double>, int[]>> indexes;
+    /**
+     * The join attributes of each relation (with its parent) and of its parent (with it).
+    */
+    int[][] join_attributes_child, join_attributes_parent;
+    /**
+     * The current candidate rows and the current position in them for every relation.
+    */
+    int[][] candidates;
+    int[] positions;
+    /**
+     * The row ids of the last result returned by {@link #get_next_row_ids}.
+    */
+    int[] current;
+    boolean started, finished;
+    /**
+     * Used instead of the indexes if the query has theta-joins.
+    */
+    TDP_Unranked_Iterator factorized_iter;
+    List<IdentityHashMap<Tuple, Integer>> row_ids;
+
+    // The query has to be a tree whose parents have smaller indexes than their children
+	public YannakakisStreaming(Tree_ThetaJoin_Query query)
+    {
+        this.query = query;
+        this.relations = query.relations;
+        this.relation_no = query.length;
+        String[] schema = new String[0];
+        for (Relation r : relations) schema = Common.concatenate_string_arrays(schema, r.schema);
+        this.out_relation = new Relation("R_out", schema);
+        this.current = new int[relation_no];
+        this.positions = new int[relation_no];
+        this.candidates = new int[relation_no][];
+        this.started = false;
+        this.finished = false;
+
+        boolean equijoin = true;
+        for (int i = 1; i < relation_no; i++)
+            if (!Common.is_conjunction_of_simple_equalities(query.join_conditions.get(i))) equijoin = false;
+        if (equijoin) semi_join_reduce();
+        else
+        {
+            // Let the factorized graph handle the theta-joins
+            factorized_iter = new TDP_Unranked_Iterator(new TDP_Thetajoin_Instance(query, null), null);
+            row_ids = new ArrayList<IdentityHashMap<Tuple, Integer>>();
+            for (Relation r : relations)
+            {
+                IdentityHashMap<Tuple, Integer> ids = new IdentityHashMap<Tuple, Integer>();
+                for (int row = 0; row < r.tuples.size(); row++) ids.put(r.tuples.get(row), row);
+                row_ids.add(ids);
+            }
+        }
+    }
+
+    /**
+     * Computes the next query result in no particular order.
+     * @return int[] The row id of each relation in the query result or null if there are no other results.
+     *  CAUTION: The same array is reused (and overwritten) by the next call.
+     */
+    public int[] get_next_row_ids()
+    {
+        if (finished) return null;
+        if (factorized_iter != null)
+        {
+            TDP_Solution sol = factorized_iter.get_next();
+            if (sol == null)
+            {
+                finished = true;
+                return null;
+            }
+            // The tuples appear in the order of the relations in the query
+            List<Tuple> tuples = sol.solutionToTuples_strict_order();
+            for (int i = 0; i < relation_no; i++) current[i] = row_ids.get(i).get(tuples.get(i));
+            return current;
+        }
+
+        int first_changed;
+        if (!started)
+        {
+            started = true;
+            candidates[0] = root_rows;
+            first_changed = 0;
+            if (root_rows.length == 0)
+            {
+                finished = true;
+                return null;
+            }
+        }
+        else
+        {
+            // Advance the last relation that has more candidates (like an odometer)
+            first_changed = relation_no - 1;
+            while (first_changed >= 0 && positions[first_changed] + 1 == candidates[first_changed].length) first_changed--;
+            if (first_changed < 0)
+            {
+                finished = true;
+                return null;
+            }
+            positions[first_changed]++;
+            current[first_changed] = candidates[first_changed][positions[first_changed]];
+            first_changed++;
+        }
+        // Reset the relations after the one that changed
+        // Every surviving tuple joins with some surviving tuple of each child, so no list is empty
+        for (int i = first_changed; i < relation_no; i++)
+        {
+            if (i > 0)
+            {
+                int parent = query.parents.get(i);
+                Tuple parent_tuple = relations.get(parent).tuples.get(current[parent]);
+                candidates[i] = indexes.get(i).get(Common.createSublist(parent_tuple.values, join_attributes_parent[i]));
+            }
+            positions[i] = 0;
+            current[i] = candidates[i][0];
+        }
+        return current;
+    }
+
+    /**
+     * Like {@link #get_next_row_ids}, but returns the tuples of the result.
+     * @return List<Tuple> The tuple of each relation in the query result or null if there are no other results.
+     */
+    public List<Tuple> get_next_tuples()
+    {
+        int[] rows = get_next_row_ids();
+        if (rows == null) return null;
+        List<Tuple> res = new ArrayList<Tuple>(relation_no);
+        for (int i = 0; i < relation_no; i++) res.add(relations.get(i).tuples.get(rows[i]));
+        return res;
+    }
+
+    /**
+     * Like {@link #get_next_row_ids}, but materializes the result as a new tuple (as {@link algorithms.Yannakakis}).
+     * @return Tuple The concatenation of the tuples of the result or null if there are no other results.
+     */
+    public Tuple get_next()
+    {
+        List<Tuple> tuples = get_next_tuples();
+        if (tuples == null) return null;
+        return new Tuple(tuples, out_relation);
+    }
+
+    /**
+     * Bottom-up sweep: removes the tuples that do not join with every child
+     * and indexes the surviving tuples of each relation by the attributes that join with the parent.
+     */
+    private void semi_join_reduce()
+    {
+        join_attributes_child = new int[relation_no][];
+        join_attributes_parent = new int[relation_no][];
+        // The surviving row ids of every relation
+        List<List<Integer>> survivors = new ArrayList<List<Integer>>();
+        for (int i = 0; i < relation_no; i++)
+        {
+            List<Integer> rows = new ArrayList<Integer>(relations.get(i).tuples.size());
+            for (int row = 0; row < relations.get(i).tuples.size(); row++) rows.add(row);
+            survivors.add(rows);
+        }
+        indexes = new ArrayList<HashMap<List<Double>, int[]>>();
+        for (int i = 0; i < relation_no; i++) indexes.add(null);
+
+        // Children have larger indexes than their parents, so they are reduced first
+        for (int i = relation_no - 1; i >= 1; i--)
+        {
+            int parent_idx = query.parents.get(i);
+            List<Join_Predicate> conjunction = query.join_conditions.get(i).get(0);
+            join_attributes_parent[i] = conjunction.stream().mapToInt(p -> p.attr_idx_1).toArray();
+            join_attributes_child[i] = conjunction.stream().mapToInt(p -> p.attr_idx_2).toArray();
+
+            // Index the surviving tuples of R_i
+            HashMap<List<Double>, List<Integer>> grouped = new HashMap<List<Double>, List<Integer>>();
+            for (int row : survivors.get(i))
+            {
+                List<Double> key = Common.createSublist(relations.get(i).tuples.get(row).values, join_attributes_child[i]);
+                grouped.computeIfAbsent(key, k -> new ArrayList<Integer>()).add(row);
+            }
+            HashMap<List<Double>, int[]> index = new HashMap<List<Double>, int[]>();
+            for (HashMap.Entry<List<Double>, List<Integer>> e : grouped.entrySet())
+                index.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+            indexes.set(i, index);
+
+            // Semi-join reduce the parent with R_i
+            List<Integer> reduced_parent = new ArrayList<Integer>();
+            for (int row : survivors.get(parent_idx))
+            {
+                List<Double> key = Common.createSublist(relations.get(parent_idx).tuples.get(row).values, join_attributes_parent[i]);
+                if (index.containsKey(key)) reduced_parent.add(row);
+            }
+            survivors.set(parent_idx, reduced_parent);
+        }
+        root_rows = relation_no == 0 ? new int[0] : survivors.get(0).stream().mapToInt(Integer::intValue).toArray();
+    }
+}
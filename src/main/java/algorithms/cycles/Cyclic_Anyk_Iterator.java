@@ -0,0 +1,237 @@
+package algorithms.cycles;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import algorithms.Configuration;
+import algorithms.trees.TDP_All;
+import algorithms.trees.TDP_Anyk_Iterator;
+import algorithms.trees.TDP_Eager;
+import algorithms.trees.TDP_Lazy;
+import algorithms.trees.TDP_Quick;
+import algorithms.trees.TDP_QuickPlus;
+import algorithms.trees.TDP_Recursive;
+import algorithms.trees.TDP_Take2;
+import algorithms.trees.Tree_BatchSorting;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Relation;
+import entities.Tuple;
+import entities.cycles.Cyclic_Equijoin_Query;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+import util.Loser_Tree;
+
+/**
+ * A ranked enumeration algorithm for an arbitrary cyclic equi-join query
+ * specified by a {@link entities.cycles.Cyclic_Equijoin_Query} object.
+ * It is implemented as an iterator that is first initialized and then the method {@link #get_next}
+ * returns the next best output Tuple in ranked order.
+ * <br><br>
+ * The cyclic query is decomposed into a union of acyclic queries with disjoint outputs by
+ * {@link algorithms.cycles.Heavy_Light_Decomposition}. Each one is solved by a T-DP any-k algorithm
+ * and a {@link util.Loser_Tree} merges their ranked outputs.
+ * In parallel mode, the acyclic queries are built concurrently in the common fork-join pool
+ * and every any-k iterator runs ahead of the merge on its own thread (see {@link algorithms.cycles.Run_Ahead_Source}).
+ * Each output tuple has one value per variable (in the order in which they first appear in the query).
+ * @author Nikolaos Tziavelis
+*/
+public class Cyclic_Anyk_Iterator
+{
+    /**
+     * The algorithm to be used for any-k enumeration on the acyclic (tree) queries.
+    */
+    public String anyk_alg;
+    /**
+     * A top-level tournament tree that compares the solutions between the different acyclic queries of the decomposition.
+    */
+    private Loser_Tree<Tuple> merger;
+    /**
+     * The producers of the acyclic queries in parallel mode (empty otherwise).
+    */
+    private List<Run_Ahead_Source<Tuple>> run_ahead_sources;
+    private int decomposition_size;
+    /**
+     * For each acyclic query and each variable of the cyclic query, the relation and the attribute that contain its value.
+    */
+    private List<int[][]> variable_positions;
+    /**
+     * For each acyclic query, the index of each of its relations.
+     * The tuples of a solution are matched to the relations by their reference,
+     * since not all the any-k algorithms return them in the order of the relations.
+    */
+    private List<IdentityHashMap<Relation, Integer>> relation_indexes;
+    /**
+     * The relation that output tuples use as a reference.
+     * @see entities.Relation
+    */
+    private Relation output;
+
+    /**
+     * @param query A cyclic equi-join query.
+     * @param algorithm An any-k algorithm for the acyclic cases.
+     * @param heap_type A string that specifies the type of heap used by the Any-k Part variants.
+     */
+    public Cyclic_Anyk_Iterator(Cyclic_Equijoin_Query query, String algorithm, String heap_type)
+    {
+        this(query, algorithm, heap_type, null, false);
+    }
+
+    /**
+     * @param query A cyclic equi-join query.
+     * @param algorithm An any-k algorithm for the acyclic cases.
+     * @param heap_type A string that specifies the type of heap used by the Any-k Part variants.
+     * @param threshold A fixed degree threshold for the heavy values of the decomposition.
+     *  If null, the decomposition chooses it with its cost model.
+     * @param parallel Whether to build the acyclic queries concurrently and let their iterators run ahead on separate threads.
+     */
+    public Cyclic_Anyk_Iterator(Cyclic_Equijoin_Query query, String algorithm, String heap_type, Double threshold, boolean parallel)
+    {
+        this.anyk_alg = algorithm;
+        List<String> query_variables = query.get_variables();
+        this.output = new Relation("Rout", query_variables.toArray(new String[0]));
+        Configuration conf = new Configuration();
+        conf.set_heap_type(heap_type);
+
+        List<Tree_ThetaJoin_Query> union_acyclic = new Heavy_Light_Decomposition(query, threshold).acyclic_queries;
+
+        this.decomposition_size = union_acyclic.size();
+        this.variable_positions = new ArrayList<int[][]>();
+        this.relation_indexes = new ArrayList<IdentityHashMap<Relation, Integer>>();
+        for (Tree_ThetaJoin_Query subquery : union_acyclic)
+        {
+            int[][] positions = new int[query_variables.size()][];
+            IdentityHashMap<Relation, Integer> indexes = new IdentityHashMap<Relation, Integer>();
+            for (int r = 0; r < subquery.length; r++)
+            {
+                indexes.put(subquery.relations.get(r), r);
+                String[] schema = subquery.relations.get(r).schema;
+                for (int attr = 0; attr < schema.length; attr++)
+                {
+                    int x = query_variables.indexOf(schema[attr]);
+                    if (positions[x] == null) positions[x] = new int[]{ r, attr };
+                }
+            }
+            variable_positions.add(positions);
+            relation_indexes.add(indexes);
+        }
+
+        // Build the T-DP graphs of the acyclic queries
+        TDP_Anyk_Iterator[] iterators = new TDP_Anyk_Iterator[decomposition_size];
+        IntStream plan_indexes = IntStream.range(0, decomposition_size);
+        if (parallel) plan_indexes = plan_indexes.parallel();
+        plan_indexes.forEach(i ->
+        {
+            TDP_Thetajoin_Instance instance = new TDP_Thetajoin_Instance(union_acyclic.get(i), null);
+            instance.bottom_up();
+            iterators[i] = initialize_iterator(instance, conf);
+        });
+
+        // The solutions are converted to tuples as soon as they are produced,
+        // since an iterator may reuse the objects of its previous solutions
+        List<Loser_Tree.Source<Tuple>> sources = new ArrayList<Loser_Tree.Source<Tuple>>();
+        this.run_ahead_sources = new ArrayList<Run_Ahead_Source<Tuple>>();
+        for (int i = 0; i < decomposition_size; i++)
+        {
+            TDP_Anyk_Iterator iter = iterators[i];
+            int plan = i;
+            Loser_Tree.Source<Tuple> source = () ->
+            {
+                TDP_Solution sol = iter.get_next();
+                return sol == null ? null : to_output_tuple(sol, plan);
+            };
+            if (parallel)
+            {
+                Run_Ahead_Source<Tuple> run_ahead = new Run_Ahead_Source<Tuple>(source::next, "Cyclic-" + i);
+                run_ahead_sources.add(run_ahead);
+                source = run_ahead;
+            }
+            sources.add(source);
+        }
+        this.merger = new Loser_Tree<Tuple>(sources, Tuple::compareTo);
+    }
+
+    /**
+     * Computes the next output Tuple of {@link entities.cycles.Cyclic_Equijoin_Query} in ranked order.
+     * Ties are broken arbitrarily.
+     * @return Tuple The next best tuple or null if there are no other tuple.
+     */
+    public Tuple get_next()
+    {
+        return merger.poll();
+    }
+
+    /**
+     * Stops the threads of the parallel mode if the enumeration ends before the last output tuple.
+     */
+    public void close()
+    {
+        for (Run_Ahead_Source<Tuple> source : run_ahead_sources) source.close();
+    }
+
+    /**
+     * @return Tuple The values of the variables in a solution of an acyclic query.
+     */
+    private Tuple to_output_tuple(TDP_Solution solution, int plan)
+    {
+        IdentityHashMap<Relation, Integer> indexes = relation_indexes.get(plan);
+        List<Tuple> solution_tuples = solution.solutionToTuples();
+        Tuple[] bag_tuples = new Tuple[solution_tuples.size()];
+        for (Tuple t : solution_tuples) bag_tuples[indexes.get(t.relation)] = t;
+        int[][] positions = variable_positions.get(plan);
+        double[] vals = new double[positions.length];
+        for (int x = 0; x < positions.length; x++)
+            vals[x] = bag_tuples[positions[x][0]].values[positions[x][1]];
+        return new Tuple(vals, solution.get_cost(), output);
+    }
+
+    /**
+     * @return int The number of acyclic queries in the decomposition.
+     */
+    public int get_decomposition_size()
+    {
+        return decomposition_size;
+    }
+
+    private TDP_Anyk_Iterator initialize_iterator(TDP_Thetajoin_Instance instance, Configuration conf)
+    {
+        TDP_Anyk_Iterator iter = null;
+        if (anyk_alg.equals("Eager")) iter = new TDP_Eager(instance, conf);
+        else if (anyk_alg.equals("All")) iter = new TDP_All(instance, conf);
+        else if (anyk_alg.equals("Take2")) iter = new TDP_Take2(instance, conf);
+        else if (anyk_alg.equals("Lazy")) iter = new TDP_Lazy(instance, conf);
+        else if (anyk_alg.equals("Quick")) iter = new TDP_Quick(instance, conf);
+        else if (anyk_alg.equals("QuickPlus")) iter = new TDP_QuickPlus(instance, conf);
+        else if (anyk_alg.equals("Recursive")) iter = new TDP_Recursive(instance, conf);
+        else if (anyk_alg.equals("BatchSorting")) iter = new Tree_BatchSorting(instance, conf);
+        else
+        {
+            System.err.println("Any-k algorithm not recognized.");
+            System.exit(1);
+        }
+        return iter;
+    }
+
+    public static void main(String args[])
+    {
+        // A triangle with a chord to a fourth variable (two triangles sharing an edge)
+        Database_Query_Generator gen = new BinaryRandomPattern(20, 5, 5, "cycle");
+        gen.create();
+        List<Relation> db = gen.get_database();
+        Cyclic_Equijoin_Query query = new Cyclic_Equijoin_Query();
+        query.add_atom(db.get(0), "A", "B");
+        query.add_atom(db.get(1), "B", "C");
+        query.add_atom(db.get(2), "C", "A");
+        query.add_atom(db.get(3), "C", "D");
+        query.add_atom(db.get(4), "D", "B");
+
+        Cyclic_Anyk_Iterator iter = new Cyclic_Anyk_Iterator(query, "Lazy", null);
+        System.out.println("Acyclic queries in the decomposition: " + iter.get_decomposition_size());
+        Tuple res;
+        while ((res = iter.get_next()) != null)
+            System.out.println("Cost= " + res.cost + "  " + res);
+    }
+}
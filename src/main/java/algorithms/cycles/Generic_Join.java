@@ -0,0 +1,425 @@
+package algorithms.cycles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Relation;
+import entities.Tuple;
+import entities.cycles.Cyclic_Equijoin_Query;
+
+/**
+ * Worst-case optimal join algorithm for arbitrary equi-join queries in the style of Generic Join
+ * (Ngo et al., SIGMOD Record'14 <a href="https://doi.org/10.1145/2590989.2590991">https://doi.org/10.1145/2590989.2590991</a>)
+ * and Leapfrog Triejoin (Veldhuizen, ICDT'14).
+ * The variables are bound one at a time in a fixed order: the values of a variable are the intersection
+ * of the children of the current trie nodes of the atoms that contain it,
+ * computed by a leapfrog over their sorted tries (see {@link algorithms.cycles.Sorted_Trie}).
+ * Unlike {@link algorithms.cycles.NPRR}, any cycle length, cliques and multiple cycles are supported.
+ * With the parallel option, the values of the first variable are partitioned among the threads of the
+ * common fork-join pool and the partitions are concatenated in the same order as a sequential run.
+ * Each output tuple has one value per variable (in the order in which they first appear in the query)
+ * and the sum of the costs of the joining tuples (in the order of the atoms) as its cost
+ * (if an atom has duplicate tuples, each combination is a separate output tuple).
+ * Does NOT sort the output.
+ * @author Nikolaos Tziavelis
+*/
+public class Generic_Join
+{
+    /**
+     * The number of partitions per thread, so that a skewed partition does not keep the other threads idle.
+    */
+    static final int PARTITIONS_PER_THREAD = 4;
+
+    /**
+     * The variables in the order in which they are bound.
+    */
+    List<String> variable_order;
+    int var_no, atom_no;
+    Sorted_Trie[] tries;
+    /**
+     * For each variable, the atoms that contain it and the level of the variable in their tries.
+    */
+    int[][] participants, levels;
+    /**
+     * For each variable, its position in the output tuples (the order of the variables in the query).
+    */
+    int[] output_positions;
+    /**
+     * The relation that output tuples use as a reference.
+     * @see entities.Relation
+    */
+    Relation out_relation;
+    /**
+     * Size of the output.
+    */
+    int tuples_no;
+    /**
+     * Index of last output tuple enumerated.
+    */
+    int current_index;
+
+    /**
+     * Joins sequentially, binding the variables in the order in which they first appear in the query.
+     * @param query The query.
+     */
+    public Generic_Join(Cyclic_Equijoin_Query query)
+    {
+        this(query, null, false);
+    }
+
+    /**
+     * @param query The query.
+     * @param variable_order The order in which the variables are bound (null for the order in which they first appear).
+     * @param parallel True to partition the values of the first variable among multiple threads.
+     */
+    public Generic_Join(Cyclic_Equijoin_Query query, List<String> variable_order, boolean parallel)
+    {
+        List<String> query_variables = query.get_variables();
+        if (variable_order == null) variable_order = query_variables;
+        else if (variable_order.size() != query_variables.size() || !variable_order.containsAll(query_variables))
+        {
+            System.err.println("The variable order " + variable_order + " does not match the variables of the query " + query_variables);
+            System.exit(1);
+        }
+        if (variable_order.isEmpty())
+        {
+            System.err.println("Generic Join needs a query with at least one variable");
+            System.exit(1);
+        }
+        this.variable_order = variable_order;
+        this.var_no = variable_order.size();
+        this.atom_no = query.length;
+        this.out_relation = new Relation("Rout", query_variables.toArray(new String[0]));
+        this.output_positions = new int[var_no];
+        for (int x = 0; x < var_no; x++) output_positions[x] = query_variables.indexOf(variable_order.get(x));
+
+        build_tries(query);
+        if (parallel) join_parallel();
+        else join_sequential();
+
+        this.tuples_no = out_relation.get_size();
+        this.current_index = -1;
+    }
+
+    /**
+     * @return Tuple Returns the next output tuple (or null if none remain).
+     */
+    public Tuple get_next()
+    {
+        this.current_index++;
+        if (current_index == this.tuples_no) return null;
+        Tuple ret = out_relation.get(current_index);
+        return ret;
+    }
+
+    /**
+     * Sorts every atom by its variables and records in which atoms and levels each variable appears.
+     */
+    private void build_tries(Cyclic_Equijoin_Query query)
+    {
+        tries = new Sorted_Trie[atom_no];
+        List<List<Integer>> var_atoms = new ArrayList<List<Integer>>();
+        List<List<Integer>> var_levels = new ArrayList<List<Integer>>();
+        for (int x = 0; x < var_no; x++)
+        {
+            var_atoms.add(new ArrayList<Integer>());
+            var_levels.add(new ArrayList<Integer>());
+        }
+        for (int a = 0; a < atom_no; a++)
+        {
+            String[] atom_variables = query.variables.get(a);
+            int arity = atom_variables.length;
+            // The first attribute of each variable, and the attributes that have to agree with it
+            int[] same_as = new int[arity];
+            for (int i = 0; i < arity; i++)
+            {
+                same_as[i] = i;
+                for (int j = 0; j < i; j++)
+                    if (atom_variables[j].equals(atom_variables[i]))
+                    {
+                        same_as[i] = j;
+                        break;
+                    }
+            }
+            // The levels of the trie follow the global variable order
+            List<Integer> attributes = new ArrayList<Integer>();
+            for (int x = 0; x < var_no; x++)
+            {
+                int attr = Arrays.asList(atom_variables).indexOf(variable_order.get(x));
+                if (attr < 0) continue;
+                var_atoms.get(x).add(a);
+                var_levels.get(x).add(attributes.size());
+                attributes.add(attr);
+            }
+            tries[a] = new Sorted_Trie(query.relations.get(a), attributes.stream().mapToInt(i -> i).toArray(), same_as);
+        }
+        participants = new int[var_no][];
+        levels = new int[var_no][];
+        for (int x = 0; x < var_no; x++)
+        {
+            participants[x] = var_atoms.get(x).stream().mapToInt(i -> i).toArray();
+            levels[x] = var_levels.get(x).stream().mapToInt(i -> i).toArray();
+        }
+    }
+
+    private void join_sequential()
+    {
+        Enumeration e = new Enumeration();
+        e.join(0);
+        out_relation.insertAll(e.results);
+    }
+
+    /**
+     * Finds the values of the first variable, splits them into partitions
+     * and joins the partitions in parallel.
+     */
+    private void join_parallel()
+    {
+        List<double[]> first_values = new Enumeration().first_level();
+        int threads = ForkJoinPool.commonPool().getParallelism();
+        int partition_no = Math.max(1, Math.min(first_values.size(), threads * PARTITIONS_PER_THREAD));
+        List<List<Tuple>> partition_results = new ArrayList<List<Tuple>>();
+        for (int p = 0; p < partition_no; p++) partition_results.add(null);
+        ForkJoinPool.commonPool().invoke(new Partition_Task(first_values, partition_results, 0, partition_no));
+        for (List<Tuple> results : partition_results) out_relation.insertAll(results);
+    }
+
+    /**
+     * Joins a range of partitions, splitting it in halves until a single partition remains.
+     */
+    private class Partition_Task extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        final List<double[]> first_values;
+        final List<List<Tuple>> partition_results;
+        final int from, to;
+
+        Partition_Task(List<double[]> first_values, List<List<Tuple>> partition_results, int from, int to)
+        {
+            this.first_values = first_values;
+            this.partition_results = partition_results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1)
+            {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Partition_Task(first_values, partition_results, from, mid),
+                          new Partition_Task(first_values, partition_results, mid, to));
+                return;
+            }
+            int partition_no = partition_results.size();
+            int start = (int) ((long) first_values.size() * from / partition_no);
+            int end = (int) ((long) first_values.size() * to / partition_no);
+            Enumeration e = new Enumeration();
+            for (int i = start; i < end; i++) e.join_first_value(first_values.get(i));
+            // Each task writes a different position (visible to the caller after invoke returns)
+            partition_results.set(from, e.results);
+        }
+    }
+
+    /**
+     * The state of one depth-first enumeration: the current trie node (range of rows) of every atom
+     * and the values bound so far.
+     * Independent enumerations can run in parallel since the tries are only read.
+     */
+    private class Enumeration
+    {
+        int[] lo, hi;
+        double[] binding;
+        /**
+         * Scratch space of the leapfrog of each variable, one position per participating atom.
+        */
+        int[][] positions, ends, saved_lo, saved_hi;
+        List<Tuple> results;
+
+        Enumeration()
+        {
+            lo = new int[atom_no];
+            hi = new int[atom_no];
+            for (int a = 0; a < atom_no; a++) hi[a] = tries[a].size;
+            binding = new double[var_no];
+            positions = new int[var_no][];
+            ends = new int[var_no][];
+            saved_lo = new int[var_no][];
+            saved_hi = new int[var_no][];
+            for (int x = 0; x < var_no; x++)
+            {
+                int m = participants[x].length;
+                positions[x] = new int[m];
+                ends[x] = new int[m];
+                saved_lo[x] = new int[m];
+                saved_hi[x] = new int[m];
+            }
+            results = new ArrayList<Tuple>();
+        }
+
+        /**
+         * Binds variable x to every value in the intersection of the participating atoms
+         * and continues with the next variable.
+         */
+        void join(int x)
+        {
+            if (x == var_no)
+            {
+                output(0, 0.0);
+                return;
+            }
+            leapfrog(x, false, null);
+        }
+
+        /**
+         * @return List<double[]> For every value of the first variable, the value followed by
+         *  the ranges of the participating atoms (start and end, as doubles).
+         */
+        List<double[]> first_level()
+        {
+            List<double[]> values = new ArrayList<double[]>();
+            leapfrog(0, true, values);
+            return values;
+        }
+
+        /**
+         * Continues the join from a value of the first variable that was found by {@link #first_level}.
+         */
+        void join_first_value(double[] value)
+        {
+            int[] atoms = participants[0];
+            binding[0] = value[0];
+            for (int i = 0; i < atoms.length; i++)
+            {
+                lo[atoms[i]] = (int) value[1 + 2 * i];
+                hi[atoms[i]] = (int) value[2 + 2 * i];
+            }
+            join(1);
+            for (int i = 0; i < atoms.length; i++)
+            {
+                lo[atoms[i]] = 0;
+                hi[atoms[i]] = tries[atoms[i]].size;
+            }
+        }
+
+        /**
+         * The leapfrog intersection for variable x: the atom with the smallest current value seeks
+         * to the largest one until all of them agree.
+         * @param collect If true, the values are collected in the list instead of continuing the join.
+         */
+        private void leapfrog(int x, boolean collect, List<double[]> collected)
+        {
+            int[] atoms = participants[x];
+            int[] atom_levels = levels[x];
+            int m = atoms.length;
+            int[] pos = positions[x], end = ends[x];
+            for (int i = 0; i < m; i++)
+            {
+                saved_lo[x][i] = lo[atoms[i]];
+                saved_hi[x][i] = hi[atoms[i]];
+                pos[i] = lo[atoms[i]];
+                if (pos[i] >= hi[atoms[i]]) return;
+            }
+            search:
+            while (true)
+            {
+                double max = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < m; i++) max = Math.max(max, tries[atoms[i]].keys[pos[i]][atom_levels[i]]);
+                boolean aligned = false;
+                while (!aligned)
+                {
+                    aligned = true;
+                    for (int i = 0; i < m; i++)
+                    {
+                        Sorted_Trie trie = tries[atoms[i]];
+                        pos[i] = trie.seek(atom_levels[i], pos[i], saved_hi[x][i], max);
+                        if (pos[i] == saved_hi[x][i]) break search;
+                        double key = trie.keys[pos[i]][atom_levels[i]];
+                        if (key > max)
+                        {
+                            max = key;
+                            aligned = false;
+                        }
+                    }
+                }
+                // All the atoms agree on the value
+                for (int i = 0; i < m; i++)
+                    end[i] = tries[atoms[i]].seek_past(atom_levels[i], pos[i], saved_hi[x][i], max);
+                if (collect)
+                {
+                    double[] value = new double[1 + 2 * m];
+                    value[0] = max;
+                    for (int i = 0; i < m; i++)
+                    {
+                        value[1 + 2 * i] = pos[i];
+                        value[2 + 2 * i] = end[i];
+                    }
+                    collected.add(value);
+                }
+                else
+                {
+                    binding[x] = max;
+                    for (int i = 0; i < m; i++)
+                    {
+                        lo[atoms[i]] = pos[i];
+                        hi[atoms[i]] = end[i];
+                    }
+                    join(x + 1);
+                }
+                for (int i = 0; i < m; i++)
+                {
+                    pos[i] = end[i];
+                    if (pos[i] == saved_hi[x][i]) break search;
+                }
+            }
+            for (int i = 0; i < m; i++)
+            {
+                lo[atoms[i]] = saved_lo[x][i];
+                hi[atoms[i]] = saved_hi[x][i];
+            }
+        }
+
+        /**
+         * All the variables are bound, thus the range of every atom contains identical tuples
+         * (more than one only if the relation has duplicates). Outputs every combination.
+         */
+        private void output(int a, double cost)
+        {
+            if (a == atom_no)
+            {
+                double[] vals = new double[var_no];
+                for (int x = 0; x < var_no; x++) vals[output_positions[x]] = binding[x];
+                results.add(new Tuple(vals, cost, out_relation));
+                return;
+            }
+            for (int r = lo[a]; r < hi[a]; r++)
+            {
+                output(a + 1, cost + tries[a].tuples[r].cost);
+            }
+        }
+    }
+
+    public static void main(String args[])
+    {
+        // Triangles over three random binary relations
+        Database_Query_Generator gen = new BinaryRandomPattern(20, 3, 5, "cycle");
+        gen.create();
+        List<Relation> database = gen.get_database();
+        Cyclic_Equijoin_Query query = new Cyclic_Equijoin_Query();
+        query.add_atom(database.get(0), "A", "B");
+        query.add_atom(database.get(1), "B", "C");
+        query.add_atom(database.get(2), "C", "A");
+
+        Generic_Join iter = new Generic_Join(query);
+        System.out.println("==== Generic Join ====");
+        Tuple res;
+        while ((res = iter.get_next()) != null)
+            System.out.println("Cost= " + res.cost + "  " + res);
+    }
+}
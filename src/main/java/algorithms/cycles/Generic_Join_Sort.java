@@ -0,0 +1,45 @@
+package algorithms.cycles;
+
+import java.util.Collections;
+import java.util.List;
+
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Relation;
+import entities.Tuple;
+import entities.cycles.Cyclic_Equijoin_Query;
+
+/** 
+ * Worst-case optimal join algorithm for arbitrary equi-join queries (see {@link algorithms.cycles.Generic_Join}).
+ * Sorts the output, hence calling {@link #get_next} returns the output tuples in ranked order.
+ * @author Nikolaos Tziavelis
+*/
+public class Generic_Join_Sort extends Generic_Join
+{
+    public Generic_Join_Sort(Cyclic_Equijoin_Query query)
+    {
+        this(query, null, false);
+    }
+
+    public Generic_Join_Sort(Cyclic_Equijoin_Query query, List<String> variable_order, boolean parallel)
+    {
+        super(query, variable_order, parallel);
+        Collections.sort(out_relation.tuples);
+    }
+
+    public static void main(String args[]) 
+    {
+        // 5-cycles over five random binary relations
+        Database_Query_Generator gen = new BinaryRandomPattern(10, 5, 4, "cycle");
+        gen.create();
+        List<Relation> database = gen.get_database();
+        Cyclic_Equijoin_Query query = new Cyclic_Equijoin_Query();
+        for (int i = 0; i < 5; i++) query.add_atom(database.get(i), "A" + i, "A" + ((i + 1) % 5));
+
+        Generic_Join_Sort iter = new Generic_Join_Sort(query);
+        System.out.println("==== Generic Join (w/sort) ====");
+        Tuple res;
+        while ((res = iter.get_next()) != null)
+            System.out.println("Cost= " + res.cost + "  " + res);
+    }
+}
@@ -0,0 +1,508 @@
+package algorithms.cycles;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.cycles.Cyclic_Equijoin_Query;
+import entities.trees.Tree_ThetaJoin_Query;
+
+/**
+ * Decomposes an arbitrary cyclic equi-join query (see {@link entities.cycles.Cyclic_Equijoin_Query})
+ * into a union of acyclic (tree) queries whose answers partition the answers of the cyclic query.
+ * This generalizes the submodular-width decomposition of simple cycles in {@link algorithms.cycles.SimpleCycle_Anyk_Iterator}
+ * to odd cycles, cycles with chords, cliques etc.
+ * <br><br>
+ * The decomposition conditions on one variable x of the cyclic core of the query at a time.
+ * The values of x are split into "heavy" and "light" by a threshold on their degree (the number of tuples that contain them)
+ * and every answer is routed to exactly one of two subqueries:
+ * <ul>
+ * <li> Heavy: x is restricted to the (few) heavy values, which are carried through all the atoms of the query
+ * (the atoms that do not contain x are multiplied with the heavy values).
+ * Since x then appears in every bag, it no longer participates in any cycle.
+ * <li> Light: x is restricted to the light values and the atoms of the cyclic core that contain it are joined into a single bag,
+ * whose size is bounded by the light degrees.
+ * </ul>
+ * The subqueries are decomposed recursively until their hypergraph (ignoring the carried variables) is acyclic,
+ * at which point a join tree is built for them with the GYO reduction.
+ * <br><br>
+ * Instead of a fixed formula, the variable and the threshold of every step are chosen by a cost model
+ * that uses the degrees of the values in the data:
+ * among all the variables of the core and all the possible thresholds, we choose the one that minimizes
+ * the total size of the relations that the two subqueries materialize.
+ * @author Nikolaos Tziavelis
+*/
+public class Heavy_Light_Decomposition
+{
+    /**
+     * The acyclic queries of the decomposition.
+     * The schema of every relation contains the names of the variables of the corresponding bag
+     * and its tuples reference it.
+    */
+    public List<Tree_ThetaJoin_Query> acyclic_queries;
+    /**
+     * A fixed degree threshold for the heavy values (if null, the cost model chooses one per step).
+    */
+    private Double fixed_threshold;
+
+    /**
+     * Decomposes a query with thresholds chosen by the cost model.
+     * @param query A cyclic equi-join query.
+    */
+    public Heavy_Light_Decomposition(Cyclic_Equijoin_Query query)
+    {
+        this(query, null);
+    }
+
+    /**
+     * @param query A cyclic equi-join query.
+     * @param threshold A value is heavy if it appears in at least threshold tuples of some atom.
+     *  If null, the threshold is chosen by the cost model.
+    */
+    public Heavy_Light_Decomposition(Cyclic_Equijoin_Query query, Double threshold)
+    {
+        this.fixed_threshold = threshold;
+        this.acyclic_queries = new ArrayList<Tree_ThetaJoin_Query>();
+        List<Relation> atoms = new ArrayList<Relation>();
+        for (int a = 0; a < query.length; a++)
+            atoms.add(project_atom(query.relations.get(a), query.variables.get(a), "R" + a));
+        decompose(atoms, new HashSet<String>());
+    }
+
+    /**
+     * The choice of the cost model for one step of the decomposition.
+    */
+    private class Split
+    {
+        String variable;
+        /**
+         * The values of the variable that appear in every atom that contains it.
+        */
+        Set<Double> values;
+        Set<Double> heavy_values;
+        double estimated_size;
+    }
+
+    /**
+     * Decomposes a query (given as a list of relations whose schemas are the variables)
+     * and adds the resulting acyclic queries to {@link #acyclic_queries}.
+     * @param carried The variables that appear in all the atoms.
+    */
+    private void decompose(List<Relation> atoms, Set<String> carried)
+    {
+        for (Relation r : atoms)
+            if (r.tuples.isEmpty()) return;
+        List<Set<String>> core = cyclic_core(atoms, carried);
+        LinkedHashSet<String> core_variables = new LinkedHashSet<String>();
+        for (Set<String> edge : core)
+            if (edge != null) core_variables.addAll(edge);
+        if (core_variables.isEmpty())
+        {
+            acyclic_queries.add(join_tree(atoms, carried));
+            return;
+        }
+
+        // Choose the variable to condition on and its heavy values
+        Split best = null;
+        for (String x : core_variables)
+        {
+            Split split = evaluate_split(atoms, core, x);
+            if (best == null || split.estimated_size < best.estimated_size) best = split;
+        }
+        String x = best.variable;
+
+        // Heavy subquery: carry the heavy values through all the atoms
+        if (!best.heavy_values.isEmpty())
+        {
+            List<Double> heavy_list = new ArrayList<Double>(best.heavy_values);
+            Collections.sort(heavy_list);
+            List<Relation> heavy_atoms = new ArrayList<Relation>();
+            for (Relation r : atoms)
+            {
+                if (index_of(r, x) >= 0) heavy_atoms.add(select(r, x, best.heavy_values));
+                else heavy_atoms.add(carry(r, x, heavy_list));
+            }
+            Set<String> heavy_carried = new HashSet<String>(carried);
+            heavy_carried.add(x);
+            decompose(heavy_atoms, heavy_carried);
+        }
+
+        // Light subquery: join the atoms of the core that contain the variable
+        Set<Double> light_values = new HashSet<Double>(best.values);
+        light_values.removeAll(best.heavy_values);
+        if (!light_values.isEmpty())
+        {
+            List<Relation> light_atoms = new ArrayList<Relation>();
+            List<Relation> to_merge = new ArrayList<Relation>();
+            for (int a = 0; a < atoms.size(); a++)
+            {
+                Relation r = atoms.get(a);
+                if (index_of(r, x) < 0)
+                {
+                    light_atoms.add(r);
+                    continue;
+                }
+                Relation selected = select(r, x, light_values);
+                if (core.get(a) != null && core.get(a).contains(x))
+                {
+                    // The merged bag takes the place of the first atom that it replaces
+                    if (to_merge.isEmpty()) light_atoms.add(null);
+                    to_merge.add(selected);
+                }
+                else light_atoms.add(selected);
+            }
+            light_atoms.set(light_atoms.indexOf(null), join_all(to_merge));
+            decompose(light_atoms, carried);
+        }
+    }
+
+    /**
+     * Applies the cost model to a variable of the core.
+     * The heavy subquery materializes the heavy tuples of the atoms that contain the variable
+     * and a copy of every other atom for each heavy value.
+     * The light subquery materializes the join of the light tuples of the core atoms that contain the variable
+     * (estimated by the product of their degrees) and keeps the rest of the atoms.
+     * The values are sorted by their maximum degree and every prefix is a candidate set of heavy values.
+    */
+    private Split evaluate_split(List<Relation> atoms, List<Set<String>> core, String x)
+    {
+        // Collect the degrees of the values in the atoms that contain the variable
+        List<Integer> containing = new ArrayList<Integer>();
+        double others_size = 0.0;
+        for (int a = 0; a < atoms.size(); a++)
+        {
+            if (index_of(atoms.get(a), x) >= 0) containing.add(a);
+            else others_size += atoms.get(a).tuples.size();
+        }
+        HashMap<Double, int[]> degrees = new HashMap<Double, int[]>();
+        for (int i = 0; i < containing.size(); i++)
+        {
+            Relation r = atoms.get(containing.get(i));
+            int attr = index_of(r, x);
+            for (Tuple t : r.tuples)
+            {
+                int[] degs = degrees.get(t.values[attr]);
+                if (degs == null)
+                {
+                    degs = new int[containing.size()];
+                    degrees.put(t.values[attr], degs);
+                }
+                degs[i]++;
+            }
+        }
+        // Only the values that appear in all these atoms can be part of an answer
+        List<Map.Entry<Double, int[]>> entries = new ArrayList<Map.Entry<Double, int[]>>();
+        for (Map.Entry<Double, int[]> entry : degrees.entrySet())
+            if (Arrays.stream(entry.getValue()).allMatch(d -> d > 0)) entries.add(entry);
+        entries.sort((e1, e2) -> Integer.compare(max(e2.getValue()), max(e1.getValue())));
+
+        int no = entries.size();
+        // light[k] is the size of the light subquery when the first k values are heavy
+        double[] light = new double[no + 1];
+        light[no] = others_size;
+        for (int k = no - 1; k >= 0; k--)
+        {
+            int[] degs = entries.get(k).getValue();
+            double merged = 1.0, kept = 0.0;
+            for (int i = 0; i < containing.size(); i++)
+            {
+                Set<String> edge = core.get(containing.get(i));
+                if (edge != null && edge.contains(x)) merged *= degs[i];
+                else kept += degs[i];
+            }
+            light[k] = light[k + 1] + merged + kept;
+        }
+
+        int best_k = -1;
+        double best_size = Double.POSITIVE_INFINITY;
+        double heavy_tuples = 0.0;
+        for (int k = 0; k <= no; k++)
+        {
+            if (k > 0) heavy_tuples += Arrays.stream(entries.get(k - 1).getValue()).sum();
+            // Values with the same degree are on the same side of the threshold
+            boolean boundary = k == 0 || k == no || max(entries.get(k - 1).getValue()) != max(entries.get(k).getValue());
+            if (!boundary) continue;
+            if (fixed_threshold != null)
+            {
+                boolean above = k == 0 || max(entries.get(k - 1).getValue()) >= fixed_threshold;
+                boolean below = k == no || max(entries.get(k).getValue()) < fixed_threshold;
+                if (!above || !below) continue;
+            }
+            double size = heavy_tuples + k * others_size + light[k];
+            if (size < best_size)
+            {
+                best_size = size;
+                best_k = k;
+            }
+        }
+
+        Split split = new Split();
+        split.variable = x;
+        split.values = new HashSet<Double>();
+        split.heavy_values = new HashSet<Double>();
+        for (int k = 0; k < no; k++)
+        {
+            split.values.add(entries.get(k).getKey());
+            if (k < best_k) split.heavy_values.add(entries.get(k).getKey());
+        }
+        split.estimated_size = best_size;
+        return split;
+    }
+
+    /**
+     * Computes the cyclic core of the hypergraph of the query with the GYO reduction, i.e.,
+     * by repeatedly removing variables that appear in only one atom and atoms that are contained in another.
+     * @return List<Set<String>> For each atom, its remaining variables (null if the atom was removed).
+     *  The core is empty iff the query is acyclic.
+    */
+    private List<Set<String>> cyclic_core(List<Relation> atoms, Set<String> carried)
+    {
+        List<Set<String>> edges = new ArrayList<Set<String>>();
+        for (Relation r : atoms)
+        {
+            Set<String> edge = new LinkedHashSet<String>(Arrays.asList(r.schema));
+            edge.removeAll(carried);
+            edges.add(edge);
+        }
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+            HashMap<String, Integer> occurrences = new HashMap<String, Integer>();
+            for (Set<String> edge : edges)
+                if (edge != null)
+                    for (String v : edge) occurrences.merge(v, 1, Integer::sum);
+            for (Set<String> edge : edges)
+                if (edge != null && edge.removeIf(v -> occurrences.get(v) == 1)) changed = true;
+            for (int i = 0; i < edges.size(); i++)
+            {
+                if (edges.get(i) == null) continue;
+                for (int j = 0; j < edges.size(); j++)
+                {
+                    if (j != i && edges.get(j) != null && edges.get(j).containsAll(edges.get(i)))
+                    {
+                        edges.set(i, null);
+                        changed = true;
+                        break;
+                    }
+                }
+                // A single remaining edge has no variables left at this point
+                if (edges.get(i) != null && edges.get(i).isEmpty())
+                {
+                    edges.set(i, null);
+                    changed = true;
+                }
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Builds a join tree for an acyclic query by removing ears:
+     * an atom is an ear if the variables it shares with the other atoms are all contained in one of them (its parent).
+     * The carried variables appear in every atom, so they are ignored for the structure but used in the join conditions.
+    */
+    private Tree_ThetaJoin_Query join_tree(List<Relation> atoms, Set<String> carried)
+    {
+        int n = atoms.size();
+        List<Set<String>> edges = new ArrayList<Set<String>>();
+        for (Relation r : atoms)
+        {
+            Set<String> edge = new HashSet<String>(Arrays.asList(r.schema));
+            edge.removeAll(carried);
+            edges.add(edge);
+        }
+        int[] parent = new int[n];
+        Arrays.fill(parent, -1);
+        boolean[] removed = new boolean[n];
+        for (int alive = n; alive > 1; alive--)
+        {
+            boolean found = false;
+            for (int i = 0; i < n && !found; i++)
+            {
+                if (removed[i]) continue;
+                Set<String> shared = new HashSet<String>();
+                for (int j = 0; j < n; j++)
+                    if (j != i && !removed[j])
+                        for (String v : edges.get(i))
+                            if (edges.get(j).contains(v)) shared.add(v);
+                for (int j = 0; j < n && !found; j++)
+                {
+                    if (j != i && !removed[j] && edges.get(j).containsAll(shared))
+                    {
+                        parent[i] = j;
+                        removed[i] = true;
+                        found = true;
+                    }
+                }
+            }
+            if (!found)
+            {
+                System.err.println("The query of the decomposition is not acyclic");
+                System.exit(1);
+            }
+        }
+
+        // Number the atoms in BFS order from the root so that parents come before their children
+        int root = 0;
+        while (removed[root]) root++;
+        Tree_ThetaJoin_Query tree = new Tree_ThetaJoin_Query();
+        int[] tree_index = new int[n];
+        Deque<Integer> queue = new ArrayDeque<Integer>();
+        queue.add(root);
+        int next_index = 0;
+        while (!queue.isEmpty())
+        {
+            int a = queue.poll();
+            tree_index[a] = next_index;
+            Relation r = atoms.get(a);
+            if (a == root) tree.add_to_tree_wConjunction(r, next_index, -1, null);
+            else
+            {
+                Relation p = atoms.get(parent[a]);
+                List<Join_Predicate> ps = new ArrayList<Join_Predicate>();
+                for (int attr = 0; attr < r.schema.length; attr++)
+                {
+                    int parent_attr = index_of(p, r.schema[attr]);
+                    if (parent_attr >= 0) ps.add(new Join_Predicate("E", parent_attr, attr, null));
+                }
+                tree.add_to_tree_wConjunction(r, next_index, tree_index[parent[a]], ps);
+            }
+            next_index++;
+            for (int c = 0; c < n; c++)
+                if (parent[c] == a) queue.add(c);
+        }
+        return tree;
+    }
+
+    /**
+     * Converts an atom to a relation over its distinct variables,
+     * keeping only the tuples that agree on the attributes with the same variable.
+    */
+    private static Relation project_atom(Relation relation, String[] atom_variables, String name)
+    {
+        List<String> distinct = new ArrayList<String>(new LinkedHashSet<String>(Arrays.asList(atom_variables)));
+        Relation res = new Relation(name, distinct.toArray(new String[0]));
+        for (Tuple t : relation.tuples)
+        {
+            double[] vals = new double[distinct.size()];
+            boolean satisfies = true;
+            for (int attr = 0; attr < atom_variables.length; attr++)
+            {
+                int i = distinct.indexOf(atom_variables[attr]);
+                if (attr > Arrays.asList(atom_variables).indexOf(atom_variables[attr]) && vals[i] != t.values[attr])
+                    satisfies = false;
+                vals[i] = t.values[attr];
+            }
+            if (satisfies) res.insert(new Tuple(vals, t.cost, res));
+        }
+        return res;
+    }
+
+    /**
+     * @return Relation The tuples of the relation whose value for the variable is in the given set.
+    */
+    private static Relation select(Relation r, String variable, Set<Double> values)
+    {
+        int attr = index_of(r, variable);
+        Relation res = new Relation(r.relation_id, r.schema);
+        for (Tuple t : r.tuples)
+            if (values.contains(t.values[attr])) res.insert(new Tuple(t.values, t.cost, res));
+        return res;
+    }
+
+    /**
+     * @return Relation The cartesian product of the relation with the given values of a new variable
+     *  (which is appended to the schema).
+    */
+    private static Relation carry(Relation r, String variable, List<Double> values)
+    {
+        String[] schema = Arrays.copyOf(r.schema, r.schema.length + 1);
+        schema[r.schema.length] = variable;
+        Relation res = new Relation(r.relation_id + "_" + variable, schema);
+        for (Tuple t : r.tuples)
+        {
+            for (double value : values)
+            {
+                double[] vals = Arrays.copyOf(t.values, schema.length);
+                vals[r.schema.length] = value;
+                res.insert(new Tuple(vals, t.cost, res));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Natural join of relations whose schemas are variables.
+     * The cost of a joined tuple is the sum of the costs of the tuples that it combines.
+    */
+    private static Relation join_all(List<Relation> relations)
+    {
+        Relation res = relations.get(0);
+        for (int i = 1; i < relations.size(); i++)
+        {
+            Relation r = relations.get(i);
+            List<Integer> shared_left = new ArrayList<Integer>(), shared_right = new ArrayList<Integer>(), rest = new ArrayList<Integer>();
+            for (int attr = 0; attr < r.schema.length; attr++)
+            {
+                int left_attr = index_of(res, r.schema[attr]);
+                if (left_attr >= 0)
+                {
+                    shared_left.add(left_attr);
+                    shared_right.add(attr);
+                }
+                else rest.add(attr);
+            }
+            String[] schema = Arrays.copyOf(res.schema, res.schema.length + rest.size());
+            for (int j = 0; j < rest.size(); j++) schema[res.schema.length + j] = r.schema[rest.get(j)];
+
+            // Hash the right relation on the shared variables
+            HashMap<List<Double>, List<Tuple>> hash = new HashMap<List<Double>, List<Tuple>>();
+            for (Tuple t : r.tuples)
+            {
+                List<Double> key = new ArrayList<Double>();
+                for (int attr : shared_right) key.add(t.values[attr]);
+                hash.computeIfAbsent(key, k -> new ArrayList<Tuple>()).add(t);
+            }
+            Relation joined = new Relation(res.relation_id + "*" + r.relation_id, schema);
+            for (Tuple t : res.tuples)
+            {
+                List<Double> key = new ArrayList<Double>();
+                for (int attr : shared_left) key.add(t.values[attr]);
+                List<Tuple> matches = hash.get(key);
+                if (matches == null) continue;
+                for (Tuple t2 : matches)
+                {
+                    double[] vals = Arrays.copyOf(t.values, schema.length);
+                    for (int j = 0; j < rest.size(); j++) vals[res.schema.length + j] = t2.values[rest.get(j)];
+                    joined.insert(new Tuple(vals, t.cost + t2.cost, joined));
+                }
+            }
+            res = joined;
+        }
+        return res;
+    }
+
+    private static int index_of(Relation r, String variable)
+    {
+        for (int attr = 0; attr < r.schema.length; attr++)
+            if (r.schema[attr].equals(variable)) return attr;
+        return -1;
+    }
+
+    private static int max(int[] degrees)
+    {
+        return Arrays.stream(degrees).max().getAsInt();
+    }
+}
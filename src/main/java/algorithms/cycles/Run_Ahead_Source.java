@@ -0,0 +1,109 @@
+package algorithms.cycles;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+import util.Loser_Tree;
+
+/**
+ * A source for a {@link util.Loser_Tree} whose elements are produced ahead of time by a separate thread.
+ * The producer pulls from an iterator (e.g., the any-k iterator of one acyclic query of a decomposition)
+ * into a small bounded buffer and blocks when the buffer is full,
+ * so that the sources of a union are enumerated concurrently while the consumer merges them.
+ * The produced elements must not be modified by later calls to the iterator.
+ * @author Nikolaos Tziavelis
+*/
+class Run_Ahead_Source<T> implements Loser_Tree.Source<T>
+{
+    /**
+     * The maximum number of elements produced ahead of the consumer.
+    */
+    static final int BUFFER_SIZE = 64;
+    /**
+     * Marks the end of the elements in the buffer.
+    */
+    private static final Object END = new Object();
+
+    private ArrayBlockingQueue<Object> buffer;
+    private Thread producer;
+    private boolean exhausted = false;
+    /**
+     * An exception thrown by the iterator, rethrown to the consumer when it reaches it.
+    */
+    private volatile RuntimeException failure = null;
+
+    /**
+     * Starts the producer thread.
+     * @param iterator Returns the elements in sorted order and null when there are no more.
+     * @param name The name of the producer thread.
+    */
+    Run_Ahead_Source(Supplier<T> iterator, String name)
+    {
+        this.buffer = new ArrayBlockingQueue<Object>(BUFFER_SIZE);
+        this.producer = new Thread(() ->
+        {
+            try
+            {
+                while (true)
+                {
+                    T element;
+                    try
+                    {
+                        element = iterator.get();
+                    }
+                    catch (RuntimeException e)
+                    {
+                        failure = e;
+                        element = null;
+                    }
+                    if (element == null)
+                    {
+                        buffer.put(END);
+                        return;
+                    }
+                    buffer.put(element);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // The consumer closed the source
+            }
+        }, name);
+        // The producer must not keep the JVM alive if the consumer stops early without closing
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next()
+    {
+        if (exhausted) return null;
+        Object element;
+        try
+        {
+            element = buffer.take();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (element == END)
+        {
+            exhausted = true;
+            if (failure != null) throw failure;
+            return null;
+        }
+        return (T) element;
+    }
+
+    /**
+     * Stops the producer (its buffered elements are discarded).
+    */
+    void close()
+    {
+        exhausted = true;
+        producer.interrupt();
+    }
+}
@@ -1,13 +1,10 @@
 package algorithms.cycles;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
-import java.util.PriorityQueue;
-
-import org.javatuples.Pair;
+import java.util.stream.IntStream;
 
 import algorithms.paths.DP_All;
 import algorithms.paths.DP_Anyk_Iterator;
@@ -29,6 +26,7 @@ import entities.paths.DP_Problem_Instance;
 import entities.paths.DP_Solution;
 import entities.paths.Path_Equijoin_Query;
 import entities.paths.Path_Query_Solution;
+import util.Loser_Tree;
 
 /** 
  * A ranked enumeration algorithm for a conjunctive query that is a simple cycle of binary relations 
@@ -41,6 +39,9 @@ import entities.paths.Path_Query_Solution;
  * that produces the same output.
  * The input tuples are routed to the appropriate acyclic queries based on a 
  * threshold value that determines if they are "heavy" or "light".
+ * The ranked outputs of the acyclic queries are merged with a {@link util.Loser_Tree}.
+ * In parallel mode, the acyclic queries are built concurrently in the common fork-join pool
+ * and every any-k iterator runs ahead of the merge on its own thread (see {@link algorithms.cycles.Run_Ahead_Source}).
  * <br><br>
  * CAUTION: Currently only works for even-length cycles!!
  * @author Nikolaos Tziavelis
@@ -64,14 +65,17 @@ public class SimpleCycle_Anyk_Iterator
     */
     public String heap_type;
     /** 
-     * A top-level priority queue that compares the solutions between the different acyclic queries of the decomposition.
+     * Whether the acyclic queries are built and enumerated in parallel.
+    */
+    public boolean parallel;
+    /** 
+     * A top-level tournament tree that compares the solutions between the different acyclic queries of the decomposition.
     */
-    private PriorityQueue<Pair<DP_Solution, DP_Anyk_Iterator>> pq;
+    private Loser_Tree<Tuple> merger;
     /** 
-     * Keeps track of which iterator was used in the last call of {@link #get_next} 
-     * so that we know how to refill the empty spot.
+     * The producers of the acyclic queries in parallel mode (empty otherwise).
     */
-    private DP_Anyk_Iterator last_iterator;
+    private List<Run_Ahead_Source<Tuple>> run_ahead_sources;
     /** 
      * The relation that output tuples use as a reference.
      * @see entities.Relation
@@ -89,57 +93,63 @@ public class SimpleCycle_Anyk_Iterator
      * @param heap_type A string that specifies the type of heap used by the Any-k Part variants.
      */
 	public SimpleCycle_Anyk_Iterator(SimpleCycle_Equijoin_Query query, String algorithm, String heap_type)
+    {
+        this(query, algorithm, heap_type, false);
+    }
+
+    /** 
+     * @param query A simple-cycle conjunctive query.
+     * @param algorithm An any-k algorithm for the acyclic cases.
+     * @param heap_type A string that specifies the type of heap used by the Any-k Part variants.
+     * @param parallel Whether to build the acyclic queries concurrently and let their iterators run ahead on separate threads.
+     */
+	public SimpleCycle_Anyk_Iterator(SimpleCycle_Equijoin_Query query, String algorithm, String heap_type, boolean parallel)
     {
     	this.input_relations = query.relations;
     	this.cyc_length = query.length;
         this.anyk_alg = algorithm;
         this.heap_type = heap_type;
+        this.parallel = parallel;
         // For now, we allow output tuples to have different schemas depending on the decomposition
         // they were pulled from. Ideally we would want to have one strategy per decomposition that
         // keeps each attribute value only once
         this.output = new Relation("Rout", null);
 
-        List<Path_Equijoin_Query> union_acyclic = decompose_heavy_light();
+        List<List<Relation>> plans = decompose_heavy_light();
 
-        /*
-        Path_Equijoin_Query qu;
-        for (int i = 0; i < union_acyclic.size(); i++)
+        // Build the acyclic queries and their DP graphs (the last plan is the light one)
+        DP_Anyk_Iterator[] iterators = new DP_Anyk_Iterator[plans.size()];
+        IntStream indexes = IntStream.range(0, plans.size());
+        if (parallel) indexes = indexes.parallel();
+        indexes.forEach(i ->
         {
-            qu = union_acyclic.get(i);
-            System.out.println("Decomposition " + i + " :");
-            for (Relation r1 : qu.relations)
-                System.out.println(r1);
-        }
-        */
-
-        DP_Path_Equijoin_Instance instance;
-        DP_Anyk_Iterator iter;
-        DP_Solution first_solution;
+            Path_Equijoin_Query subquery = i < cyc_length ? carry_through_join(plans.get(i)) : split_join(plans.get(i));
+            DP_Path_Equijoin_Instance instance = new DP_Path_Equijoin_Instance(subquery);
+            instance.bottom_up();
+            iterators[i] = initialize_iterator(instance);
+        });
 
-        // Initialize the priority queue that will compare solutions of the different acyclic problems
-        this.pq = new PriorityQueue<Pair<DP_Solution, DP_Anyk_Iterator>>(new Comparator<Pair<DP_Solution, DP_Anyk_Iterator>>()
+        // The solutions are converted to tuples as soon as they are produced,
+        // since an iterator may reuse the objects of its previous solutions
+        List<Loser_Tree.Source<Tuple>> sources = new ArrayList<Loser_Tree.Source<Tuple>>();
+        this.run_ahead_sources = new ArrayList<Run_Ahead_Source<Tuple>>();
+        for (int i = 0; i < iterators.length; i++)
         {
-            public int compare(Pair<DP_Solution, DP_Anyk_Iterator> p1, Pair<DP_Solution, DP_Anyk_Iterator> p2) 
+            DP_Anyk_Iterator iter = iterators[i];
+            Loser_Tree.Source<Tuple> source = () ->
             {
-                return p1.getValue0().compareAgainst(p2.getValue0());
+                DP_Solution sol = iter.get_next();
+                return sol == null ? null : new Tuple(sol.solutionToTuples(), output);
+            };
+            if (parallel)
+            {
+                Run_Ahead_Source<Tuple> run_ahead = new Run_Ahead_Source<Tuple>(source::next, "SimpleCycle-" + i);
+                run_ahead_sources.add(run_ahead);
+                source = run_ahead;
             }
-        });
-
-        //Integer name = 1;
-
-        for (Path_Equijoin_Query subquery : union_acyclic)
-        {
-            instance = new DP_Path_Equijoin_Instance(subquery);
-            instance.bottom_up();
-            iter = initialize_iterator(instance);
-            //iter.set_name(name.toString());
-            first_solution = iter.get_next();
-            if (first_solution != null) pq.add(new Pair<DP_Solution, DP_Anyk_Iterator>(first_solution, iter));
-
-            //if (first_solution != null) System.out.println("First solution of Iterator " + iter.get_name() + " is " + first_solution.solutionToString() + " with cost " + first_solution.get_cost());
-            //name += 1;
+            sources.add(source);
         }
-        this.last_iterator = null;
+        this.merger = new Loser_Tree<Tuple>(sources, Tuple::compareTo);
     }
 
     /** 
@@ -149,30 +159,15 @@ public class SimpleCycle_Anyk_Iterator
      */
     public Tuple get_next()
     {
-        // First refill the spot left open from the previous call
-        if (last_iterator != null)
-        {
-            // This is not the first call to this method, we need to refill a spot in the priority queue
-            DP_Solution next_sol = last_iterator.get_next();
-            if (next_sol != null) pq.add(new Pair<DP_Solution, DP_Anyk_Iterator>(next_sol, last_iterator));            
-        }
-        // Now pick the best one from the pq and return it
-        if (!pq.isEmpty())
-        {
-            Pair<DP_Solution, DP_Anyk_Iterator> best_pair = pq.poll();
-            List<Tuple> tuple_list = best_pair.getValue0().solutionToTuples();
-            Tuple tup = new Tuple(tuple_list, output);
-
-            // System.out.println("Result about to be pulled from " + best_pair.getValue1().get_name());
-
-            // Store the iterator so that the spot is refilled in the next call
-            last_iterator = best_pair.getValue1();
-
-            // System.out.println("Pulling solution from iterator " + last_iterator.get_name());
+        return merger.poll();
+    }
 
-            return tup;
-        }
-        else return null;
+    /** 
+     * Stops the threads of the parallel mode if the enumeration ends before the last output tuple.
+     */
+    public void close()
+    {
+        for (Run_Ahead_Source<Tuple> source : run_ahead_sources) source.close();
     }
 
     /** 
@@ -180,9 +175,11 @@ public class SimpleCycle_Anyk_Iterator
      * The decomposition is done based on a threshold value such that the produced queries have 
      * (input) size determined by the submodular width of the query. 
      * For simple cycles, the produced queries are always paths.
-     * @return List<Path_Equijoin_Query> A list of acyclic queries as the result of the decomposition.
+     * The paths are instantiated from the returned join plans by {@link #carry_through_join} (the first cyc_length plans)
+     * and {@link #split_join} (the last plan), which are independent of each other.
+     * @return List<List<Relation>> The join plans of the acyclic queries of the decomposition.
      */
-    private List<Path_Equijoin_Query> decompose_heavy_light()
+    private List<List<Relation>> decompose_heavy_light()
     {
         double key;
         Relation heavy_r, light_r;
@@ -243,9 +240,8 @@ public class SimpleCycle_Anyk_Iterator
         // System.out.println(light_relations);
 
         // Now create cyc_length + 1 join plans that are a partition of the initial one
-        List<Path_Equijoin_Query> union_acyclic = new ArrayList<Path_Equijoin_Query>();
+        List<List<Relation>> plans = new ArrayList<List<Relation>>();
         List<Relation> plan;
-        Path_Equijoin_Query acyc_q;
         // Create the heavy plans
         for (int i = 0; i < cyc_length; i++)
         {
@@ -259,8 +255,7 @@ public class SimpleCycle_Anyk_Iterator
             // System.out.println("---------- Plan " + i + " ============");
             // System.out.println(plan);
 
-            acyc_q = carry_through_join(plan);
-            union_acyclic.add(acyc_q);
+            plans.add(plan);
         }
         // Create the light plan
         plan = new ArrayList<Relation>();
@@ -270,10 +265,9 @@ public class SimpleCycle_Anyk_Iterator
         // System.out.println("---------- Plan " + cyc_length + " ============");
         // System.out.println(plan);
 
-        acyc_q = split_join(plan);
-        union_acyclic.add(acyc_q);
+        plans.add(plan);
 
-        return union_acyclic;
+        return plans;
     }
 
     /** 
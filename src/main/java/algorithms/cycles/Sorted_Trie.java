@@ -0,0 +1,121 @@
+package algorithms.cycles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import entities.Relation;
+import entities.Tuple;
+
+/**
+ * The tuples of an atom sorted lexicographically by the values of its variables (in the global variable order),
+ * which represents a trie without materializing it:
+ * a node at level j is a range of rows that agree on the first j values.
+ * The children of a node are visited with {@link #seek}, which gallops forward from a position
+ * so that a leapfrog intersection pays logarithmically in the distance it skips.
+ * @author Nikolaos Tziavelis
+*/
+class Sorted_Trie
+{
+    /**
+     * The tuples of the relation that satisfy the selections of the atom, in sorted order.
+    */
+    Tuple[] tuples;
+    /**
+     * For each row, the values of the variables of the atom (one per level).
+    */
+    double[][] keys;
+    int size;
+
+    /**
+     * @param relation The relation of the atom.
+     * @param attributes For each level, the attribute of the relation that gives its value.
+     * @param same_as For each attribute, the attribute that must have the same value
+     *  (the first attribute with the same variable, or itself).
+    */
+    Sorted_Trie(Relation relation, int[] attributes, int[] same_as)
+    {
+        List<Tuple> selected = new ArrayList<Tuple>(relation.tuples.size());
+        for (Tuple t : relation.tuples)
+        {
+            boolean satisfies = true;
+            for (int i = 0; i < same_as.length; i++)
+                if (t.values[i] != t.values[same_as[i]]) satisfies = false;
+            if (satisfies) selected.add(t);
+        }
+        this.size = selected.size();
+        Integer[] order = new Integer[size];
+        double[][] unsorted_keys = new double[size][];
+        for (int r = 0; r < size; r++)
+        {
+            order[r] = r;
+            double[] key = new double[attributes.length];
+            for (int j = 0; j < attributes.length; j++) key[j] = selected.get(r).values[attributes[j]];
+            unsorted_keys[r] = key;
+        }
+        Arrays.sort(order, (r1, r2) -> compare_keys(unsorted_keys[r1], unsorted_keys[r2]));
+        this.tuples = new Tuple[size];
+        this.keys = new double[size][];
+        for (int r = 0; r < size; r++)
+        {
+            tuples[r] = selected.get(order[r]);
+            keys[r] = unsorted_keys[order[r]];
+        }
+    }
+
+    /**
+     * @return int The first row in [from, to) whose value at the level is not smaller than the given one
+     *  (to if there is none). The rows in the range must agree on all the previous levels.
+     */
+    int seek(int level, int from, int to, double value)
+    {
+        return gallop(level, from, to, value, false);
+    }
+
+    /**
+     * @return int The first row in [from, to) whose value at the level is larger than the given one
+     *  (to if there is none), i.e., the end of the child of the given value.
+     */
+    int seek_past(int level, int from, int to, double value)
+    {
+        return gallop(level, from, to, value, true);
+    }
+
+    /**
+     * Exponential search from the start of the range followed by a binary search in the last step.
+     */
+    private int gallop(int level, int from, int to, double value, boolean past)
+    {
+        if (from >= to || !before(keys[from][level], value, past)) return from;
+        // Invariant: the row lo is before the value, the row hi is not (or hi == to)
+        int lo = from, step = 1;
+        while (lo + step < to && before(keys[lo + step][level], value, past))
+        {
+            lo += step;
+            step <<= 1;
+        }
+        int hi = Math.min(lo + step, to);
+        while (hi - lo > 1)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (before(keys[mid][level], value, past)) lo = mid;
+            else hi = mid;
+        }
+        return hi;
+    }
+
+    private static boolean before(double key, double value, boolean past)
+    {
+        return past ? key <= value : key < value;
+    }
+
+    private static int compare_keys(double[] k1, double[] k2)
+    {
+        for (int j = 0; j < k1.length; j++)
+        {
+            if (k1[j] < k2[j]) return -1;
+            if (k1[j] > k2[j]) return 1;
+        }
+        return 0;
+    }
+}
@@ -44,7 +44,7 @@ public class DP_All extends DP_Part
     {
         DP_DecisionSet decision_set = dec.belongs_to();
         if (!decision_set.partial_order_computed)
-            initialize_partial_order(decision_set);
+            decision_set.initialize_partial_order(this::initialize_partial_order);
         return dec.successors;
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package algorithms.paths;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import entities.paths.DP_Decision;
+import entities.paths.DP_DecisionSet;
+import entities.paths.DP_Path_ThetaJoin_Instance;
+import entities.paths.DP_Prefix_Solution;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.DP_Solution;
+import entities.paths.DP_State_Node;
+import entities.paths.Path_ThetaJoin_Query;
+
+/**
+ * Direct access to the DP solutions of a {@link entities.paths.DP_Problem_Instance} object in an unranked order:
+ * the method {@link #get} returns the i-th solution without enumerating the ones before it.
+ * The solutions are ordered lexicographically by the index of their decisions in the lists of decisions of the graph
+ * at the time of initialization (the any-k algorithms may reorder these lists, thus a snapshot of them is kept).
+ * (This is a fixed order, but not the same as the order of {@link algorithms.paths.DP_Unranked_Iterator}).
+ * <br><br>
+ * Initialization counts the solutions that start from every node (as in {@link entities.paths.DP_Problem_Instance#count_solutions})
+ * and stores their prefix sums in every {@link entities.paths.DP_DecisionSet}.
+ * Then, an access descends from the starting node by binary searching the prefix sums in every stage,
+ * thus taking O(l log n) time for l stages.
+ * The bottom-up phase is not required.
+ * IMPORTANT: The counts are not maintained under updates of the instance, so a new object must be created after them.
+ * @author Nikolaos Tziavelis
+*/
+public class DP_Direct_Access
+{
+    /**
+     * The DP problem whose solutions are accessed.
+    */
+    protected DP_Problem_Instance instance;
+    /**
+     * The total number of solutions.
+    */
+    protected BigInteger total;
+
+    public DP_Direct_Access(DP_Problem_Instance inst)
+    {
+        this.instance = inst;
+        this.total = count(instance.starting_node, new HashMap<DP_State_Node, BigInteger>(), new IdentityHashMap<DP_DecisionSet, Boolean>());
+    }
+
+    /**
+     * @return BigInteger The number of solutions.
+     */
+    public BigInteger count()
+    {
+        return total;
+    }
+
+    /**
+     * @param i The index of a solution (starting from 0).
+     * @return DP_Solution The i-th solution or null if i is out of range.
+     */
+    public DP_Solution get(BigInteger i)
+    {
+        if (i.signum() < 0 || i.compareTo(total) >= 0) return null;
+        DP_Prefix_Solution solution = null;
+        DP_State_Node node = instance.starting_node;
+        BigInteger remaining = i;
+        while (!node.is_terminal())
+        {
+            DP_DecisionSet decisions = node.decisions;
+            int j = find(decisions.prefix_counts, remaining);
+            DP_Decision decision = decisions.counted_decisions[j];
+            remaining = remaining.subtract(decisions.prefix_counts[j]);
+            if (solution == null) solution = new DP_Prefix_Solution(decision);
+            else solution = new DP_Prefix_Solution(solution, decision);
+            node = decision.target;
+        }
+        return solution;
+    }
+
+    /**
+     * @param i The index of a solution (starting from 0).
+     * @return DP_Solution The i-th solution or null if i is out of range.
+     */
+    public DP_Solution get(long i)
+    {
+        return get(BigInteger.valueOf(i));
+    }
+
+    /**
+     * @param offset The index of the first solution of the page.
+     * @param limit The maximum number of solutions in the page.
+     * @return List<DP_Solution> The solutions with indexes offset, ..., offset + limit - 1 that exist.
+     */
+    public List<DP_Solution> get_page(BigInteger offset, int limit)
+    {
+        List<DP_Solution> page = new ArrayList<DP_Solution>();
+        BigInteger i = offset.max(BigInteger.ZERO);
+        BigInteger end = offset.add(BigInteger.valueOf(limit)).min(total);
+        for (; i.compareTo(end) < 0; i = i.add(BigInteger.ONE)) page.add(get(i));
+        return page;
+    }
+
+    /**
+     * @param offset The index of the first solution of the page.
+     * @param limit The maximum number of solutions in the page.
+     * @return List<DP_Solution> The solutions with indexes offset, ..., offset + limit - 1 that exist.
+     */
+    public List<DP_Solution> get_page(long offset, int limit)
+    {
+        return get_page(BigInteger.valueOf(offset), limit);
+    }
+
+    /**
+     * Recursively computes the number of solutions starting from a node
+     * and stores the prefix sums of the counts of the decisions in the decision sets.
+     * @param counts The counts of the nodes that have been computed.
+     * @param computed The decision sets whose prefix sums have been computed (they may be shared by nodes).
+     * @return BigInteger The number of solutions starting from the node.
+     */
+    private static BigInteger count(DP_State_Node node, Map<DP_State_Node, BigInteger> counts, Map<DP_DecisionSet, Boolean> computed)
+    {
+        if (node.is_terminal()) return BigInteger.ONE;
+        BigInteger res = counts.get(node);
+        if (res != null) return res;
+        DP_DecisionSet decisions = node.decisions;
+        if (!computed.containsKey(decisions))
+        {
+            // The any-k algorithms may reorder the list later
+            DP_Decision[] snapshot = decisions.list_of_decisions.toArray(new DP_Decision[0]);
+            BigInteger[] prefix_counts = new BigInteger[snapshot.length + 1];
+            prefix_counts[0] = BigInteger.ZERO;
+            for (int j = 0; j < snapshot.length; j++)
+                prefix_counts[j + 1] = prefix_counts[j].add(count(snapshot[j].target, counts, computed));
+            decisions.counted_decisions = snapshot;
+            decisions.prefix_counts = prefix_counts;
+            computed.put(decisions, true);
+        }
+        res = decisions.prefix_counts[decisions.prefix_counts.length - 1];
+        counts.put(node, res);
+        return res;
+    }
+
+    /**
+     * @param prefix_counts The prefix sums of the counts of a decision set.
+     * @param i An index smaller than the total count.
+     * @return int The decision whose solutions contain the i-th one, i.e., the last j with prefix_counts[j] <= i
+     *  (decisions with no solutions are skipped since they have the same prefix sum as the next one).
+     */
+    static int find(BigInteger[] prefix_counts, BigInteger i)
+    {
+        int low = 0, high = prefix_counts.length - 2;
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (prefix_counts[mid].compareTo(i) <= 0) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    public static void main(String args[]) 
+    {
+        // Run the example
+        Path_ThetaJoin_Query example_query = new Path_ThetaJoin_Query(1);
+        DP_Path_ThetaJoin_Instance instance = new DP_Path_ThetaJoin_Instance(example_query, null);
+        DP_Direct_Access access = new DP_Direct_Access(instance);
+        System.out.println("No_of_solutions: " + access.count());
+        BigInteger middle = access.count().shiftRight(1);
+        System.out.println("Solution " + middle + ": " + access.get(middle));
+        for (DP_Solution solution : access.get_page(middle.add(BigInteger.ONE), 3))
+            System.out.println(solution);
+    }
+}
@@ -18,6 +18,8 @@ import entities.paths.DP_Problem_Instance;
 import entities.paths.DP_Solution;
 import entities.paths.DP_State_Node;
 import util.CompileTimeConfig;
+import util.Engine_Events;
+import util.Spilling_Priority_Queue;
 /** 
  * Implementation of Anyk-Part for DP, a ranked enumeration algorithm that relies on the Lawler procedure.
  * The different variants are implemented as subclasses, each one implementing the abstract methods differently.<br>
@@ -43,6 +45,10 @@ public abstract class DP_Part extends DP_Anyk_Iterator
 	protected FibonacciHeap<DP_Prefix_Solution,Object> global_pq_fibonacci_heap;
 	protected PairingHeap<DP_Prefix_Solution,Object> global_pq_pairing_heap;
 	protected HollowHeap<DP_Prefix_Solution,Object> global_pq_hollow_heap;
+	/** 
+	 * Used instead of the other heaps if {@link algorithms.Configuration#pq_memory_limit} is set.
+	*/
+	protected Spilling_Priority_Queue<DP_Prefix_Solution> global_pq_spilling;
 
 	/** 
 	 * Stores the solution returned in the previous call of {@link #get_next}.
@@ -71,7 +77,9 @@ public abstract class DP_Part extends DP_Anyk_Iterator
     	// Initialize the global PQ with an empty prefix (that contains only the starting node)
 		// this.global_pq = new Priority_Queue<DP_Prefix_Solution>(this.heap_type);
 		// Just use a simple binary heap
-		if (CompileTimeConfig.heap_type == "binary_heap")
+		if ((conf != null) && conf.pq_memory_limit > 0)
+			this.global_pq_spilling = new Spilling_Priority_Queue<DP_Prefix_Solution>(conf.pq_memory_limit, new DP_Prefix_Codec());
+		else if (CompileTimeConfig.heap_type == "binary_heap")
 			this.global_pq_binary_heap = new PriorityQueue<DP_Prefix_Solution>();
 		else if (CompileTimeConfig.heap_type == "fibonacci_heap")
 			this.global_pq_fibonacci_heap = new FibonacciHeap<DP_Prefix_Solution,Object>();
@@ -84,7 +92,9 @@ public abstract class DP_Part extends DP_Anyk_Iterator
     	if (instance.starting_node.get_opt_cost() != Double.POSITIVE_INFINITY)	// Corner case: if no path can reach the terminal node, leave the pq empty
     	{
 	    	DP_Prefix_Solution starting_prefix = new DP_Prefix_Solution(instance.starting_node.get_best_decision());
-	    	if (CompileTimeConfig.heap_type == "binary_heap")
+	    	if (global_pq_spilling != null)
+				this.global_pq_spilling.add(starting_prefix);
+	    	else if (CompileTimeConfig.heap_type == "binary_heap")
 				this.global_pq_binary_heap.add(starting_prefix);    	
 			else if (CompileTimeConfig.heap_type == "fibonacci_heap")
 				this.global_pq_fibonacci_heap.insert(starting_prefix);
@@ -131,16 +141,31 @@ public abstract class DP_Part extends DP_Anyk_Iterator
 			}
 			// If the PQ is empty heapify instead of pushing
 			// Especially helpful in the second iteration of DP_Min
-			if (CompileTimeConfig.heap_type == "binary_heap" && global_pq_binary_heap.isEmpty())
+			if (global_pq_spilling == null && CompileTimeConfig.heap_type == "binary_heap" && global_pq_binary_heap.isEmpty())
                 global_pq_binary_heap = new PriorityQueue<DP_Prefix_Solution>(new_candidates);
             else
                 // global_pq.bulk_push(new_candidates);
 				add_candidates(new_candidates);
     	}
 
+		// Report the size of the PQ (does nothing unless the JFR event is enabled)
+		Engine_Events.PQ_Snapshot pq_event = new Engine_Events.PQ_Snapshot();
+		if (pq_event.shouldCommit())
+		{
+			pq_event.algorithm = this.getClass().getSimpleName();
+			pq_event.pq_size = global_pq_size();
+			pq_event.candidates = new_candidates.size();
+			pq_event.commit();
+		}
+
     	// Pop the best solution from the global PQ
 		// If the PQ is empty, then we have enumerated all solutions
-		if (CompileTimeConfig.heap_type == "binary_heap")
+		if (global_pq_spilling != null)
+		{
+			if (global_pq_spilling.isEmpty()) return null;
+			popped_solution = global_pq_spilling.poll();
+		}
+		else if (CompileTimeConfig.heap_type == "binary_heap")
 		{
 			if (global_pq_binary_heap.isEmpty()) return null;
 			popped_solution = global_pq_binary_heap.poll();
@@ -197,7 +222,9 @@ public abstract class DP_Part extends DP_Anyk_Iterator
 	
 	private void add_candidates(Collection<DP_Prefix_Solution> cands)
 	{
-		if (CompileTimeConfig.heap_type == "binary_heap")
+		if (global_pq_spilling != null)
+			global_pq_spilling.addAll(cands);
+		else if (CompileTimeConfig.heap_type == "binary_heap")
 		{
 			for (DP_Prefix_Solution cand : cands)
 				global_pq_binary_heap.add(cand);
@@ -219,6 +246,19 @@ public abstract class DP_Part extends DP_Anyk_Iterator
 		}
 	}
 
+	/** 
+	 * @return int The number of candidates currently in the global PQ.
+	 */
+	private int global_pq_size()
+	{
+		if (global_pq_spilling != null) return (int) Math.min(Integer.MAX_VALUE, global_pq_spilling.size());
+		else if (CompileTimeConfig.heap_type == "binary_heap") return global_pq_binary_heap.size();
+		else if (CompileTimeConfig.heap_type == "fibonacci_heap") return (int) global_pq_fibonacci_heap.size();
+		else if (CompileTimeConfig.heap_type == "pairing_heap") return (int) global_pq_pairing_heap.size();
+		else if (CompileTimeConfig.heap_type == "hollow_heap") return (int) global_pq_hollow_heap.size();
+		return 0;
+	}
+
 	/** 
 	 * Initialization of the data structures needed at each DP_DesicionSet
 	 * in order to compute a partial order among decisions.
@@ -247,7 +287,7 @@ public abstract class DP_Part extends DP_Anyk_Iterator
 		while (!dfs_stack.isEmpty())
 		{
 			curr_node = dfs_stack.pop();
-			initialize_partial_order(curr_node.decisions);
+			curr_node.decisions.initialize_partial_order(this::initialize_partial_order);
 			for (DP_Decision dec : curr_node.get_decisions())
 			{
 				if (!dec.target.decisions.partial_order_computed)
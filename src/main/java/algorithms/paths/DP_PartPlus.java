@@ -55,6 +55,12 @@ public abstract class DP_PartPlus extends DP_Anyk_Iterator
 	public DP_PartPlus(DP_Problem_Instance inst, Configuration conf)
     {
     	super(inst, conf);
+		// The memoized variants keep their global PQ in memory and cannot spill it
+		if ((conf != null) && conf.pq_memory_limit > 0)
+		{
+			System.err.println("pq_memory_limit is not supported by the Anyk-PartPlus algorithms");
+			System.exit(1);
+		}
 		
     	// Initialize the global PQ with an empty prefix (that contains only the starting node)
 		if (CompileTimeConfig.heap_type == "binary_heap")
@@ -372,7 +378,7 @@ public abstract class DP_PartPlus extends DP_Anyk_Iterator
 		while (!dfs_stack.isEmpty())
 		{
 			curr_node = dfs_stack.pop();
-			initialize_partial_order(curr_node.decisions);
+			curr_node.decisions.initialize_partial_order(this::initialize_partial_order);
 			for (DP_Decision dec : curr_node.get_decisions())
 			{
 				if (!dec.target.decisions.partial_order_computed)
@@ -0,0 +1,73 @@
+package algorithms.paths;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import entities.paths.DP_Decision;
+import entities.paths.DP_Prefix_Solution;
+import util.Spilling_Priority_Queue;
+
+/**
+ * Encodes a {@link entities.paths.DP_Prefix_Solution} as its length followed by the ids of its decisions
+ * so that the global PQ of {@link algorithms.paths.DP_Part} can spill candidates to disk.
+ * A decision gets an id the first time it is written.
+ * A decoded prefix is rebuilt with the same constructors, thus it has exactly the same cost
+ * (but it no longer shares its shorter prefixes with other candidates).
+ * @author Nikolaos Tziavelis
+*/
+class DP_Prefix_Codec implements Spilling_Priority_Queue.Spill_Codec<DP_Prefix_Solution>
+{
+    private List<DP_Decision> decisions;
+    private IdentityHashMap<DP_Decision, Integer> decision_ids;
+
+    DP_Prefix_Codec()
+    {
+        this.decisions = new ArrayList<DP_Decision>();
+        this.decision_ids = new IdentityHashMap<DP_Decision, Integer>();
+    }
+
+    @Override
+    public double key(DP_Prefix_Solution element)
+    {
+        return element.get_final_cost();
+    }
+
+    @Override
+    public void write(DP_Prefix_Solution element, DataOutputStream out) throws IOException
+    {
+        int[] ids = new int[element.length];
+        DP_Prefix_Solution current = element;
+        for (int i = element.length - 1; i >= 0; i--)
+        {
+            ids[i] = get_id(current.latest_decision);
+            current = current.shorter_prefix;
+        }
+        out.writeInt(element.length);
+        for (int id : ids) out.writeInt(id);
+    }
+
+    @Override
+    public DP_Prefix_Solution read(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        DP_Prefix_Solution res = new DP_Prefix_Solution(decisions.get(in.readInt()));
+        for (int i = 1; i < length; i++) res = new DP_Prefix_Solution(res, decisions.get(in.readInt()));
+        return res;
+    }
+
+    private int get_id(DP_Decision decision)
+    {
+        Integer id = decision_ids.get(decision);
+        if (id == null)
+        {
+            id = decisions.size();
+            decisions.add(decision);
+            decision_ids.put(decision, id);
+        }
+        return id;
+    }
+}
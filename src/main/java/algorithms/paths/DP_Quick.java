@@ -53,7 +53,7 @@ public class DP_Quick extends DP_Part
     {
         DP_DecisionSet decision_set = dec.belongs_to();
         if (!decision_set.partial_order_computed)
-            initialize_partial_order(decision_set);
+            decision_set.initialize_partial_order(this::initialize_partial_order);
         // Whenever we want to find the successor, first check if we have already computed it
         if (!dec.successors.isEmpty()) return dec.successors;
 
@@ -53,6 +53,8 @@ public class DP_Recursive extends DP_Anyk_Iterator
     {   
         DP_Suffix_Solution solution;
 
+        // The optimal costs of the targets might not have been computed yet (demand-driven bottom-up)
+        curr_decisionSet.resolve_targets();
         // The PQ has to be initialized with each decision concatenated with
         // the best suffix solution that begins from its target (determined recursively)
         List<DP_Decision> edges = curr_decisionSet.list_of_decisions;
@@ -0,0 +1,306 @@
+package algorithms.paths;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import entities.paths.DP_Decision;
+import entities.paths.DP_DecisionSet;
+import entities.paths.DP_Path_ThetaJoin_Instance;
+import entities.paths.DP_Prefix_Solution;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.DP_Solution;
+import entities.paths.DP_State_Node;
+import entities.paths.Path_ThetaJoin_Query;
+
+/**
+ * Selection of the DP solutions of a {@link entities.paths.DP_Problem_Instance} object by their rank in the order of their costs
+ * (e.g., the median, the 99th percentile or the k-th cheapest solution for a large k) without enumerating them.
+ * <br><br>
+ * The primitive {@link #count_below} counts the solutions whose cost is below a threshold
+ * by a depth-first search that prunes the decisions whose solutions are all above it
+ * and counts at once those whose solutions are all below it
+ * (with the minimum and maximum costs and the counts stored in every {@link entities.paths.DP_DecisionSet}).
+ * Thus, only the decisions whose solutions straddle the threshold are expanded.
+ * To find them with binary search, the decisions of every set are sorted by the minimum cost of their solutions
+ * (in the snapshot of {@link algorithms.paths.DP_Direct_Access}, which also changes its order, but not in the graph).
+ * Then, {@link #select} narrows a range of costs that contains the requested solution with the counts
+ * until it contains few solutions, which are collected and sorted.
+ * The range is split by interpolating linearly between the counts of its ends (as in the regula falsi)
+ * or in the middle when that does not halve it.
+ * Ties are broken arbitrarily.
+ * The bottom-up phase is not required.
+ * IMPORTANT: The counts and costs are not maintained under updates of the instance, so a new object must be created after them.
+ * @author Nikolaos Tziavelis
+*/
+public class DP_Selection extends DP_Direct_Access
+{
+    /**
+     * The range of costs is narrowed until it contains at most that many solutions.
+    */
+    private static final int collect_threshold = 256;
+
+    public DP_Selection(DP_Problem_Instance inst)
+    {
+        super(inst);
+        bound(instance.starting_node, new HashMap<DP_State_Node, double[]>(), new IdentityHashMap<DP_DecisionSet, Boolean>());
+    }
+
+    /**
+     * @param threshold A cost.
+     * @return BigInteger The number of solutions with cost strictly less than the threshold.
+     */
+    public BigInteger count_below(double threshold)
+    {
+        return count(instance.starting_node, 0.0, threshold, false);
+    }
+
+    /**
+     * @param threshold A cost.
+     * @return BigInteger The number of solutions with cost less than or equal to the threshold.
+     */
+    public BigInteger count_at_most(double threshold)
+    {
+        return count(instance.starting_node, 0.0, threshold, true);
+    }
+
+    /**
+     * @param k The rank of a solution (starting from 0 for the cheapest one).
+     * @return DP_Solution The solution with rank k in the order of the costs or null if k is out of range.
+     */
+    public DP_Solution select(BigInteger k)
+    {
+        if (k.signum() < 0 || k.compareTo(total) >= 0) return null;
+        // All the solutions with rank in [below_low, below_high) have cost in [low, high)
+        DP_DecisionSet first = instance.starting_node.decisions;
+        // (widened since the bounds are accumulated in a different order than the costs of the solutions)
+        double low = first.min_total_cost - slack(0.0, first.min_total_cost);
+        double high = first.max_total_cost + slack(0.0, first.max_total_cost);
+        BigInteger below_low = BigInteger.ZERO, below_high = total;
+        boolean interpolate = true;
+        while (true)
+        {
+            BigInteger in_range = below_high.subtract(below_low);
+            double mid = low + (high - low) / 2;
+            // If the range cannot be split, all its solutions have the same cost
+            boolean tied = mid <= low || mid >= high;
+            if (tied || in_range.compareTo(BigInteger.valueOf(collect_threshold)) <= 0)
+            {
+                int rank = k.subtract(below_low).intValue();
+                int limit = tied ? rank + 1 : below_high.subtract(below_low).intValue();
+                List<DP_Solution> range = new ArrayList<DP_Solution>();
+                collect(instance.starting_node, null, low, high, limit, range);
+                Collections.sort(range, (s1, s2) -> Double.compare(s1.get_cost(), s2.get_cost()));
+                return range.get(rank);
+            }
+            if (interpolate)
+            {
+                // Interpolate linearly between the counts of the ends of the range,
+                // aiming a little past k so that the end that is farther from it moves close to it
+                double from_low = k.subtract(below_low).doubleValue(), to_high = below_high.subtract(k).doubleValue();
+                double target = from_low > to_high ? from_low - collect_threshold / 4.0 : from_low + collect_threshold / 4.0;
+                double guess = low + (high - low) * (target / in_range.doubleValue());
+                if (guess > low && guess < high) mid = guess;
+            }
+            BigInteger below_mid = count_below(mid);
+            if (below_mid.compareTo(k) > 0)
+            {
+                high = mid;
+                below_high = below_mid;
+            }
+            else
+            {
+                low = mid;
+                below_low = below_mid;
+            }
+            // After a guess that did not halve the range (e.g., skewed costs), bisect once
+            interpolate = !interpolate || below_high.subtract(below_low).shiftLeft(1).compareTo(in_range) <= 0;
+        }
+    }
+
+    /**
+     * @param k The rank of a solution (starting from 0 for the cheapest one).
+     * @return DP_Solution The solution with rank k in the order of the costs or null if k is out of range.
+     */
+    public DP_Solution select(long k)
+    {
+        return select(BigInteger.valueOf(k));
+    }
+
+    /**
+     * @param q A number in [0, 1].
+     * @return DP_Solution The q-quantile of the solutions by cost (with the nearest-rank method)
+     *  or null if there are no solutions.
+     */
+    public DP_Solution quantile(double q)
+    {
+        if (q < 0 || q > 1)
+        {
+            System.err.println("Quantile " + q + " not in [0, 1]");
+            System.exit(1);
+        }
+        if (total.signum() == 0) return null;
+        BigInteger rank = new BigDecimal(total).multiply(BigDecimal.valueOf(q)).setScale(0, RoundingMode.CEILING).toBigInteger().subtract(BigInteger.ONE);
+        return select(rank.max(BigInteger.ZERO));
+    }
+
+    /**
+     * Counts the solutions that continue from a node and whose cost is below the threshold.
+     * The costs of the solutions are accumulated in the same order as in {@link entities.paths.DP_Prefix_Solution},
+     * so the bounds of the decision sets (which are accumulated in the opposite order) are only trusted when they are not close to the threshold.
+     * @param prefix The cost of the decisions that lead to the node.
+     * @param inclusive Whether the solutions with cost equal to the threshold are counted.
+     */
+    private BigInteger count(DP_State_Node node, double prefix, double threshold, boolean inclusive)
+    {
+        if (node.is_terminal()) return below(prefix, threshold, inclusive) ? BigInteger.ONE : BigInteger.ZERO;
+        DP_DecisionSet decisions = node.decisions;
+        double slack = slack(prefix, threshold);
+        if (!below(prefix + decisions.min_total_cost - slack, threshold, inclusive)) return BigInteger.ZERO;
+        if (below(prefix + decisions.max_total_cost + slack, threshold, inclusive)) return decisions.prefix_counts[decisions.prefix_counts.length - 1];
+        // The decisions are sorted by the minimum cost of their solutions,
+        // thus those that have solutions below the threshold are the first ones
+        DP_Decision[] sorted = decisions.counted_decisions;
+        int end = first_not_below(sorted, prefix - slack, threshold, inclusive);
+        int start = 0;
+        BigInteger res = BigInteger.ZERO;
+        if (decisions.fixed_cost_targets)
+        {
+            // Also those whose solutions are all below the threshold
+            start = first_not_below(sorted, prefix + slack, threshold, inclusive);
+            res = decisions.prefix_counts[start];
+        }
+        for (int j = start; j < end; j++)
+            res = res.add(count(sorted[j].target, prefix + sorted[j].cost, threshold, inclusive));
+        return res;
+    }
+
+    /**
+     * @param sorted Decisions sorted by the minimum cost of their solutions.
+     * @param offset A cost added to the solutions.
+     * @return int The first decision whose minimum cost plus the offset is not below the threshold (binary search).
+     */
+    private static int first_not_below(DP_Decision[] sorted, double offset, double threshold, boolean inclusive)
+    {
+        int low = 0, high = sorted.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (below(offset + min_cost(sorted[mid]), threshold, inclusive)) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @return double The minimum cost of the solutions that continue with a decision.
+     */
+    private static double min_cost(DP_Decision decision)
+    {
+        return decision.cost + (decision.target.is_terminal() ? 0.0 : decision.target.decisions.min_total_cost);
+    }
+
+    /**
+     * Collects the solutions that continue from a node and whose cost is in [low, high).
+     * @param solution The prefix solution that leads to the node (null for the starting node).
+     * @param limit The search stops when that many solutions have been collected.
+     */
+    private void collect(DP_State_Node node, DP_Prefix_Solution solution, double low, double high, int limit, List<DP_Solution> res)
+    {
+        double prefix = solution == null ? 0.0 : solution.get_cost();
+        if (node.is_terminal())
+        {
+            if (prefix >= low && prefix < high) res.add(solution);
+            return;
+        }
+        DP_DecisionSet decisions = node.decisions;
+        if (prefix + decisions.min_total_cost - slack(prefix, high) >= high) return;
+        if (prefix + decisions.max_total_cost + slack(prefix, low) < low) return;
+        for (DP_Decision decision : decisions.counted_decisions)
+        {
+            if (res.size() >= limit || prefix + min_cost(decision) - slack(prefix, high) >= high) return;
+            DP_Prefix_Solution next = solution == null ? new DP_Prefix_Solution(decision) : new DP_Prefix_Solution(solution, decision);
+            collect(decision.target, next, low, high, limit, res);
+        }
+    }
+
+    private static boolean below(double cost, double threshold, boolean inclusive)
+    {
+        return inclusive ? cost <= threshold : cost < threshold;
+    }
+
+    /**
+     * @return double A margin larger than the rounding errors of adding the costs in a different order.
+     */
+    private static double slack(double prefix, double threshold)
+    {
+        return 1e-9 * (1.0 + Math.abs(prefix) + Math.abs(threshold));
+    }
+
+    /**
+     * Recursively computes the minimum and maximum cost of the solutions starting from a node
+     * and stores them in the decision sets.
+     * Then, the decisions of every set are sorted by the minimum cost of their solutions.
+     * @param bounds The bounds of the nodes that have been computed.
+     * @param computed The decision sets whose bounds have been computed (they may be shared by nodes).
+     * @return double[] The minimum and the maximum cost.
+     */
+    private static double[] bound(DP_State_Node node, Map<DP_State_Node, double[]> bounds, Map<DP_DecisionSet, Boolean> computed)
+    {
+        if (node.is_terminal()) return new double[]{ 0.0, 0.0 };
+        double[] res = bounds.get(node);
+        if (res != null) return res;
+        DP_DecisionSet decisions = node.decisions;
+        if (!computed.containsKey(decisions))
+        {
+            DP_Decision[] snapshot = decisions.counted_decisions;
+            Map<DP_Decision, BigInteger> decision_counts = new IdentityHashMap<DP_Decision, BigInteger>();
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            boolean fixed = true;
+            for (int j = 0; j < snapshot.length; j++)
+            {
+                DP_Decision decision = snapshot[j];
+                double[] target_bounds = bound(decision.target, bounds, computed);
+                min = Math.min(min, decision.cost + target_bounds[0]);
+                max = Math.max(max, decision.cost + target_bounds[1]);
+                fixed = fixed && target_bounds[0] == target_bounds[1];
+                decision_counts.put(decision, decisions.prefix_counts[j + 1].subtract(decisions.prefix_counts[j]));
+            }
+            decisions.min_total_cost = min;
+            decisions.max_total_cost = max;
+            decisions.fixed_cost_targets = fixed;
+            // Sort the decisions by the minimum cost of their solutions and recompute the prefix sums of their counts
+            DP_Decision[] sorted = snapshot.clone();
+            Arrays.sort(sorted, (d1, d2) -> Double.compare(min_cost(d1), min_cost(d2)));
+            BigInteger[] prefix_counts = new BigInteger[sorted.length + 1];
+            prefix_counts[0] = BigInteger.ZERO;
+            for (int j = 0; j < sorted.length; j++)
+                prefix_counts[j + 1] = prefix_counts[j].add(decision_counts.get(sorted[j]));
+            decisions.counted_decisions = sorted;
+            decisions.prefix_counts = prefix_counts;
+            computed.put(decisions, true);
+        }
+        res = new double[]{ decisions.min_total_cost, decisions.max_total_cost };
+        bounds.put(node, res);
+        return res;
+    }
+
+    public static void main(String args[])
+    {
+        // Run the example
+        Path_ThetaJoin_Query example_query = new Path_ThetaJoin_Query(1);
+        DP_Path_ThetaJoin_Instance instance = new DP_Path_ThetaJoin_Instance(example_query, null);
+        DP_Selection selection = new DP_Selection(instance);
+        System.out.println("No_of_solutions: " + selection.count());
+        DP_Solution median = selection.quantile(0.5);
+        System.out.println("Median: " + median);
+        System.out.println("Solutions below the median: " + selection.count_below(median.get_cost()));
+    }
+}
@@ -88,7 +88,7 @@ public class DP_Take2 extends DP_Part
     {
         DP_DecisionSet decision_set = dec.belongs_to();
         if (!decision_set.partial_order_computed)
-            initialize_partial_order(decision_set);
+            decision_set.initialize_partial_order(this::initialize_partial_order);
         // assert dec.successors.size() <= 2;
         // We can have three successors if we use a unique child for the root node of the heap!
         // assert dec.successors.size() <= 3;
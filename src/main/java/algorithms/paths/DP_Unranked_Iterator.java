@@ -162,7 +162,7 @@ public class DP_Unranked_Iterator extends DP_Iterator
         DP_DecisionSet decision_set = dec.belongs_to();
         if (!decision_set.partial_order_computed)
         {
-            initialize_partial_order(decision_set);
+            decision_set.initialize_partial_order(this::initialize_partial_order);
             decision_set.partial_order_computed = true;
         }
         return dec.successors;
@@ -0,0 +1,99 @@
+package algorithms.paths;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import algorithms.Configuration;
+import entities.paths.DP_Decision;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.DP_State_Node;
+import entities.paths.Path_Query_Solution;
+import util.External_Merge_Sort;
+
+/**
+ * A version of {@link algorithms.paths.Path_BatchSorting} for result sizes that do not fit in memory.
+ * Every solution is identified by its position (id) in the DFS order of the DP graph
+ * (see {@link algorithms.paths.Path_Solution_Index}) and the (cost, id) pairs are sorted externally
+ * by {@link util.External_Merge_Sort}: they are collected into runs of a fixed size,
+ * every run is sorted and spilled to disk, and {@link #get_next} reads from a k-way merge
+ * of the memory-mapped runs and reconstructs the solution of each id.
+ * The class has been customized for join problems only since it produces
+ * {@link entities.paths.Path_Query_Solution} as results.
+ * <br><br>
+ * IMPORTANT: Before using this class, the nodes and the edges of the DP state-space graph
+ * must have already been initialized either by {@link entities.paths.DP_Problem_Instance#bottom_up}
+ * or some other method.
+ * @author Nikolaos Tziavelis
+*/
+public class Path_External_BatchSorting extends DP_Anyk_Iterator
+{
+    /**
+     * The number of solutions kept in memory before a run is spilled to disk (about 16 bytes each).
+    */
+    public static final int DEFAULT_RUN_SIZE = 1 << 22;
+
+    private Path_Solution_Index index;
+    private External_Merge_Sort sorter;
+
+	public Path_External_BatchSorting(DP_Problem_Instance inst, Configuration conf)
+    {
+        this(inst, conf, Integer.MAX_VALUE, DEFAULT_RUN_SIZE);
+    }
+
+    /**
+     * @param max_k The number of solutions that will be requested at most (Integer.MAX_VALUE for all).
+     * @param run_size The number of solutions in every sorted run.
+    */
+	public Path_External_BatchSorting(DP_Problem_Instance inst, Configuration conf, int max_k, int run_size)
+    {
+        super(inst, conf);
+        if (inst.count_solutions().compareTo(BigInteger.valueOf(Long.MAX_VALUE)) >= 0)
+        {
+            System.err.println("Too many solutions to enumerate");
+            System.exit(1);
+        }
+        this.index = new Path_Solution_Index(inst);
+        this.sorter = new External_Merge_Sort(run_size, max_k);
+        if (!inst.starting_node.is_terminal()) DFS(inst.starting_node, 0.0, 0);
+        sorter.finish();
+    }
+
+    /**
+     * Computes the next DP solution of {@link #instance} in ranked order.
+     * Ties are broken arbitrarily.
+     * @return Path_Query_Solution The next best DP solution or null if there are no other solutions.
+     */
+    @Override
+    public Path_Query_Solution get_next()
+    {
+        long id = sorter.next();
+        if (id < 0) return null;
+        return index.decode(id);
+    }
+
+    /**
+     * @return int The number of sorted runs that were written to disk.
+     */
+    public int get_runs_no()
+    {
+        return sorter.get_runs_no();
+    }
+
+    private void DFS(DP_State_Node node, double cost, long id)
+    {
+        if (node.is_terminal())
+        {
+            sorter.add(cost, id);
+            return;
+        }
+        long[] prefix = index.prefix(node.decisions);
+        List<DP_Decision> decisions = node.decisions.list_of_decisions;
+        for (int j = 0; j < decisions.size(); j++)
+        {
+            // Skip the decisions that do not lead to any solution
+            if (prefix[j + 1] == prefix[j]) continue;
+            DP_State_Node target = decisions.get(j).target;
+            DFS(target, cost + Path_Solution_Index.tuple_cost(target), id + prefix[j]);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package algorithms.paths;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import algorithms.Configuration;
+import entities.paths.DP_Decision;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.DP_State_Node;
+import entities.paths.Path_Query_Solution;
+import util.Parallel_Merge_Sort;
+
+/**
+ * A parallel version of {@link algorithms.paths.Path_BatchSorting}.
+ * Instead of materializing every solution as an object, each one is identified by its position (id)
+ * in the DFS order of the DP graph (see {@link algorithms.paths.Path_Solution_Index}).
+ * The enumeration is split by the decision of the first stage across the common fork-join pool,
+ * and every task writes the costs of its solutions directly at their ids in a primitive array.
+ * The (cost, id) pairs are then sorted with {@link util.Parallel_Merge_Sort}
+ * (only the best max_k of them if a limit is given) and {@link #get_next} reconstructs the solution of each id.
+ * The class has been customized for join problems only since it produces
+ * {@link entities.paths.Path_Query_Solution} as results.
+ * <br><br>
+ * IMPORTANT: Before using this class, the nodes and the edges of the DP state-space graph
+ * must have already been initialized either by {@link entities.paths.DP_Problem_Instance#bottom_up}
+ * or some other method.
+ * @author Nikolaos Tziavelis
+*/
+public class Path_Parallel_BatchSorting extends DP_Anyk_Iterator
+{
+    /**
+     * Tasks with fewer solutions than this are not split further.
+    */
+    static final long TASK_THRESHOLD = 1 << 14;
+
+    private Path_Solution_Index index;
+    private double[] costs;
+    private int[] ids;
+    /**
+     * The number of sorted solutions.
+    */
+    private int sorted_no;
+    private int current_index;
+
+	public Path_Parallel_BatchSorting(DP_Problem_Instance inst, Configuration conf)
+    {
+        this(inst, conf, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param max_k The number of solutions that will be requested at most (Integer.MAX_VALUE for all).
+    */
+	public Path_Parallel_BatchSorting(DP_Problem_Instance inst, Configuration conf, int max_k)
+    {
+        super(inst, conf);
+        BigInteger total = inst.count_solutions();
+        if (total.compareTo(BigInteger.valueOf(Integer.MAX_VALUE - 8)) > 0)
+        {
+            System.err.println("Too many solutions to sort in memory");
+            System.exit(1);
+        }
+        this.index = new Path_Solution_Index(inst);
+
+        this.costs = new double[total.intValue()];
+        if (!inst.starting_node.is_terminal())
+            ForkJoinPool.commonPool().invoke(new Enumeration_Task(0, inst.starting_node.decisions.list_of_decisions.size()));
+        this.ids = new int[costs.length];
+        for (int i = 0; i < ids.length; i++) ids[i] = i;
+        this.sorted_no = Parallel_Merge_Sort.sort(costs, ids, max_k);
+        this.current_index = -1;
+    }
+
+    /**
+     * Computes the next DP solution of {@link #instance} in ranked order.
+     * Ties are broken arbitrarily.
+     * @return Path_Query_Solution The next best DP solution or null if there are no other solutions.
+     */
+    @Override
+    public Path_Query_Solution get_next()
+    {
+        this.current_index++;
+        if (current_index >= sorted_no) return null;
+        return index.decode(ids[current_index]);
+    }
+
+    /**
+     * Enumerates the solutions that start with a range of decisions of the starting node.
+    */
+    private class Enumeration_Task extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        final int from, to;
+
+        Enumeration_Task(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            long[] prefix = index.prefix(instance.starting_node.decisions);
+            if (to - from > 1 && prefix[to] - prefix[from] > TASK_THRESHOLD)
+            {
+                // Split so that the two halves have roughly the same number of solutions
+                int mid = Path_Solution_Index.find(prefix, (prefix[from] + prefix[to]) / 2);
+                mid = Math.max(from + 1, Math.min(to - 1, mid));
+                invokeAll(new Enumeration_Task(from, mid), new Enumeration_Task(mid, to));
+                return;
+            }
+            List<DP_Decision> decisions = instance.starting_node.decisions.list_of_decisions;
+            for (int j = from; j < to; j++)
+            {
+                if (prefix[j + 1] == prefix[j]) continue;
+                DP_State_Node target = decisions.get(j).target;
+                DFS(target, Path_Solution_Index.tuple_cost(target), prefix[j]);
+            }
+        }
+
+        private void DFS(DP_State_Node node, double cost, long id)
+        {
+            if (node.is_terminal())
+            {
+                costs[(int) id] = cost;
+                return;
+            }
+            long[] prefix = index.prefix(node.decisions);
+            List<DP_Decision> decisions = node.decisions.list_of_decisions;
+            for (int j = 0; j < decisions.size(); j++)
+            {
+                // Skip the decisions that do not lead to any solution
+                if (prefix[j + 1] == prefix[j]) continue;
+                DP_State_Node target = decisions.get(j).target;
+                DFS(target, cost + Path_Solution_Index.tuple_cost(target), id + prefix[j]);
+            }
+        }
+    }
+}
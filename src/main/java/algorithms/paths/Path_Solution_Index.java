@@ -0,0 +1,110 @@
+package algorithms.paths;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import entities.Tuple;
+import entities.paths.DP_Decision;
+import entities.paths.DP_DecisionSet;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.DP_State_Node;
+import entities.paths.Path_Query_Solution;
+
+/**
+ * Identifies every solution of a DP graph by its position (id) in the DFS order of the graph.
+ * The id is the sum, along the path of the solution, of the number of solutions reachable
+ * from the targets of the decisions before the one taken, thus it can be computed during a DFS
+ * and decoded back into a solution by binary search.
+ * Used by the batch algorithms that sort compact (cost, id) pairs instead of solution objects.
+ * @author Nikolaos Tziavelis
+*/
+class Path_Solution_Index
+{
+    private DP_Problem_Instance instance;
+    /**
+     * The number of solutions reachable from each node.
+    */
+    private IdentityHashMap<DP_State_Node, Long> counts;
+    /**
+     * For every decision set, the number of solutions reachable from the targets of the decisions before each position.
+    */
+    private IdentityHashMap<DP_DecisionSet, long[]> prefix_counts;
+
+    Path_Solution_Index(DP_Problem_Instance inst)
+    {
+        this.instance = inst;
+        this.counts = new IdentityHashMap<DP_State_Node, Long>();
+        this.prefix_counts = new IdentityHashMap<DP_DecisionSet, long[]>();
+        count(inst.starting_node);
+    }
+
+    /**
+     * @return long[] The prefix sums of the solution counts of the decisions of a node
+     *  (one more than the number of decisions).
+     */
+    long[] prefix(DP_DecisionSet decisions)
+    {
+        return prefix_counts.get(decisions);
+    }
+
+    /**
+     * Reconstructs a solution from its position in the DFS order.
+     */
+    Path_Query_Solution decode(long id)
+    {
+        List<Tuple> tuples = new ArrayList<Tuple>();
+        DP_State_Node node = instance.starting_node;
+        while (!node.is_terminal())
+        {
+            long[] prefix = prefix_counts.get(node.decisions);
+            int j = find(prefix, id);
+            id -= prefix[j];
+            node = node.decisions.list_of_decisions.get(j).target;
+            if (node.state_info instanceof Tuple) tuples.add((Tuple) node.state_info);
+        }
+        return new Path_Query_Solution(tuples);
+    }
+
+    /**
+     * @return int The largest position j such that prefix[j] <= id (and prefix[j + 1] > id).
+     */
+    static int find(long[] prefix, long id)
+    {
+        int low = 0, high = prefix.length - 2;
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (prefix[mid] <= id) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    static double tuple_cost(DP_State_Node node)
+    {
+        return (node.state_info instanceof Tuple) ? ((Tuple) node.state_info).cost : 0.0;
+    }
+
+    private long count(DP_State_Node node)
+    {
+        Long res = counts.get(node);
+        if (res != null) return res;
+        long cnt;
+        if (node.is_terminal()) cnt = 1;
+        else
+        {
+            long[] prefix = prefix_counts.get(node.decisions);
+            if (prefix == null)
+            {
+                List<DP_Decision> decisions = node.decisions.list_of_decisions;
+                prefix = new long[decisions.size() + 1];
+                for (int j = 0; j < decisions.size(); j++) prefix[j + 1] = prefix[j] + count(decisions.get(j).target);
+                prefix_counts.put(node.decisions, prefix);
+            }
+            cnt = prefix[prefix.length - 1];
+        }
+        counts.put(node, cnt);
+        return cnt;
+    }
+}
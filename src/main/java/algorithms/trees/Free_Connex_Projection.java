@@ -0,0 +1,230 @@
+package algorithms.trees;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.trees.TDP_Decision;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+/**
+ * Rewrites a tree query with a projection into a tree query whose answers are the distinct projected answers,
+ * each one with the minimum cost of the answers of the original query that it is a projection of.
+ * Thus, any T-DP any-k algorithm on the rewritten query returns every projected answer exactly once and in ranked order.
+ * <br><br>
+ * The projection is given as a list of output attributes for each relation of the query.
+ * It has to be free-connex for the join tree of the query:
+ * <ul>
+ * <li> The relations with output attributes form a connected subtree that contains the root.
+ * <li> The attributes that participate in the joins between two such relations are output attributes (of both).
+ * </ul>
+ * The subtrees without output attributes are aggregated away with the bottom-up phase of T-DP:
+ * every tuple of their parent is charged the minimum cost of the subtrees below it (and is dropped if it joins with none).
+ * Then, the tuples of every relation with output attributes are projected on them,
+ * keeping the minimum cost among the tuples with the same values.
+ * Since the joins between the remaining relations only refer to output attributes,
+ * the minimum cost of a projected answer is the sum of the costs of its projected tuples.
+ * @author Nikolaos Tziavelis
+*/
+public class Free_Connex_Projection
+{
+    /**
+     * The query over the projected relations.
+     * Its relations are the relations of the original query with output attributes (in the same order)
+     * and their attributes are the output attributes (in the order they were given).
+    */
+    public Tree_ThetaJoin_Query projected_query;
+    /**
+     * For each relation of {@link #projected_query}, the index of the relation of the original query it comes from.
+    */
+    public List<Integer> original_relations;
+
+    /**
+     * @param query A tree query.
+     * @param output_attributes For each relation of the query, the indexes of its output attributes
+     *  (null or empty if it has none).
+     * @param method The factorization method used for the subtrees without output attributes
+     *  (see {@link entities.trees.TDP_Thetajoin_Instance}). If null, method selection is automatic.
+    */
+    public Free_Connex_Projection(Tree_ThetaJoin_Query query, int[][] output_attributes, String method)
+    {
+        int[][] positions = check_free_connex(query, output_attributes);
+
+        // The relation with output attributes that every other relation is aggregated into
+        // (the parent has a smaller index than its children)
+        int[] owner = new int[query.length];
+        this.original_relations = new ArrayList<Integer>();
+        for (int r = 0; r < query.length; r++)
+        {
+            if (positions[r] != null)
+            {
+                owner[r] = r;
+                original_relations.add(r);
+            }
+            else owner[r] = owner[query.parents.get(r)];
+        }
+
+        this.projected_query = new Tree_ThetaJoin_Query();
+        for (int new_idx = 0; new_idx < original_relations.size(); new_idx++)
+        {
+            int r = original_relations.get(new_idx);
+            Relation projected = project(query.relations.get(r), output_attributes[r], min_costs(query, r, owner, method));
+            if (new_idx == 0)
+            {
+                projected_query.add_to_tree_wDNF(projected, 0, -1, null);
+                continue;
+            }
+            int parent = query.parents.get(r);
+            List<List<Join_Predicate>> join_condition = new ArrayList<List<Join_Predicate>>();
+            for (List<Join_Predicate> conjunction : query.join_conditions.get(r))
+            {
+                List<Join_Predicate> projected_conjunction = new ArrayList<Join_Predicate>();
+                for (Join_Predicate p : conjunction)
+                    projected_conjunction.add(new Join_Predicate(p.type, positions[parent][p.attr_idx_1], positions[r][p.attr_idx_2], p.parameter));
+                join_condition.add(projected_conjunction);
+            }
+            projected_query.add_to_tree_wDNF(projected, new_idx, original_relations.indexOf(parent), join_condition);
+        }
+    }
+
+    /**
+     * Checks that the projection is free-connex for the join tree of the query.
+     * @return int[][] For each relation with output attributes, the position of each attribute in the projected relation
+     *  (-1 if it is not an output attribute). Null for the relations without output attributes.
+    */
+    private static int[][] check_free_connex(Tree_ThetaJoin_Query query, int[][] output_attributes)
+    {
+        if (output_attributes.length != query.length)
+        {
+            System.err.println("The output attributes have to be specified for each relation of the query");
+            System.exit(1);
+        }
+        int[][] positions = new int[query.length][];
+        for (int r = 0; r < query.length; r++)
+        {
+            if (output_attributes[r] == null || output_attributes[r].length == 0) continue;
+            positions[r] = new int[query.relations.get(r).schema.length];
+            for (int attr = 0; attr < positions[r].length; attr++) positions[r][attr] = -1;
+            for (int i = 0; i < output_attributes[r].length; i++)
+            {
+                int attr = output_attributes[r][i];
+                if (attr < 0 || attr >= positions[r].length)
+                {
+                    System.err.println("Output attribute " + attr + " does not exist in relation " + query.relations.get(r).relation_id);
+                    System.exit(1);
+                }
+                if (positions[r][attr] == -1) positions[r][attr] = i;
+            }
+        }
+        if (positions[0] == null)
+        {
+            System.err.println("The root of the join tree has to have output attributes");
+            System.exit(1);
+        }
+        for (int r = 1; r < query.length; r++)
+        {
+            if (positions[r] == null) continue;
+            int parent = query.parents.get(r);
+            if (positions[parent] == null)
+            {
+                System.err.println("The relations with output attributes have to form a connected subtree that contains the root of the join tree");
+                System.exit(1);
+            }
+            for (List<Join_Predicate> conjunction : query.join_conditions.get(r))
+                for (Join_Predicate p : conjunction)
+                    if (positions[parent][p.attr_idx_1] == -1 || positions[r][p.attr_idx_2] == -1)
+                    {
+                        System.err.println("The join attributes between " + query.relations.get(parent).relation_id + " and "
+                            + query.relations.get(r).relation_id + " have to be output attributes (the projection is not free-connex)");
+                        System.exit(1);
+                    }
+        }
+        return positions;
+    }
+
+    /**
+     * Aggregates away the subtrees without output attributes below a relation with the bottom-up phase of T-DP
+     * on the query that consists of the relation (as the root) and these subtrees.
+     * @return IdentityHashMap<Tuple, Double> For each tuple of the relation that joins with all the subtrees,
+     *  its cost plus the minimum costs of the subtrees.
+    */
+    private static IdentityHashMap<Tuple, Double> min_costs(Tree_ThetaJoin_Query query, int relation_idx, int[] owner, String method)
+    {
+        IdentityHashMap<Tuple, Double> res = new IdentityHashMap<Tuple, Double>();
+        Tree_ThetaJoin_Query subquery = new Tree_ThetaJoin_Query();
+        subquery.add_to_tree_wDNF(query.relations.get(relation_idx), 0, -1, null);
+        List<Integer> subquery_relations = new ArrayList<Integer>();
+        subquery_relations.add(relation_idx);
+        for (int r = relation_idx + 1; r < query.length; r++)
+        {
+            if (owner[r] != relation_idx || r == owner[r]) continue;
+            subquery_relations.add(r);
+            subquery.add_to_tree_wDNF(query.relations.get(r), subquery_relations.size() - 1,
+                subquery_relations.indexOf(query.parents.get(r)), query.join_conditions.get(r));
+        }
+        if (subquery.length == 1)
+        {
+            for (Tuple t : query.relations.get(relation_idx).tuples) res.put(t, t.cost);
+            return res;
+        }
+
+        TDP_Thetajoin_Instance instance = new TDP_Thetajoin_Instance(subquery, method);
+        instance.bottom_up();
+        for (TDP_Decision dec : instance.starting_node.get_decisions(0))
+        {
+            double cost = dec.opt_achievable_cost();
+            if (cost != Double.POSITIVE_INFINITY) res.put((Tuple) dec.target.state_info, cost);
+        }
+        return res;
+    }
+
+    /**
+     * Projects the tuples of a relation on the output attributes, keeping the minimum cost for each combination of values.
+     * @param costs The costs of the tuples (the ones that do not appear are dropped).
+    */
+    private static Relation project(Relation relation, int[] attributes, IdentityHashMap<Tuple, Double> costs)
+    {
+        String[] schema = new String[attributes.length];
+        for (int i = 0; i < attributes.length; i++) schema[i] = relation.schema[attributes[i]];
+        Relation res = new Relation(relation.relation_id, schema);
+        Map<List<Double>, Tuple> projected_tuples = new LinkedHashMap<List<Double>, Tuple>();
+        for (Tuple t : relation.tuples)
+        {
+            Double cost = costs.get(t);
+            if (cost == null) continue;
+            double[] vals = new double[attributes.length];
+            List<Double> key = new ArrayList<Double>(attributes.length);
+            for (int i = 0; i < attributes.length; i++)
+            {
+                vals[i] = t.values[attributes[i]];
+                key.add(vals[i]);
+            }
+            Tuple existing = projected_tuples.get(key);
+            if (existing == null) projected_tuples.put(key, new Tuple(vals, cost, res));
+            else if (cost < existing.cost) existing.cost = cost;
+        }
+        res.insertAll(projected_tuples.values());
+        return res;
+    }
+
+    public static void main(String args[])
+    {
+        // Run the example: project on A4, A5 of the root R1 and A5, A6 of R3 (R2 is aggregated away)
+        Tree_ThetaJoin_Query example_query = new Tree_ThetaJoin_Query(1);
+        int[][] output_attributes = new int[][]{ {0, 1}, null, {0, 1} };
+        Free_Connex_Projection projection = new Free_Connex_Projection(example_query, output_attributes, null);
+        TDP_Thetajoin_Instance instance = new TDP_Thetajoin_Instance(projection.projected_query, null);
+        instance.bottom_up();
+        TDP_Anyk_Iterator iter = new TDP_Lazy(instance, null);
+        TDP_Solution solution;
+        while ((solution = iter.get_next()) != null)
+            System.out.println(solution.solutionToTuples_strict_order() + " Cost = " + solution.get_cost());
+    }
+}
@@ -0,0 +1,211 @@
+package algorithms.trees;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import entities.trees.TDP_Decision;
+import entities.trees.TDP_DecisionSet;
+import entities.trees.TDP_Prefix_Solution;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_State_Node;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+/**
+ * Direct access to the T-DP solutions of a {@link entities.trees.TDP_Problem_Instance} object in an unranked order:
+ * the method {@link #get} returns the i-th solution without enumerating the ones before it.
+ * The index of a solution is a mixed-radix number with one digit per branch of every node:
+ * the solutions below a node are ordered lexicographically by the solutions of its branches (the first branch is the most significant)
+ * and the solutions of a branch by the index of their decision in the list of decisions of the graph
+ * at the time of initialization (the any-k algorithms may reorder these lists, thus a snapshot of them is kept).
+ * (This is a fixed order, but not the same as the order of {@link algorithms.trees.TDP_Unranked_Iterator}).
+ * <br><br>
+ * Initialization counts the solutions that start from every node (as in {@link entities.trees.TDP_Problem_Instance#count_solutions})
+ * and stores the prefix sums of the counts of the decisions in every {@link entities.trees.TDP_DecisionSet}.
+ * Then, an access descends the stages in the same order as the prefix solutions of T-DP,
+ * by splitting the index of every node into its branches and binary searching the prefix sums of every branch,
+ * thus taking O(l log n) time for l stages.
+ * The bottom-up phase is not required.
+ * IMPORTANT: The counts are not maintained under updates of the instance, so a new object must be created after them.
+ * @author Nikolaos Tziavelis
+*/
+public class TDP_Direct_Access
+{
+    /**
+     * The T-DP problem whose solutions are accessed.
+    */
+    protected TDP_Problem_Instance instance;
+    /**
+     * The total number of solutions.
+    */
+    protected BigInteger total;
+
+    public TDP_Direct_Access(TDP_Problem_Instance inst)
+    {
+        this.instance = inst;
+        this.total = count(instance.starting_node, new HashMap<TDP_State_Node, BigInteger>(), new IdentityHashMap<TDP_DecisionSet, Boolean>());
+    }
+
+    /**
+     * @return BigInteger The number of solutions.
+     */
+    public BigInteger count()
+    {
+        return total;
+    }
+
+    /**
+     * @param i The index of a solution (starting from 0).
+     * @return TDP_Solution The i-th solution or null if i is out of range.
+     */
+    public TDP_Solution get(BigInteger i)
+    {
+        if (i.signum() < 0 || i.compareTo(total) >= 0) return null;
+        int stages_no = instance.stages_no;
+        // The index of the solution below the node of every stage, split into its branches
+        BigInteger[][] branch_indexes = new BigInteger[stages_no][];
+        branch_indexes[0] = split(instance.starting_node, i);
+        List<TDP_State_Node> node_list = new ArrayList<TDP_State_Node>(stages_no - 1);
+        TDP_Prefix_Solution solution = null;
+        // Recall that stage 0 contains the starting node which is not encoded in the solutions
+        for (int next_stage = 1; next_stage < stages_no; next_stage++)
+        {
+            // The first stage is the only branch of the starting node
+            int parent_stage = next_stage == 1 ? 0 : instance.get_parent_stage(next_stage);
+            int branch_idx = next_stage == 1 ? 0 : instance.get_branch_index(next_stage);
+            TDP_State_Node parent_node = parent_stage == 0 ? instance.starting_node : node_list.get(parent_stage - 1);
+            TDP_DecisionSet decisions = parent_node.decisions.get(branch_idx);
+            BigInteger remaining = branch_indexes[parent_stage][branch_idx];
+            int j = find(decisions.prefix_counts, remaining);
+            TDP_Decision decision = decisions.counted_decisions[j];
+            remaining = remaining.subtract(decisions.prefix_counts[j]);
+            if (solution == null) solution = new TDP_Prefix_Solution(decision);
+            else solution = new TDP_Prefix_Solution(solution, decision);
+            node_list.add(decision.target);
+            branch_indexes[next_stage] = split(decision.target, remaining);
+        }
+        return solution;
+    }
+
+    /**
+     * @param i The index of a solution (starting from 0).
+     * @return TDP_Solution The i-th solution or null if i is out of range.
+     */
+    public TDP_Solution get(long i)
+    {
+        return get(BigInteger.valueOf(i));
+    }
+
+    /**
+     * @param offset The index of the first solution of the page.
+     * @param limit The maximum number of solutions in the page.
+     * @return List<TDP_Solution> The solutions with indexes offset, ..., offset + limit - 1 that exist.
+     */
+    public List<TDP_Solution> get_page(BigInteger offset, int limit)
+    {
+        List<TDP_Solution> page = new ArrayList<TDP_Solution>();
+        BigInteger i = offset.max(BigInteger.ZERO);
+        BigInteger end = offset.add(BigInteger.valueOf(limit)).min(total);
+        for (; i.compareTo(end) < 0; i = i.add(BigInteger.ONE)) page.add(get(i));
+        return page;
+    }
+
+    /**
+     * @param offset The index of the first solution of the page.
+     * @param limit The maximum number of solutions in the page.
+     * @return List<TDP_Solution> The solutions with indexes offset, ..., offset + limit - 1 that exist.
+     */
+    public List<TDP_Solution> get_page(long offset, int limit)
+    {
+        return get_page(BigInteger.valueOf(offset), limit);
+    }
+
+    /**
+     * Splits the index of a solution below a node into the indexes of the solutions of its branches.
+     * @return BigInteger[] One index per branch (empty for terminal nodes).
+     */
+    private static BigInteger[] split(TDP_State_Node node, BigInteger i)
+    {
+        if (node.is_terminal()) return new BigInteger[0];
+        int branches = node.decisions.size();
+        BigInteger[] res = new BigInteger[branches];
+        for (int b = branches - 1; b >= 0; b--)
+        {
+            BigInteger[] prefix_counts = node.decisions.get(b).prefix_counts;
+            BigInteger[] quotient_remainder = i.divideAndRemainder(prefix_counts[prefix_counts.length - 1]);
+            res[b] = quotient_remainder[1];
+            i = quotient_remainder[0];
+        }
+        return res;
+    }
+
+    /**
+     * Recursively computes the number of solutions starting from a node
+     * (the product of the counts of its branches)
+     * and stores the prefix sums of the counts of the decisions in the decision sets.
+     * @param counts The counts of the nodes that have been computed.
+     * @param computed The decision sets whose prefix sums have been computed (they may be shared by nodes).
+     * @return BigInteger The number of solutions starting from the node.
+     */
+    private static BigInteger count(TDP_State_Node node, Map<TDP_State_Node, BigInteger> counts, Map<TDP_DecisionSet, Boolean> computed)
+    {
+        if (node.is_terminal()) return BigInteger.ONE;
+        BigInteger res = counts.get(node);
+        if (res != null) return res;
+        res = BigInteger.ONE;
+        for (TDP_DecisionSet decisions : node.decisions)
+        {
+            if (!computed.containsKey(decisions))
+            {
+                // The any-k algorithms may reorder the list later
+                TDP_Decision[] snapshot = decisions.list_of_decisions.toArray(new TDP_Decision[0]);
+                BigInteger[] prefix_counts = new BigInteger[snapshot.length + 1];
+                prefix_counts[0] = BigInteger.ZERO;
+                for (int j = 0; j < snapshot.length; j++)
+                    prefix_counts[j + 1] = prefix_counts[j].add(count(snapshot[j].target, counts, computed));
+                decisions.counted_decisions = snapshot;
+                decisions.prefix_counts = prefix_counts;
+                computed.put(decisions, true);
+            }
+            res = res.multiply(decisions.prefix_counts[decisions.prefix_counts.length - 1]);
+        }
+        counts.put(node, res);
+        return res;
+    }
+
+    /**
+     * @param prefix_counts The prefix sums of the counts of a decision set.
+     * @param i An index smaller than the total count.
+     * @return int The decision whose solutions contain the i-th one, i.e., the last j with prefix_counts[j] <= i
+     *  (decisions with no solutions are skipped since they have the same prefix sum as the next one).
+     */
+    static int find(BigInteger[] prefix_counts, BigInteger i)
+    {
+        int low = 0, high = prefix_counts.length - 2;
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (prefix_counts[mid].compareTo(i) <= 0) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    public static void main(String args[])
+    {
+        // Run the example
+        Tree_ThetaJoin_Query example_query = new Tree_ThetaJoin_Query(1);
+        TDP_Thetajoin_Instance instance = new TDP_Thetajoin_Instance(example_query, null);
+        TDP_Direct_Access access = new TDP_Direct_Access(instance);
+        System.out.println("No_of_solutions: " + access.count());
+        BigInteger middle = access.count().shiftRight(1);
+        System.out.println("Solution " + middle + ": " + access.get(middle));
+        for (TDP_Solution solution : access.get_page(middle.add(BigInteger.ONE), 3))
+            System.out.println(solution);
+    }
+}
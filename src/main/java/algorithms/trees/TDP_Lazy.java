@@ -44,7 +44,7 @@ public class TDP_Lazy extends TDP_Part
         TDP_DecisionSet decision_set = dec.belongs_to();
         if (!decision_set.partial_order_computed)
         {
-            initialize_partial_order(decision_set);
+            decision_set.initialize_partial_order(this::initialize_partial_order);
             decision_set.partial_order_computed = true;
         }
         // assert dec.belongs_to().partial_order_computed;
@@ -11,6 +11,8 @@ import entities.trees.TDP_Prefix_Solution;
 import entities.trees.TDP_Problem_Instance;
 import entities.trees.TDP_Solution;
 import entities.trees.TDP_State_Node;
+import util.Engine_Events;
+import util.Spilling_Priority_Queue;
 
 // TODO: make the algorithm independent of stages_no (as path case)
 
@@ -39,6 +41,10 @@ public abstract class TDP_Part extends TDP_Anyk_Iterator
 	 * Maintains all the prefix solutions that are candidates for the next best solution.
 	*/
 	protected PriorityQueue<TDP_Prefix_Solution> global_pq;
+	/** 
+	 * Used instead of {@link #global_pq} if {@link algorithms.Configuration#pq_memory_limit} is set.
+	*/
+	protected Spilling_Priority_Queue<TDP_Prefix_Solution> global_pq_spilling;
 	/** 
 	 * Stores the solution returned in the previous call of {@link #get_next}.
 	 * This is required because candidates generated from the top-k'th solution 
@@ -75,6 +81,8 @@ public abstract class TDP_Part extends TDP_Anyk_Iterator
     	// Initialize the global PQ with an empty prefix (that contains only the starting node)
 		// this.global_pq = new Priority_Queue<DP_Prefix_Solution>(this.heap_type);
 		this.global_pq = new PriorityQueue<TDP_Prefix_Solution>();
+		if ((conf != null) && conf.pq_memory_limit > 0)
+			this.global_pq_spilling = new Spilling_Priority_Queue<TDP_Prefix_Solution>(conf.pq_memory_limit, new TDP_Prefix_Codec());
     	// The prefix we start with contains only the best decision to go from starting_node to stage 1
     	// That way, we guarantee that for top-2 we start taking successor solutions from stage 1
     	if (instance.starting_node.get_opt_cost() != Double.POSITIVE_INFINITY)	// Corner case: if no path can reach the terminal node, leave the pq empty
@@ -82,7 +90,8 @@ public abstract class TDP_Part extends TDP_Anyk_Iterator
             // Stage 0 always has only one branch (index 0) that corresponds to stage 1
             TDP_Decision best_from_start = instance.starting_node.get_best_decision(0);
 	    	TDP_Prefix_Solution starting_prefix = new TDP_Prefix_Solution(best_from_start);
-	    	this.global_pq.add(starting_prefix);    		
+	    	if (global_pq_spilling != null) this.global_pq_spilling.add(starting_prefix);
+	    	else this.global_pq.add(starting_prefix);    		
 		}
     }
 
@@ -118,7 +127,9 @@ public abstract class TDP_Part extends TDP_Anyk_Iterator
 			// Especially helpful in the second iteration of TDP_Min
 			//System.out.println("Adding to the PQ: ");
 			//for (TDP_Prefix_Solution cand : new_candidates) System.out.println("\t\t" + cand.solutionToTuples_strict_order());
-            if (global_pq.isEmpty())
+            if (global_pq_spilling != null)
+                global_pq_spilling.addAll(new_candidates);
+            else if (global_pq.isEmpty())
                 // global_pq = new Priority_Queue<DP_Prefix_Solution>(heap_type, new_candidates);
                 global_pq = new PriorityQueue<TDP_Prefix_Solution>(new_candidates);
             else
@@ -126,9 +137,19 @@ public abstract class TDP_Part extends TDP_Anyk_Iterator
                 add_candidates(new_candidates);
     	}
 
+		// Report the size of the PQ (does nothing unless the JFR event is enabled)
+		Engine_Events.PQ_Snapshot pq_event = new Engine_Events.PQ_Snapshot();
+		if (pq_event.shouldCommit())
+		{
+			pq_event.algorithm = this.getClass().getSimpleName();
+			pq_event.pq_size = (global_pq_spilling != null) ? (int) Math.min(Integer.MAX_VALUE, global_pq_spilling.size()) : global_pq.size();
+			pq_event.candidates = new_candidates.size();
+			pq_event.commit();
+		}
+
     	// Pop the best solution from the global PQ
 		// popped_solution = global_pq.pop();
-		popped_solution = global_pq.poll();
+		popped_solution = (global_pq_spilling != null) ? global_pq_spilling.poll() : global_pq.poll();
 		// If null is returned, then we have enumerated all solutions
 		if (popped_solution == null) return null;
 		//System.out.println("Popped " + popped_solution.solutionToTuples_strict_order() + " with future cost = " + popped_solution.get_future_cost());
@@ -61,6 +61,12 @@ public abstract class TDP_PartPlus extends TDP_Anyk_Iterator
 	public TDP_PartPlus(TDP_Problem_Instance inst, Configuration conf)
     {
     	super(inst, conf);
+		// The memoized variants keep their global PQ in memory and cannot spill it
+		if ((conf != null) && conf.pq_memory_limit > 0)
+		{
+			System.err.println("pq_memory_limit is not supported by the Anyk-PartPlus algorithms");
+			System.exit(1);
+		}
 		
 		// Enforce a BFS ordering of the stages
 		inst.enforce_bfs_ordering();
@@ -372,7 +378,7 @@ public abstract class TDP_PartPlus extends TDP_Anyk_Iterator
 			curr_node = dfs_stack.pop();
 			for (int b = 0; b < curr_node.decisions.size(); b++)
 			{
-				initialize_partial_order(curr_node.decisions.get(b));
+				curr_node.decisions.get(b).initialize_partial_order(this::initialize_partial_order);
 				for (TDP_Decision dec : curr_node.get_decisions(b))
 				{
 					if (!dec.target.decisions.get(b).partial_order_computed)
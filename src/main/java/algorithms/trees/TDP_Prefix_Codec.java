@@ -0,0 +1,82 @@
+package algorithms.trees;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import entities.trees.TDP_Decision;
+import entities.trees.TDP_Prefix_Solution;
+import util.Spilling_Priority_Queue;
+
+/**
+ * Encodes a {@link entities.trees.TDP_Prefix_Solution} as its future cost, its length and the ids of its decisions
+ * so that the global PQ of {@link algorithms.trees.TDP_Part} can spill candidates to disk.
+ * A decision gets an id the first time it is written.
+ * The future cost is stored because it was computed incrementally when the candidate was created.
+ * Only the future cost of the candidate itself matters: TDP_Part takes successors of a popped prefix
+ * and of its expansions, never of its shorter prefixes.
+ * @author Nikolaos Tziavelis
+*/
+class TDP_Prefix_Codec implements Spilling_Priority_Queue.Spill_Codec<TDP_Prefix_Solution>
+{
+    private List<TDP_Decision> decisions;
+    private IdentityHashMap<TDP_Decision, Integer> decision_ids;
+
+    TDP_Prefix_Codec()
+    {
+        this.decisions = new ArrayList<TDP_Decision>();
+        this.decision_ids = new IdentityHashMap<TDP_Decision, Integer>();
+    }
+
+    @Override
+    public double key(TDP_Prefix_Solution element)
+    {
+        return element.get_final_cost();
+    }
+
+    @Override
+    public void write(TDP_Prefix_Solution element, DataOutputStream out) throws IOException
+    {
+        int[] ids = new int[element.length];
+        TDP_Prefix_Solution current = element;
+        for (int i = element.length - 1; i >= 0; i--)
+        {
+            ids[i] = get_id(current.latest_decision);
+            current = current.shorter_prefix;
+        }
+        out.writeDouble(element.get_final_cost());
+        out.writeInt(element.length);
+        for (int id : ids) out.writeInt(id);
+    }
+
+    @Override
+    public TDP_Prefix_Solution read(DataInputStream in) throws IOException
+    {
+        double future_cost = in.readDouble();
+        int length = in.readInt();
+        TDP_Prefix_Solution res = new TDP_Prefix_Solution(decisions.get(in.readInt()));
+        for (int i = 1; i < length; i++)
+        {
+            TDP_Decision decision = decisions.get(in.readInt());
+            res = new TDP_Prefix_Solution(res, decision);
+            // Restore the future cost of the candidate by replacing its last decision with itself
+            if (i == length - 1) res = new TDP_Prefix_Solution(res, decision, future_cost);
+        }
+        return res;
+    }
+
+    private int get_id(TDP_Decision decision)
+    {
+        Integer id = decision_ids.get(decision);
+        if (id == null)
+        {
+            id = decisions.size();
+            decisions.add(decision);
+            decision_ids.put(decision, id);
+        }
+        return id;
+    }
+}
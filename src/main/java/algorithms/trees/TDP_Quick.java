@@ -50,7 +50,7 @@ public class TDP_Quick extends TDP_Part
     {
         TDP_DecisionSet decision_set = dec.belongs_to();
         if (!decision_set.partial_order_computed)
-            initialize_partial_order(decision_set);
+            decision_set.initialize_partial_order(this::initialize_partial_order);
         // Whenever we want to find the successor, first check if we have already computed it
         if (!dec.successors.isEmpty()) return dec.successors;
 
@@ -57,6 +57,9 @@ public class TDP_Recursive extends TDP_Anyk_Iterator
     private void initialize_pq(TDP_DecisionSet curr_decisionSet)
     {   
         TDP_Subtree_Solution cand;
+
+        // The optimal costs of the targets might not have been computed yet (demand-driven bottom-up)
+        curr_decisionSet.resolve_targets();
         List<TDP_Decision> edges = curr_decisionSet.list_of_decisions;
         // The PQ has to be initialized with each decision concatenated with
         // the best subtree solution that begins from its target
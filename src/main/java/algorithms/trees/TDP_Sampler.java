@@ -0,0 +1,398 @@
+package algorithms.trees;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.DoubleUnaryOperator;
+
+import entities.trees.TDP_Decision;
+import entities.trees.TDP_DecisionSet;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.TDP_Prefix_Solution;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_State_Node;
+import entities.trees.Tree_ThetaJoin_Query;
+import util.Gumbel_Keys;
+
+/**
+ * Random sampling of the DP solutions of a {@link entities.trees.TDP_Problem_Instance} object without enumerating them.
+ * <ul>
+ * <li>Uniform samples access a random index with {@link algorithms.trees.TDP_Direct_Access}.
+ * Without replacement, the indexes are drawn with Floyd's algorithm.</li>
+ * <li>Weighted samples are drawn with probability proportional to exp(-lambda * cost),
+ * where lambda > 0 favors the cheap solutions and lambda < 0 the expensive ones.
+ * The total weight of the solutions that continue with every decision is stored in its
+ * {@link entities.trees.TDP_DecisionSet}, thus a sample descends the graph choosing one decision per stage (independently for the branches of a node)
+ * with a binary search over the snapshot of the decisions taken by the direct access.
+ * Without replacement, every solution gets a random key as in the Efraimidis-Spirakis algorithm ({@link util.Gumbel_Keys})
+ * and the ones with the largest keys are returned. The keys are assigned top-down (one stage at a time) from the logarithms of the weights
+ * and a priority queue of prefixes expands only the ones that lead to the largest keys,
+ * thus a sample takes O(l d log(k l d)) time for fan-out d, even if the weights of the solutions differ by orders of magnitude.</li>
+ * <li>Samples with probability proportional to an arbitrary function of the cost are drawn by rejection:
+ * a uniform sample is accepted with probability f(cost) / f_max.</li>
+ * </ul>
+ * Every sample takes O(l log n) time for l stages.
+ * The bottom-up phase is not required.
+ * IMPORTANT: The counts and weights are not maintained under updates of the instance, so a new object must be created after them.
+ * @author Nikolaos Tziavelis
+*/
+public class TDP_Sampler extends TDP_Direct_Access
+{
+    private Random rand;
+    /**
+     * The lambda that the weights stored in the graph were computed for (null if none).
+    */
+    private Double weights_lambda = null;
+    /**
+     * The number of solutions with a non-zero weight (those whose weight underflows are never sampled with replacement).
+    */
+    private BigInteger positive_solutions;
+
+    /**
+     * The weight of the solutions that start from a node or continue with a decision set.
+    */
+    private static class Weight
+    {
+        /**
+         * The minimum lambda * cost of the solutions (the weights are scaled by exp(min_energy)).
+        */
+        double min_energy;
+        /**
+         * The sum of the scaled weights.
+        */
+        double mass;
+        BigInteger positive;
+
+        Weight(double min_energy, double mass, BigInteger positive)
+        {
+            this.min_energy = min_energy;
+            this.mass = mass;
+            this.positive = positive;
+        }
+    }
+
+    /**
+     * A prefix of solutions (with one decision for each stage before the next one)
+     * with the logarithm of the total weight of its extensions and the maximum of their keys.
+    */
+    private static class Keyed_Prefix implements Comparable<Keyed_Prefix>
+    {
+        TDP_Prefix_Solution prefix;
+        int next_stage;
+        double log_weight, key;
+
+        Keyed_Prefix(TDP_Prefix_Solution prefix, int next_stage, double log_weight, double key)
+        {
+            this.prefix = prefix;
+            this.next_stage = next_stage;
+            this.log_weight = log_weight;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(Keyed_Prefix other)
+        {
+            // The largest key first
+            return Double.compare(other.key, this.key);
+        }
+    }
+
+    /**
+     * @param inst The DP problem whose solutions are sampled.
+     * @param rand The source of randomness.
+     */
+    public TDP_Sampler(TDP_Problem_Instance inst, Random rand)
+    {
+        super(inst);
+        this.rand = rand;
+    }
+
+    /**
+     * @return TDP_Solution A solution drawn uniformly at random or null if there are no solutions.
+     */
+    public TDP_Solution sample()
+    {
+        if (total.signum() == 0) return null;
+        return get(random_below(total));
+    }
+
+    /**
+     * @param k The number of samples.
+     * @param with_replacement If false, the samples are different solutions (all of them if there are fewer than k).
+     * @return List<TDP_Solution> Solutions drawn uniformly at random.
+     */
+    public List<TDP_Solution> sample(int k, boolean with_replacement)
+    {
+        List<TDP_Solution> res = new ArrayList<TDP_Solution>();
+        if (total.signum() == 0) return res;
+        if (with_replacement)
+        {
+            for (int i = 0; i < k; i++) res.add(sample());
+            return res;
+        }
+        // Floyd's algorithm draws a uniform subset of k indexes
+        BigInteger size = total.min(BigInteger.valueOf(k));
+        Set<BigInteger> indexes = new HashSet<BigInteger>();
+        List<BigInteger> order = new ArrayList<BigInteger>();
+        for (BigInteger j = total.subtract(size); j.compareTo(total) < 0; j = j.add(BigInteger.ONE))
+        {
+            BigInteger t = random_below(j.add(BigInteger.ONE));
+            if (!indexes.add(t)) t = j;
+            indexes.add(t);
+            order.add(t);
+        }
+        Collections.shuffle(order, rand);
+        for (BigInteger i : order) res.add(get(i));
+        return res;
+    }
+
+    /**
+     * @param lambda The solutions are drawn with probability proportional to exp(-lambda * cost).
+     * @return TDP_Solution The sampled solution or null if there are no solutions.
+     */
+    public TDP_Solution sample_weighted(double lambda)
+    {
+        prepare_weights(lambda);
+        if (positive_solutions.signum() == 0) return null;
+        return sample_weighted();
+    }
+
+    /**
+     * @param lambda The solutions are drawn with probability proportional to exp(-lambda * cost).
+     * @param k The number of samples.
+     * @param with_replacement If false, the samples are different solutions (all of them if there are fewer than k)
+     *  in the order of their keys, i.e., drawn one after the other proportionally to the weights of the remaining solutions.
+     * @return List<TDP_Solution> The sampled solutions.
+     */
+    public List<TDP_Solution> sample_weighted(double lambda, int k, boolean with_replacement)
+    {
+        prepare_weights(lambda);
+        List<TDP_Solution> res = new ArrayList<TDP_Solution>();
+        if (positive_solutions.signum() == 0) return res;
+        if (with_replacement)
+        {
+            for (int i = 0; i < k; i++) res.add(sample_weighted());
+            return res;
+        }
+        PriorityQueue<Keyed_Prefix> pq = new PriorityQueue<Keyed_Prefix>();
+        double root_weight = instance.starting_node.decisions.get(0).log_total_weight;
+        pq.add(new Keyed_Prefix(null, 1, root_weight, Gumbel_Keys.sample(rand, root_weight)));
+        while (res.size() < k && !pq.isEmpty())
+        {
+            Keyed_Prefix top = pq.poll();
+            if (top.next_stage == instance.stages_no)
+            {
+                res.add(top.prefix);
+                continue;
+            }
+            // The keys of the extensions of the prefix (with a node of the next stage),
+            // conditioned on their maximum being the key of the prefix
+            TDP_DecisionSet decision_set = decision_set(top.prefix, top.next_stage);
+            double[] log_weights = new double[decision_set.log_weights.length];
+            double[] keys = new double[log_weights.length];
+            double max = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < log_weights.length; j++)
+            {
+                log_weights[j] = top.log_weight - decision_set.log_total_weight + decision_set.log_weights[j];
+                if (log_weights[j] == Double.NEGATIVE_INFINITY) continue;
+                keys[j] = Gumbel_Keys.sample(rand, log_weights[j]);
+                max = Math.max(max, keys[j]);
+            }
+            for (int j = 0; j < log_weights.length; j++)
+            {
+                if (log_weights[j] == Double.NEGATIVE_INFINITY) continue;
+                TDP_Decision decision = decision_set.weighted_decisions[j];
+                TDP_Prefix_Solution prefix = top.prefix == null ? new TDP_Prefix_Solution(decision) : new TDP_Prefix_Solution(top.prefix, decision);
+                pq.add(new Keyed_Prefix(prefix, top.next_stage + 1, log_weights[j], Gumbel_Keys.truncate(keys[j], max, top.key)));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param prefix The decisions of the stages before the next one (null if it is the first).
+     * @return TDP_DecisionSet The decisions of the next stage.
+     */
+    private TDP_DecisionSet decision_set(TDP_Prefix_Solution prefix, int next_stage)
+    {
+        if (next_stage == 1) return instance.starting_node.decisions.get(0);
+        int parent_stage = instance.get_parent_stage(next_stage);
+        // The prefix contains one decision per stage, so the parent is found by walking back
+        TDP_Prefix_Solution parent = prefix;
+        for (int s = next_stage - 1; s > parent_stage; s--) parent = parent.shorter_prefix;
+        return parent.latest_decision.target.decisions.get(instance.get_branch_index(next_stage));
+    }
+
+    /**
+     * Rejection sampling with uniform samples as proposals.
+     * @param f A non-negative function of the cost of a solution.
+     * @param f_max An upper bound of f over the solutions.
+     * @return TDP_Solution A solution drawn with probability proportional to f(cost) or null if there are no solutions.
+     */
+    public TDP_Solution sample_weighted(DoubleUnaryOperator f, double f_max)
+    {
+        if (total.signum() == 0) return null;
+        while (true)
+        {
+            TDP_Solution sol = sample();
+            if (rand.nextDouble() * f_max < f.applyAsDouble(sol.get_cost())) return sol;
+        }
+    }
+
+    /**
+     * @param f A non-negative function of the cost of a solution that is not zero for all of them.
+     * @param f_max An upper bound of f over the solutions.
+     * @param k The number of samples (with replacement).
+     * @return List<TDP_Solution> Solutions drawn with probability proportional to f(cost).
+     */
+    public List<TDP_Solution> sample_weighted(DoubleUnaryOperator f, double f_max, int k)
+    {
+        List<TDP_Solution> res = new ArrayList<TDP_Solution>();
+        if (total.signum() == 0) return res;
+        for (int i = 0; i < k; i++) res.add(sample_weighted(f, f_max));
+        return res;
+    }
+
+    /**
+     * Descends the stages in the same order as the prefix solutions of T-DP,
+     * choosing the decision of every branch with probability proportional to the weight of its solutions
+     * (the branches of a node are independent since its weight is the product of their weights).
+     */
+    private TDP_Solution sample_weighted()
+    {
+        List<TDP_State_Node> node_list = new ArrayList<TDP_State_Node>(instance.stages_no - 1);
+        TDP_Prefix_Solution solution = null;
+        // Recall that stage 0 contains the starting node which is not encoded in the solutions
+        for (int next_stage = 1; next_stage < instance.stages_no; next_stage++)
+        {
+            // The first stage is the only branch of the starting node
+            int parent_stage = next_stage == 1 ? 0 : instance.get_parent_stage(next_stage);
+            int branch_idx = next_stage == 1 ? 0 : instance.get_branch_index(next_stage);
+            TDP_State_Node parent_node = parent_stage == 0 ? instance.starting_node : node_list.get(parent_stage - 1);
+            TDP_DecisionSet decision_set = parent_node.decisions.get(branch_idx);
+            double[] prefix_weights = decision_set.prefix_weights;
+            double u = rand.nextDouble() * prefix_weights[prefix_weights.length - 1];
+            TDP_Decision decision = decision_set.weighted_decisions[find(prefix_weights, u)];
+            if (solution == null) solution = new TDP_Prefix_Solution(decision);
+            else solution = new TDP_Prefix_Solution(solution, decision);
+            node_list.add(decision.target);
+        }
+        return solution;
+    }
+
+    /**
+     * Computes the weights of the decisions for a lambda (unless they have already been computed for it).
+     */
+    private void prepare_weights(double lambda)
+    {
+        if (weights_lambda != null && weights_lambda == lambda) return;
+        Weight w = weigh(instance.starting_node, lambda, new HashMap<TDP_State_Node, Weight>(), new IdentityHashMap<TDP_DecisionSet, Weight>());
+        positive_solutions = w.positive;
+        weights_lambda = lambda;
+    }
+
+    /**
+     * Recursively computes the weight of the solutions starting from a node (the product of the weights of its branches)
+     * and stores the prefix sums of the weights of the decisions in the decision sets.
+     * To avoid underflows, the weights of every decision set are scaled by the weight of its heaviest solution.
+     * @param node_weights The weights of the nodes that have been computed.
+     * @param set_weights The weights of the decision sets that have been computed (they may be shared by nodes).
+     * @return Weight The weight of the solutions starting from the node.
+     */
+    private static Weight weigh(TDP_State_Node node, double lambda, Map<TDP_State_Node, Weight> node_weights, Map<TDP_DecisionSet, Weight> set_weights)
+    {
+        if (node.is_terminal()) return new Weight(0.0, 1.0, BigInteger.ONE);
+        Weight res = node_weights.get(node);
+        if (res != null) return res;
+        res = new Weight(0.0, 1.0, BigInteger.ONE);
+        for (TDP_DecisionSet decision_set : node.decisions)
+        {
+            Weight branch = set_weights.get(decision_set);
+            if (branch == null)
+            {
+                // The snapshot of the direct access (the any-k algorithms may reorder the list)
+                TDP_Decision[] snapshot = decision_set.counted_decisions;
+                Weight[] targets = new Weight[snapshot.length];
+                double[] energies = new double[snapshot.length];
+                double min_energy = Double.POSITIVE_INFINITY;
+                for (int j = 0; j < snapshot.length; j++)
+                {
+                    targets[j] = weigh(snapshot[j].target, lambda, node_weights, set_weights);
+                    energies[j] = lambda * snapshot[j].cost + targets[j].min_energy;
+                    if (targets[j].mass > 0) min_energy = Math.min(min_energy, energies[j]);
+                }
+                double[] prefix_weights = new double[snapshot.length + 1];
+                BigInteger positive = BigInteger.ZERO;
+                for (int j = 0; j < snapshot.length; j++)
+                {
+                    double weight = targets[j].mass > 0 ? Math.exp(min_energy - energies[j]) * targets[j].mass : 0.0;
+                    prefix_weights[j + 1] = prefix_weights[j] + weight;
+                    if (weight > 0) positive = positive.add(targets[j].positive);
+                }
+                decision_set.prefix_weights = prefix_weights;
+                decision_set.weighted_decisions = snapshot;
+                double[] log_weights = new double[snapshot.length];
+                for (int j = 0; j < snapshot.length; j++)
+                    log_weights[j] = targets[j].mass > 0 ? Math.log(targets[j].mass) - energies[j] : Double.NEGATIVE_INFINITY;
+                decision_set.log_weights = log_weights;
+                decision_set.log_total_weight = Math.log(prefix_weights[snapshot.length]) - min_energy;
+                branch = new Weight(min_energy, prefix_weights[snapshot.length], positive);
+                set_weights.put(decision_set, branch);
+            }
+            res.min_energy += branch.min_energy;
+            res.mass *= branch.mass;
+            res.positive = res.positive.multiply(branch.positive);
+        }
+        node_weights.put(node, res);
+        return res;
+    }
+
+    /**
+     * @return int The last j with prefix_weights[j] <= u (decisions with zero weight are skipped).
+     */
+    static int find(double[] prefix_weights, double u)
+    {
+        int low = 0, high = prefix_weights.length - 2;
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (prefix_weights[mid] <= u) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    /**
+     * @return BigInteger A number drawn uniformly from [0, bound).
+     */
+    private BigInteger random_below(BigInteger bound)
+    {
+        BigInteger r;
+        do
+        {
+            r = new BigInteger(bound.bitLength(), rand);
+        } while (r.compareTo(bound) >= 0);
+        return r;
+    }
+
+    public static void main(String args[])
+    {
+        // Run the example
+        Tree_ThetaJoin_Query example_query = new Tree_ThetaJoin_Query(1);
+        TDP_Thetajoin_Instance instance = new TDP_Thetajoin_Instance(example_query, null);
+        TDP_Sampler sampler = new TDP_Sampler(instance, new Random());
+        System.out.println("Uniform samples without replacement:");
+        for (TDP_Solution solution : sampler.sample(3, false)) System.out.println(solution);
+        System.out.println("Samples proportional to exp(-cost):");
+        for (TDP_Solution solution : sampler.sample_weighted(1.0, 3, true)) System.out.println(solution);
+    }
+}
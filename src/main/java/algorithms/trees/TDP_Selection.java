@@ -0,0 +1,388 @@
+package algorithms.trees;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import entities.trees.TDP_Decision;
+import entities.trees.TDP_DecisionSet;
+import entities.trees.TDP_Prefix_Solution;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_State_Node;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+/**
+ * Selection of the T-DP solutions of a {@link entities.trees.TDP_Problem_Instance} object by their rank in the order of their costs
+ * (e.g., the median, the 99th percentile or the k-th cheapest solution for a large k) without enumerating them.
+ * <br><br>
+ * The primitive {@link #count_below} counts the solutions whose cost is below a threshold
+ * by a depth-first search over the stages in the same order as the prefix solutions of T-DP.
+ * After a prefix, the remaining stages are the subtrees of the branches that have not been decided yet,
+ * so their minimum and maximum costs and their counts are the sums and the product of those stored in the
+ * {@link entities.trees.TDP_DecisionSet} objects of these branches.
+ * The search prunes the prefixes whose solutions are all above the threshold
+ * and counts at once those whose solutions are all below it.
+ * To find the decisions that are not pruned with binary search, the decisions of every set are sorted by the minimum cost of their solutions
+ * (in the snapshot of {@link algorithms.trees.TDP_Direct_Access}, which also changes its order, but not in the graph).
+ * Then, {@link #select} narrows a range of costs that contains the requested solution with the counts
+ * until it contains few solutions, which are collected and sorted.
+ * The range is split by interpolating linearly between the counts of its ends (as in the regula falsi)
+ * or in the middle when that does not halve it.
+ * Ties are broken arbitrarily.
+ * The bottom-up phase is not required.
+ * IMPORTANT: The counts and costs are not maintained under updates of the instance, so a new object must be created after them.
+ * @author Nikolaos Tziavelis
+*/
+public class TDP_Selection extends TDP_Direct_Access
+{
+    /**
+     * The range of costs is narrowed until it contains at most that many solutions.
+    */
+    private static final int collect_threshold = 256;
+    /**
+     * For every stage s, the stages t > s whose parent stage is before s,
+     * i.e., the branches other than s that are pending after the prefixes of the first s - 1 stages.
+    */
+    private int[][] pending;
+    private int[] parent_stages, branch_indexes;
+
+    public TDP_Selection(TDP_Problem_Instance inst)
+    {
+        super(inst);
+        bound(instance.starting_node, new HashMap<TDP_State_Node, double[]>(), new IdentityHashMap<TDP_DecisionSet, Boolean>());
+        int stages_no = instance.stages_no;
+        parent_stages = new int[stages_no];
+        branch_indexes = new int[stages_no];
+        // The first stage is the only branch of the starting node
+        for (int s = 2; s < stages_no; s++)
+        {
+            parent_stages[s] = instance.get_parent_stage(s);
+            branch_indexes[s] = instance.get_branch_index(s);
+        }
+        pending = new int[stages_no][];
+        for (int s = 1; s < stages_no; s++)
+        {
+            List<Integer> stages = new ArrayList<Integer>();
+            for (int t = s + 1; t < stages_no; t++)
+                if (parent_stages[t] < s) stages.add(t);
+            pending[s] = stages.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * @param threshold A cost.
+     * @return BigInteger The number of solutions with cost strictly less than the threshold.
+     */
+    public BigInteger count_below(double threshold)
+    {
+        return count(1, new TDP_State_Node[instance.stages_no], 0.0, threshold, false);
+    }
+
+    /**
+     * @param threshold A cost.
+     * @return BigInteger The number of solutions with cost less than or equal to the threshold.
+     */
+    public BigInteger count_at_most(double threshold)
+    {
+        return count(1, new TDP_State_Node[instance.stages_no], 0.0, threshold, true);
+    }
+
+    /**
+     * @param k The rank of a solution (starting from 0 for the cheapest one).
+     * @return TDP_Solution The solution with rank k in the order of the costs or null if k is out of range.
+     */
+    public TDP_Solution select(BigInteger k)
+    {
+        if (k.signum() < 0 || k.compareTo(total) >= 0) return null;
+        // All the solutions with rank in [below_low, below_high) have cost in [low, high)
+        TDP_DecisionSet first = instance.starting_node.decisions.get(0);
+        // (widened since the bounds are accumulated in a different order than the costs of the solutions)
+        double low = first.min_total_cost - slack(0.0, first.min_total_cost);
+        double high = first.max_total_cost + slack(0.0, first.max_total_cost);
+        BigInteger below_low = BigInteger.ZERO, below_high = total;
+        boolean interpolate = true;
+        while (true)
+        {
+            BigInteger in_range = below_high.subtract(below_low);
+            double mid = low + (high - low) / 2;
+            // If the range cannot be split, all its solutions have the same cost
+            boolean tied = mid <= low || mid >= high;
+            if (tied || in_range.compareTo(BigInteger.valueOf(collect_threshold)) <= 0)
+            {
+                int rank = k.subtract(below_low).intValue();
+                int limit = tied ? rank + 1 : below_high.subtract(below_low).intValue();
+                List<TDP_Solution> range = new ArrayList<TDP_Solution>();
+                collect(1, new TDP_State_Node[instance.stages_no], null, low, high, limit, range);
+                Collections.sort(range, (s1, s2) -> Double.compare(s1.get_cost(), s2.get_cost()));
+                return range.get(rank);
+            }
+            if (interpolate)
+            {
+                // Interpolate linearly between the counts of the ends of the range,
+                // aiming a little past k so that the end that is farther from it moves close to it
+                double from_low = k.subtract(below_low).doubleValue(), to_high = below_high.subtract(k).doubleValue();
+                double target = from_low > to_high ? from_low - collect_threshold / 4.0 : from_low + collect_threshold / 4.0;
+                double guess = low + (high - low) * (target / in_range.doubleValue());
+                if (guess > low && guess < high) mid = guess;
+            }
+            BigInteger below_mid = count_below(mid);
+            if (below_mid.compareTo(k) > 0)
+            {
+                high = mid;
+                below_high = below_mid;
+            }
+            else
+            {
+                low = mid;
+                below_low = below_mid;
+            }
+            // After a guess that did not halve the range (e.g., skewed costs), bisect once
+            interpolate = !interpolate || below_high.subtract(below_low).shiftLeft(1).compareTo(in_range) <= 0;
+        }
+    }
+
+    /**
+     * @param k The rank of a solution (starting from 0 for the cheapest one).
+     * @return TDP_Solution The solution with rank k in the order of the costs or null if k is out of range.
+     */
+    public TDP_Solution select(long k)
+    {
+        return select(BigInteger.valueOf(k));
+    }
+
+    /**
+     * @param q A number in [0, 1].
+     * @return TDP_Solution The q-quantile of the solutions by cost (with the nearest-rank method)
+     *  or null if there are no solutions.
+     */
+    public TDP_Solution quantile(double q)
+    {
+        if (q < 0 || q > 1)
+        {
+            System.err.println("Quantile " + q + " not in [0, 1]");
+            System.exit(1);
+        }
+        if (total.signum() == 0) return null;
+        BigInteger rank = new BigDecimal(total).multiply(BigDecimal.valueOf(q)).setScale(0, RoundingMode.CEILING).toBigInteger().subtract(BigInteger.ONE);
+        return select(rank.max(BigInteger.ZERO));
+    }
+
+    /**
+     * Counts the solutions that extend a prefix of the first stage - 1 stages and whose cost is below the threshold.
+     * The costs of the solutions are accumulated in the same order as in {@link entities.trees.TDP_Prefix_Solution},
+     * so the bounds of the decision sets (which are accumulated in a different order) are only trusted when they are not close to the threshold.
+     * @param nodes The nodes of the prefix by stage.
+     * @param prefix The cost of the prefix.
+     * @param inclusive Whether the solutions with cost equal to the threshold are counted.
+     */
+    private BigInteger count(int stage, TDP_State_Node[] nodes, double prefix, double threshold, boolean inclusive)
+    {
+        if (stage == instance.stages_no) return below(prefix, threshold, inclusive) ? BigInteger.ONE : BigInteger.ZERO;
+        TDP_DecisionSet decisions = decision_set(stage, nodes);
+        BigInteger[] prefix_counts = decisions.prefix_counts;
+        double[] others = other_bounds(stage, nodes);
+        double slack = slack(prefix, threshold);
+        if (!below(prefix + others[0] + decisions.min_total_cost - slack, threshold, inclusive)) return BigInteger.ZERO;
+        if (below(prefix + others[1] + decisions.max_total_cost + slack, threshold, inclusive))
+            return prefix_counts[prefix_counts.length - 1].multiply(other_count(stage, nodes));
+        // The decisions are sorted by the minimum cost of their solutions,
+        // thus those that have solutions below the threshold are the first ones
+        TDP_Decision[] sorted = decisions.counted_decisions;
+        int end = first_not_below(sorted, prefix + others[0] - slack, threshold, inclusive);
+        int start = 0;
+        BigInteger res = BigInteger.ZERO;
+        if (decisions.fixed_cost_targets && others[0] == others[1])
+        {
+            // Also those whose solutions are all below the threshold
+            start = first_not_below(sorted, prefix + others[1] + slack, threshold, inclusive);
+            res = prefix_counts[start].multiply(other_count(stage, nodes));
+        }
+        for (int j = start; j < end; j++)
+        {
+            nodes[stage] = sorted[j].target;
+            res = res.add(count(stage + 1, nodes, prefix + sorted[j].cost, threshold, inclusive));
+        }
+        return res;
+    }
+
+    /**
+     * @param sorted Decisions sorted by the minimum cost of their solutions.
+     * @param offset A cost added to the solutions.
+     * @return int The first decision whose minimum cost plus the offset is not below the threshold (binary search).
+     */
+    private static int first_not_below(TDP_Decision[] sorted, double offset, double threshold, boolean inclusive)
+    {
+        int low = 0, high = sorted.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (below(offset + min_cost(sorted[mid]), threshold, inclusive)) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @return double The minimum cost of the solutions of the subtree that continues with a decision.
+     */
+    private static double min_cost(TDP_Decision decision)
+    {
+        double res = decision.cost;
+        if (!decision.target.is_terminal())
+            for (TDP_DecisionSet decisions : decision.target.decisions) res += decisions.min_total_cost;
+        return res;
+    }
+
+    /**
+     * Collects the solutions that extend a prefix of the first stage - 1 stages and whose cost is in [low, high).
+     * @param nodes The nodes of the prefix by stage.
+     * @param solution The prefix solution (null for the empty prefix).
+     * @param limit The search stops when that many solutions have been collected.
+     */
+    private void collect(int stage, TDP_State_Node[] nodes, TDP_Prefix_Solution solution, double low, double high, int limit, List<TDP_Solution> res)
+    {
+        double prefix = solution == null ? 0.0 : solution.get_cost();
+        if (stage == instance.stages_no)
+        {
+            if (prefix >= low && prefix < high) res.add(solution);
+            return;
+        }
+        TDP_DecisionSet decisions = decision_set(stage, nodes);
+        double[] others = other_bounds(stage, nodes);
+        if (prefix + others[0] + decisions.min_total_cost - slack(prefix, high) >= high) return;
+        if (prefix + others[1] + decisions.max_total_cost + slack(prefix, low) < low) return;
+        for (TDP_Decision decision : decisions.counted_decisions)
+        {
+            if (res.size() >= limit || prefix + others[0] + min_cost(decision) - slack(prefix, high) >= high) return;
+            nodes[stage] = decision.target;
+            TDP_Prefix_Solution next = solution == null ? new TDP_Prefix_Solution(decision) : new TDP_Prefix_Solution(solution, decision);
+            collect(stage + 1, nodes, next, low, high, limit, res);
+        }
+    }
+
+    /**
+     * @param nodes The nodes of a prefix by stage (the starting node is not stored).
+     * @return TDP_DecisionSet The decisions of a stage after the prefix.
+     */
+    private TDP_DecisionSet decision_set(int stage, TDP_State_Node[] nodes)
+    {
+        int parent_stage = parent_stages[stage];
+        TDP_State_Node parent_node = parent_stage == 0 ? instance.starting_node : nodes[parent_stage];
+        return parent_node.decisions.get(branch_indexes[stage]);
+    }
+
+    /**
+     * @return double[] The minimum and the maximum cost of the pending branches other than the stage after a prefix of the first stage - 1 stages.
+     */
+    private double[] other_bounds(int stage, TDP_State_Node[] nodes)
+    {
+        double min = 0.0, max = 0.0;
+        for (int t : pending[stage])
+        {
+            TDP_DecisionSet decisions = decision_set(t, nodes);
+            min += decisions.min_total_cost;
+            max += decisions.max_total_cost;
+        }
+        return new double[]{ min, max };
+    }
+
+    /**
+     * @return BigInteger The number of solutions of the pending branches other than the stage after a prefix of the first stage - 1 stages.
+     */
+    private BigInteger other_count(int stage, TDP_State_Node[] nodes)
+    {
+        BigInteger res = BigInteger.ONE;
+        for (int t : pending[stage])
+        {
+            BigInteger[] prefix_counts = decision_set(t, nodes).prefix_counts;
+            res = res.multiply(prefix_counts[prefix_counts.length - 1]);
+        }
+        return res;
+    }
+
+    private static boolean below(double cost, double threshold, boolean inclusive)
+    {
+        return inclusive ? cost <= threshold : cost < threshold;
+    }
+
+    /**
+     * @return double A margin larger than the rounding errors of adding the costs in a different order.
+     */
+    private static double slack(double prefix, double threshold)
+    {
+        return 1e-9 * (1.0 + Math.abs(prefix) + Math.abs(threshold));
+    }
+
+    /**
+     * Recursively computes the minimum and maximum cost of the solutions starting from a node
+     * (the sums over its branches) and stores those of every branch in its decision set.
+     * Then, the decisions of every set are sorted by the minimum cost of their solutions.
+     * @param bounds The bounds of the nodes that have been computed.
+     * @param computed The decision sets whose bounds have been computed (they may be shared by nodes).
+     * @return double[] The minimum and the maximum cost.
+     */
+    private static double[] bound(TDP_State_Node node, Map<TDP_State_Node, double[]> bounds, Map<TDP_DecisionSet, Boolean> computed)
+    {
+        if (node.is_terminal()) return new double[]{ 0.0, 0.0 };
+        double[] res = bounds.get(node);
+        if (res != null) return res;
+        res = new double[]{ 0.0, 0.0 };
+        for (TDP_DecisionSet decisions : node.decisions)
+        {
+            if (!computed.containsKey(decisions))
+            {
+                TDP_Decision[] snapshot = decisions.counted_decisions;
+                Map<TDP_Decision, BigInteger> decision_counts = new IdentityHashMap<TDP_Decision, BigInteger>();
+                double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+                boolean fixed = true;
+                for (int j = 0; j < snapshot.length; j++)
+                {
+                    TDP_Decision decision = snapshot[j];
+                    double[] target_bounds = bound(decision.target, bounds, computed);
+                    min = Math.min(min, decision.cost + target_bounds[0]);
+                    max = Math.max(max, decision.cost + target_bounds[1]);
+                    fixed = fixed && target_bounds[0] == target_bounds[1];
+                    decision_counts.put(decision, decisions.prefix_counts[j + 1].subtract(decisions.prefix_counts[j]));
+                }
+                decisions.min_total_cost = min;
+                decisions.max_total_cost = max;
+                decisions.fixed_cost_targets = fixed;
+                // Sort the decisions by the minimum cost of their solutions and recompute the prefix sums of their counts
+                TDP_Decision[] sorted = snapshot.clone();
+                Arrays.sort(sorted, (d1, d2) -> Double.compare(min_cost(d1), min_cost(d2)));
+                BigInteger[] prefix_counts = new BigInteger[sorted.length + 1];
+                prefix_counts[0] = BigInteger.ZERO;
+                for (int j = 0; j < sorted.length; j++)
+                    prefix_counts[j + 1] = prefix_counts[j].add(decision_counts.get(sorted[j]));
+                decisions.counted_decisions = sorted;
+                decisions.prefix_counts = prefix_counts;
+                computed.put(decisions, true);
+            }
+            res[0] += decisions.min_total_cost;
+            res[1] += decisions.max_total_cost;
+        }
+        bounds.put(node, res);
+        return res;
+    }
+
+    public static void main(String args[])
+    {
+        // Run the example
+        Tree_ThetaJoin_Query example_query = new Tree_ThetaJoin_Query(1);
+        TDP_Thetajoin_Instance instance = new TDP_Thetajoin_Instance(example_query, null);
+        TDP_Selection selection = new TDP_Selection(instance);
+        System.out.println("No_of_solutions: " + selection.count());
+        TDP_Solution median = selection.quantile(0.5);
+        System.out.println("Median: " + median);
+        System.out.println("Solutions below the median: " + selection.count_below(median.get_cost()));
+    }
+}
@@ -91,7 +91,7 @@ public class TDP_Take2 extends TDP_Part
         TDP_DecisionSet decision_set = dec.belongs_to();
         if (!decision_set.partial_order_computed)
         {
-            initialize_partial_order(decision_set);
+            decision_set.initialize_partial_order(this::initialize_partial_order);
             decision_set.partial_order_computed = true;
         }
         // assert dec.successors.size() <= 2;
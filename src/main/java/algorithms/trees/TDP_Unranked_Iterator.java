@@ -174,7 +174,7 @@ public class TDP_Unranked_Iterator extends TDP_Iterator
         TDP_DecisionSet decision_set = dec.belongs_to();
         if (!decision_set.partial_order_computed)
         {
-            initialize_partial_order(decision_set);
+            decision_set.initialize_partial_order(this::initialize_partial_order);
             decision_set.partial_order_computed = true;
         }
         return dec.successors;
@@ -0,0 +1,108 @@
+package algorithms.trees;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import algorithms.Configuration;
+import entities.trees.TDP_Decision;
+import entities.trees.TDP_DecisionSet;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_State_Node;
+import entities.trees.Tree_Query_Solution;
+import util.External_Merge_Sort;
+
+/**
+ * A version of {@link algorithms.trees.Tree_BatchSorting} for result sizes that do not fit in memory.
+ * Every solution is identified by its position (id) in the order that a DFS visits the stages
+ * (see {@link algorithms.trees.Tree_Solution_Index}) and the (cost, id) pairs are sorted externally
+ * by {@link util.External_Merge_Sort}: they are collected into runs of a fixed size,
+ * every run is sorted and spilled to disk, and {@link #get_next} reads from a k-way merge
+ * of the memory-mapped runs and reconstructs the solution of each id.
+ * The class has been customized for join problems only since it produces
+ * {@link entities.trees.Tree_Query_Solution} as results.
+ * <br><br>
+ * IMPORTANT: Before using this class, the nodes and the edges of the T-DP state-space graph
+ * must have already been initialized either by {@link entities.trees.TDP_Problem_Instance#bottom_up}
+ * or some other method.
+ * @author Nikolaos Tziavelis
+*/
+public class Tree_External_BatchSorting extends TDP_Anyk_Iterator
+{
+    /**
+     * The number of solutions kept in memory before a run is spilled to disk (about 16 bytes each).
+    */
+    public static final int DEFAULT_RUN_SIZE = 1 << 22;
+
+    private Tree_Solution_Index index;
+    private External_Merge_Sort sorter;
+
+	public Tree_External_BatchSorting(TDP_Problem_Instance inst, Configuration conf)
+    {
+        this(inst, conf, Integer.MAX_VALUE, DEFAULT_RUN_SIZE);
+    }
+
+    /**
+     * @param max_k The number of solutions that will be requested at most (Integer.MAX_VALUE for all).
+     * @param run_size The number of solutions in every sorted run.
+    */
+	public Tree_External_BatchSorting(TDP_Problem_Instance inst, Configuration conf, int max_k, int run_size)
+    {
+        super(inst, conf);
+        if (inst.count_solutions().compareTo(BigInteger.valueOf(Long.MAX_VALUE)) >= 0)
+        {
+            System.err.println("Too many solutions to enumerate");
+            System.exit(1);
+        }
+        this.index = new Tree_Solution_Index(inst, stages_no);
+        this.sorter = new External_Merge_Sort(run_size, max_k);
+        if (stages_no > 1)
+        {
+            TDP_State_Node[] nodes = new TDP_State_Node[stages_no];
+            nodes[0] = inst.starting_node;
+            DFS(1, nodes, 0.0, 0);
+        }
+        sorter.finish();
+    }
+
+    /**
+     * Computes the next T-DP solution of {@link #instance} in ranked order.
+     * Ties are broken arbitrarily.
+     * @return Tree_Query_Solution The next best T-DP solution or null if there are no other solutions.
+     */
+    @Override
+    public Tree_Query_Solution get_next()
+    {
+        long id = sorter.next();
+        if (id < 0) return null;
+        return index.decode(id);
+    }
+
+    /**
+     * @return int The number of sorted runs that were written to disk.
+     */
+    public int get_runs_no()
+    {
+        return sorter.get_runs_no();
+    }
+
+    private void DFS(int s, TDP_State_Node[] nodes, double cost, long id)
+    {
+        if (s == stages_no)
+        {
+            sorter.add(cost, id);
+            return;
+        }
+        long block = index.pending_count(s, nodes);
+        if (block == 0) return;
+        TDP_DecisionSet decision_set = index.decision_set(s, nodes);
+        long[] prefix = index.prefix(decision_set);
+        List<TDP_Decision> decisions = decision_set.list_of_decisions;
+        for (int j = 0; j < decisions.size(); j++)
+        {
+            // Skip the decisions that do not lead to any solution
+            if (prefix[j + 1] == prefix[j]) continue;
+            nodes[s] = decisions.get(j).target;
+            DFS(s + 1, nodes, cost + Tree_Solution_Index.tuple_cost(nodes[s]), id + block * prefix[j]);
+        }
+    }
+}
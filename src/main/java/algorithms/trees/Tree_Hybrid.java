@@ -0,0 +1,355 @@
+package algorithms.trees;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import algorithms.Algorithm_Selector;
+import algorithms.Configuration;
+import entities.Tuple;
+import entities.trees.TDP_Decision;
+import entities.trees.TDP_DecisionSet;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_State_Node;
+import util.Answer_Identity;
+import util.Parallel_Merge_Sort;
+
+/**
+ * A ranked enumeration algorithm for T-DP that starts as {@link algorithms.trees.TDP_Quick}
+ * and switches to batch enumeration once a number of answers has been returned.
+ * After the switch, only the answers that have not been returned yet
+ * (cost not smaller than the last returned one, excluding the ones already returned with the same cost)
+ * are enumerated: as in {@link algorithms.trees.Tree_Parallel_BatchSorting}, a DFS over the stages is split across the common fork-join pool
+ * and identifies every answer by its id, but it prunes the partial answers whose most expensive completion is cheaper than the last returned answer.
+ * The (cost, id) pairs of the remaining answers are sorted with {@link util.Parallel_Merge_Sort}
+ * and the iterator continues from them in ranked order.
+ * Any-k is faster when few answers are requested, while sorting is faster when most of them are.
+ * Since the number of requested answers is usually not known in advance,
+ * the switch point is derived from the total number of answers by {@link algorithms.Algorithm_Selector#switch_point},
+ * so that the total time stays close to the better of the two strategies.
+ * The class has been customized for join problems only since it produces
+ * {@link entities.trees.Tree_Query_Solution} after the switch.
+ * <br><br>
+ * IMPORTANT: Before using this class, {@link entities.trees.TDP_Problem_Instance#bottom_up}
+ * must have already been run on the T-DP instance.
+ * @author Nikolaos Tziavelis
+*/
+public class Tree_Hybrid extends TDP_Anyk_Iterator
+{
+    /**
+     * Relative tolerance for comparing the costs of answers that were computed by different algorithms.
+    */
+    static final double COST_TOLERANCE = 1e-9;
+
+    private TDP_Anyk_Iterator anyk;
+    /**
+     * The number of answers returned by any-k before the switch.
+    */
+    private long switch_after;
+    private long returned;
+    /**
+     * The last returned answers whose cost is within the tolerance of the last cost.
+     * They are the only ones that might be produced again by the batch algorithm.
+    */
+    private ArrayDeque<Answer_Identity> recent_answers;
+    private ArrayDeque<Double> recent_costs;
+    private double last_cost;
+    /**
+     * Tasks with fewer answers than this are not split further.
+    */
+    static final long TASK_THRESHOLD = 1 << 14;
+
+    /**
+     * After the switch: the ids of the answers that have not been returned yet
+     * and their positions in ranked order (null before the switch).
+    */
+    private Tree_Solution_Index index;
+    private long[] remaining_ids;
+    private int[] remaining_order;
+    private int remaining_idx;
+    /**
+     * After the switch: the cost of the most expensive answer of the subtree below each decision set.
+    */
+    private IdentityHashMap<TDP_DecisionSet, Double> max_costs;
+
+	public Tree_Hybrid(TDP_Problem_Instance inst, Configuration conf)
+    {
+        this(inst, conf, default_switch_point(inst));
+    }
+
+    /**
+     * @param switch_after The number of answers to return with any-k before switching (Long.MAX_VALUE for never).
+    */
+	public Tree_Hybrid(TDP_Problem_Instance inst, Configuration conf, long switch_after)
+    {
+        super(inst, conf);
+        this.anyk = new TDP_Quick(inst, conf);
+        this.switch_after = switch_after;
+        this.returned = 0;
+        this.recent_answers = new ArrayDeque<Answer_Identity>();
+        this.recent_costs = new ArrayDeque<Double>();
+        this.last_cost = Double.NEGATIVE_INFINITY;
+        this.remaining_ids = null;
+        this.remaining_idx = 0;
+    }
+
+    /**
+     * Computes the next T-DP solution of {@link #instance} in ranked order (ascending cost).
+     * Ties are broken arbitrarily.
+     * @return TDP_Solution The next best T-DP solution or null if there are no other solutions.
+     */
+    @Override
+    public TDP_Solution get_next()
+    {
+        if (remaining_ids == null)
+        {
+            if (returned < switch_after)
+            {
+                TDP_Solution sol = anyk.get_next();
+                if (sol == null) return null;
+                returned++;
+                if (switch_after != Long.MAX_VALUE) remember(sol);
+                return sol;
+            }
+            switch_to_batch();
+        }
+        if (remaining_idx == remaining_order.length) return null;
+        return index.decode(remaining_ids[remaining_order[remaining_idx++]]);
+    }
+
+    /**
+     * @return boolean True if the iterator has switched to batch enumeration.
+     */
+    public boolean has_switched()
+    {
+        return remaining_ids != null;
+    }
+
+    private void remember(TDP_Solution sol)
+    {
+        List<Tuple> tuples = sol.solutionToTuples_strict_order();
+        double cost = answer_cost(tuples);
+        last_cost = Math.max(last_cost, cost);
+        double lower = last_cost - tolerance(last_cost);
+        while (!recent_costs.isEmpty() && recent_costs.peekFirst() < lower)
+        {
+            recent_costs.pollFirst();
+            recent_answers.pollFirst();
+        }
+        recent_costs.addLast(cost);
+        recent_answers.addLast(new Answer_Identity(tuples));
+    }
+
+    private void switch_to_batch()
+    {
+        this.index = new Tree_Solution_Index(instance, stages_no);
+        this.max_costs = new IdentityHashMap<TDP_DecisionSet, Double>();
+        List<Answer_Buffer> buffers = new ArrayList<Answer_Buffer>();
+        if (stages_no > 1)
+        {
+            // Computed before the tasks start, so that they only read the map
+            max_cost(instance.starting_node.decisions.get(0));
+            Enumeration_Task task = new Enumeration_Task(0, instance.starting_node.get_decisions(0).size(),
+                last_cost - tolerance(last_cost), last_cost + tolerance(last_cost), new HashSet<Answer_Identity>(recent_answers));
+            buffers = ForkJoinPool.commonPool().invoke(task);
+        }
+        long total = 0;
+        for (Answer_Buffer buffer : buffers) total += buffer.size;
+        if (total > Integer.MAX_VALUE - 8)
+        {
+            System.err.println("Too many remaining answers to sort in memory");
+            System.exit(1);
+        }
+        double[] costs = new double[(int) total];
+        this.remaining_ids = new long[costs.length];
+        int pos = 0;
+        for (Answer_Buffer buffer : buffers)
+        {
+            System.arraycopy(buffer.costs, 0, costs, pos, buffer.size);
+            System.arraycopy(buffer.ids, 0, remaining_ids, pos, buffer.size);
+            pos += buffer.size;
+        }
+        this.remaining_order = new int[costs.length];
+        for (int i = 0; i < remaining_order.length; i++) remaining_order[i] = i;
+        Parallel_Merge_Sort.sort(costs, remaining_order, Integer.MAX_VALUE);
+        this.anyk = null;
+        this.recent_answers = null;
+        this.recent_costs = null;
+        this.max_costs = null;
+    }
+
+    /**
+     * @return double The cost of the most expensive subtree that starts with a decision of the set
+     *  (negative infinity if there is none).
+     */
+    private double max_cost(TDP_DecisionSet decision_set)
+    {
+        Double res = max_costs.get(decision_set);
+        if (res != null) return res;
+        long[] prefix = index.prefix(decision_set);
+        List<TDP_Decision> decisions = decision_set.list_of_decisions;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < decisions.size(); j++)
+        {
+            double cost = max_cost(decisions.get(j).target);
+            // The decisions that do not lead to any answer are ignored
+            if (prefix[j + 1] > prefix[j]) max = Math.max(max, cost);
+        }
+        max_costs.put(decision_set, max);
+        return max;
+    }
+
+    /**
+     * @return double The cost of the most expensive subtree that starts from a node (including the node).
+     */
+    private double max_cost(TDP_State_Node node)
+    {
+        double res = Tree_Solution_Index.tuple_cost(node);
+        for (TDP_DecisionSet decision_set : node.decisions) res += max_cost(decision_set);
+        return res;
+    }
+
+    /**
+     * The cost of an answer computed in the same way as {@link entities.trees.Tree_Query_Solution}.
+     */
+    private static double answer_cost(List<Tuple> tuples)
+    {
+        double cost = 0;
+        for (Tuple t : tuples) cost += t.cost;
+        return cost;
+    }
+
+    private static double tolerance(double cost)
+    {
+        if (cost == Double.NEGATIVE_INFINITY) return 0.0;
+        return COST_TOLERANCE * Math.max(1.0, Math.abs(cost));
+    }
+
+    private static long default_switch_point(TDP_Problem_Instance inst)
+    {
+        BigInteger answers = inst.count_solutions();
+        // All the answers have to fit in an array after the switch
+        if (answers.compareTo(BigInteger.valueOf(Integer.MAX_VALUE - 8)) > 0) return Long.MAX_VALUE;
+        // Every answer goes through one node per stage (except for the starting one)
+        int depth = inst.stages_no - 1;
+        long point = Algorithm_Selector.switch_point(answers.doubleValue(), depth);
+        return point >= answers.longValue() ? Long.MAX_VALUE : point;
+    }
+
+    /**
+     * The (cost, id) pairs of the answers found by a task, in primitive arrays that grow as needed.
+    */
+    private static class Answer_Buffer
+    {
+        double[] costs = new double[16];
+        long[] ids = new long[16];
+        int size = 0;
+
+        void add(double cost, long id)
+        {
+            if (size == costs.length)
+            {
+                costs = Arrays.copyOf(costs, 2 * size);
+                ids = Arrays.copyOf(ids, 2 * size);
+            }
+            costs[size] = cost;
+            ids[size] = id;
+            size++;
+        }
+    }
+
+    /**
+     * Enumerates the remaining answers that start with a range of decisions of the first stage.
+    */
+    private class Enumeration_Task extends RecursiveTask<List<Answer_Buffer>>
+    {
+        private static final long serialVersionUID = 1L;
+        final int from, to;
+        /**
+         * The answers cheaper than lower have been returned, and so have the ones in returned_ties
+         * (those are the only returned ones that may cost up to upper).
+        */
+        final double lower, upper;
+        final HashSet<Answer_Identity> returned_ties;
+        Answer_Buffer buffer;
+
+        Enumeration_Task(int from, int to, double lower, double upper, HashSet<Answer_Identity> returned_ties)
+        {
+            this.from = from;
+            this.to = to;
+            this.lower = lower;
+            this.upper = upper;
+            this.returned_ties = returned_ties;
+        }
+
+        @Override
+        protected List<Answer_Buffer> compute()
+        {
+            // Stage 1 is the only child of the starting node, so no branches are pending
+            TDP_DecisionSet first = instance.starting_node.decisions.get(0);
+            long[] prefix = index.prefix(first);
+            if (to - from > 1 && prefix[to] - prefix[from] > TASK_THRESHOLD)
+            {
+                // Split so that the two halves have roughly the same number of answers
+                int mid = Tree_Solution_Index.find(prefix, (prefix[from] + prefix[to]) / 2);
+                mid = Math.max(from + 1, Math.min(to - 1, mid));
+                Enumeration_Task left = new Enumeration_Task(from, mid, lower, upper, returned_ties);
+                Enumeration_Task right = new Enumeration_Task(mid, to, lower, upper, returned_ties);
+                invokeAll(left, right);
+                List<Answer_Buffer> res = left.join();
+                res.addAll(right.join());
+                return res;
+            }
+            this.buffer = new Answer_Buffer();
+            TDP_State_Node[] nodes = new TDP_State_Node[stages_no];
+            nodes[0] = instance.starting_node;
+            List<TDP_Decision> decisions = first.list_of_decisions;
+            for (int j = from; j < to; j++)
+            {
+                if (prefix[j + 1] == prefix[j]) continue;
+                nodes[1] = decisions.get(j).target;
+                DFS(2, nodes, Tree_Solution_Index.tuple_cost(nodes[1]), max_cost(nodes[1]), prefix[j]);
+            }
+            List<Answer_Buffer> res = new ArrayList<Answer_Buffer>();
+            res.add(buffer);
+            return res;
+        }
+
+        /**
+         * @param cost The cost of the nodes of the stages before s.
+         * @param max_total The cost of the most expensive answer that completes them.
+         */
+        private void DFS(int s, TDP_State_Node[] nodes, double cost, double max_total, long id)
+        {
+            // Every answer that completes the nodes has already been returned
+            if (max_total < lower) return;
+            if (s == stages_no)
+            {
+                if (cost <= upper && !returned_ties.isEmpty() && returned_ties.contains(new Answer_Identity(index.decode(id).tuple_list))) return;
+                buffer.add(cost, id);
+                return;
+            }
+            long block = index.pending_count(s, nodes);
+            if (block == 0) return;
+            TDP_DecisionSet decision_set = index.decision_set(s, nodes);
+            long[] prefix = index.prefix(decision_set);
+            List<TDP_Decision> decisions = decision_set.list_of_decisions;
+            // The most expensive completion of the other stages
+            double max_rest = max_total - max_cost(decision_set);
+            for (int j = 0; j < decisions.size(); j++)
+            {
+                // Skip the decisions that do not lead to any answer
+                if (prefix[j + 1] == prefix[j]) continue;
+                nodes[s] = decisions.get(j).target;
+                DFS(s + 1, nodes, cost + Tree_Solution_Index.tuple_cost(nodes[s]), max_rest + max_cost(nodes[s]), id + block * prefix[j]);
+            }
+        }
+    }
+}
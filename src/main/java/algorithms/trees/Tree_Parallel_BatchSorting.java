@@ -0,0 +1,145 @@
+package algorithms.trees;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import algorithms.Configuration;
+import entities.trees.TDP_Decision;
+import entities.trees.TDP_DecisionSet;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_State_Node;
+import entities.trees.Tree_Query_Solution;
+import util.Parallel_Merge_Sort;
+
+/**
+ * A parallel version of {@link algorithms.trees.Tree_BatchSorting}.
+ * Instead of materializing every solution as an object, each one is identified by its position (id)
+ * in the order that a DFS visits the stages (see {@link algorithms.trees.Tree_Solution_Index}).
+ * The enumeration is split by the decision of the first stage across the common fork-join pool,
+ * and every task writes the costs of its solutions directly at their ids in a primitive array.
+ * The (cost, id) pairs are then sorted with {@link util.Parallel_Merge_Sort}
+ * (only the best max_k of them if a limit is given).
+ * The class has been customized for join problems only since it produces
+ * {@link entities.trees.Tree_Query_Solution} as results.
+ * <br><br>
+ * IMPORTANT: Before using this class, the nodes and the edges of the T-DP state-space graph
+ * must have already been initialized either by {@link entities.trees.TDP_Problem_Instance#bottom_up}
+ * or some other method.
+ * @author Nikolaos Tziavelis
+*/
+public class Tree_Parallel_BatchSorting extends TDP_Anyk_Iterator
+{
+    /**
+     * Tasks with fewer solutions than this are not split further.
+    */
+    static final long TASK_THRESHOLD = 1 << 14;
+
+    private Tree_Solution_Index index;
+    private double[] costs;
+    private int[] ids;
+    private int sorted_no;
+    private int current_index;
+
+	public Tree_Parallel_BatchSorting(TDP_Problem_Instance inst, Configuration conf)
+    {
+        this(inst, conf, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param max_k The number of solutions that will be requested at most (Integer.MAX_VALUE for all).
+    */
+	public Tree_Parallel_BatchSorting(TDP_Problem_Instance inst, Configuration conf, int max_k)
+    {
+        super(inst, conf);
+        BigInteger total = inst.count_solutions();
+        if (total.compareTo(BigInteger.valueOf(Integer.MAX_VALUE - 8)) > 0)
+        {
+            System.err.println("Too many solutions to sort in memory");
+            System.exit(1);
+        }
+        this.index = new Tree_Solution_Index(inst, stages_no);
+
+        this.costs = new double[total.intValue()];
+        if (costs.length > 0)
+            ForkJoinPool.commonPool().invoke(new Enumeration_Task(0, inst.starting_node.get_decisions(0).size()));
+        this.ids = new int[costs.length];
+        for (int i = 0; i < ids.length; i++) ids[i] = i;
+        this.sorted_no = Parallel_Merge_Sort.sort(costs, ids, max_k);
+        this.current_index = -1;
+    }
+
+    /**
+     * Computes the next T-DP solution of {@link #instance} in ranked order.
+     * Ties are broken arbitrarily.
+     * @return Tree_Query_Solution The next best T-DP solution or null if there are no other solutions.
+     */
+    @Override
+    public Tree_Query_Solution get_next()
+    {
+        this.current_index++;
+        if (current_index >= sorted_no) return null;
+        return index.decode(ids[current_index]);
+    }
+
+    /**
+     * Enumerates the solutions that start with a range of decisions of the first stage.
+    */
+    private class Enumeration_Task extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        final int from, to;
+
+        Enumeration_Task(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            // Stage 1 is the only child of the starting node, so no branches are pending
+            long[] prefix = index.prefix(instance.starting_node.decisions.get(0));
+            if (to - from > 1 && prefix[to] - prefix[from] > TASK_THRESHOLD)
+            {
+                // Split so that the two halves have roughly the same number of solutions
+                int mid = Tree_Solution_Index.find(prefix, (prefix[from] + prefix[to]) / 2);
+                mid = Math.max(from + 1, Math.min(to - 1, mid));
+                invokeAll(new Enumeration_Task(from, mid), new Enumeration_Task(mid, to));
+                return;
+            }
+            TDP_State_Node[] nodes = new TDP_State_Node[stages_no];
+            nodes[0] = instance.starting_node;
+            List<TDP_Decision> decisions = instance.starting_node.get_decisions(0);
+            for (int j = from; j < to; j++)
+            {
+                if (prefix[j + 1] == prefix[j]) continue;
+                nodes[1] = decisions.get(j).target;
+                DFS(2, nodes, Tree_Solution_Index.tuple_cost(nodes[1]), prefix[j]);
+            }
+        }
+
+        private void DFS(int s, TDP_State_Node[] nodes, double cost, long id)
+        {
+            if (s == stages_no)
+            {
+                costs[(int) id] = cost;
+                return;
+            }
+            long block = index.pending_count(s, nodes);
+            if (block == 0) return;
+            TDP_DecisionSet decision_set = index.decision_set(s, nodes);
+            long[] prefix = index.prefix(decision_set);
+            List<TDP_Decision> decisions = decision_set.list_of_decisions;
+            for (int j = 0; j < decisions.size(); j++)
+            {
+                // Skip the decisions that do not lead to any solution
+                if (prefix[j + 1] == prefix[j]) continue;
+                nodes[s] = decisions.get(j).target;
+                DFS(s + 1, nodes, cost + Tree_Solution_Index.tuple_cost(nodes[s]), id + block * prefix[j]);
+            }
+        }
+    }
+}
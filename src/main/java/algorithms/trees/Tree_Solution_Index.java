@@ -0,0 +1,179 @@
+package algorithms.trees;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import entities.Tuple;
+import entities.trees.TDP_Decision;
+import entities.trees.TDP_DecisionSet;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_State_Node;
+import entities.trees.Tree_Query_Solution;
+
+/**
+ * Identifies every solution of a T-DP graph by its position (id) in the order that a DFS visits the stages
+ * (as {@link algorithms.trees.Tree_Batch} does).
+ * When the nodes of stages 1..s-1 have been fixed, the solutions that follow decision j of stage s
+ * form a contiguous block whose offset is (the number of solutions below the decisions before j)
+ * times (the number of ways to complete the pending branches of the fixed nodes),
+ * thus an id can be computed during the DFS and decoded back into a solution.
+ * Used by the batch algorithms that sort compact (cost, id) pairs instead of solution objects.
+ * @author Nikolaos Tziavelis
+*/
+class Tree_Solution_Index
+{
+    private TDP_Problem_Instance instance;
+    private int stages_no;
+    /**
+     * For every decision set, the number of solutions (of the subtree) below the targets of the decisions before each position.
+    */
+    private IdentityHashMap<TDP_DecisionSet, long[]> prefix_counts;
+    private IdentityHashMap<TDP_State_Node, Long> counts;
+    /**
+     * The parent stage and the branch index of every stage.
+    */
+    private int[] parent_stage, branch;
+    /**
+     * For every stage s, the stages after s whose parent stage is before s.
+     * Their branches are the ones that are still pending after the node of stage s has been fixed.
+    */
+    private int[][] pending;
+
+    Tree_Solution_Index(TDP_Problem_Instance inst, int stages_no)
+    {
+        this.instance = inst;
+        this.stages_no = stages_no;
+        this.prefix_counts = new IdentityHashMap<TDP_DecisionSet, long[]>();
+        this.counts = new IdentityHashMap<TDP_State_Node, Long>();
+        count(inst.starting_node);
+
+        this.parent_stage = new int[stages_no];
+        this.branch = new int[stages_no];
+        for (int s = 1; s < stages_no; s++)
+        {
+            parent_stage[s] = inst.get_parent_stage(s);
+            branch[s] = inst.get_branch_index(s);
+        }
+        this.pending = new int[stages_no][];
+        for (int s = 1; s < stages_no; s++)
+        {
+            List<Integer> stages = new ArrayList<Integer>();
+            for (int t = s + 1; t < stages_no; t++)
+                if (parent_stage[t] < s) stages.add(t);
+            pending[s] = stages.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * @return TDP_DecisionSet The decisions of stage s, given the nodes of the previous stages.
+     */
+    TDP_DecisionSet decision_set(int s, TDP_State_Node[] nodes)
+    {
+        return nodes[parent_stage[s]].decisions.get(branch[s]);
+    }
+
+    /**
+     * @return long[] The prefix sums of the solution counts of a decision set
+     *  (one more than the number of decisions).
+     */
+    long[] prefix(TDP_DecisionSet decisions)
+    {
+        return prefix_counts.get(decisions);
+    }
+
+    /**
+     * @return long The number of ways to complete the pending branches after stage s.
+     */
+    long pending_count(int s, TDP_State_Node[] nodes)
+    {
+        long res = 1;
+        for (int t : pending[s])
+        {
+            long[] prefix = prefix_counts.get(decision_set(t, nodes));
+            res *= prefix[prefix.length - 1];
+            if (res == 0) return 0;
+        }
+        return res;
+    }
+
+    /**
+     * Reconstructs a solution from its id.
+     */
+    Tree_Query_Solution decode(long id)
+    {
+        TDP_State_Node[] nodes = new TDP_State_Node[stages_no];
+        nodes[0] = instance.starting_node;
+        List<TDP_State_Node> tuple_nodes = new ArrayList<TDP_State_Node>();
+        for (int s = 1; s < stages_no; s++)
+        {
+            TDP_DecisionSet decisions = decision_set(s, nodes);
+            long[] prefix = prefix_counts.get(decisions);
+            long block = pending_count(s, nodes);
+            int j = find(prefix, id / block);
+            id -= block * prefix[j];
+            nodes[s] = decisions.list_of_decisions.get(j).target;
+            // Intermediate nodes are not part of the solution
+            if (nodes[s].state_info instanceof Tuple) tuple_nodes.add(nodes[s]);
+        }
+        return new Tree_Query_Solution(tuple_nodes);
+    }
+
+    /**
+     * @return int The largest position j such that prefix[j] <= id (and prefix[j + 1] > id).
+     */
+    static int find(long[] prefix, long id)
+    {
+        int low = 0, high = prefix.length - 2;
+        while (low < high)
+        {
+            int mid = (low + high + 1) >>> 1;
+            if (prefix[mid] <= id) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    static double tuple_cost(TDP_State_Node node)
+    {
+        return (node.state_info instanceof Tuple) ? ((Tuple) node.state_info).cost : 0.0;
+    }
+
+    private long count(TDP_State_Node node)
+    {
+        Long res = counts.get(node);
+        if (res != null) return res;
+        long cnt = 1;
+        if (!node.is_terminal())
+        {
+            for (TDP_DecisionSet decisions : node.decisions)
+            {
+                long[] prefix = prefix_counts.get(decisions);
+                if (prefix == null)
+                {
+                    List<TDP_Decision> list = decisions.list_of_decisions;
+                    prefix = new long[list.size() + 1];
+                    for (int j = 0; j < list.size(); j++) prefix[j + 1] = saturated_add(prefix[j], count(list.get(j).target));
+                    prefix_counts.put(decisions, prefix);
+                }
+                cnt = saturated_multiply(cnt, prefix[prefix.length - 1]);
+            }
+        }
+        counts.put(node, cnt);
+        return cnt;
+    }
+
+    // A node whose sibling branches have no solutions may have a count that does not fit in a long
+    private static long saturated_add(long a, long b)
+    {
+        long res = a + b;
+        return res < 0 ? Long.MAX_VALUE : res;
+    }
+
+    private static long saturated_multiply(long a, long b)
+    {
+        if (a == 0 || b == 0) return 0;
+        if (a > Long.MAX_VALUE / b) return Long.MAX_VALUE;
+        return a * b;
+    }
+}
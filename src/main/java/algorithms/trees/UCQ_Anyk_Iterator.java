@@ -0,0 +1,427 @@
+package algorithms.trees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import algorithms.Configuration;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.trees.TDP_Join_Cache;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+import util.Loser_Tree;
+
+/**
+ * A ranked enumeration algorithm for a union of theta-join tree queries (the branches),
+ * each one specified by a {@link entities.trees.Tree_ThetaJoin_Query} object.
+ * It is implemented as an iterator that is first initialized and then the method {@link #get_next}
+ * returns the next best answer of the union in ranked order.
+ * <br><br>
+ * The branches must be union-compatible: they have the same number of relations
+ * and the relations at the same position have the same arity.
+ * An answer is the list of its tuples ordered by the position of their relations,
+ * and two answers are the same if their tuples agree on the values.
+ * Every branch is solved by a T-DP any-k algorithm and a {@link util.Loser_Tree} merges their ranked outputs.
+ * Answers produced by more than one branch are eliminated without storing the answers returned so far:
+ * the branches are prioritized by their order in the union and an answer of a branch is dropped
+ * if it is also an answer of a branch with higher priority.
+ * That test is evaluated on the tuples of the answer, by looking them up in the relations of the other branch
+ * and checking its join conditions.
+ * The T-DP graphs of the branches share the joins that are the same (see {@link entities.trees.TDP_Join_Cache}):
+ * if two branches join the same parent relation with the same child subtree under the same condition,
+ * the join is factorized once, its nodes and decisions are part of both graphs
+ * and the bottom-up phase and the any-k algorithm order its decisions once.
+ * (That is not done for {@link algorithms.trees.TDP_QuickPlus}, which keeps the suffixes
+ * of its own solutions in the decision sets.)
+ * Branches that are identical (the same relations with the same tree structure and join conditions)
+ * share one T-DP graph, which is enumerated only once.
+ * Each branch is expected not to produce duplicates itself (e.g., its disjunctions are disjoint).
+ * @author Nikolaos Tziavelis
+*/
+public class UCQ_Anyk_Iterator
+{
+    /**
+     * The algorithm to be used for any-k enumeration on the branches.
+    */
+    public String anyk_alg;
+    /**
+     * The branches of the union in decreasing priority.
+    */
+    private List<Tree_ThetaJoin_Query> branches;
+    /**
+     * For each branch, the index of the first branch that is identical to it (itself if there is none).
+    */
+    private int[] shared_with;
+    /**
+     * The distinct branches that are enumerated (one per group of identical branches).
+    */
+    private List<Integer> enumerated_branches;
+    /**
+     * A top-level tournament tree that compares the answers between the enumerated branches.
+    */
+    private Loser_Tree<Answer> merger;
+    /**
+     * The values of the tuples of the relations of the branches, used to test if a tuple of another relation belongs to them.
+     * Created on demand since relations that appear at the same position in all the branches are never looked up.
+     * The tuples themselves are not hashed because they are ordered by cost, which is inconsistent with their equality
+     * (a HashSet orders the tuples of a bucket with many collisions).
+    */
+    private Map<Relation, HashSet<List<Double>>> relation_contents;
+    /**
+     * The relation that output tuples use as a reference.
+     * @see entities.Relation
+    */
+    private Relation output;
+    private int last_branch = -1;
+    private long duplicates_eliminated = 0;
+    private int shared_joins = 0;
+
+    /**
+     * An answer of a branch with its tuples in the order of the relations.
+    */
+    private static class Answer
+    {
+        List<Tuple> tuples;
+        double cost;
+
+        Answer(List<Tuple> tuples, double cost)
+        {
+            this.tuples = tuples;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * @param branches The tree queries of the union in decreasing priority.
+     * @param algorithm An any-k algorithm for the branches.
+     * @param heap_type A string that specifies the type of heap used by the Any-k Part variants.
+     */
+    public UCQ_Anyk_Iterator(List<Tree_ThetaJoin_Query> branches, String algorithm, String heap_type)
+    {
+        this.anyk_alg = algorithm;
+        this.branches = branches;
+        this.relation_contents = new IdentityHashMap<Relation, HashSet<List<Double>>>();
+        check_union_compatible(branches);
+        Configuration conf = new Configuration();
+        conf.set_heap_type(heap_type);
+
+        List<String> output_schema = new ArrayList<String>();
+        for (Relation r : branches.get(0).relations) output_schema.addAll(Arrays.asList(r.schema));
+        this.output = new Relation("Rout", output_schema.toArray(new String[0]));
+
+        // Identical branches have the same answers, thus only the first one of them is enumerated
+        this.shared_with = new int[branches.size()];
+        this.enumerated_branches = new ArrayList<Integer>();
+        for (int i = 0; i < branches.size(); i++)
+        {
+            shared_with[i] = i;
+            for (int j : enumerated_branches)
+            {
+                if (identical(branches.get(j), branches.get(i)))
+                {
+                    shared_with[i] = j;
+                    break;
+                }
+            }
+            if (shared_with[i] == i) enumerated_branches.add(i);
+        }
+
+        // The solutions are converted to tuples as soon as they are produced,
+        // since an iterator may reuse the objects of its previous solutions
+        List<Loser_Tree.Source<Answer>> sources = new ArrayList<Loser_Tree.Source<Answer>>();
+        TDP_Join_Cache cache = anyk_alg.equals("QuickPlus") ? null : new TDP_Join_Cache();
+        for (int branch : enumerated_branches)
+        {
+            TDP_Thetajoin_Instance instance = new TDP_Thetajoin_Instance(branches.get(branch), null, cache);
+            instance.bottom_up();
+            shared_joins += instance.get_shared_joins();
+            TDP_Anyk_Iterator iter = initialize_iterator(instance, conf);
+            int[] order = solution_order(branches.get(branch), iter);
+            sources.add(() ->
+            {
+                TDP_Solution sol = iter.get_next();
+                if (sol == null) return null;
+                List<Tuple> solution_tuples = sol.solutionToTuples_strict_order();
+                Tuple[] answer_tuples = new Tuple[solution_tuples.size()];
+                for (int i = 0; i < answer_tuples.length; i++) answer_tuples[order[i]] = solution_tuples.get(i);
+                return new Answer(Arrays.asList(answer_tuples), sol.get_cost());
+            });
+        }
+        this.merger = new Loser_Tree<Answer>(sources, (a1, a2) -> Double.compare(a1.cost, a2.cost));
+    }
+
+    /**
+     * Computes the next answer of the union in ranked order.
+     * Ties are broken arbitrarily.
+     * @return List<Tuple> The tuples of the next best answer (in the order of the relations)
+     *  or null if there are no other answers.
+     */
+    public List<Tuple> get_next_tuples()
+    {
+        Answer answer;
+        while ((answer = merger.poll()) != null)
+        {
+            int branch = enumerated_branches.get(merger.get_last_source());
+            if (!answer_of_earlier_branch(answer.tuples, branch))
+            {
+                last_branch = branch;
+                return answer.tuples;
+            }
+            duplicates_eliminated += 1;
+        }
+        return null;
+    }
+
+    /**
+     * Computes the next answer of the union in ranked order as a single tuple
+     * that concatenates the values of the tuples of the answer.
+     * Ties are broken arbitrarily.
+     * @return Tuple The next best answer or null if there are no other answers.
+     */
+    public Tuple get_next()
+    {
+        List<Tuple> answer = get_next_tuples();
+        if (answer == null) return null;
+        return new Tuple(answer, output);
+    }
+
+    /**
+     * @return int The index of the branch that produced the last answer (-1 if none).
+     */
+    public int get_last_branch()
+    {
+        return last_branch;
+    }
+
+    /**
+     * @return long The number of answers dropped so far because a branch with higher priority produces them.
+     */
+    public long get_duplicates_eliminated()
+    {
+        return duplicates_eliminated;
+    }
+
+    /**
+     * @return int The number of T-DP graphs, i.e., the number of branches after the identical ones are shared.
+     */
+    public int get_enumerated_branches()
+    {
+        return enumerated_branches.size();
+    }
+
+    /**
+     * @return int The number of joins of the branches that were not factorized because an earlier branch has the same join
+     *  (not counting the identical branches).
+     */
+    public int get_shared_joins()
+    {
+        return shared_joins;
+    }
+
+    /**
+     * The branch-priority rule.
+     * @param answer The tuples of an answer of the given branch in the order of the relations.
+     * @param branch The branch that produced the answer.
+     * @return boolean True if the answer is also an answer of a branch that precedes the given one.
+     */
+    private boolean answer_of_earlier_branch(List<Tuple> answer, int branch)
+    {
+        for (int j = 0; j < branch; j++)
+        {
+            // Identical branches were tested when the first of them was reached
+            if (shared_with[j] != j) continue;
+            if (is_answer(answer, branches.get(j))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return boolean True if the given tuples form an answer of the branch.
+     */
+    private boolean is_answer(List<Tuple> answer, Tree_ThetaJoin_Query branch)
+    {
+        for (int r = 0; r < branch.length; r++)
+        {
+            Tuple t = answer.get(r);
+            Relation relation = branch.relations.get(r);
+            if (t.relation != relation && !get_contents(relation).contains(values_of(t))) return false;
+            int parent = branch.parents.get(r);
+            if (parent >= 0 && !satisfied(answer.get(parent), t, branch.join_conditions.get(r))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return boolean True if the tuples of the parent and the child satisfy a join condition given in DNF.
+     */
+    private static boolean satisfied(Tuple parent, Tuple child, List<List<Join_Predicate>> condition)
+    {
+        for (List<Join_Predicate> conjunction : condition)
+        {
+            boolean res = true;
+            if (conjunction != null)
+            {
+                for (Join_Predicate p : conjunction)
+                {
+                    if (!p.satisfied_by(parent, child))
+                    {
+                        res = false;
+                        break;
+                    }
+                }
+            }
+            if (res) return true;
+        }
+        return false;
+    }
+
+    private HashSet<List<Double>> get_contents(Relation relation)
+    {
+        HashSet<List<Double>> contents = relation_contents.get(relation);
+        if (contents == null)
+        {
+            contents = new HashSet<List<Double>>(relation.tuples.size() * 2);
+            for (Tuple t : relation.tuples) contents.add(values_of(t));
+            relation_contents.put(relation, contents);
+        }
+        return contents;
+    }
+
+    private static List<Double> values_of(Tuple t)
+    {
+        List<Double> values = new ArrayList<Double>(t.values.length);
+        for (double v : t.values) values.add(v);
+        return values;
+    }
+
+    /**
+     * The position of the relation of each tuple returned by {@link entities.trees.TDP_Solution#solutionToTuples_strict_order}.
+     * That is the order of the relations, except for the recursive algorithm that returns them in the preorder of the tree.
+     */
+    private static int[] solution_order(Tree_ThetaJoin_Query branch, TDP_Anyk_Iterator iter)
+    {
+        int[] order = new int[branch.length];
+        if (iter instanceof TDP_Recursive)
+        {
+            List<List<Integer>> children = branch.get_children_lists();
+            int[] counter = new int[]{ 0 };
+            preorder(0, children, order, counter);
+        }
+        else
+        {
+            for (int r = 0; r < branch.length; r++) order[r] = r;
+        }
+        return order;
+    }
+
+    private static void preorder(int relation_idx, List<List<Integer>> children, int[] order, int[] counter)
+    {
+        order[counter[0]] = relation_idx;
+        counter[0] += 1;
+        for (int child : children.get(relation_idx)) preorder(child, children, order, counter);
+    }
+
+    private static void check_union_compatible(List<Tree_ThetaJoin_Query> branches)
+    {
+        if (branches.isEmpty())
+        {
+            System.err.println("A union needs at least one branch");
+            System.exit(1);
+        }
+        Tree_ThetaJoin_Query first = branches.get(0);
+        for (Tree_ThetaJoin_Query branch : branches)
+        {
+            boolean compatible = branch.length == first.length;
+            for (int r = 0; compatible && r < first.length; r++)
+                compatible = branch.relations.get(r).schema.length == first.relations.get(r).schema.length;
+            if (!compatible)
+            {
+                System.err.println("The branches of the union must have relations of the same arities at the same positions");
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * @return boolean True if the two queries have the same relations, tree structure and join conditions.
+     */
+    private static boolean identical(Tree_ThetaJoin_Query q1, Tree_ThetaJoin_Query q2)
+    {
+        if (q1.length != q2.length) return false;
+        for (int r = 0; r < q1.length; r++)
+        {
+            if (q1.relations.get(r) != q2.relations.get(r)) return false;
+            if (!q1.parents.get(r).equals(q2.parents.get(r))) return false;
+            if (r > 0 && !same_condition(q1.join_conditions.get(r), q2.join_conditions.get(r))) return false;
+        }
+        return true;
+    }
+
+    private static boolean same_condition(List<List<Join_Predicate>> c1, List<List<Join_Predicate>> c2)
+    {
+        if (c1.size() != c2.size()) return false;
+        for (int i = 0; i < c1.size(); i++)
+        {
+            List<Join_Predicate> conj1 = c1.get(i), conj2 = c2.get(i);
+            int size1 = conj1 == null ? 0 : conj1.size(), size2 = conj2 == null ? 0 : conj2.size();
+            if (size1 != size2) return false;
+            for (int j = 0; j < size1; j++)
+            {
+                Join_Predicate p1 = conj1.get(j), p2 = conj2.get(j);
+                if (!p1.type.equals(p2.type) || p1.attr_idx_1 != p2.attr_idx_1 || p1.attr_idx_2 != p2.attr_idx_2
+                    || !p1.parameter.equals(p2.parameter)) return false;
+            }
+        }
+        return true;
+    }
+
+    private TDP_Anyk_Iterator initialize_iterator(TDP_Thetajoin_Instance instance, Configuration conf)
+    {
+        TDP_Anyk_Iterator iter = null;
+        if (anyk_alg.equals("Eager")) iter = new TDP_Eager(instance, conf);
+        else if (anyk_alg.equals("All")) iter = new TDP_All(instance, conf);
+        else if (anyk_alg.equals("Take2")) iter = new TDP_Take2(instance, conf);
+        else if (anyk_alg.equals("Lazy")) iter = new TDP_Lazy(instance, conf);
+        else if (anyk_alg.equals("Quick")) iter = new TDP_Quick(instance, conf);
+        else if (anyk_alg.equals("QuickPlus")) iter = new TDP_QuickPlus(instance, conf);
+        else if (anyk_alg.equals("Recursive")) iter = new TDP_Recursive(instance, conf);
+        else if (anyk_alg.equals("BatchSorting")) iter = new Tree_BatchSorting(instance, conf);
+        else
+        {
+            System.err.println("Any-k algorithm not recognized.");
+            System.exit(1);
+        }
+        return iter;
+    }
+
+    public static void main(String args[])
+    {
+        // The union of a path with equalities and the same path with A <= B on its last join (which overlap)
+        Database_Query_Generator gen = new BinaryRandomPattern(10, 3, 4, "path");
+        gen.create();
+        List<Relation> db = gen.get_database();
+        List<Tree_ThetaJoin_Query> branches = new ArrayList<Tree_ThetaJoin_Query>();
+        for (String last_join : new String[]{ "E", "IL" })
+        {
+            Tree_ThetaJoin_Query branch = new Tree_ThetaJoin_Query();
+            branch.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+            branch.add_to_tree_wConjunction(db.get(1), 1, 0, Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+            branch.add_to_tree_wConjunction(db.get(2), 2, 1, Arrays.asList(new Join_Predicate(last_join, 1, 0, last_join.equals("IL") ? 1.0 : null)));
+            branches.add(branch);
+        }
+
+        UCQ_Anyk_Iterator iter = new UCQ_Anyk_Iterator(branches, "Lazy", null);
+        Tuple res;
+        while ((res = iter.get_next()) != null)
+            System.out.println("Cost= " + res.cost + "  Branch= " + iter.get_last_branch() + "  " + res);
+        System.out.println("Duplicates eliminated: " + iter.get_duplicates_eliminated());
+    }
+}
@@ -0,0 +1,162 @@
+package entities;
+
+import java.math.BigInteger;
+
+/**
+ * The COUNT, SUM, MIN and MAX (and thus AVG) of the costs of a bag of (partial) solutions of a (T-)DP problem.
+ * Aggregates are combined in the same way as the solutions in the state-space graph:
+ * the solutions of alternative decisions form a union ({@link #plus})
+ * and those of consecutive stages or of different branches are concatenated ({@link #times}),
+ * i.e., their counts are multiplied and the cost of every solution of one side is added to all the solutions of the other.
+ * Thus, the aggregates of all the solutions are computed by a bottom-up pass over the graph without enumerating them
+ * ({@link entities.paths.DP_Problem_Instance#aggregate}, {@link entities.trees.TDP_Problem_Instance#aggregate}).
+ * <br><br>
+ * The count is kept in a long and promoted to a BigInteger only if it overflows.
+ * The objects are immutable.
+ * @author Nikolaos Tziavelis
+*/
+public class Aggregate
+{
+    /**
+     * The aggregate of no solutions.
+    */
+    public static final Aggregate EMPTY = new Aggregate(0L, null, 0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+    /**
+     * The aggregate of the empty solution (with cost 0), which is neutral for {@link #times}.
+    */
+    public static final Aggregate UNIT = new Aggregate(1L, null, 0.0, 0.0, 0.0);
+
+    private final long count;
+    /**
+     * The count if it does not fit in a long (null otherwise).
+    */
+    private final BigInteger big_count;
+    private final double sum, min, max;
+
+    private Aggregate(long count, BigInteger big_count, double sum, double min, double max)
+    {
+        this.count = count;
+        this.big_count = big_count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @param cost The cost of a decision.
+     * @return Aggregate The aggregate of a single solution with that cost.
+     */
+    public static Aggregate of_cost(double cost)
+    {
+        return new Aggregate(1L, null, cost, cost, cost);
+    }
+
+    /**
+     * @param other The aggregate of another bag of solutions.
+     * @return Aggregate The aggregate of the union of the two bags.
+     */
+    public Aggregate plus(Aggregate other)
+    {
+        if (this.is_empty()) return other;
+        if (other.is_empty()) return this;
+        long res_count = 0L;
+        BigInteger res_big_count = null;
+        if (this.big_count == null && other.big_count == null)
+        {
+            try
+            {
+                res_count = Math.addExact(this.count, other.count);
+            }
+            catch (ArithmeticException e)
+            {
+                res_big_count = BigInteger.valueOf(this.count).add(BigInteger.valueOf(other.count));
+            }
+        }
+        else res_big_count = this.get_count().add(other.get_count());
+        return new Aggregate(res_count, res_big_count, this.sum + other.sum, Math.min(this.min, other.min), Math.max(this.max, other.max));
+    }
+
+    /**
+     * @param other The aggregate of another bag of solutions.
+     * @return Aggregate The aggregate of all the concatenations of a solution of this bag with a solution of the other.
+     */
+    public Aggregate times(Aggregate other)
+    {
+        if (this.is_empty() || other.is_empty()) return EMPTY;
+        long res_count = 0L;
+        BigInteger res_big_count = null;
+        if (this.big_count == null && other.big_count == null)
+        {
+            try
+            {
+                res_count = Math.multiplyExact(this.count, other.count);
+            }
+            catch (ArithmeticException e)
+            {
+                res_big_count = BigInteger.valueOf(this.count).multiply(BigInteger.valueOf(other.count));
+            }
+        }
+        else res_big_count = this.get_count().multiply(other.get_count());
+        double res_sum = this.sum * other.count_as_double() + other.sum * this.count_as_double();
+        return new Aggregate(res_count, res_big_count, res_sum, this.min + other.min, this.max + other.max);
+    }
+
+    /**
+     * @return boolean True if there are no solutions.
+     */
+    public boolean is_empty()
+    {
+        return big_count == null && count == 0L;
+    }
+
+    /**
+     * @return BigInteger The number of solutions.
+     */
+    public BigInteger get_count()
+    {
+        return big_count != null ? big_count : BigInteger.valueOf(count);
+    }
+
+    /**
+     * @return double The sum of the costs of the solutions.
+     */
+    public double get_sum()
+    {
+        return sum;
+    }
+
+    /**
+     * @return double The minimum cost of the solutions (positive infinity if there are none).
+     */
+    public double get_min()
+    {
+        return min;
+    }
+
+    /**
+     * @return double The maximum cost of the solutions (negative infinity if there are none).
+     */
+    public double get_max()
+    {
+        return max;
+    }
+
+    /**
+     * @return double The average cost of the solutions (NaN if there are none).
+     */
+    public double get_avg()
+    {
+        return is_empty() ? Double.NaN : sum / count_as_double();
+    }
+
+    private double count_as_double()
+    {
+        return big_count != null ? big_count.doubleValue() : (double) count;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "COUNT=" + get_count() + " SUM=" + sum + " MIN=" + min + " MAX=" + max + " AVG=" + get_avg();
+    }
+}
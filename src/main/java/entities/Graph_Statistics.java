@@ -0,0 +1,201 @@
+package entities;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics about the structure of the state-space graph built for a (T-)DP problem.
+ * They are gathered by a single traversal of the graph
+ * ({@link entities.paths.DP_Problem_Instance#collect_statistics},
+ * {@link entities.trees.TDP_Problem_Instance#collect_statistics})
+ * and summarize where the graph is large:
+ * how many nodes each stage has, how many intermediate nodes the factorization of each join edge created,
+ * how much sharing of decision sets saved, and how the fan-out of the decision sets is distributed.
+ * @author Nikolaos Tziavelis
+*/
+public class Graph_Statistics
+{
+    /**
+     * Rough per-object sizes in bytes for a 64-bit JVM with compressed references.
+     * A node is a header and 4 fields, a decision set is a header, 10 fields and its ArrayList,
+     * a decision is a header, 4 fields and one slot in the array of its decision set.
+    */
+    public static final int NODE_BYTES = 32;
+    public static final int DECISION_SET_BYTES = 96;
+    public static final int DECISION_BYTES = 36;
+    /**
+     * The number of buckets of {@link #fanout_histogram}.
+     * Bucket i &gt; 0 counts decision sets with fan-out in [2^(i-1), 2^i).
+    */
+    public static final int FANOUT_BUCKETS = 32;
+
+    /**
+     * Number of nodes for each stage that corresponds to a relation (keyed by the relation id).
+    */
+    public LinkedHashMap<String, Long> nodes_per_stage;
+    /**
+     * Number of intermediate (factorization) nodes for each join edge, keyed as "parent -&gt; child".
+    */
+    public LinkedHashMap<String, Long> intermediate_nodes_per_edge;
+    /**
+     * The factorization method used for each join edge (if known), keyed as "parent -&gt; child".
+    */
+    public LinkedHashMap<String, String> method_per_edge;
+
+    /**
+     * All the nodes reachable from the starting node (including it).
+    */
+    public long nodes;
+    /**
+     * The nodes that are not tuples (not counting the starting node).
+    */
+    public long intermediate_nodes;
+    /**
+     * The number of (node, branch) pairs that have a non-empty decision set.
+     * Without sharing, each one of them would need its own decision set.
+    */
+    public long decision_set_refs;
+    /**
+     * The number of distinct decision set objects.
+    */
+    public long decision_sets;
+    /**
+     * The number of decision objects (edges) stored in the distinct decision sets.
+    */
+    public long decisions;
+    /**
+     * The number of edges of the graph as seen from the nodes, i.e., counting shared decisions once per node.
+    */
+    public long logical_edges;
+    /**
+     * A histogram over the distinct decision sets by their size (logarithmic buckets).
+    */
+    public long[] fanout_histogram;
+    public int max_fanout;
+    /**
+     * The number of solutions of the (T-)DP problem.
+    */
+    public BigInteger answers;
+
+    public Graph_Statistics()
+    {
+        this.nodes_per_stage = new LinkedHashMap<String, Long>();
+        this.intermediate_nodes_per_edge = new LinkedHashMap<String, Long>();
+        this.method_per_edge = new LinkedHashMap<String, String>();
+        this.fanout_histogram = new long[FANOUT_BUCKETS];
+        this.max_fanout = 0;
+        this.answers = null;
+    }
+
+    /**
+     * Records a node of a stage that corresponds to a relation.
+     * @param stage_label The id of the relation.
+    */
+    public void add_stage_node(String stage_label)
+    {
+        nodes += 1;
+        nodes_per_stage.merge(stage_label, 1L, Long::sum);
+    }
+
+    /**
+     * Records the intermediate nodes of a join edge.
+     * @param edge_label The join edge that the nodes belong to.
+     * @param count The number of intermediate nodes.
+    */
+    public void add_intermediate_nodes(String edge_label, long count)
+    {
+        nodes += count;
+        intermediate_nodes += count;
+        intermediate_nodes_per_edge.merge(edge_label, count, Long::sum);
+    }
+
+    /**
+     * Records the decision set of a node (which might have been seen before through another node).
+     * @param decision_set The decision set object.
+     * @param size The number of decisions in the set.
+     * @param seen The decision sets recorded so far (compared by identity).
+    */
+    public void add_decision_set(Object decision_set, int size, IdentityHashMap<Object, Boolean> seen)
+    {
+        if (size == 0) return;
+        decision_set_refs += 1;
+        logical_edges += size;
+        if (seen.put(decision_set, Boolean.TRUE) != null) return;
+        decision_sets += 1;
+        decisions += size;
+        fanout_histogram[fanout_bucket(size)] += 1;
+        if (size > max_fanout) max_fanout = size;
+    }
+
+    private static int fanout_bucket(int size)
+    {
+        if (size == 0) return 0;
+        return Math.min(32 - Integer.numberOfLeadingZeros(size), FANOUT_BUCKETS - 1);
+    }
+
+    /**
+     * @return double The average number of decisions of a distinct decision set.
+    */
+    public double avg_fanout()
+    {
+        if (decision_sets == 0) return 0.0;
+        return (double) decisions / decision_sets;
+    }
+
+    /**
+     * @return long An estimate of the memory occupied by the graph (excluding the input tuples).
+    */
+    public long estimated_bytes()
+    {
+        return nodes * NODE_BYTES + decision_sets * DECISION_SET_BYTES + decisions * DECISION_BYTES;
+    }
+
+    /**
+     * @param t A tuple of the graph.
+     * @return String The label of the stage that the tuple belongs to.
+    */
+    public static String stage_label(Tuple t)
+    {
+        if (t.relation == null) return "?";
+        return t.relation.relation_id;
+    }
+
+    /**
+     * @return String A human-readable report over multiple lines.
+    */
+    public String report()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("==== Graph structure ====\n");
+        for (Map.Entry<String, Long> e : nodes_per_stage.entrySet())
+            sb.append("Stage " + e.getKey() + ": " + e.getValue() + " nodes\n");
+        List<String> edges = new ArrayList<String>(method_per_edge.keySet());
+        for (String edge : intermediate_nodes_per_edge.keySet())
+            if (!edges.contains(edge)) edges.add(edge);
+        for (String edge : edges)
+        {
+            sb.append("Join " + edge + ": ");
+            if (method_per_edge.containsKey(edge)) sb.append("method= " + method_per_edge.get(edge) + " ");
+            sb.append("intermediate_nodes= " + intermediate_nodes_per_edge.getOrDefault(edge, 0L) + "\n");
+        }
+        sb.append("Nodes: " + nodes + " (intermediate: " + intermediate_nodes + ")\n");
+        sb.append("Decision sets: " + decision_sets + " distinct for " + decision_set_refs + " nodes/branches" +
+            " (sharing saved " + (decision_set_refs - decision_sets) + " sets and " + (logical_edges - decisions) + " decisions)\n");
+        sb.append("Decisions: " + decisions + " stored, " + logical_edges + " logical edges\n");
+        sb.append("Fan-out: avg= " + String.format("%.2f", avg_fanout()) + " max= " + max_fanout + "\n");
+        for (int i = 1; i < FANOUT_BUCKETS; i++)
+        {
+            if (fanout_histogram[i] == 0) continue;
+            long lo = 1L << (i - 1), hi = (1L << i) - 1;
+            String range = (lo == hi) ? ("" + lo) : (lo + "-" + hi);
+            sb.append("  [" + range + "]: " + fanout_histogram[i] + " decision sets\n");
+        }
+        sb.append("Estimated graph size: " + estimated_bytes() + " bytes\n");
+        if (answers != null) sb.append("Answers: " + answers + "\n");
+        return sb.toString();
+    }
+}
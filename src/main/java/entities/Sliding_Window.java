@@ -0,0 +1,143 @@
+package entities;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.javatuples.Pair;
+
+import entities.paths.DP_Path_Equijoin_Instance;
+import entities.trees.TDP_Thetajoin_Instance;
+
+/**
+ * Maintains a problem instance over a time-based window of timestamped streams of tuples,
+ * one stream per relation of the query.
+ * The window at time t contains the tuples whose timestamps are in (end - range, end],
+ * where end is the smallest multiple of the slide that is not smaller than t.
+ * Thus, a slide equal to the range gives tumbling windows and a slide of 1 gives a window that moves with every tick.
+ * Each relation keeps its tuples in a buffer ordered by their timestamps.
+ * An arriving tuple is inserted in the graph immediately, while the expired tuples are evicted in one batch
+ * whenever the window slides.
+ * Both are incremental updates of the graph (see {@link entities.paths.DP_Path_Equijoin_Instance#insert}),
+ * thus the query has to consist of equi-joins.
+ * After any change, newly created any-k iterators return the ranked answers of the current window.
+ * <br><br>
+ * The tuples that the relations contain when the window is created never expire (e.g., static dimension tables).
+ * IMPORTANT: The bottom-up phase must have already run on the instance.
+ * @author Nikolaos Tziavelis
+*/
+public class Sliding_Window
+{
+    private Consumer<Tuple> inserter;
+    private Consumer<Collection<Tuple>> evicter;
+    private long range, slide;
+    /**
+     * The latest time we have seen (no arrival can be older).
+    */
+    private long current_time;
+    private long window_end;
+    /**
+     * The tuples of each relation that are in the window, together with their timestamps.
+    */
+    private IdentityHashMap<Relation, ArrayDeque<Pair<Tuple, Long>>> buffers;
+
+    /**
+     * @param instance A path equi-join instance that has gone through the bottom-up phase.
+     * @param range The length of the window.
+     * @param slide The granularity at which the window moves.
+     */
+    public Sliding_Window(DP_Path_Equijoin_Instance instance, long range, long slide)
+    {
+        this(instance::insert, instance::delete, range, slide);
+    }
+
+    /**
+     * @param instance A tree instance (with equi-joins only) that has gone through the bottom-up phase.
+     * @param range The length of the window.
+     * @param slide The granularity at which the window moves.
+     */
+    public Sliding_Window(TDP_Thetajoin_Instance instance, long range, long slide)
+    {
+        this(instance::insert, instance::delete, range, slide);
+    }
+
+    private Sliding_Window(Consumer<Tuple> inserter, Consumer<Collection<Tuple>> evicter, long range, long slide)
+    {
+        if (range <= 0 || slide <= 0 || slide > range)
+        {
+            System.err.println("The window needs 0 < slide <= range (got range " + range + " and slide " + slide + ")");
+            System.exit(1);
+        }
+        this.inserter = inserter;
+        this.evicter = evicter;
+        this.range = range;
+        this.slide = slide;
+        this.current_time = Long.MIN_VALUE;
+        this.window_end = Long.MIN_VALUE;
+        this.buffers = new IdentityHashMap<Relation, ArrayDeque<Pair<Tuple, Long>>>();
+    }
+
+    /**
+     * Adds a tuple to the window of its relation, first sliding the window to its timestamp.
+     * @param t The new tuple. Its relation field specifies the stream it arrives from.
+     * @param timestamp The timestamp of the tuple. It cannot be older than the previous ones.
+     */
+    public void arrive(Tuple t, long timestamp)
+    {
+        advance(timestamp);
+        buffers.computeIfAbsent(t.relation, k -> new ArrayDeque<Pair<Tuple, Long>>()).add(new Pair<Tuple, Long>(t, timestamp));
+        inserter.accept(t);
+    }
+
+    /**
+     * Moves the time forward without any arrival, evicting the tuples that expire.
+     * @param time The current time. It cannot be older than the previous one.
+     */
+    public void advance(long time)
+    {
+        if (time < current_time)
+        {
+            System.err.println("Time " + time + " is older than " + current_time + " (streams have to be ordered by time)");
+            System.exit(1);
+        }
+        current_time = time;
+        // Round up to a multiple of the slide
+        long new_end = -Math.floorDiv(-time, slide) * slide;
+        if (new_end == window_end) return;
+        window_end = new_end;
+
+        List<Tuple> expired = new ArrayList<Tuple>();
+        for (ArrayDeque<Pair<Tuple, Long>> buffer : buffers.values())
+            while (!buffer.isEmpty() && buffer.peek().getValue1() <= window_end - range) expired.add(buffer.poll().getValue0());
+        if (!expired.isEmpty()) evicter.accept(expired);
+    }
+
+    /**
+     * @return long The start of the current window (exclusive).
+     */
+    public long get_window_start()
+    {
+        return window_end - range;
+    }
+
+    /**
+     * @return long The end of the current window (inclusive).
+     */
+    public long get_window_end()
+    {
+        return window_end;
+    }
+
+    /**
+     * @param relation A relation of the query.
+     * @return int The number of tuples of the relation that are in the window (excluding the ones that never expire).
+     */
+    public int get_window_size(Relation relation)
+    {
+        ArrayDeque<Pair<Tuple, Long>> buffer = buffers.get(relation);
+        return buffer == null ? 0 : buffer.size();
+    }
+}
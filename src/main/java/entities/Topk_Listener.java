@@ -0,0 +1,22 @@
+package entities;
+
+import java.util.List;
+
+/**
+ * Receives the changes of a standing top-k query (see {@link entities.Topk_Monitor}).
+ * @author Nikolaos Tziavelis
+*/
+public interface Topk_Listener
+{
+    /**
+     * @param answer The tuples of an answer that entered the top-k, in the order of the relations of the query.
+     * @param cost The cost of the answer.
+     */
+    void entered(List<Tuple> answer, double cost);
+
+    /**
+     * @param answer The tuples of an answer that left the top-k, in the order of the relations of the query.
+     * @param cost The cost of the answer.
+     */
+    void left(List<Tuple> answer, double cost);
+}
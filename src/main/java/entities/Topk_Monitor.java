@@ -0,0 +1,240 @@
+package entities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import util.Answer_Identity;
+
+/**
+ * A standing top-k query over a problem instance that is updated incrementally.
+ * The monitor keeps the k cheapest answers and reports the ones that enter or leave them to a {@link entities.Topk_Listener}
+ * once every update is complete (thus, an answer that enters and leaves during the same update is not reported).
+ * Ties at the k-th position are broken arbitrarily: an answer that costs as much as the k-th one does not replace it.
+ * <br><br>
+ * Beyond the top-k, the monitor keeps a reserve of up to k more answers, so that the kept answers are always
+ * the cheapest ones of the instance (or all of them, if there are less than 2k).
+ * An answer that leaves the top-k because it was deleted or got more expensive is replaced from the reserve,
+ * and the top-k is recomputed from scratch only when the reserve runs out.
+ * A new answer is kept only if it beats the most expensive kept answer (see {@link #search_threshold}).
+ * The subclasses find the answers that an update can bring into the kept ones.
+ * @author Nikolaos Tziavelis
+*/
+public abstract class Topk_Monitor
+{
+    protected final int k;
+    /**
+     * The maximum number of answers kept (the top-k and the reserve).
+    */
+    protected final int capacity;
+    private final Topk_Listener listener;
+    /**
+     * The current top-k and the reserve, ordered by cost.
+    */
+    private TreeSet<Ranked_Answer> top, reserve;
+    private HashMap<Answer_Identity, Ranked_Answer> current;
+    /**
+     * The kept answers that contain each tuple (compared by reference).
+    */
+    private IdentityHashMap<Tuple, List<Ranked_Answer>> by_tuple;
+    /**
+     * True if the kept answers are all the answers of the instance.
+     * It is never true when there is no room for more answers, since then the answers that do not beat
+     * the search threshold are not searched for.
+    */
+    private boolean complete;
+    /**
+     * Breaks the ties between answers with the same cost in the order they were kept.
+    */
+    private long sequence;
+    /**
+     * The changes since the last notification.
+    */
+    private HashMap<Answer_Identity, Ranked_Answer> entered, left;
+
+    protected Topk_Monitor(int k, Topk_Listener listener)
+    {
+        if (k <= 0)
+        {
+            System.err.println("A top-k query needs k > 0 (got " + k + ")");
+            System.exit(1);
+        }
+        this.k = k;
+        this.capacity = (int) Math.min(Integer.MAX_VALUE, 2L * k);
+        this.listener = listener;
+        this.top = new TreeSet<Ranked_Answer>();
+        this.reserve = new TreeSet<Ranked_Answer>();
+        this.current = new HashMap<Answer_Identity, Ranked_Answer>();
+        this.by_tuple = new IdentityHashMap<Tuple, List<Ranked_Answer>>();
+        this.complete = false;
+        this.sequence = 0;
+        this.entered = new HashMap<Answer_Identity, Ranked_Answer>();
+        this.left = new HashMap<Answer_Identity, Ranked_Answer>();
+    }
+
+    /**
+     * @return List<List<Tuple>> The current top-k answers in ascending order of cost.
+     */
+    public List<List<Tuple>> get_topk()
+    {
+        List<List<Tuple>> res = new ArrayList<List<Tuple>>();
+        for (Ranked_Answer a : top) res.add(a.tuples);
+        return res;
+    }
+
+    /**
+     * @return double The cost that a new answer has to beat to enter the top-k
+     * (infinity if there are less than k answers).
+     */
+    public double get_threshold()
+    {
+        return top.size() < k ? Double.POSITIVE_INFINITY : top.last().cost;
+    }
+
+    /**
+     * @return double The cost that a new answer has to beat to be kept (in the top-k or the reserve).
+     * Only the answers that are cheaper than the most expensive kept one are certainly among the cheapest,
+     * unless all the answers are kept.
+     * If no answer is kept, then nothing can be (until the top-k is recomputed).
+     */
+    protected double search_threshold()
+    {
+        if (complete) return Double.POSITIVE_INFINITY;
+        if (top.isEmpty()) return Double.NEGATIVE_INFINITY;
+        return reserve.isEmpty() ? top.last().cost : reserve.last().cost;
+    }
+
+    /**
+     * Keeps an answer if it beats the search threshold, evicting the most expensive kept one if needed.
+     * @param tuples The tuples of the answer.
+     * @param cost The cost of the answer.
+     */
+    protected void offer(List<Tuple> tuples, double cost)
+    {
+        if (cost >= search_threshold()) return;
+        Ranked_Answer answer = new Ranked_Answer(tuples, cost, sequence++);
+        // The same answer can be found more than once (e.g., through a tuple that appears in two positions)
+        if (current.containsKey(answer.id)) return;
+        current.put(answer.id, answer);
+        for (Tuple t : tuples) by_tuple.computeIfAbsent(t, x -> new ArrayList<Ranked_Answer>(1)).add(answer);
+        if (top.size() < k) enter(answer);
+        else if (answer.compareTo(top.last()) < 0)
+        {
+            enter(answer);
+            reserve.add(leave(top.last()));
+        }
+        else reserve.add(answer);
+        if (top.size() + reserve.size() > capacity) forget(reserve.isEmpty() ? leave(top.last()) : reserve.pollLast());
+        if (top.size() + reserve.size() == capacity) complete = false;
+    }
+
+    /**
+     * Drops the kept answers that contain any of the tuples (compared by reference)
+     * and refills the top-k from the reserve.
+     * @param tuples Tuples that were deleted or whose cost changed.
+     */
+    protected void remove_containing(Collection<Tuple> tuples)
+    {
+        Set<Ranked_Answer> removed = Collections.newSetFromMap(new IdentityHashMap<Ranked_Answer, Boolean>());
+        for (Tuple t : tuples)
+        {
+            List<Ranked_Answer> containing = by_tuple.get(t);
+            if (containing != null) removed.addAll(containing);
+        }
+        for (Ranked_Answer answer : removed)
+        {
+            if (top.contains(answer)) leave(answer);
+            else reserve.remove(answer);
+            forget(answer);
+        }
+        while (top.size() < k && !reserve.isEmpty()) enter(reserve.pollFirst());
+    }
+
+    /**
+     * @return boolean True if the top-k has less than k answers although the instance may have more.
+     */
+    protected boolean needs_refresh()
+    {
+        return top.size() < k && !complete;
+    }
+
+    /**
+     * Replaces the kept answers, e.g., with the result of a new any-k enumeration.
+     * Only the answers of the top-k that differ are reported.
+     * @param answers The new answers in ascending order of cost (at most {@link #capacity}).
+     * @param costs Their costs.
+     * @param exhausted True if these are all the answers of the instance.
+     */
+    protected void replace_all(List<List<Tuple>> answers, List<Double> costs, boolean exhausted)
+    {
+        while (!top.isEmpty()) forget(leave(top.last()));
+        while (!reserve.isEmpty()) forget(reserve.pollLast());
+        complete = true;
+        for (int i = 0; i < answers.size(); i++) offer(answers.get(i), costs.get(i));
+        complete = exhausted;
+    }
+
+    /**
+     * Reports the changes since the last call to the listener.
+     */
+    protected void publish()
+    {
+        for (Ranked_Answer answer : left.values()) listener.left(answer.tuples, answer.cost);
+        for (Ranked_Answer answer : entered.values()) listener.entered(answer.tuples, answer.cost);
+        left.clear();
+        entered.clear();
+    }
+
+    private void enter(Ranked_Answer answer)
+    {
+        top.add(answer);
+        if (left.remove(answer.id) == null) entered.put(answer.id, answer);
+    }
+
+    private Ranked_Answer leave(Ranked_Answer answer)
+    {
+        top.remove(answer);
+        if (entered.remove(answer.id) == null) left.put(answer.id, answer);
+        return answer;
+    }
+
+    private void forget(Ranked_Answer answer)
+    {
+        current.remove(answer.id);
+        for (Tuple t : answer.tuples)
+        {
+            List<Ranked_Answer> containing = by_tuple.get(t);
+            if (containing == null) continue;
+            containing.remove(answer);
+            if (containing.isEmpty()) by_tuple.remove(t);
+        }
+    }
+
+    private static class Ranked_Answer implements Comparable<Ranked_Answer>
+    {
+        List<Tuple> tuples;
+        double cost;
+        long sequence;
+        Answer_Identity id;
+
+        Ranked_Answer(List<Tuple> tuples, double cost, long sequence)
+        {
+            this.tuples = tuples;
+            this.cost = cost;
+            this.sequence = sequence;
+            this.id = new Answer_Identity(tuples);
+        }
+
+        @Override
+        public int compareTo(Ranked_Answer other)
+        {
+            int c = Double.compare(this.cost, other.cost);
+            return c != 0 ? c : Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
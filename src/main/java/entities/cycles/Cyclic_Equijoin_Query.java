@@ -0,0 +1,74 @@
+package entities.cycles;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import entities.Relation;
+
+/**
+ * An equi-join query with an arbitrary (possibly cyclic) structure, e.g., a triangle, a clique or several cycles.
+ * Each relational atom assigns a variable to every attribute of its relation
+ * and atoms that share a variable join on the corresponding attributes.
+ * The same relation can appear in several atoms (self-joins)
+ * and a variable that appears twice in an atom selects the tuples with equal values in those attributes.
+ * @author Nikolaos Tziavelis
+*/
+public class Cyclic_Equijoin_Query
+{
+    public int length;
+    public ArrayList<Relation> relations;
+    /**
+     * The variables of each atom, one per attribute of its relation.
+    */
+    public ArrayList<String[]> variables;
+
+    /**
+     * A query with no atoms.
+    */
+    public Cyclic_Equijoin_Query()
+    {
+        this.relations = new ArrayList<Relation>();
+        this.variables = new ArrayList<String[]>();
+        this.length = 0;
+    }
+
+    /**
+     * The same query as a simple cycle (with variables A1, ..., Al).
+     * @param query A simple cycle of binary relations.
+    */
+    public Cyclic_Equijoin_Query(SimpleCycle_Equijoin_Query query)
+    {
+        this();
+        for (int i = 0; i < query.length; i++)
+            add_atom(query.relations.get(i), "A" + (i + 1), "A" + ((i + 1) % query.length + 1));
+    }
+
+    /**
+     * Adds a relational atom to the query.
+     * @param r The relation of the atom.
+     * @param atom_variables The variables of the atom, one for each attribute of the relation.
+    */
+    public void add_atom(Relation r, String... atom_variables)
+    {
+        if (atom_variables.length != r.schema.length)
+        {
+            System.err.println("Relation " + r.relation_id + " has " + r.schema.length + " attributes but got " + atom_variables.length + " variables");
+            System.exit(1);
+        }
+        this.relations.add(r);
+        this.variables.add(atom_variables);
+        this.length++;
+    }
+
+    /**
+     * @return List<String> The distinct variables of the query in the order in which they first appear.
+    */
+    public List<String> get_variables()
+    {
+        LinkedHashSet<String> res = new LinkedHashSet<String>();
+        for (String[] atom_variables : variables)
+            for (String v : atom_variables) res.add(v);
+        return new ArrayList<String>(res);
+    }
+}
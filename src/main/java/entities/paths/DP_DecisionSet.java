@@ -1,9 +1,13 @@
 package entities.paths;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Stack;
+import java.util.function.Consumer;
+
+import util.Engine_Events;
 
 /** 
  * Class that represents a set of decisions (outgoing edges in the DP graph), each one leading to a different target.
@@ -62,6 +66,56 @@ public class DP_DecisionSet
      * Needed for {@link algorithms.paths.DP_Recursive} (includes a decision from this set).
     */
     public DP_Suffix_Solution rec_best_suffix;
+    /** 
+     * For {@link algorithms.paths.DP_Direct_Access}: 
+     * prefix_counts[j] is the number of solutions that continue with one of the first j decisions of the set
+     * (it has one more element than the decisions and the last one is the total).
+    */
+    public BigInteger[] prefix_counts;
+    /** 
+     * For {@link algorithms.paths.DP_Direct_Access}: 
+     * The decisions of the set in the order of {@link #prefix_counts}.
+     * It is a snapshot of {@link #list_of_decisions}, which the any-k algorithms (e.g., {@link algorithms.paths.DP_Quick}) reorder in place.
+    */
+    public DP_Decision[] counted_decisions;
+    /** 
+     * For {@link algorithms.paths.DP_Sampler}: 
+     * prefix_weights[j] is the total weight of the solutions that continue with one of the first j decisions of the set
+     * (scaled so that the heaviest of them has weight 1).
+    */
+    public double[] prefix_weights;
+    /** 
+     * For {@link algorithms.paths.DP_Sampler}: 
+     * The decisions of the set in the order of {@link #prefix_weights}.
+     * It is the {@link #counted_decisions} at the time the weights were computed
+     * (a later direct access or selection over the same graph replaces that array instead of modifying it).
+    */
+    public DP_Decision[] weighted_decisions;
+    /** 
+     * For {@link algorithms.paths.DP_Sampler}: 
+     * The natural logarithm of the (unscaled) total weight of the solutions that continue with each decision
+     * of {@link #weighted_decisions} and with any of them (negative infinity for none).
+     * Unlike {@link #prefix_weights}, they do not underflow.
+    */
+    public double[] log_weights;
+    public double log_total_weight;
+    /** 
+     * For {@link algorithms.paths.DP_Selection}: 
+     * The minimum and the maximum cost of the solutions that continue with a decision of the set
+     * (positive and negative infinity respectively if there are none).
+    */
+    public double min_total_cost, max_total_cost;
+    /** 
+     * For {@link algorithms.paths.DP_Selection}: 
+     * Whether all the solutions that continue with the same decision have the same cost (e.g., when the targets are terminal).
+    */
+    public boolean fixed_cost_targets;
+    /** 
+     * Set by the demand-driven bottom-up ({@link entities.paths.DP_Problem_Instance#bottom_up_demand})
+     * if the optimal costs of some targets have not been computed yet.
+    */
+    private DP_Problem_Instance deferred_instance;
+    private double deferred_bound;
 
     public DP_DecisionSet()
     {
@@ -70,6 +124,7 @@ public class DP_DecisionSet
         this.partial_order_computed = false;
         this.pq_rec = null;
         this.rec_best_suffix = null;
+        this.deferred_instance = null;
         this.sorted_suffixes = null;
         this.subscribers = null;
     }
@@ -81,4 +136,95 @@ public class DP_DecisionSet
     {
         list_of_decisions.add(new_decision);
     }
+
+    /** 
+     * Runs the initialization of the partial order of a particular any-k variant on this set
+     * (e.g. {@link algorithms.paths.DP_Lazy#initialize_partial_order}).
+     * The duration is reported as a {@link util.Engine_Events.Partial_Order_Init} event,
+     * which makes the cost of lazy initialization during enumeration visible to JFR.
+     * @param initializer The initialization procedure of the variant.
+     */
+    public void initialize_partial_order(Consumer<DP_DecisionSet> initializer)
+    {
+        resolve_targets();
+        Engine_Events.Partial_Order_Init event = new Engine_Events.Partial_Order_Init();
+        event.begin();
+        initializer.accept(this);
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.problem_setting = "DP";
+            event.decisions = list_of_decisions.size();
+            event.commit();
+        }
+    }
+
+    /** 
+     * Discards the partial order computed by the Anyk-Part variants (and the memoized suffixes),
+     * e.g., because the decisions of the set or their optimal costs have changed.
+     * The order will be computed again the next time that it is needed.
+     * @see entities.paths.DP_Path_Equijoin_Instance#insert
+     */
+    public void reset_partial_order()
+    {
+        // The successors are only set by the initialization of the partial order
+        if (partial_order_computed)
+            for (DP_Decision dec : list_of_decisions) dec.successors = null;
+        this.partial_order_computed = false;
+        this.pq_lazysort = null;
+        this.pivot_stack = null;
+        this.next_idx = 0;
+        reset_suffixes();
+    }
+
+    /** 
+     * Discards everything computed by the bottom-up phase and the any-k algorithms
+     * so that the bottom-up phase can run again (e.g., after the costs change).
+     * @see entities.paths.DP_Problem_Instance#reweight
+     */
+    void reset_bottom_up()
+    {
+        this.best_decision = null;
+        this.deferred_instance = null;
+        reset_partial_order();
+    }
+
+    /** 
+     * Discards the suffix solutions memoized by {@link algorithms.paths.DP_Recursive} and {@link algorithms.paths.DP_PartPlus},
+     * e.g., because the solutions that can be reached from the set have changed.
+     * @return boolean True if any suffixes were memoized.
+     */
+    public boolean reset_suffixes()
+    {
+        boolean memoized = pq_rec != null || rec_best_suffix != null || sorted_suffixes != null;
+        this.pq_rec = null;
+        this.rec_best_suffix = null;
+        this.sorted_suffixes = null;
+        this.subscribers = null;
+        return memoized;
+    }
+
+    /** 
+     * Records that the optimal costs of some targets have been skipped by the demand-driven bottom-up.
+     * @param instance The problem instance that will compute them.
+     * @param node_bound A lower bound on the optimal cost of the nodes that own this set.
+     */
+    void defer_targets(DP_Problem_Instance instance, double node_bound)
+    {
+        this.deferred_instance = instance;
+        this.deferred_bound = node_bound;
+    }
+
+    /** 
+     * Makes sure that the optimal costs of all the targets have been computed.
+     * It has to be called before the decisions are ordered by their optimal costs.
+     * Does nothing unless the demand-driven bottom-up has skipped some of them.
+     */
+    public void resolve_targets()
+    {
+        if (deferred_instance == null) return;
+        DP_Problem_Instance instance = deferred_instance;
+        deferred_instance = null;
+        instance.resolve_deferred_targets(this, deferred_bound);
+    }
 }
@@ -1,13 +1,18 @@
 package entities.paths;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import entities.Relation;
 import entities.State_Node;
+import entities.Topk_Listener;
 import entities.Tuple;
 import util.Common;
+import util.Engine_Events;
 
 /** 
  * A class for DP problems that are equi-join path queries.
@@ -22,6 +27,14 @@ public class DP_Path_Equijoin_Instance extends DP_Problem_Instance
      * The query that creates the DP problem.
     */
 	Path_Equijoin_Query path_query;
+    /** 
+     * Created by the first update (see {@link #insert} and {@link #delete}).
+    */
+    private DP_Update_Index update_index = null;
+    /** 
+     * The standing top-k queries that are notified of the updates (see {@link #monitor_topk}).
+    */
+    private List<DP_Topk_Monitor> monitors = new ArrayList<DP_Topk_Monitor>();
 
     /** 
      * For each tuple, we create a DP state. 
@@ -47,6 +60,8 @@ public class DP_Path_Equijoin_Instance extends DP_Problem_Instance
 
         // The tuples of the last relation in the path correspond 
         // to states that all reach the terminal node with zero cost
+        Engine_Events.Instance_Stage stage_event = new Engine_Events.Instance_Stage();
+        stage_event.begin();
         relation = path_query.relations.get(l - 1);
         new_stage = new ArrayList<DP_State_Node>(relation.tuples.size());
         for (Tuple t : relation.tuples)
@@ -55,6 +70,7 @@ public class DP_Path_Equijoin_Instance extends DP_Problem_Instance
             new_node.set_to_terminal();
             new_stage.add(new_node);
         } 
+        commit_stage_event(stage_event, l - 1, relation, new_stage);
 
         // For all the other relations, insert a stage to the left
         // Discover the edges between the new stage and the previous stage
@@ -62,6 +78,8 @@ public class DP_Path_Equijoin_Instance extends DP_Problem_Instance
         for (int sg = l - 1; sg >= 1; sg--)
         {
             relation_index = sg - 1;    // because indexing of path_query.relations starts with 0 
+            stage_event = new Engine_Events.Instance_Stage();
+            stage_event.begin();
 
             relation = path_query.relations.get(relation_index);
             prev_stage = new_stage;
@@ -116,6 +134,7 @@ public class DP_Path_Equijoin_Instance extends DP_Problem_Instance
                 if (new_node.get_number_of_children() > 0)
                     new_stage.add(new_node);
             } 
+            commit_stage_event(stage_event, relation_index, relation, new_stage);
         }
 
         // Finally, instantiate the starting node and connect it to all the states of stage 1 
@@ -133,6 +152,99 @@ public class DP_Path_Equijoin_Instance extends DP_Problem_Instance
         starting_stage.add(starting_node);
     }
 
+    /** 
+     * Inserts a tuple in the relation it belongs to and updates the graph incrementally:
+     * only the decisions of the nodes that join with it change
+     * and the optimal costs are propagated only to the ancestors whose minimum changed.
+     * The first update indexes the whole graph, thus it is as expensive as a traversal.
+     * IMPORTANT: The bottom-up phase must have already run.
+     * Any-k iterators must be created after the update.
+     * @param t The new tuple. Its relation field specifies the relation of the query it is inserted into 
+     * (it is inserted in all the stages of that relation if it appears more than once).
+     */
+    public void insert(Tuple t)
+    {
+        get_update_index().insert(t);
+        for (DP_Topk_Monitor monitor : new ArrayList<DP_Topk_Monitor>(monitors)) monitor.inserted(t);
+    }
+
+    /** 
+     * Deletes a tuple from the relation it belongs to and updates the graph incrementally
+     * (see {@link #insert}).
+     * @param t The tuple to be deleted (the same object that is stored in the relation).
+     */
+    public void delete(Tuple t)
+    {
+        get_update_index().delete(t);
+        for (DP_Topk_Monitor monitor : new ArrayList<DP_Topk_Monitor>(monitors)) monitor.deleted(Collections.singletonList(t));
+    }
+
+    /** 
+     * Deletes a batch of tuples (e.g., the ones that expire from a window) and updates the graph incrementally,
+     * propagating the optimal costs once for the whole batch (see {@link #insert}).
+     * @param ts The tuples to be deleted (the same objects that are stored in the relations).
+     */
+    public void delete(Collection<Tuple> ts)
+    {
+        get_update_index().delete(ts);
+        for (DP_Topk_Monitor monitor : new ArrayList<DP_Topk_Monitor>(monitors)) monitor.deleted(ts);
+    }
+
+    /** 
+     * Changes the costs of the tuples of some relations (see {@link entities.paths.DP_Problem_Instance#reweight}).
+     * If the instance has been updated or is monitored, the change goes through the index of the incremental updates
+     * (see {@link #insert}), which only propagates the costs of the tuples that changed,
+     * and the monitors only search for the answers that contain them.
+     */
+    @Override
+    public void reweight(Map<Relation, double[]> new_costs)
+    {
+        if (update_index == null && monitors.isEmpty())
+        {
+            super.reweight(new_costs);
+            return;
+        }
+        List<Tuple> changed = get_update_index().reweight(new_costs);
+        for (DP_Topk_Monitor monitor : new ArrayList<DP_Topk_Monitor>(monitors)) monitor.reweighted(changed);
+    }
+
+    /** 
+     * Registers a standing top-k query: the k cheapest answers are maintained under the updates of the instance
+     * (see {@link #insert}, {@link #delete} and {@link #reweight})
+     * and the answers that enter or leave them are reported to the listener after every update.
+     * The initial top-k is computed with an any-k iterator and reported as entered.
+     * IMPORTANT: The bottom-up phase must have already run.
+     * @param k The number of answers to maintain.
+     * @param listener Receives the changes of the top-k.
+     * @return DP_Topk_Monitor The monitor, which gives access to the current top-k.
+     */
+    public DP_Topk_Monitor monitor_topk(int k, Topk_Listener listener)
+    {
+        DP_Topk_Monitor monitor = new DP_Topk_Monitor(this, k, listener);
+        monitors.add(monitor);
+        return monitor;
+    }
+
+    void remove_monitor(DP_Topk_Monitor monitor)
+    {
+        monitors.remove(monitor);
+    }
+
+    /** 
+     * @return DP_Update_Index The index of the incremental updates, created by the first call.
+     */
+    DP_Update_Index get_update_index()
+    {
+        if (update_index == null) update_index = new DP_Update_Index(this);
+        return update_index;
+    }
+
+    @Override
+    protected List<Relation> relations_in_order()
+    {
+        return path_query.relations;
+    }
+
     /** 
      * Constructs the top-1 solution of the DP problem.
      */
@@ -149,7 +261,21 @@ public class DP_Path_Equijoin_Instance extends DP_Problem_Instance
         return tups;
     }
 
-    public static void main(String args[]) 
+    private static void commit_stage_event(Engine_Events.Instance_Stage event, int relation_idx, Relation relation,
+        List<DP_State_Node> stage)
+    {
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.problem_setting = "DP";
+            event.relation_idx = relation_idx;
+            event.tuples = relation.tuples.size();
+            event.nodes = stage.size();
+            event.commit();
+        }
+    }
+
+    public static void main(String args[])
     {
         // Run the example
         Path_Equijoin_Query example_query = new Path_Equijoin_Query();
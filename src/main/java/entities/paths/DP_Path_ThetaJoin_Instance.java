@@ -2,21 +2,27 @@ package entities.paths;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import algorithms.paths.DP_Anyk_Iterator;
 import algorithms.paths.DP_Recursive;
+import entities.Graph_Statistics;
 import entities.Join_Predicate;
 import entities.Relation;
 import entities.State_Node;
 import entities.Tuple;
 import factorization.Binary_Partitioning;
 import factorization.Equality;
+import factorization.Method_Selector;
 import factorization.Multiway_Partitioning;
 import factorization.Node_Connector;
 import factorization.Shared_Ranges;
 import util.Common;
+import util.Engine_Events;
 
 /**
  * A class for DP problems that are theta-join path queries.
@@ -36,6 +42,10 @@ public class DP_Path_ThetaJoin_Instance extends DP_Problem_Instance {
      * The query that creates the DP problem.
      */
     Path_ThetaJoin_Query path_query;
+    /**
+     * The factorization method used for each join (keyed as "left relation -> right relation").
+     */
+    LinkedHashMap<String, String> edge_methods;
 
     /**
      * For each tuple, we create a DP state.
@@ -47,12 +57,14 @@ public class DP_Path_ThetaJoin_Instance extends DP_Problem_Instance {
      * 
      * @param query  A theta-join query.
      * @param method Sets a particular method for the factorization of the join. If
-     *               null, method selection is automatic.
+     *               null, the method is selected for each join by
+     *               {@link factorization.Method_Selector}.
      */
     public DP_Path_ThetaJoin_Instance(Path_ThetaJoin_Query query, String method) {
         super();
         this.path_query = query;
-        Node_Connector.problem_setting = "DP";
+        this.edge_methods = new LinkedHashMap<String, String>();
+        Node_Connector.set_problem_setting("DP");
 
         DP_State_Node new_node;
         Tuple right_tuple;
@@ -63,6 +75,8 @@ public class DP_Path_ThetaJoin_Instance extends DP_Problem_Instance {
 
         // The tuples of the last relation in the path correspond
         // to states that all reach the terminal node with zero cost
+        Engine_Events.Instance_Stage stage_event = new Engine_Events.Instance_Stage();
+        stage_event.begin();
         relation = path_query.relations.get(l - 1);
         new_stage = new ArrayList<DP_State_Node>(relation.tuples.size());
         for (Tuple t : relation.tuples) {
@@ -70,6 +84,7 @@ public class DP_Path_ThetaJoin_Instance extends DP_Problem_Instance {
             new_node.set_to_terminal();
             new_stage.add(new_node);
         }
+        commit_stage_event(stage_event, l - 1, relation, new_stage);
 
         // For all the other relations, insert a stage to the left
         // To construct the paths that encode the solutions between the new stage and
@@ -77,6 +92,8 @@ public class DP_Path_ThetaJoin_Instance extends DP_Problem_Instance {
         // we resort to the methods in @link{factorization}.
         for (int sg = l - 1; sg >= 1; sg--) {
             relation_index = sg - 1; // because indexing of path_query.relations starts with 0
+            stage_event = new Engine_Events.Instance_Stage();
+            stage_event.begin();
 
             relation = path_query.relations.get(relation_index);
             prev_stage = new_stage;
@@ -87,6 +104,12 @@ public class DP_Path_ThetaJoin_Instance extends DP_Problem_Instance {
                 new_stage.add(new_node);
             }
 
+            Engine_Events.Factorization factorization_event = new Engine_Events.Factorization();
+            factorization_event.begin();
+            long intermediate_nodes_before = Node_Connector.get_intermediate_nodes_created();
+            // The methods used for the conjunctions of the DNF
+            Set<String> chosen_methods = new LinkedHashSet<String>();
+
             List<List<Join_Predicate>> join_condition = path_query.join_conditions.get(relation_index);
             // Handle equi-join without intermediate nodes
             if (Common.is_conjunction_of_simple_equalities(join_condition)) {
@@ -154,60 +177,41 @@ public class DP_Path_ThetaJoin_Instance extends DP_Problem_Instance {
                     }
                     // Encode the state-space of joining tuples between the relations efficiently
                     // according to the type of join conditions
+                    String conjunction_method;
                     if (ineq_cnt == 0 && neq_cnt == 0 && band_cnt == 0) {
                         // Only equalities here or no conditions at all which means cartesian product
                         // Use the equality class
-                        Equality.factorize_equality(new_stage, prev_stage, conjunction);
+                        conjunction_method = "equality";
                     } else if (method == null) {
-                        if (ineq_cnt == 1 && neq_cnt == 0 && band_cnt == 0) {
-                            // A single inequality condition and maybe some equalities
-                            // Use the multi-way partitioning class for lower memory consumption
-                            Multiway_Partitioning.factorize_inequality(new_stage, prev_stage, conjunction);
-                        } else if (ineq_cnt == 0 && neq_cnt == 1 && band_cnt == 0) {
-                            // A single non-equality condition and maybe some equalities
-                            // Use the multi-way partitioning class for lower memory consumption
-                            Multiway_Partitioning.factorize_nonequality(new_stage, prev_stage, conjunction);
-                        } else if (ineq_cnt == 0 && neq_cnt == 0 && band_cnt == 1) {
-                            // A single band condition and maybe some equalities
-                            // Use the multi-way partitioning class for lower memory consumption
-                            Multiway_Partitioning.factorize_band(new_stage, prev_stage, conjunction);
-                        } else {
-                            // A conjunction of inequalities, etc.
-                            // Use the binary partitioning class
-                            Binary_Partitioning.factorize_conjunction(new_stage, prev_stage, conjunction);
-                        }
-                    } else if (method.equals("binary_part")) {
-                        Binary_Partitioning.factorize_conjunction(new_stage, prev_stage, conjunction);
-                    } else if (method.equals("multi_part")) {
-                        if (ineq_cnt == 1 && neq_cnt == 0 && band_cnt == 0) {
-                            Multiway_Partitioning.factorize_inequality(new_stage, prev_stage, conjunction);
-                        } else if (ineq_cnt == 0 && neq_cnt == 1 && band_cnt == 0) {
-                            Multiway_Partitioning.factorize_nonequality(new_stage, prev_stage, conjunction);
-                        } else if (ineq_cnt == 0 && neq_cnt == 0 && band_cnt == 1) {
-                            Multiway_Partitioning.factorize_band(new_stage, prev_stage, conjunction);
-                        } else {
-                            System.err.println(
-                                    "Multiway Partitioning is currently supported only for a single ineq/non-eq/band predicate");
-                            System.exit(1);
-                        }
-                    } else if (method.equals("shared_ranges")) {
-                        if (ineq_cnt == 1 && neq_cnt == 0 && band_cnt == 0) {
-                            // A single inequality condition and maybe some equalities
-                            Shared_Ranges.factorize_inequality(new_stage, prev_stage, conjunction);
-                            set_bottom_up_implementation("iterative");
-                        } else {
-                            System.err
-                                    .println(
-                                            "Shared ranges is currently supported only for a single inequality predicate");
-                            System.exit(1);
-                        }
+                        // Pick the method that is expected to create the smallest graph for this data
+                        conjunction_method = Method_Selector.choose(new_stage, prev_stage, conjunction, true);
                     } else {
-                        System.err.println("Unrecognized method");
-                        System.exit(1);
+                        conjunction_method = method;
                     }
+                    factorize_conjunction(new_stage, prev_stage, conjunction, conjunction_method, ineq_cnt, neq_cnt,
+                            band_cnt);
+                    chosen_methods.add(conjunction_method);
                 }
             }
 
+            String edge_method;
+            if (Common.is_conjunction_of_simple_equalities(join_condition))
+                edge_method = "hash";
+            else
+                edge_method = String.join("+", chosen_methods);
+            edge_methods.put(relation.relation_id + " -> " + path_query.relations.get(relation_index + 1).relation_id,
+                    edge_method);
+            factorization_event.end();
+            if (factorization_event.shouldCommit()) {
+                factorization_event.problem_setting = "DP";
+                factorization_event.relation_idx = relation_index + 1;
+                factorization_event.method = edge_method;
+                factorization_event.conjunctions = join_condition.size();
+                factorization_event.intermediate_nodes = Node_Connector.get_intermediate_nodes_created()
+                        - intermediate_nodes_before;
+                factorization_event.commit();
+            }
+
             // Print new relation sizes
             /*
              * if (method != null && method.equals("binary_part"))
@@ -231,6 +235,7 @@ public class DP_Path_ThetaJoin_Instance extends DP_Problem_Instance {
 
             // Remove dangling nodes
             new_stage.removeIf(node -> node.get_number_of_children() == 0);
+            commit_stage_event(stage_event, relation_index, relation, new_stage);
         }
 
         // Finally, instantiate the starting node and connect it to all the states of
@@ -248,6 +253,72 @@ public class DP_Path_ThetaJoin_Instance extends DP_Problem_Instance {
         }
     }
 
+    /**
+     * Factorizes the join between two stages for a conjunction of predicates with a given method.
+     *
+     * @param method One of "equality", "binary_part", "multi_part",
+     *               "shared_ranges".
+     */
+    private void factorize_conjunction(List<DP_State_Node> new_stage, List<DP_State_Node> prev_stage,
+            List<Join_Predicate> conjunction, String method, int ineq_cnt, int neq_cnt, int band_cnt) {
+        if (method.equals("equality")) {
+            Equality.factorize_equality(new_stage, prev_stage, conjunction);
+        } else if (method.equals("binary_part")) {
+            Binary_Partitioning.factorize_conjunction(new_stage, prev_stage, conjunction);
+        } else if (method.equals("multi_part")) {
+            if (ineq_cnt == 1 && neq_cnt == 0 && band_cnt == 0) {
+                Multiway_Partitioning.factorize_inequality(new_stage, prev_stage, conjunction);
+            } else if (ineq_cnt == 0 && neq_cnt == 1 && band_cnt == 0) {
+                Multiway_Partitioning.factorize_nonequality(new_stage, prev_stage, conjunction);
+            } else if (ineq_cnt == 0 && neq_cnt == 0 && band_cnt == 1) {
+                Multiway_Partitioning.factorize_band(new_stage, prev_stage, conjunction);
+            } else {
+                System.err.println(
+                        "Multiway Partitioning is currently supported only for a single ineq/non-eq/band predicate");
+                System.exit(1);
+            }
+        } else if (method.equals("shared_ranges")) {
+            if (ineq_cnt == 1 && neq_cnt == 0 && band_cnt == 0) {
+                // A single inequality condition and maybe some equalities
+                Shared_Ranges.factorize_inequality(new_stage, prev_stage, conjunction);
+                set_bottom_up_implementation("iterative");
+            } else {
+                System.err.println("Shared ranges is currently supported only for a single inequality predicate");
+                System.exit(1);
+            }
+        } else {
+            System.err.println("Unrecognized method");
+            System.exit(1);
+        }
+    }
+
+    @Override
+    protected List<Relation> relations_in_order() {
+        return path_query.relations;
+    }
+
+    @Override
+    public Graph_Statistics collect_statistics() {
+        Graph_Statistics stats = super.collect_statistics();
+        stats.method_per_edge.putAll(edge_methods);
+        return stats;
+    }
+
+    /**
+     * Reports the construction of a stage as a JFR event (if enabled).
+     */
+    private static void commit_stage_event(Engine_Events.Instance_Stage event, int relation_idx, Relation relation,
+            List<DP_State_Node> stage) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.problem_setting = "DP";
+            event.relation_idx = relation_idx;
+            event.tuples = relation.tuples.size();
+            event.nodes = stage.size();
+            event.commit();
+        }
+    }
+
     public static void main(String args[]) {
         // Run an example with inequalities and equalities
         // Path_ThetaJoin_Query example_query = new Path_ThetaJoin_Query(1);
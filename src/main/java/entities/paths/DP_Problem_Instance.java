@@ -3,14 +3,24 @@ package entities.paths;
 import java.math.BigInteger;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.Stack;
 
+import entities.Aggregate;
+import entities.Graph_Statistics;
+import entities.Relation;
+import entities.Tuple;
+import util.Engine_Events;
+
 /** 
  * An instance of a DP problem realized as a multi-stage graph of state-nodes 
  * where the stages are organized in a path (chain).
@@ -29,7 +39,10 @@ import java.util.Stack;
  * <li>Instantiate weighted edges between them as {@link entities.paths.DP_Decision}.</li>
  * </ul>
  * The {@link #bottom_up} method computes the minimum achievable weight per state/node.
- * By default, it works recursively, but can be specified to work iteratively with {@link #set_bottom_up_implementation}.
+ * By default, it works recursively, but can be specified to work iteratively, in parallel
+ * or on demand with {@link #set_bottom_up_implementation}.
+ * The costs of the tuples can be changed afterwards with {@link #reweight}, which re-runs only the bottom-up phase
+ * (subclasses that maintain an index of incremental updates only propagate the costs of the tuples that changed).
  * @author Nikolaos Tziavelis
 */
 public abstract class DP_Problem_Instance
@@ -39,9 +52,14 @@ public abstract class DP_Problem_Instance
     */
     public DP_State_Node starting_node;
     /** 
-     * Can be "recursive" or "iterative".
+     * Can be "recursive", "iterative", "parallel" or "demand".
     */
     public String bottom_up_implementation = "recursive";
+    /** 
+     * Lower bounds on the optimal cost of the nodes of each relation, used by the demand-driven bottom-up.
+     * Null if no bounds are known.
+    */
+    protected IdentityHashMap<Relation, Double> node_lower_bounds = null;
 
     /** 
      * Creates a new problem instance by constructing all states from the last stage to the first stage. 
@@ -50,7 +68,8 @@ public abstract class DP_Problem_Instance
 
     /** 
      * Chooses how the bottom-up phase will be executed.
-     * @param impl A String that can be "recursive" or "iterative".
+     * @param impl A String that can be "recursive", "iterative", "parallel" (see {@link #bottom_up_parallel}) 
+     * or "demand" (see {@link #bottom_up_demand}).
     */
     public void set_bottom_up_implementation(String impl)
     {
@@ -65,13 +84,25 @@ public abstract class DP_Problem_Instance
      */
     public void bottom_up()
     {
+        Engine_Events.Bottom_Up event = new Engine_Events.Bottom_Up();
+        event.begin();
         if (bottom_up_implementation.equals("recursive")) bottom_up_rec();
         else if (bottom_up_implementation.equals("iterative")) bottom_up_iter();
+        else if (bottom_up_implementation.equals("parallel")) bottom_up_parallel();
+        else if (bottom_up_implementation.equals("demand")) bottom_up_demand();
         else
         {
             System.err.println("Bottom-up implementation not recognized!");
             System.exit(1);
         }
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.problem_setting = "DP";
+            event.implementation = bottom_up_implementation;
+            event.opt_cost = starting_node.get_opt_cost();
+            event.commit();
+        }
     }
 
     /** 
@@ -135,6 +166,134 @@ public abstract class DP_Problem_Instance
         return;
     }
 
+    /** 
+     * Demand-driven implementation of the bottom-up phase.
+     * Only the nodes needed for the top-1 solution are visited, in a best-first order:
+     * the decisions of a node are examined in ascending order of their cost plus a lower bound 
+     * on the optimal cost of their target (see {@link #lower_bound}),
+     * and the ones whose bound cannot beat the best decision found so far are skipped.
+     * The optimal costs of their targets are computed later, if and when an any-k algorithm needs them
+     * (see {@link entities.paths.DP_DecisionSet#resolve_targets}).
+     * Without lower bounds (see {@link #relations_in_order}), the whole graph is visited.
+     * Recursive, thus not suitable for a large number of stages.
+     */
+    public void bottom_up_demand()
+    {
+        List<Relation> relations = relations_in_order();
+        if (relations != null && node_lower_bounds == null) set_path_lower_bounds(relations);
+        compute_opt_cost_demand(starting_node, Double.NEGATIVE_INFINITY);
+    }
+
+    /** 
+     * Computes the optimal cost of a node, deferring the decisions that cannot be part of its optimal solution.
+     * @param node The node we start from.
+     * @param node_bound A lower bound on the optimal cost of the node.
+     */
+    private void compute_opt_cost_demand(DP_State_Node node, double node_bound)
+    {
+        if (node.get_opt_cost() != Double.POSITIVE_INFINITY) return;
+        if (node.is_terminal())
+        {
+            node.set_opt_cost(0.0);
+            return;
+        }
+        DP_DecisionSet decisions = node.decisions;
+        // If the decisions are shared with a node that has been computed, just look up the best one
+        if (decisions.best_decision == null)
+        {
+            List<DP_Decision> list = decisions.list_of_decisions;
+            int n = list.size();
+            Integer[] order = new Integer[n];
+            double[] bounds = new double[n];
+            for (int i = 0; i < n; i++)
+            {
+                DP_Decision dec = list.get(i);
+                order[i] = i;
+                bounds[i] = dec.cost + lower_bound(dec.target, node_bound);
+            }
+            // Without bounds, there is nothing to gain by sorting
+            if (node_lower_bounds != null) Arrays.sort(order, (i, j) -> Double.compare(bounds[i], bounds[j]));
+
+            DP_Decision best_decision = null;
+            int examined = 0;
+            for (; examined < n; examined++)
+            {
+                int i = order[examined];
+                // The remaining decisions cannot lead to a better solution
+                // (ties have to be examined because they are broken consistently with the partial orders)
+                if (best_decision != null && bounds[i] > best_decision.get_opt_cost()) break;
+                DP_Decision dec = list.get(i);
+                compute_opt_cost_demand(dec.target, lower_bound(dec.target, node_bound));
+                if (best_decision == null || dec.compareTo(best_decision) < 0) best_decision = dec;
+            }
+            decisions.best_decision = best_decision;
+            if (examined < n) decisions.defer_targets(this, node_bound);
+        }
+        if (decisions.best_decision == null) node.set_opt_cost(Double.POSITIVE_INFINITY);
+        else node.set_opt_cost(decisions.best_decision.get_opt_cost());
+    }
+
+    /** 
+     * Computes the optimal costs of all the targets of a decision set
+     * that were skipped by {@link #bottom_up_demand}.
+     * @param decisions The decision set.
+     * @param node_bound The lower bound on the optimal cost of the nodes that the decision set belongs to.
+     */
+    void resolve_deferred_targets(DP_DecisionSet decisions, double node_bound)
+    {
+        for (DP_Decision dec : decisions.list_of_decisions)
+            compute_opt_cost_demand(dec.target, lower_bound(dec.target, node_bound));
+    }
+
+    /** 
+     * A lower bound on the optimal cost of a node, i.e., the minimum cost to reach the terminal from it.
+     * For a tuple, it is the sum of the minimum tuple costs of all the relations after it.
+     * Intermediate (factorization) nodes are connected with zero-cost edges to the tuples of the next relation,
+     * thus they inherit the bound of the node they are reached from.
+     * @param node The node.
+     * @param parent_bound The lower bound of the node that we reached this one from.
+     * @return double The lower bound (negative infinity if unknown).
+     */
+    protected double lower_bound(DP_State_Node node, double parent_bound)
+    {
+        if (node.state_info instanceof Tuple)
+        {
+            if (node_lower_bounds == null) return Double.NEGATIVE_INFINITY;
+            Double bound = node_lower_bounds.get(((Tuple) node.state_info).relation);
+            return bound == null ? Double.NEGATIVE_INFINITY : bound;
+        }
+        return parent_bound;
+    }
+
+    /** 
+     * @return List<Relation> The relations that correspond to the stages of the path in order,
+     * or null if the instance does not correspond to a path query (no lower bounds are used then).
+     */
+    protected List<Relation> relations_in_order()
+    {
+        return null;
+    }
+
+    /** 
+     * Computes the lower bounds used by {@link #lower_bound} from the minimum tuple cost of each relation.
+     * A relation that appears more than once in the path gets the smallest of its bounds.
+     * @param relations The relations of the path in order.
+     */
+    protected void set_path_lower_bounds(List<Relation> relations)
+    {
+        node_lower_bounds = new IdentityHashMap<Relation, Double>();
+        double suffix_bound = 0.0;
+        for (int i = relations.size() - 1; i >= 0; i--)
+        {
+            Relation relation = relations.get(i);
+            node_lower_bounds.merge(relation, suffix_bound, Math::min);
+            double min_cost = Double.POSITIVE_INFINITY;
+            for (Tuple t : relation.tuples) min_cost = Math.min(min_cost, t.cost);
+            // An empty relation gives no solutions anyway
+            if (min_cost != Double.POSITIVE_INFINITY) suffix_bound += min_cost;
+        }
+    }
+
     /** 
      * Iterative implementation of bottom-up phase.
      * Makes two passes, one to compute an appropriate order and then another in that order
@@ -231,6 +390,93 @@ public abstract class DP_Problem_Instance
         }
     }
 
+    /** 
+     * Parallel implementation of the bottom-up phase.
+     * The nodes are grouped into levels by their height (the number of edges of the longest path to a terminal)
+     * and the levels are processed from the terminals up.
+     * A level depends only on lower ones, thus its decision sets (and then its nodes)
+     * are processed in parallel in the common ForkJoin pool.
+     */
+    public void bottom_up_parallel()
+    {
+        // Compute the heights in a topological order, where the children appear before their parents
+        List<DP_State_Node> nodes_topological_order = topological_order();
+        IdentityHashMap<DP_State_Node, Integer> heights = new IdentityHashMap<DP_State_Node, Integer>();
+        List<List<DP_State_Node>> levels = new ArrayList<List<DP_State_Node>>();
+        for (DP_State_Node node : nodes_topological_order)
+        {
+            // A node may appear more than once in the order
+            if (heights.containsKey(node)) continue;
+            int height = 0;
+            for (DP_Decision dec : node.get_decisions()) height = Math.max(height, heights.get(dec.target) + 1);
+            heights.put(node, height);
+            while (levels.size() <= height) levels.add(new ArrayList<DP_State_Node>());
+            levels.get(height).add(node);
+        }
+
+        for (List<DP_State_Node> level : levels)
+        {
+            // Nodes that share decisions have the same children, thus they are on the same level
+            Set<DP_DecisionSet> level_sets = Collections.newSetFromMap(new IdentityHashMap<DP_DecisionSet, Boolean>());
+            for (DP_State_Node node : level) if (!node.is_terminal()) level_sets.add(node.decisions);
+            level_sets.parallelStream().forEach(decisions ->
+            {
+                DP_Decision best_decision = null;
+                for (DP_Decision dec : decisions.list_of_decisions)
+                    if (best_decision == null || dec.compareTo(best_decision) < 0) best_decision = dec;
+                decisions.best_decision = best_decision;
+            });
+            level.parallelStream().forEach(node ->
+            {
+                if (node.is_terminal()) node.set_opt_cost(0.0);
+                else if (node.decisions.best_decision == null) node.set_opt_cost(Double.POSITIVE_INFINITY);
+                else node.set_opt_cost(node.decisions.best_decision.get_opt_cost());
+            });
+        }
+    }
+
+    /** 
+     * Changes the costs of the tuples of some relations without rebuilding the graph.
+     * The costs of the decisions that lead to their tuples are updated in place,
+     * the optimal costs and the partial orders of the any-k algorithms are discarded
+     * and the bottom-up phase runs again (with the implementation that has been set, e.g., "parallel").
+     * Any-k iterators must be created after the update.
+     * @param new_costs For each relation to be updated, the new costs of its tuples 
+     * (in the order of {@link entities.Relation#tuples}).
+     */
+    public void reweight(Map<Relation, double[]> new_costs)
+    {
+        for (Map.Entry<Relation, double[]> entry : new_costs.entrySet())
+        {
+            List<Tuple> tuples = entry.getKey().tuples;
+            double[] costs = entry.getValue();
+            if (costs.length != tuples.size())
+            {
+                System.err.println("Expected " + tuples.size() + " costs for relation " + entry.getKey().relation_id + " but got " + costs.length);
+                System.exit(1);
+            }
+            for (int i = 0; i < costs.length; i++) tuples.get(i).cost = costs[i];
+        }
+
+        // The cost of a decision is the cost of the tuple it leads to (or zero for intermediate nodes)
+        Set<DP_DecisionSet> visited = Collections.newSetFromMap(new IdentityHashMap<DP_DecisionSet, Boolean>());
+        for (DP_State_Node node : topological_order())
+        {
+            node.set_opt_cost(Double.POSITIVE_INFINITY);
+            if (!visited.add(node.decisions)) continue;
+            for (DP_Decision dec : node.decisions.list_of_decisions)
+            {
+                if (!(dec.target.state_info instanceof Tuple)) continue;
+                Tuple t = (Tuple) dec.target.state_info;
+                if (new_costs.containsKey(t.relation)) dec.cost = t.cost;
+            }
+            node.decisions.reset_bottom_up();
+        }
+        // The lower bounds depend on the tuple costs
+        node_lower_bounds = null;
+        bottom_up();
+    }
+
     /** 
      * Computes the total number of DP solutions to the problem instance.
      * These are paths that begin at the starting node and end at some terminal node.
@@ -282,6 +528,117 @@ public abstract class DP_Problem_Instance
         return res;
     }
 
+    /** 
+     * Computes the COUNT, SUM, MIN, MAX and AVG of the costs of all the DP solutions
+     * with a bottom-up pass over the graph (like {@link #count_solutions}, but with long counts that are only promoted on overflow).
+     * @return Aggregate The aggregates of all the solutions.
+     */
+    public Aggregate aggregate()
+    {
+        return aggregate_below(this.starting_node, new IdentityHashMap<DP_DecisionSet, Aggregate>());
+    }
+
+    /** 
+     * Computes the COUNT, SUM, MIN, MAX and AVG of the costs of the DP solutions grouped by the values of some attributes of a relation.
+     * The aggregates of the solutions that contain a tuple are the concatenation of those of the paths above its node and below it.
+     * The aggregates below the nodes are computed as in {@link #aggregate()}
+     * and those above them by a top-down pass that visits the nodes in topological order
+     * (a decision set that is shared by several nodes is visited once, after all of them).
+     * @param relation A relation that appears exactly once in the query.
+     * @param attributes The indexes of the grouping attributes in the relation.
+     * @return Map<List<Double>, Aggregate> The aggregates of every group (of the values of the attributes) that has solutions.
+     */
+    public Map<List<Double>, Aggregate> aggregate(Relation relation, int... attributes)
+    {
+        Map<DP_DecisionSet, Aggregate> below = new IdentityHashMap<DP_DecisionSet, Aggregate>();
+        Aggregate total = aggregate_below(this.starting_node, below);
+        // Reverse postorder of the nodes and the number of nodes that own every decision set
+        List<DP_State_Node> order = new ArrayList<DP_State_Node>();
+        Map<DP_DecisionSet, Integer> owners = new IdentityHashMap<DP_DecisionSet, Integer>();
+        postorder(this.starting_node, new IdentityHashMap<DP_State_Node, Boolean>(), owners, order);
+        Collections.reverse(order);
+
+        Map<DP_State_Node, Aggregate> above = new IdentityHashMap<DP_State_Node, Aggregate>();
+        Map<DP_DecisionSet, Aggregate> above_sets = new IdentityHashMap<DP_DecisionSet, Aggregate>();
+        above.put(this.starting_node, Aggregate.UNIT);
+        Map<List<Double>, Aggregate> res = new LinkedHashMap<List<Double>, Aggregate>();
+        Aggregate grouped = Aggregate.EMPTY;
+        for (DP_State_Node node : order)
+        {
+            Aggregate node_above = above.getOrDefault(node, Aggregate.EMPTY);
+            if (node.state_info instanceof Tuple && ((Tuple) node.state_info).relation == relation)
+            {
+                Aggregate through = node_above.times(aggregate_below(node, below));
+                if (!through.is_empty())
+                {
+                    res.merge(group_key((Tuple) node.state_info, attributes), through, Aggregate::plus);
+                    grouped = grouped.plus(through);
+                }
+            }
+            if (node.is_terminal()) continue;
+            DP_DecisionSet decisions = node.decisions;
+            Aggregate set_above = above_sets.getOrDefault(decisions, Aggregate.EMPTY).plus(node_above);
+            above_sets.put(decisions, set_above);
+            // Once all the nodes that own the decision set have been visited, pass the aggregate to the targets
+            if (owners.merge(decisions, -1, Integer::sum) == 0)
+                for (DP_Decision dec : decisions.list_of_decisions)
+                    above.merge(dec.target, set_above.times(Aggregate.of_cost(dec.cost)), Aggregate::plus);
+        }
+        // Every solution has to contain exactly one tuple of the relation
+        if (!grouped.get_count().equals(total.get_count()))
+        {
+            System.err.println("Relation " + relation.relation_id + " does not appear exactly once in the query");
+            System.exit(1);
+        }
+        return res;
+    }
+
+    /** 
+     * Recursively computes the aggregates of the solutions starting from some specific node.
+     * @param below A map containing the aggregates for all the decision sets that have been computed.
+     * @return Aggregate The aggregates of the costs of the DP solutions starting from node.
+     */
+    private Aggregate aggregate_below(DP_State_Node node, Map<DP_DecisionSet, Aggregate> below)
+    {
+        if (node.is_terminal()) return Aggregate.UNIT;
+        DP_DecisionSet decisions = node.decisions;
+        Aggregate res = below.get(decisions);
+        if (res == null)
+        {
+            res = Aggregate.EMPTY;
+            for (DP_Decision dec : decisions.list_of_decisions)
+                res = res.plus(Aggregate.of_cost(dec.cost).times(aggregate_below(dec.target, below)));
+            below.put(decisions, res);
+        }
+        return res;
+    }
+
+    /** 
+     * Adds the nodes reachable from a node to a list in DFS postorder
+     * and counts the nodes that own every decision set.
+     */
+    private void postorder(DP_State_Node node, Map<DP_State_Node, Boolean> visited, Map<DP_DecisionSet, Integer> owners, List<DP_State_Node> order)
+    {
+        visited.put(node, true);
+        if (!node.is_terminal())
+        {
+            owners.merge(node.decisions, 1, Integer::sum);
+            for (DP_Decision dec : node.decisions.list_of_decisions)
+                if (!visited.containsKey(dec.target)) postorder(dec.target, visited, owners, order);
+        }
+        order.add(node);
+    }
+
+    /** 
+     * @return List<Double> The values of some attributes of a tuple.
+     */
+    private static List<Double> group_key(Tuple t, int[] attributes)
+    {
+        List<Double> key = new ArrayList<Double>(attributes.length);
+        for (int attribute : attributes) key.add(t.values[attribute]);
+        return key;
+    }
+
     /** 
      * Computes the total size of the DP state graph as the sum of nodes (states) and edges (decisions) with a DFS traversal.
      * @return BigInteger The size of the DP graph (state space).
@@ -319,6 +676,66 @@ public abstract class DP_Problem_Instance
         return res;
     }
     
+    /** 
+     * Gathers statistics about the structure of the graph with a BFS from the starting node.
+     * Intermediate nodes (those that do not correspond to tuples) are attributed to the join edge
+     * of the closest tuple node above them.
+     * @return Graph_Statistics The statistics, including the number of solutions.
+     */
+    public Graph_Statistics collect_statistics()
+    {
+        Graph_Statistics stats = new Graph_Statistics();
+        IdentityHashMap<Object, Boolean> seen_sets = new IdentityHashMap<Object, Boolean>();
+        // For intermediate nodes, the label of the relation where their join edge starts
+        Map<DP_State_Node, String> edge_source = new HashMap<DP_State_Node, String>();
+        // The relation where each join edge ends
+        Map<String, String> edge_target = new HashMap<String, String>();
+        Map<String, Long> intermediate_cnt = new LinkedHashMap<String, Long>();
+        Set<DP_State_Node> visited = new HashSet<DP_State_Node>();
+        Queue<DP_State_Node> queue = new ArrayDeque<DP_State_Node>();
+        DP_State_Node curr_node;
+        String source;
+        queue.add(starting_node);
+        visited.add(starting_node);
+
+        while (!queue.isEmpty())
+        {
+            curr_node = queue.remove();
+            if (curr_node == starting_node)
+            {
+                stats.nodes += 1;
+                source = null;
+            }
+            else if (curr_node.state_info instanceof Tuple)
+            {
+                source = Graph_Statistics.stage_label((Tuple) curr_node.state_info);
+                stats.add_stage_node(source);
+            }
+            else
+            {
+                source = edge_source.get(curr_node);
+                intermediate_cnt.merge(source, 1L, Long::sum);
+            }
+            stats.add_decision_set(curr_node.decisions, curr_node.decisions.list_of_decisions.size(), seen_sets);
+
+            for (DP_Decision dec : curr_node.get_decisions())
+            {
+                DP_State_Node child = dec.target;
+                if (source != null && child.state_info instanceof Tuple)
+                    edge_target.putIfAbsent(source, Graph_Statistics.stage_label((Tuple) child.state_info));
+                if (visited.add(child))
+                {
+                    if (!(child.state_info instanceof Tuple)) edge_source.put(child, source);
+                    queue.add(child);
+                }
+            }
+        }
+        for (Map.Entry<String, Long> e : intermediate_cnt.entrySet())
+            stats.add_intermediate_nodes(e.getKey() + " -> " + edge_target.getOrDefault(e.getKey(), "?"), e.getValue());
+        stats.answers = count_solutions();
+        return stats;
+    }
+    
     /** 
      * DEPRECATED: to find all solutons use the batch algorithm instead (wih DFS).
      * Returns all possible solutions (paths from starting state to terminal state) via a BFS exporation
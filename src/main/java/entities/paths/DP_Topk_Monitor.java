@@ -0,0 +1,179 @@
+package entities.paths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import algorithms.Configuration;
+import algorithms.paths.DP_Take2;
+import entities.Relation;
+import entities.Topk_Listener;
+import entities.Topk_Monitor;
+import entities.Tuple;
+
+/**
+ * Maintains the top-k answers of a {@link entities.paths.DP_Path_Equijoin_Instance} under inserts and deletes
+ * and reweights (see {@link entities.paths.DP_Path_Equijoin_Instance#monitor_topk}).
+ * Every new answer contains the inserted tuple, thus after an insert we only search for the answers
+ * that go through one of its nodes and beat the most expensive kept answer (see {@link entities.Topk_Monitor}).
+ * The search extends the node downwards through the decisions and upwards through the owners of the parent sets,
+ * pruning with the optimal cost of the suffix (the optimal cost of a node) and of the prefix (the cheapest
+ * path from the starting node to a set, see {@link entities.paths.DP_Update_Index#prefix_cost}).
+ * Since both bounds are exact, every branch that is not pruned leads to an answer that beats the threshold,
+ * thus the search costs O(l) per answer that is kept (plus the scans of the decisions that are pruned).
+ * A delete can only remove answers, thus the kept answers that contain a deleted tuple are dropped
+ * and replaced from the reserve.
+ * A reweight only changes the answers that contain a reweighted tuple,
+ * thus these are dropped and found again with the same search as for inserts through the reweighted tuples.
+ * The top-k is recomputed with an any-k iterator only when the reserve runs out.
+ * @author Nikolaos Tziavelis
+*/
+public class DP_Topk_Monitor extends Topk_Monitor
+{
+    private DP_Path_Equijoin_Instance instance;
+    private List<Relation> relations;
+    private int l;
+    /**
+     * The answer that the search is currently constructing, one tuple per stage.
+    */
+    private Tuple[] answer;
+
+    DP_Topk_Monitor(DP_Path_Equijoin_Instance instance, int k, Topk_Listener listener)
+    {
+        super(k, listener);
+        this.instance = instance;
+        this.relations = instance.path_query.relations;
+        this.l = instance.path_query.length;
+        this.answer = new Tuple[l];
+        refresh();
+    }
+
+    /**
+     * Stops monitoring the instance. No more changes are reported to the listener.
+     */
+    public void cancel()
+    {
+        instance.remove_monitor(this);
+    }
+
+    /**
+     * Recomputes the top-k and the reserve from scratch with an any-k iterator.
+     */
+    void refresh()
+    {
+        DP_Take2 iter = new DP_Take2(instance, new Configuration());
+        List<List<Tuple>> answers = new ArrayList<List<Tuple>>();
+        List<Double> costs = new ArrayList<Double>();
+        boolean exhausted = false;
+        while (answers.size() < capacity)
+        {
+            DP_Solution sol = iter.get_next();
+            if (sol == null)
+            {
+                exhausted = true;
+                break;
+            }
+            answers.add(sol.solutionToTuples_strict_order());
+            costs.add(sol.get_cost());
+        }
+        replace_all(answers, costs, exhausted);
+        publish();
+    }
+
+    /**
+     * Finds the new answers that enter the top-k after a tuple was inserted in the graph.
+     * @param t The inserted tuple.
+     */
+    void inserted(Tuple t)
+    {
+        search_through(instance.get_update_index(), t);
+        publish();
+    }
+
+    /**
+     * Updates the top-k after some tuples were deleted from the graph.
+     * @param ts The deleted tuples.
+     */
+    void deleted(Collection<Tuple> ts)
+    {
+        remove_containing(ts);
+        if (needs_refresh()) refresh();
+        else publish();
+    }
+
+    /**
+     * Updates the top-k after the costs of some tuples changed.
+     * @param ts The tuples whose cost changed.
+     */
+    void reweighted(Collection<Tuple> ts)
+    {
+        remove_containing(ts);
+        DP_Update_Index index = instance.get_update_index();
+        for (Tuple t : ts) search_through(index, t);
+        if (needs_refresh()) refresh();
+        else publish();
+    }
+
+    /**
+     * Offers the answers that go through one of the nodes of a tuple and beat the search threshold.
+     */
+    private void search_through(DP_Update_Index index, Tuple t)
+    {
+        for (int r = 0; r < l; r++)
+        {
+            if (relations.get(r) != t.relation) continue;
+            DP_State_Node node = index.get_node(r, t);
+            if (node == null || !index.is_alive(node)) continue;
+            DP_DecisionSet up = index.parent_set(r, node);
+            if (up == null) continue;
+            if (t.cost + node.get_opt_cost() + index.prefix_cost(r, up) >= search_threshold()) continue;
+            answer[r] = t;
+            search_down(index, node, r, t.cost, up, r);
+        }
+    }
+
+    /**
+     * Extends the answer from the node of stage s to the last stage.
+     * @param fixed The cost of the tuples of the answer so far.
+     * @param up The set through which the answer continues upwards from stage low.
+     */
+    private void search_down(DP_Update_Index index, DP_State_Node node, int s, double fixed, DP_DecisionSet up, int low)
+    {
+        if (s == l - 1)
+        {
+            search_up(index, up, low, fixed);
+            return;
+        }
+        double up_cost = index.prefix_cost(low, up);
+        for (DP_Decision dec : node.decisions.list_of_decisions)
+        {
+            if (fixed + dec.get_opt_cost() + up_cost >= search_threshold()) continue;
+            answer[s + 1] = dec.target.toTuple();
+            search_down(index, dec.target, s + 1, fixed + dec.cost, up, low);
+        }
+    }
+
+    /**
+     * Extends the answer from stage r to the first stage through the owners of a set.
+     * @param set The set of stage r that contains the decision to the first node of the answer so far.
+     * @param fixed The cost of the tuples of the answer so far.
+     */
+    private void search_up(DP_Update_Index index, DP_DecisionSet set, int r, double fixed)
+    {
+        if (r == 0)
+        {
+            offer(new ArrayList<Tuple>(Arrays.asList(answer)), fixed);
+            return;
+        }
+        for (DP_State_Node owner : index.get_owners(set))
+        {
+            DP_DecisionSet parent_set = index.parent_set(r - 1, owner);
+            if (parent_set == null) continue;
+            Tuple t = owner.toTuple();
+            if (fixed + t.cost + index.prefix_cost(r - 1, parent_set) >= search_threshold()) continue;
+            answer[r - 1] = t;
+            search_up(index, parent_set, r - 1, fixed + t.cost);
+        }
+    }
+}
@@ -0,0 +1,656 @@
+package entities.paths;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import entities.Relation;
+import entities.Tuple;
+import util.Common;
+
+/**
+ * Indexes the graph of a {@link entities.paths.DP_Path_Equijoin_Instance} so that tuples can be inserted
+ * and deleted without rebuilding it.
+ * Every tuple of stage r gets a node (also the ones that were dropped by the constructor because they are dead-ends)
+ * and the nodes of stage r that agree on the attributes joined with stage r+1 share one DecisionSet (a group),
+ * which contains a decision for every alive node of stage r+1 with the same join values.
+ * A node is alive if it is terminal or has at least one decision and only alive nodes are targets of decisions.
+ * <br><br>
+ * An update first changes the decisions (a set that becomes empty or non-empty changes the liveness of its owners,
+ * which is propagated to their parents immediately).
+ * Then, the groups whose decisions changed are recomputed from the last stage to the first
+ * and a change is propagated to the parent groups only if the optimal cost of their owners changed.
+ * A group is scanned again only if its best decision got worse or was removed,
+ * otherwise the best decision is found among the old one and the decisions that were added or improved.
+ * The partial orders of the any-k algorithms are discarded only for the recomputed groups,
+ * while the memoized suffixes are also discarded for the ancestors that have memoized any.
+ * @author Nikolaos Tziavelis
+*/
+class DP_Update_Index
+{
+    private DP_Path_Equijoin_Instance instance;
+    private List<Relation> relations;
+    private int l;
+    /**
+     * For stage r, the attributes joined with stage r+1 (left) and with stage r-1 (right).
+    */
+    private int[][] left_attributes, right_attributes;
+    /**
+     * The node of each tuple, per stage.
+    */
+    private List<IdentityHashMap<Tuple, DP_State_Node>> nodes;
+    /**
+     * The groups of each stage (except the last one), keyed by the values of the left attributes.
+    */
+    private List<HashMap<List<Double>, DP_DecisionSet>> groups;
+    /**
+     * The nodes of each stage (except the first one), keyed by the values of the right attributes.
+    */
+    private List<HashMap<List<Double>, List<DP_State_Node>>> right_index;
+    private IdentityHashMap<DP_DecisionSet, List<DP_State_Node>> owners;
+    /**
+     * The position of each tuple in the list of its relation, so that a deletion does not scan the relation.
+     * A deleted tuple is replaced by the last tuple of the list (the order of the tuples is not preserved).
+    */
+    private IdentityHashMap<Tuple, Integer> positions;
+    /**
+     * The position of each decision in the list of its set.
+     * It is only a hint, since the any-k algorithms reorder the decisions in place,
+     * and it is recomputed for the whole set when it is found stale.
+    */
+    private IdentityHashMap<DP_Decision, Integer> decision_positions;
+    /**
+     * The decision that leads to each alive node (except the starting node).
+    */
+    private IdentityHashMap<DP_State_Node, DP_Decision> incoming;
+    /**
+     * The sets that have to be recomputed (or whose suffixes have to be discarded),
+     * indexed by the stage of their owners plus one (the starting node is at 0).
+    */
+    private List<Set<DP_DecisionSet>> dirty_sets, dirty_suffixes;
+    /**
+     * For the dirty sets, the best among the decisions that were added or whose targets improved.
+    */
+    private IdentityHashMap<DP_DecisionSet, DP_Decision> improved;
+    /**
+     * The dirty sets that have to be scanned because their best decision may have changed arbitrarily.
+    */
+    private Set<DP_DecisionSet> rescan;
+    /**
+     * The memoized prefix costs of the sets (see {@link #prefix_cost}).
+     * A set is memoized only after the sets above it that its cost depends on,
+     * thus a change discards the sets below the changed nodes (see {@link #invalidate_prefix}) and keeps the rest.
+    */
+    private IdentityHashMap<DP_DecisionSet, Double> prefix_costs;
+
+    /**
+     * Builds the index from the graph that was constructed and went through the bottom-up phase.
+    */
+    DP_Update_Index(DP_Path_Equijoin_Instance instance)
+    {
+        this.instance = instance;
+        this.relations = instance.path_query.relations;
+        this.l = instance.path_query.length;
+        this.left_attributes = new int[l][];
+        this.right_attributes = new int[l][];
+        for (int r = 0; r < l - 1; r++)
+        {
+            left_attributes[r] = instance.path_query.join_conditions.get(r).getValue0();
+            right_attributes[r + 1] = instance.path_query.join_conditions.get(r).getValue1();
+        }
+        this.owners = new IdentityHashMap<DP_DecisionSet, List<DP_State_Node>>();
+        this.positions = new IdentityHashMap<Tuple, Integer>();
+        this.decision_positions = new IdentityHashMap<DP_Decision, Integer>();
+        for (Relation relation : relations)
+            for (int i = 0; i < relation.tuples.size(); i++) positions.put(relation.tuples.get(i), i);
+        this.incoming = new IdentityHashMap<DP_State_Node, DP_Decision>();
+        this.improved = new IdentityHashMap<DP_DecisionSet, DP_Decision>();
+        this.rescan = Collections.newSetFromMap(new IdentityHashMap<DP_DecisionSet, Boolean>());
+        this.prefix_costs = new IdentityHashMap<DP_DecisionSet, Double>();
+        this.dirty_sets = new ArrayList<Set<DP_DecisionSet>>();
+        this.dirty_suffixes = new ArrayList<Set<DP_DecisionSet>>();
+        for (int r = 0; r <= l; r++)
+        {
+            dirty_sets.add(Collections.newSetFromMap(new IdentityHashMap<DP_DecisionSet, Boolean>()));
+            dirty_suffixes.add(Collections.newSetFromMap(new IdentityHashMap<DP_DecisionSet, Boolean>()));
+        }
+        this.nodes = new ArrayList<IdentityHashMap<Tuple, DP_State_Node>>();
+        this.groups = new ArrayList<HashMap<List<Double>, DP_DecisionSet>>();
+        this.right_index = new ArrayList<HashMap<List<Double>, List<DP_State_Node>>>();
+        for (int r = 0; r < l; r++)
+        {
+            nodes.add(new IdentityHashMap<Tuple, DP_State_Node>());
+            groups.add(new HashMap<List<Double>, DP_DecisionSet>());
+            right_index.add(new HashMap<List<Double>, List<DP_State_Node>>());
+        }
+
+        DP_DecisionSet starting_set = instance.starting_node.decisions;
+        if (starting_set.best_decision == null && !starting_set.list_of_decisions.isEmpty())
+        {
+            System.err.println("The bottom-up phase has to run before the instance is updated");
+            System.exit(1);
+        }
+        owners.put(starting_set, new ArrayList<DP_State_Node>(Collections.singletonList(instance.starting_node)));
+
+        // Recover the nodes that are reachable from the starting node, stage by stage
+        // (resolving the targets that the demand-driven bottom-up may have skipped)
+        List<IdentityHashMap<Tuple, DP_State_Node>> reached = new ArrayList<IdentityHashMap<Tuple, DP_State_Node>>();
+        for (int r = 0; r < l; r++) reached.add(new IdentityHashMap<Tuple, DP_State_Node>());
+        starting_set.resolve_targets();
+        for (DP_Decision dec : starting_set.list_of_decisions) reached.get(0).put(dec.target.toTuple(), dec.target);
+        for (int r = 0; r < l - 1; r++)
+        {
+            Set<DP_DecisionSet> visited = Collections.newSetFromMap(new IdentityHashMap<DP_DecisionSet, Boolean>());
+            for (DP_State_Node node : reached.get(r).values())
+            {
+                if (!visited.add(node.decisions)) continue;
+                node.decisions.resolve_targets();
+                for (DP_Decision dec : node.decisions.list_of_decisions)
+                    reached.get(r + 1).put(dec.target.toTuple(), dec.target);
+            }
+        }
+
+        // Index the stages from the last to the first,
+        // creating nodes for the tuples that are not reachable
+        for (int r = l - 1; r >= 0; r--)
+        {
+            // The reachable nodes go first so that the others can share their groups
+            for (Tuple t : relations.get(r).tuples)
+            {
+                DP_State_Node node = reached.get(r).get(t);
+                if (node == null) continue;
+                nodes.get(r).put(t, node);
+                if (r == l - 1) continue;
+                groups.get(r).putIfAbsent(left_key(r, t), node.decisions);
+                add_owner(node);
+            }
+            for (Tuple t : relations.get(r).tuples)
+                if (!nodes.get(r).containsKey(t)) create_node(r, t);
+            if (r > 0)
+                for (Tuple t : relations.get(r).tuples)
+                    add_to_right_index(r, nodes.get(r).get(t));
+        }
+        for (DP_DecisionSet set : owners.keySet())
+        {
+            List<DP_Decision> decisions = set.list_of_decisions;
+            for (int j = 0; j < decisions.size(); j++)
+            {
+                incoming.put(decisions.get(j).target, decisions.get(j));
+                decision_positions.put(decisions.get(j), j);
+            }
+        }
+    }
+
+    /**
+     * Inserts a tuple in all the stages that correspond to its relation.
+     * @param t The new tuple.
+     */
+    void insert(Tuple t)
+    {
+        if (!contains_relation(t.relation))
+        {
+            System.err.println("Inserted tuple " + t + " does not belong to any relation of the query");
+            System.exit(1);
+        }
+        t.relation.insert(t);
+        positions.put(t, t.relation.tuples.size() - 1);
+        // From the last stage to the first so that a group created for the tuple in a stage
+        // sees the node created for the same tuple in the next stage
+        for (int r = l - 1; r >= 0; r--)
+        {
+            if (relations.get(r) != t.relation) continue;
+            DP_State_Node node = create_node(r, t);
+            if (r > 0) add_to_right_index(r, node);
+            if (is_alive(node)) attach(r, node);
+        }
+        propagate();
+    }
+
+    /**
+     * Deletes a tuple from all the stages that correspond to its relation.
+     * @param t The tuple (the same object that was inserted in the relation).
+     */
+    void delete(Tuple t)
+    {
+        if (!contains_relation(t.relation) || !remove_from_relation(t))
+        {
+            System.err.println("Deleted tuple " + t + " does not exist");
+            System.exit(1);
+        }
+        remove_nodes(t);
+        propagate();
+    }
+
+    /**
+     * Deletes a batch of tuples (e.g., the ones that expire from a window)
+     * and propagates the changes once for all of them.
+     * @param ts The tuples (the same objects that were inserted in their relations).
+     */
+    void delete(Collection<Tuple> ts)
+    {
+        for (Tuple t : ts)
+        {
+            if (!contains_relation(t.relation) || !remove_from_relation(t))
+            {
+                System.err.println("Deleted tuple " + t + " does not exist");
+                System.exit(1);
+            }
+        }
+        for (Tuple t : ts) remove_nodes(t);
+        propagate();
+    }
+
+    /**
+     * Changes the costs of the tuples of some relations.
+     * Only the decisions to the nodes of the tuples whose cost changed are updated
+     * and the optimal costs are propagated as for inserts and deletes.
+     * @param new_costs The new costs of all the tuples of each relation, in the order they are stored.
+     * @return List<Tuple> The tuples whose cost changed.
+     */
+    List<Tuple> reweight(Map<Relation, double[]> new_costs)
+    {
+        List<Tuple> changed = new ArrayList<Tuple>();
+        for (Map.Entry<Relation, double[]> entry : new_costs.entrySet())
+        {
+            List<Tuple> tuples = entry.getKey().tuples;
+            double[] costs = entry.getValue();
+            if (costs.length != tuples.size())
+            {
+                System.err.println("Expected " + tuples.size() + " costs for relation " + entry.getKey().relation_id + " but got " + costs.length);
+                System.exit(1);
+            }
+            for (int i = 0; i < costs.length; i++)
+            {
+                if (Double.compare(tuples.get(i).cost, costs[i]) == 0) continue;
+                tuples.get(i).cost = costs[i];
+                changed.add(tuples.get(i));
+            }
+        }
+        for (Tuple t : changed)
+        {
+            for (int r = 0; r < l; r++)
+            {
+                if (relations.get(r) != t.relation) continue;
+                DP_State_Node node = nodes.get(r).get(t);
+                invalidate_prefix(node);
+                if (!is_alive(node)) continue;
+                DP_DecisionSet parent_set = parent_set(r, node);
+                if (parent_set == null) continue;
+                DP_Decision dec = incoming.get(node);
+                double old_cost = dec.cost;
+                dec.cost = t.cost;
+                dirty_sets.get(r).add(parent_set);
+                if (t.cost < old_cost) improve(parent_set, dec);
+                else worsen(parent_set, dec);
+            }
+        }
+        propagate();
+        return changed;
+    }
+
+    /**
+     * Removes the nodes of a deleted tuple from all the stages that correspond to its relation.
+     * Their parents are marked dirty, but nothing is propagated.
+     */
+    private void remove_nodes(Tuple t)
+    {
+        for (int r = l - 1; r >= 0; r--)
+        {
+            if (relations.get(r) != t.relation) continue;
+            DP_State_Node node = nodes.get(r).remove(t);
+            invalidate_prefix(node);
+            if (is_alive(node)) detach(r, node);
+            if (r > 0)
+            {
+                List<Double> key = Common.createSublist(t.values, right_attributes[r]);
+                List<DP_State_Node> same_key = right_index.get(r).get(key);
+                remove_reference(same_key, node);
+                if (same_key.isEmpty()) right_index.get(r).remove(key);
+            }
+            if (r < l - 1)
+            {
+                List<DP_State_Node> group_owners = owners.get(node.decisions);
+                remove_reference(group_owners, node);
+                if (group_owners.isEmpty())
+                {
+                    owners.remove(node.decisions);
+                    groups.get(r).remove(left_key(r, t));
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a tuple from its relation in constant time by moving the last tuple of the relation to its position.
+     * @return boolean True if the tuple was found.
+     */
+    private boolean remove_from_relation(Tuple t)
+    {
+        Integer position = positions.remove(t);
+        if (position == null) return false;
+        List<Tuple> tuples = t.relation.tuples;
+        Tuple last = tuples.remove(tuples.size() - 1);
+        if (last != t)
+        {
+            tuples.set(position, last);
+            positions.put(last, position);
+        }
+        return true;
+    }
+
+    /**
+     * Creates and indexes the node of a tuple in a stage.
+     * It shares the group of its join values or, if there is none, creates it
+     * with decisions to all the alive nodes of the next stage that join with it.
+     */
+    private DP_State_Node create_node(int r, Tuple t)
+    {
+        DP_State_Node node = new DP_State_Node(t);
+        nodes.get(r).put(t, node);
+        if (r == l - 1)
+        {
+            node.set_to_terminal();
+            node.set_opt_cost(0.0);
+            return node;
+        }
+        List<Double> key = left_key(r, t);
+        DP_DecisionSet group = groups.get(r).get(key);
+        if (group != null)
+        {
+            node.share_decisions(owners.get(group).get(0));
+            node.set_opt_cost(owners.get(group).get(0).get_opt_cost());
+        }
+        else
+        {
+            List<DP_State_Node> joining_nodes = right_index.get(r + 1).get(key);
+            if (joining_nodes != null)
+                for (DP_State_Node child : joining_nodes)
+                {
+                    if (!is_alive(child)) continue;
+                    node.add_decision(child, child.toTuple().cost);
+                    List<DP_Decision> added = node.decisions.list_of_decisions;
+                    incoming.put(child, added.get(added.size() - 1));
+                    decision_positions.put(added.get(added.size() - 1), added.size() - 1);
+                    // The prefix costs below the child now go through the new set
+                    invalidate_prefix(child);
+                }
+            groups.get(r).put(key, node.decisions);
+            node.set_opt_cost(compute_best(node.decisions));
+        }
+        add_owner(node);
+        invalidate_prefix(node);
+        return node;
+    }
+
+    /**
+     * Adds a decision to a node that became alive from the set of its parents.
+     * If that set was empty, its owners become alive too.
+     */
+    private void attach(int r, DP_State_Node node)
+    {
+        invalidate_prefix(node);
+        DP_DecisionSet parent_set = parent_set(r, node);
+        if (parent_set == null) return;
+        boolean was_empty = parent_set.list_of_decisions.isEmpty();
+        DP_Decision dec = new DP_Decision(node, node.toTuple().cost, parent_set);
+        parent_set.add(dec);
+        incoming.put(node, dec);
+        decision_positions.put(dec, parent_set.list_of_decisions.size() - 1);
+        dirty_sets.get(r).add(parent_set);
+        improve(parent_set, dec);
+        if (was_empty && r > 0)
+            for (DP_State_Node parent : owners.get(parent_set)) attach(r - 1, parent);
+    }
+
+    /**
+     * Removes the decision to a node that is no longer alive from the set of its parents.
+     * If that set becomes empty, its owners are no longer alive either.
+     */
+    private void detach(int r, DP_State_Node node)
+    {
+        invalidate_prefix(node);
+        DP_DecisionSet parent_set = parent_set(r, node);
+        if (parent_set == null) return;
+        DP_Decision dec = incoming.remove(node);
+        remove_decision(parent_set, dec);
+        dirty_sets.get(r).add(parent_set);
+        worsen(parent_set, dec);
+        if (parent_set.list_of_decisions.isEmpty() && r > 0)
+            for (DP_State_Node parent : owners.get(parent_set)) detach(r - 1, parent);
+    }
+
+    /**
+     * Recomputes the best decisions of the dirty sets from the last stage to the first.
+     * The parents of a set are recomputed only if the optimal cost of its owners changed.
+     */
+    private void propagate()
+    {
+        for (int i = l - 1; i >= 0; i--)
+        {
+            int r = i - 1;  // the stage of the owners
+            for (DP_DecisionSet set : dirty_sets.get(i))
+            {
+                List<DP_State_Node> set_owners = owners.get(set);
+                // The set may have lost all of its owners
+                if (set_owners == null)
+                {
+                    improved.remove(set);
+                    rescan.remove(set);
+                    continue;
+                }
+                set.reset_partial_order();
+                double opt_cost = update_best(set);
+                for (DP_State_Node owner : set_owners)
+                {
+                    double old_cost = owner.get_opt_cost();
+                    owner.set_opt_cost(opt_cost);
+                    if (r < 0 || !is_alive(owner)) continue;
+                    DP_DecisionSet parent_set = parent_set(r, owner);
+                    if (parent_set == null) continue;
+                    if (Double.compare(old_cost, opt_cost) == 0)
+                    {
+                        dirty_suffixes.get(r).add(parent_set);
+                        continue;
+                    }
+                    dirty_sets.get(r).add(parent_set);
+                    if (opt_cost < old_cost) improve(parent_set, incoming.get(owner));
+                    else worsen(parent_set, incoming.get(owner));
+                }
+            }
+            for (DP_DecisionSet set : dirty_suffixes.get(i))
+            {
+                if (dirty_sets.get(i).contains(set) || !owners.containsKey(set)) continue;
+                // Only the ancestors of memoized suffixes can have memoized suffixes through this set
+                if (!set.reset_suffixes() || r < 0) continue;
+                for (DP_State_Node owner : owners.get(set))
+                {
+                    DP_DecisionSet parent_set = parent_set(r, owner);
+                    if (parent_set != null && is_alive(owner)) dirty_suffixes.get(r).add(parent_set);
+                }
+            }
+            dirty_sets.get(i).clear();
+            dirty_suffixes.get(i).clear();
+        }
+        // The lower bounds of the demand-driven bottom-up may no longer hold
+        instance.node_lower_bounds = null;
+    }
+
+    /**
+     * Sets the best decision of a dirty set, scanning it only if needed.
+     * @return double The optimal cost of its owners.
+     */
+    private double update_best(DP_DecisionSet set)
+    {
+        DP_Decision candidate = improved.remove(set);
+        if (rescan.remove(set)) return compute_best(set);
+        if (candidate != null && (set.best_decision == null || candidate.compareTo(set.best_decision) < 0))
+            set.best_decision = candidate;
+        return set.best_decision == null ? Double.POSITIVE_INFINITY : set.best_decision.get_opt_cost();
+    }
+
+    /**
+     * Records a decision of a set that was added or whose target improved.
+     */
+    private void improve(DP_DecisionSet set, DP_Decision dec)
+    {
+        DP_Decision candidate = improved.get(set);
+        if (candidate == null || dec.compareTo(candidate) < 0) improved.put(set, dec);
+    }
+
+    /**
+     * Records a decision of a set that was removed or whose target got worse.
+     * The set has to be scanned if it was the best decision (or the best improved one).
+     */
+    private void worsen(DP_DecisionSet set, DP_Decision dec)
+    {
+        if (dec == set.best_decision || dec == improved.get(set)) rescan.add(set);
+    }
+
+    /**
+     * Sets the best decision of a set by scanning it.
+     * @return double The optimal cost of its owners.
+     */
+    private double compute_best(DP_DecisionSet set)
+    {
+        DP_Decision best_decision = null;
+        for (DP_Decision dec : set.list_of_decisions)
+            if (best_decision == null || dec.compareTo(best_decision) < 0) best_decision = dec;
+        set.best_decision = best_decision;
+        return best_decision == null ? Double.POSITIVE_INFINITY : best_decision.get_opt_cost();
+    }
+
+    /**
+     * @param set A non-empty set of stage r (the one that contains decisions to nodes of stage r).
+     * @return double The minimum cost of the tuples of a path from the starting node to an owner of the set
+     * (infinity if there is none). It is memoized across updates.
+     */
+    double prefix_cost(int r, DP_DecisionSet set)
+    {
+        if (r == 0) return 0.0;
+        Double memoized = prefix_costs.get(set);
+        if (memoized != null) return memoized;
+        double min = Double.POSITIVE_INFINITY;
+        for (DP_State_Node owner : owners.get(set))
+        {
+            if (!is_alive(owner)) continue;
+            DP_DecisionSet parent_set = parent_set(r - 1, owner);
+            if (parent_set == null) continue;
+            min = Math.min(min, owner.toTuple().cost + prefix_cost(r - 1, parent_set));
+        }
+        prefix_costs.put(set, min);
+        return min;
+    }
+
+    /**
+     * Discards the memoized prefix costs that depend on a node, i.e., of its set and of the memoized sets below it.
+     * It is called whenever the node is created, removed, reweighted or becomes alive or dead.
+     */
+    private void invalidate_prefix(DP_State_Node node)
+    {
+        invalidate_prefix(node.decisions);
+    }
+
+    private void invalidate_prefix(DP_DecisionSet set)
+    {
+        // The sets below a set that is not memoized are not memoized either
+        if (prefix_costs.remove(set) == null) return;
+        for (DP_Decision dec : set.list_of_decisions) invalidate_prefix(dec.target.decisions);
+    }
+
+    /**
+     * @return DP_DecisionSet The set that contains the decisions to the nodes of stage r
+     * with the same join values as the node (null if it doesn't exist).
+     */
+    DP_DecisionSet parent_set(int r, DP_State_Node node)
+    {
+        if (r == 0) return instance.starting_node.decisions;
+        return groups.get(r - 1).get(Common.createSublist(node.toTuple().values, right_attributes[r]));
+    }
+
+    boolean is_alive(DP_State_Node node)
+    {
+        return node.is_terminal() || node.get_number_of_children() > 0;
+    }
+
+    /**
+     * @return DP_State_Node The node of a tuple in stage r (null if it doesn't exist).
+     */
+    DP_State_Node get_node(int r, Tuple t)
+    {
+        return nodes.get(r).get(t);
+    }
+
+    /**
+     * @return List<DP_State_Node> The nodes that share a set.
+     */
+    List<DP_State_Node> get_owners(DP_DecisionSet set)
+    {
+        return owners.get(set);
+    }
+
+    private List<Double> left_key(int r, Tuple t)
+    {
+        return Common.createSublist(t.values, left_attributes[r]);
+    }
+
+    private void add_owner(DP_State_Node node)
+    {
+        owners.computeIfAbsent(node.decisions, k -> new ArrayList<DP_State_Node>()).add(node);
+    }
+
+    private void add_to_right_index(int r, DP_State_Node node)
+    {
+        List<Double> key = Common.createSublist(node.toTuple().values, right_attributes[r]);
+        right_index.get(r).computeIfAbsent(key, k -> new ArrayList<DP_State_Node>()).add(node);
+    }
+
+    private boolean contains_relation(Relation relation)
+    {
+        for (Relation r : relations) if (r == relation) return true;
+        return false;
+    }
+
+    /**
+     * Removes a decision from its set in constant time by moving the last decision of the set to its position.
+     * The order of the decisions does not matter, since the partial order of a changed set is discarded.
+     */
+    private void remove_decision(DP_DecisionSet set, DP_Decision dec)
+    {
+        List<DP_Decision> decisions = set.list_of_decisions;
+        Integer position = decision_positions.remove(dec);
+        if (position == null || position >= decisions.size() || decisions.get(position) != dec)
+        {
+            // An any-k algorithm has reordered the set since the positions were recorded
+            for (int j = 0; j < decisions.size(); j++) decision_positions.put(decisions.get(j), j);
+            position = decision_positions.remove(dec);
+        }
+        DP_Decision last = decisions.remove(decisions.size() - 1);
+        if (last != dec)
+        {
+            decisions.set(position, last);
+            decision_positions.put(last, position);
+        }
+    }
+
+    /**
+     * Removes an object from a list by reference (tuples with the same values are equal).
+     * @return boolean True if the object was found.
+     */
+    private static <T> boolean remove_reference(List<T> list, T element)
+    {
+        for (int i = list.size() - 1; i >= 0; i--)
+        {
+            if (list.get(i) == element)
+            {
+                list.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+}
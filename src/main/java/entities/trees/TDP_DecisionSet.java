@@ -1,9 +1,13 @@
 package entities.trees;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Stack;
+import java.util.function.Consumer;
+
+import util.Engine_Events;
 
 /** 
  * Class that represents a set of decisions (edges) in the tree-staged graph of T-DP.
@@ -62,6 +66,55 @@ public class TDP_DecisionSet
      * Needed for {@link algorithms.trees.TDP_Recursive} (includes a decision from this set).
     */
     public TDP_Subtree_Solution rec_best_subtree;
+    /** 
+     * For {@link algorithms.trees.TDP_Direct_Access}: 
+     * prefix_counts[j] is the number of solutions that continue with one of the first j decisions of the set
+     * (it has one more element than the decisions and the last one is the total).
+    */
+    public BigInteger[] prefix_counts;
+    /** 
+     * For {@link algorithms.trees.TDP_Direct_Access}: 
+     * The decisions of the set in the order of {@link #prefix_counts}.
+     * It is a snapshot of {@link #list_of_decisions}, which the any-k algorithms (e.g., {@link algorithms.trees.TDP_Quick}) reorder in place.
+    */
+    public TDP_Decision[] counted_decisions;
+    /** 
+     * For {@link algorithms.trees.TDP_Sampler}: 
+     * prefix_weights[j] is the total weight of the solutions that continue with one of the first j decisions of the set
+     * (scaled so that the heaviest of them has weight 1).
+    */
+    public double[] prefix_weights;
+    /** 
+     * For {@link algorithms.trees.TDP_Sampler}: 
+     * The decisions of the set in the order of {@link #prefix_weights}.
+     * It is the {@link #counted_decisions} at the time the weights were computed
+     * (a later direct access or selection over the same graph replaces that array instead of modifying it).
+    */
+    public TDP_Decision[] weighted_decisions;
+    /** 
+     * For {@link algorithms.trees.TDP_Sampler}: 
+     * The natural logarithm of the (unscaled) total weight of the solutions that continue with each decision
+     * of {@link #weighted_decisions} and with any of them (negative infinity for none).
+     * Unlike {@link #prefix_weights}, they do not underflow.
+    */
+    public double[] log_weights;
+    public double log_total_weight;
+    /** 
+     * For {@link algorithms.trees.TDP_Selection}: 
+     * The minimum and the maximum cost of the solutions that continue with a decision of the set
+     * (positive and negative infinity respectively if there are none).
+    */
+    public double min_total_cost, max_total_cost;
+    /** 
+     * For {@link algorithms.trees.TDP_Selection}: 
+     * Whether all the solutions that continue with the same decision have the same cost (e.g., when the targets are terminal).
+    */
+    public boolean fixed_cost_targets;
+    /** 
+     * Set if the demand-driven bottom-up skipped the optimal costs of some targets (see {@link #resolve_targets}).
+    */
+    private TDP_Problem_Instance deferred_instance;
+    private double deferred_bound;
 
     public TDP_DecisionSet()
     {
@@ -69,6 +122,7 @@ public class TDP_DecisionSet
         this.partial_order_computed = false;
         this.pq_rec = null;
         this.rec_best_subtree = null;
+        this.deferred_instance = null;
     }
 
     /** 
@@ -78,4 +132,95 @@ public class TDP_DecisionSet
     {
         this.list_of_decisions.add(new_decision);
     }
+
+    /** 
+     * Runs the initialization of the partial order of a particular any-k variant on this set
+     * (e.g. {@link algorithms.trees.TDP_Lazy#initialize_partial_order}).
+     * The duration is reported as a {@link util.Engine_Events.Partial_Order_Init} event,
+     * which makes the cost of lazy initialization during enumeration visible to JFR.
+     * @param initializer The initialization procedure of the variant.
+     */
+    public void initialize_partial_order(Consumer<TDP_DecisionSet> initializer)
+    {
+        resolve_targets();
+        Engine_Events.Partial_Order_Init event = new Engine_Events.Partial_Order_Init();
+        event.begin();
+        initializer.accept(this);
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.problem_setting = "T-DP";
+            event.decisions = list_of_decisions.size();
+            event.commit();
+        }
+    }
+
+    /** 
+     * Discards the partial order computed by the Anyk-Part variants (and the memoized suffixes),
+     * e.g., because the decisions of the set or their optimal costs have changed.
+     * The order will be computed again the next time that it is needed.
+     * @see entities.trees.TDP_Thetajoin_Instance#insert
+     */
+    public void reset_partial_order()
+    {
+        // The successors are only set by the initialization of the partial order
+        if (partial_order_computed)
+            for (TDP_Decision dec : list_of_decisions) dec.successors = null;
+        this.partial_order_computed = false;
+        this.pq_lazysort = null;
+        this.pivot_stack = null;
+        this.next_idx = 0;
+        reset_suffixes();
+    }
+
+    /** 
+     * Discards everything computed by the bottom-up phase and the any-k algorithms
+     * so that the bottom-up phase can run again (e.g., after the costs change).
+     * @see entities.trees.TDP_Problem_Instance#reweight
+     */
+    void reset_bottom_up()
+    {
+        this.best_decision = null;
+        this.deferred_instance = null;
+        reset_partial_order();
+    }
+
+    /** 
+     * Discards the solutions memoized by {@link algorithms.trees.TDP_Recursive} and {@link algorithms.trees.TDP_PartPlus},
+     * e.g., because the solutions that can be reached from the set have changed.
+     * @return boolean True if any solutions were memoized.
+     */
+    public boolean reset_suffixes()
+    {
+        boolean memoized = pq_rec != null || rec_best_subtree != null || sorted_suffixes != null;
+        this.pq_rec = null;
+        this.rec_best_subtree = null;
+        this.sorted_suffixes = null;
+        this.subscribers = null;
+        return memoized;
+    }
+
+    /** 
+     * Records that the optimal costs of some targets have been skipped by the demand-driven bottom-up.
+     * @param instance The problem instance that will compute them.
+     * @param inherited_bound The lower bound inherited by the intermediate nodes among the targets.
+     */
+    void defer_targets(TDP_Problem_Instance instance, double inherited_bound)
+    {
+        this.deferred_instance = instance;
+        this.deferred_bound = inherited_bound;
+    }
+
+    /** 
+     * Makes sure that the optimal costs of all the targets have been computed.
+     * It has to be called before the decisions are ordered by their optimal costs.
+     * Does nothing unless the demand-driven bottom-up has skipped some of them.
+     */
+    public void resolve_targets()
+    {
+        if (deferred_instance == null) return;
+        TDP_Problem_Instance instance = deferred_instance;
+        deferred_instance = null;
+        instance.resolve_deferred_targets(this, deferred_bound);
+    }
 }
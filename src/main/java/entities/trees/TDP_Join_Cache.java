@@ -0,0 +1,70 @@
+package entities.trees;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The joins factorized by T-DP instances over the same relations, so that other instances can reuse them
+ * (see {@link entities.trees.TDP_Thetajoin_Instance#TDP_Thetajoin_Instance(Tree_ThetaJoin_Query, String, TDP_Join_Cache)}).
+ * A join is identified by its parent relation, its join condition, the factorization method
+ * and the subtree of its child (identified recursively by its relation and the joins with its children).
+ * For each join we keep the decision sets of the tuples of the parent relation,
+ * which contain the intermediate nodes of the factorization (e.g., the partitions of binary partitioning)
+ * and lead to the nodes of the child.
+ * For each subtree we keep the nodes of its root relation.
+ * Instances that share a join also share the optimal costs computed for it by the bottom-up phase
+ * and the orders of the decisions computed by the any-k algorithms.
+ * @author Nikolaos Tziavelis
+*/
+public class TDP_Join_Cache
+{
+    /**
+     * A factorized join.
+    */
+    static class Join
+    {
+        /**
+         * The nodes of the child relation (after the removal of the dead ends).
+        */
+        final List<TDP_State_Node> child_stage;
+        /**
+         * The decision set of each tuple of the parent relation in the order of the tuples of the relation.
+        */
+        final List<TDP_DecisionSet> decisions;
+        /**
+         * "hash", "binary_part" or "multi_part".
+        */
+        final String method;
+
+        Join(List<TDP_State_Node> child_stage, List<TDP_DecisionSet> decisions, String method)
+        {
+            this.child_stage = child_stage;
+            this.decisions = decisions;
+            this.method = method;
+        }
+    }
+
+    /**
+     * The factorized joins by their keys.
+    */
+    final Map<List<Object>, Join> joins;
+    /**
+     * The nodes of the root relation of each subtree by the key of the subtree.
+    */
+    final Map<List<Object>, List<TDP_State_Node>> stages;
+
+    public TDP_Join_Cache()
+    {
+        this.joins = new HashMap<List<Object>, Join>();
+        this.stages = new HashMap<List<Object>, List<TDP_State_Node>>();
+    }
+
+    /**
+     * @return int The number of joins that have been factorized.
+     */
+    public int size()
+    {
+        return joins.size();
+    }
+}
@@ -4,13 +4,22 @@ import java.math.BigInteger;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
+import entities.Aggregate;
+import entities.Graph_Statistics;
+import entities.Relation;
+import entities.Tuple;
+import util.Engine_Events;
+
 // TODO: remove number of stages (as path case) ??
 
 /** 
@@ -49,6 +58,19 @@ public abstract class TDP_Problem_Instance
      * Includes the starting stage (but not the terminal ones).
     */
     public int stages_no;
+    /** 
+     * Can be "recursive", "parallel" or "demand".
+    */
+    public String bottom_up_implementation = "recursive";
+    /** 
+     * Lower bounds on the optimal cost of the nodes of each relation, used by the demand-driven bottom-up.
+     * Null if no bounds are known.
+    */
+    protected IdentityHashMap<Relation, Double> node_lower_bounds = null;
+    /** 
+     * Lower bounds on the optimal cost of each branch of the nodes of each relation.
+    */
+    protected IdentityHashMap<Relation, double[]> branch_lower_bounds = null;
     /** 
      * The T-DP states are partitioned in stages organized in a tree. 
      * This is represented as an adjacency list.
@@ -84,9 +106,216 @@ public abstract class TDP_Problem_Instance
      */
     public void bottom_up()
     {
-        // Trying to compute the optimal cost of the starting node will trigger a chain of recursive calls
-        // that do the same for every reachable node
-        compute_opt_cost(starting_node);
+        Engine_Events.Bottom_Up event = new Engine_Events.Bottom_Up();
+        event.begin();
+        if (bottom_up_implementation.equals("recursive"))
+            // Trying to compute the optimal cost of the starting node will trigger a chain of recursive calls
+            // that do the same for every reachable node
+            compute_opt_cost(starting_node);
+        else if (bottom_up_implementation.equals("parallel")) bottom_up_parallel();
+        else if (bottom_up_implementation.equals("demand")) bottom_up_demand();
+        else
+        {
+            System.err.println("Bottom-up implementation not recognized!");
+            System.exit(1);
+        }
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.problem_setting = "T-DP";
+            event.implementation = bottom_up_implementation;
+            event.opt_cost = starting_node.get_opt_cost();
+            event.commit();
+        }
+    }
+
+    /** 
+     * Chooses how the bottom-up phase will be executed.
+     * @param impl A String that can be "recursive", "parallel" (see {@link #bottom_up_parallel}) 
+     * or "demand" (see {@link #bottom_up_demand}).
+    */
+    public void set_bottom_up_implementation(String impl)
+    {
+        this.bottom_up_implementation = impl;
+    }
+
+    /** 
+     * Demand-driven implementation of the bottom-up phase.
+     * Only the nodes needed for the top-1 solution are visited, in a best-first order:
+     * the decisions of each branch are examined in ascending order of their cost plus a lower bound 
+     * on the optimal cost of their target (see {@link #lower_bound}),
+     * and the ones whose bound cannot beat the best decision found so far are skipped.
+     * The optimal costs of their targets are computed later, if and when an any-k algorithm needs them
+     * (see {@link entities.trees.TDP_DecisionSet#resolve_targets}).
+     * Without lower bounds (see {@link #prepare_lower_bounds}), the whole graph is visited.
+     */
+    public void bottom_up_demand()
+    {
+        if (node_lower_bounds == null) prepare_lower_bounds();
+        compute_opt_cost_demand(starting_node, Double.NEGATIVE_INFINITY);
+    }
+
+    /** 
+     * Computes the optimal cost of a node, deferring the decisions that cannot be part of its optimal solution.
+     * @param node The node we start from.
+     * @param node_bound A lower bound on the optimal cost of the node.
+     */
+    private void compute_opt_cost_demand(TDP_State_Node node, double node_bound)
+    {
+        if (node.get_opt_cost() != Double.POSITIVE_INFINITY) return;
+        if (node.is_terminal())
+        {
+            node.set_opt_cost(0.0);
+            return;
+        }
+
+        // Sums up the best decisions for all the branches
+        double opt_cost = 0.0;
+        for (int branch = 0; branch < node.decisions.size(); branch++)
+        {
+            TDP_DecisionSet decisions = node.decisions.get(branch);
+            // If the decisions are shared with a node that has been computed, just look up the best one
+            if (decisions.best_decision == null)
+            {
+                double inherited_bound = branch_bound(node, branch, node_bound);
+                List<TDP_Decision> list = decisions.list_of_decisions;
+                int n = list.size();
+                Integer[] order = new Integer[n];
+                double[] bounds = new double[n];
+                for (int i = 0; i < n; i++)
+                {
+                    TDP_Decision dec = list.get(i);
+                    order[i] = i;
+                    bounds[i] = dec.cost + lower_bound(dec.target, inherited_bound);
+                }
+                // Without bounds, there is nothing to gain by sorting
+                if (node_lower_bounds != null) Arrays.sort(order, (i, j) -> Double.compare(bounds[i], bounds[j]));
+
+                TDP_Decision best_decision = null;
+                int examined = 0;
+                for (; examined < n; examined++)
+                {
+                    int i = order[examined];
+                    // The remaining decisions cannot lead to a better solution
+                    // (ties have to be examined because they are broken consistently with the partial orders)
+                    if (best_decision != null && bounds[i] > best_decision.opt_achievable_cost()) break;
+                    TDP_Decision dec = list.get(i);
+                    compute_opt_cost_demand(dec.target, lower_bound(dec.target, inherited_bound));
+                    if (best_decision == null || dec.compareTo(best_decision) < 0) best_decision = dec;
+                }
+                decisions.best_decision = best_decision;
+                if (examined < n) decisions.defer_targets(this, inherited_bound);
+            }
+            if (decisions.best_decision == null) opt_cost = Double.POSITIVE_INFINITY;
+            else opt_cost += decisions.best_decision.opt_achievable_cost();
+        }
+        node.set_opt_cost(opt_cost);
+    }
+
+    /** 
+     * Computes the optimal costs of all the targets of a decision set
+     * that were skipped by {@link #bottom_up_demand}.
+     * @param decisions The decision set.
+     * @param inherited_bound The lower bound inherited by the intermediate nodes among the targets.
+     */
+    void resolve_deferred_targets(TDP_DecisionSet decisions, double inherited_bound)
+    {
+        for (TDP_Decision dec : decisions.list_of_decisions)
+            compute_opt_cost_demand(dec.target, lower_bound(dec.target, inherited_bound));
+    }
+
+    /** 
+     * A lower bound on the optimal cost of a node, i.e., the minimum cost of a subtree from it to the terminals.
+     * For a tuple, it is the sum of the minimum tuple costs of all the relations below it in the join tree.
+     * Intermediate (factorization) nodes are connected with zero-cost edges to the tuples of the child relation,
+     * thus they inherit the bound of the branch they are reached from.
+     * @param node The node.
+     * @param inherited_bound The lower bound of the branch that we reached this node from.
+     * @return double The lower bound (negative infinity if unknown).
+     */
+    protected double lower_bound(TDP_State_Node node, double inherited_bound)
+    {
+        if (node.state_info instanceof Tuple)
+        {
+            if (node_lower_bounds == null) return Double.NEGATIVE_INFINITY;
+            Double bound = node_lower_bounds.get(((Tuple) node.state_info).relation);
+            return bound == null ? Double.NEGATIVE_INFINITY : bound;
+        }
+        return inherited_bound;
+    }
+
+    /** 
+     * A lower bound on the optimal cost of a single branch of a node.
+     * An intermediate node has a single branch with the same bound as the node.
+     */
+    private double branch_bound(TDP_State_Node node, int branch, double node_bound)
+    {
+        if (node.state_info instanceof Tuple)
+        {
+            if (branch_lower_bounds == null) return Double.NEGATIVE_INFINITY;
+            double[] bounds = branch_lower_bounds.get(((Tuple) node.state_info).relation);
+            if (bounds == null || branch >= bounds.length) return Double.NEGATIVE_INFINITY;
+            return bounds[branch];
+        }
+        return node_bound;
+    }
+
+    /** 
+     * Called by {@link #bottom_up_demand} to compute the lower bounds,
+     * typically with {@link #set_tree_lower_bounds}.
+     * By default, no lower bounds are used.
+     */
+    protected void prepare_lower_bounds()
+    {
+    }
+
+    /** 
+     * Computes the lower bounds used by {@link #lower_bound} from the minimum tuple cost of each relation.
+     * The branches of a relation correspond to its children in ascending order of their indexes.
+     * A relation that appears more than once in the tree gets the smallest of its bounds.
+     * @param relations The relations of the join tree.
+     * @param parents The index of the parent of each relation (-1 for the root).
+     */
+    protected void set_tree_lower_bounds(List<Relation> relations, List<Integer> parents)
+    {
+        int len = relations.size();
+        // The minimum cost of a subtree rooted at each relation (including the relation)
+        double[] subtree_bound = new double[len];
+        double[] below_bound = new double[len];
+        List<List<Integer>> children = new ArrayList<List<Integer>>();
+        for (int i = 0; i < len; i++) children.add(new ArrayList<Integer>());
+        for (int i = 0; i < len; i++)
+            if (relations.get(i) != null && parents.get(i) >= 0) children.get(parents.get(i)).add(i);
+        // Children have larger indexes than their parents
+        for (int i = len - 1; i >= 0; i--)
+        {
+            if (relations.get(i) == null) continue;
+            double min_cost = Double.POSITIVE_INFINITY;
+            for (Tuple t : relations.get(i).tuples) min_cost = Math.min(min_cost, t.cost);
+            // An empty relation gives no solutions anyway
+            if (min_cost == Double.POSITIVE_INFINITY) min_cost = 0.0;
+            for (int child : children.get(i)) below_bound[i] += subtree_bound[child];
+            subtree_bound[i] = min_cost + below_bound[i];
+        }
+
+        node_lower_bounds = new IdentityHashMap<Relation, Double>();
+        branch_lower_bounds = new IdentityHashMap<Relation, double[]>();
+        for (int i = 0; i < len; i++)
+        {
+            Relation relation = relations.get(i);
+            if (relation == null) continue;
+            node_lower_bounds.merge(relation, below_bound[i], Math::min);
+            double[] bounds = new double[children.get(i).size()];
+            for (int b = 0; b < bounds.length; b++) bounds[b] = subtree_bound[children.get(i).get(b)];
+            double[] existing = branch_lower_bounds.get(relation);
+            if (existing != null)
+            {
+                // The branches of the two appearances do not correspond to each other
+                if (existing.length != bounds.length) Arrays.fill(bounds, Double.NEGATIVE_INFINITY);
+                else for (int b = 0; b < bounds.length; b++) bounds[b] = Math.min(bounds[b], existing[b]);
+            }
+            branch_lower_bounds.put(relation, bounds);
+        }
     }
 
     /** 
@@ -145,6 +374,156 @@ public abstract class TDP_Problem_Instance
         return;
     }
 
+    /** 
+     * Parallel implementation of the bottom-up phase.
+     * The nodes are grouped into levels by their height (the number of edges of the longest path to a terminal)
+     * and the levels are processed from the terminals up.
+     * A decision set is processed at the level above its highest target,
+     * which is not above any of the nodes that own it (they may have higher branches).
+     * A level depends only on lower ones, thus its decision sets (and then its nodes)
+     * are processed in parallel in the common ForkJoin pool.
+     */
+    public void bottom_up_parallel()
+    {
+        IdentityHashMap<TDP_State_Node, Integer> heights = new IdentityHashMap<TDP_State_Node, Integer>();
+        IdentityHashMap<TDP_DecisionSet, Integer> set_levels = new IdentityHashMap<TDP_DecisionSet, Integer>();
+        List<List<TDP_State_Node>> levels = new ArrayList<List<TDP_State_Node>>();
+        List<List<TDP_DecisionSet>> level_sets = new ArrayList<List<TDP_DecisionSet>>();
+        // In the topological order, the children appear before their parents
+        for (TDP_State_Node node : topological_order())
+        {
+            int height = 0;
+            for (TDP_DecisionSet decisions : node.decisions)
+            {
+                Integer level = set_levels.get(decisions);
+                if (level == null)
+                {
+                    level = 0;
+                    for (TDP_Decision dec : decisions.list_of_decisions) level = Math.max(level, heights.get(dec.target) + 1);
+                    set_levels.put(decisions, level);
+                    while (level_sets.size() <= level) level_sets.add(new ArrayList<TDP_DecisionSet>());
+                    level_sets.get(level).add(decisions);
+                }
+                height = Math.max(height, level);
+            }
+            heights.put(node, height);
+            while (levels.size() <= height) levels.add(new ArrayList<TDP_State_Node>());
+            levels.get(height).add(node);
+        }
+
+        for (int h = 0; h < levels.size(); h++)
+        {
+            if (h < level_sets.size())
+            {
+                level_sets.get(h).parallelStream().forEach(decisions ->
+                {
+                    TDP_Decision best_decision = null;
+                    for (TDP_Decision dec : decisions.list_of_decisions)
+                        if (best_decision == null || dec.compareTo(best_decision) < 0) best_decision = dec;
+                    decisions.best_decision = best_decision;
+                });
+            }
+            levels.get(h).parallelStream().forEach(node ->
+            {
+                if (node.is_terminal())
+                {
+                    node.set_opt_cost(0.0);
+                    return;
+                }
+                double opt_cost = 0.0;
+                for (TDP_DecisionSet decisions : node.decisions)
+                {
+                    if (decisions.best_decision == null)
+                    {
+                        opt_cost = Double.POSITIVE_INFINITY;
+                        break;
+                    }
+                    opt_cost += decisions.best_decision.opt_achievable_cost();
+                }
+                node.set_opt_cost(opt_cost);
+            });
+        }
+    }
+
+    /** 
+     * Changes the costs of the tuples of some relations without rebuilding the graph.
+     * The costs of the decisions that lead to their tuples are updated in place,
+     * the optimal costs and the partial orders of the any-k algorithms are discarded
+     * and the bottom-up phase runs again (with the implementation that has been set, e.g., "parallel").
+     * Any-k iterators must be created after the update.
+     * @param new_costs For each relation to be updated, the new costs of its tuples 
+     * (in the order of {@link entities.Relation#tuples}).
+     */
+    public void reweight(Map<Relation, double[]> new_costs)
+    {
+        for (Map.Entry<Relation, double[]> entry : new_costs.entrySet())
+        {
+            List<Tuple> tuples = entry.getKey().tuples;
+            double[] costs = entry.getValue();
+            if (costs.length != tuples.size())
+            {
+                System.err.println("Expected " + tuples.size() + " costs for relation " + entry.getKey().relation_id + " but got " + costs.length);
+                System.exit(1);
+            }
+            for (int i = 0; i < costs.length; i++) tuples.get(i).cost = costs[i];
+        }
+
+        // The cost of a decision is the cost of the tuple it leads to (or zero for intermediate nodes)
+        Set<TDP_DecisionSet> visited = Collections.newSetFromMap(new IdentityHashMap<TDP_DecisionSet, Boolean>());
+        for (TDP_State_Node node : topological_order())
+        {
+            node.set_opt_cost(Double.POSITIVE_INFINITY);
+            node.lawler_future_costs = null;
+            for (TDP_DecisionSet decisions : node.decisions)
+            {
+                if (!visited.add(decisions)) continue;
+                for (TDP_Decision dec : decisions.list_of_decisions)
+                {
+                    if (!(dec.target.state_info instanceof Tuple)) continue;
+                    Tuple t = (Tuple) dec.target.state_info;
+                    if (new_costs.containsKey(t.relation)) dec.cost = t.cost;
+                }
+                decisions.reset_bottom_up();
+            }
+        }
+        // The lower bounds depend on the tuple costs
+        node_lower_bounds = null;
+        branch_lower_bounds = null;
+        bottom_up();
+    }
+
+    /** 
+     * Produces a topological order of the state space graph with an iterative DFS traversal.
+     * @return A list of the nodes where every node appears after all of its children.
+     */
+    private List<TDP_State_Node> topological_order()
+    {
+        List<TDP_State_Node> res = new ArrayList<TDP_State_Node>();
+        ArrayDeque<TDP_State_Node> dfs_stack = new ArrayDeque<TDP_State_Node>();
+        Set<TDP_State_Node> visited = new HashSet<TDP_State_Node>();
+        Set<TDP_State_Node> finished = new HashSet<TDP_State_Node>();
+        dfs_stack.push(starting_node);
+        while (!dfs_stack.isEmpty())
+        {
+            TDP_State_Node cur_node = dfs_stack.pop();
+            if (visited.contains(cur_node))
+            {
+                // We popped it again, thus all of its children have been added
+                // (a node may be pushed multiple times before it is visited)
+                if (finished.add(cur_node)) res.add(cur_node);
+            }
+            else
+            {
+                visited.add(cur_node);
+                dfs_stack.push(cur_node);
+                for (TDP_DecisionSet decisions : cur_node.decisions)
+                    for (TDP_Decision edge : decisions.list_of_decisions)
+                        if (!visited.contains(edge.target)) dfs_stack.push(edge.target);
+            }
+        }
+        return res;
+    }
+
     /** 
      * Computes the total number of T-DP solutions to the problem instance.
      * These are trees that begin at the starting node and end at terminal nodes.
@@ -196,6 +575,202 @@ public abstract class TDP_Problem_Instance
         return res;
     }
 
+    /** 
+     * Computes the COUNT, SUM, MIN, MAX and AVG of the costs of all the T-DP solutions
+     * with a bottom-up pass over the graph (like {@link #count_solutions}, but with long counts that are only promoted on overflow).
+     * @return Aggregate The aggregates of all the solutions.
+     */
+    public Aggregate aggregate()
+    {
+        return aggregate_below(this.starting_node, new IdentityHashMap<TDP_DecisionSet, Aggregate>());
+    }
+
+    /** 
+     * Computes the COUNT, SUM, MIN, MAX and AVG of the costs of the T-DP solutions grouped by the values of some attributes of a relation.
+     * The aggregates of the solutions that contain a tuple are the concatenation of those of the subtree below its node
+     * and of the rest of the solution above it.
+     * The aggregates below the nodes are computed as in {@link #aggregate()}
+     * and those above them by a top-down pass that visits the nodes in topological order
+     * (a decision set that is shared by several nodes is visited once, after all of them).
+     * The aggregate above a branch of a node is the concatenation of the aggregate above the node with those below its other branches.
+     * @param relation A relation that appears exactly once in the query.
+     * @param attributes The indexes of the grouping attributes in the relation.
+     * @return Map<List<Double>, Aggregate> The aggregates of every group (of the values of the attributes) that has solutions.
+     */
+    public Map<List<Double>, Aggregate> aggregate(Relation relation, int... attributes)
+    {
+        Map<TDP_DecisionSet, Aggregate> below = new IdentityHashMap<TDP_DecisionSet, Aggregate>();
+        Aggregate total = aggregate_below(this.starting_node, below);
+        // Reverse postorder of the nodes and the number of (node, branch) pairs that own every decision set
+        List<TDP_State_Node> order = new ArrayList<TDP_State_Node>();
+        Map<TDP_DecisionSet, Integer> owners = new IdentityHashMap<TDP_DecisionSet, Integer>();
+        postorder(this.starting_node, new IdentityHashMap<TDP_State_Node, Boolean>(), owners, order);
+        Collections.reverse(order);
+
+        Map<TDP_State_Node, Aggregate> above = new IdentityHashMap<TDP_State_Node, Aggregate>();
+        Map<TDP_DecisionSet, Aggregate> above_sets = new IdentityHashMap<TDP_DecisionSet, Aggregate>();
+        above.put(this.starting_node, Aggregate.UNIT);
+        Map<List<Double>, Aggregate> res = new LinkedHashMap<List<Double>, Aggregate>();
+        Aggregate grouped = Aggregate.EMPTY;
+        for (TDP_State_Node node : order)
+        {
+            Aggregate node_above = above.getOrDefault(node, Aggregate.EMPTY);
+            if (node.state_info instanceof Tuple && ((Tuple) node.state_info).relation == relation)
+            {
+                Aggregate through = node_above.times(aggregate_below(node, below));
+                if (!through.is_empty())
+                {
+                    res.merge(group_key((Tuple) node.state_info, attributes), through, Aggregate::plus);
+                    grouped = grouped.plus(through);
+                }
+            }
+            if (node.is_terminal()) continue;
+            for (int branch = 0; branch < node.decisions.size(); branch++)
+            {
+                TDP_DecisionSet decisions = node.decisions.get(branch);
+                Aggregate branch_above = node_above;
+                for (int other = 0; other < node.decisions.size(); other++)
+                    if (other != branch) branch_above = branch_above.times(below.get(node.decisions.get(other)));
+                Aggregate set_above = above_sets.getOrDefault(decisions, Aggregate.EMPTY).plus(branch_above);
+                above_sets.put(decisions, set_above);
+                // Once all the nodes that own the decision set have been visited, pass the aggregate to the targets
+                if (owners.merge(decisions, -1, Integer::sum) == 0)
+                    for (TDP_Decision dec : decisions.list_of_decisions)
+                        above.merge(dec.target, set_above.times(Aggregate.of_cost(dec.cost)), Aggregate::plus);
+            }
+        }
+        // Every solution has to contain exactly one tuple of the relation
+        if (!grouped.get_count().equals(total.get_count()))
+        {
+            System.err.println("Relation " + relation.relation_id + " does not appear exactly once in the query");
+            System.exit(1);
+        }
+        return res;
+    }
+
+    /** 
+     * Recursively computes the aggregates of the solutions starting from some specific node
+     * (the concatenation of the aggregates of its branches).
+     * @param below A map containing the aggregates for all the decision sets that have been computed.
+     * @return Aggregate The aggregates of the costs of the T-DP solutions starting from node.
+     */
+    private Aggregate aggregate_below(TDP_State_Node node, Map<TDP_DecisionSet, Aggregate> below)
+    {
+        if (node.is_terminal()) return Aggregate.UNIT;
+        Aggregate res = Aggregate.UNIT;
+        for (TDP_DecisionSet decisions : node.decisions)
+        {
+            Aggregate branch = below.get(decisions);
+            if (branch == null)
+            {
+                branch = Aggregate.EMPTY;
+                for (TDP_Decision dec : decisions.list_of_decisions)
+                    branch = branch.plus(Aggregate.of_cost(dec.cost).times(aggregate_below(dec.target, below)));
+                below.put(decisions, branch);
+            }
+            res = res.times(branch);
+        }
+        return res;
+    }
+
+    /** 
+     * Adds the nodes reachable from a node to a list in DFS postorder
+     * and counts the (node, branch) pairs that own every decision set.
+     */
+    private void postorder(TDP_State_Node node, Map<TDP_State_Node, Boolean> visited, Map<TDP_DecisionSet, Integer> owners, List<TDP_State_Node> order)
+    {
+        visited.put(node, true);
+        if (!node.is_terminal())
+            for (TDP_DecisionSet decisions : node.decisions)
+            {
+                owners.merge(decisions, 1, Integer::sum);
+                for (TDP_Decision dec : decisions.list_of_decisions)
+                    if (!visited.containsKey(dec.target)) postorder(dec.target, visited, owners, order);
+            }
+        order.add(node);
+    }
+
+    /** 
+     * @return List<Double> The values of some attributes of a tuple.
+     */
+    private static List<Double> group_key(Tuple t, int[] attributes)
+    {
+        List<Double> key = new ArrayList<Double>(attributes.length);
+        for (int attribute : attributes) key.add(t.values[attribute]);
+        return key;
+    }
+
+    /** 
+     * Gathers statistics about the structure of the graph with a BFS from the starting node.
+     * Intermediate nodes (those that do not correspond to tuples) are attributed to the join edge
+     * (parent relation and branch) of the closest tuple node above them.
+     * @return Graph_Statistics The statistics, including the number of solutions.
+     */
+    public Graph_Statistics collect_statistics()
+    {
+        Graph_Statistics stats = new Graph_Statistics();
+        IdentityHashMap<Object, Boolean> seen_sets = new IdentityHashMap<Object, Boolean>();
+        // For intermediate nodes, the join edge they belong to as "parent relation label#branch"
+        Map<TDP_State_Node, String> edge_source = new HashMap<TDP_State_Node, String>();
+        // The relation where each join edge ends
+        Map<String, String> edge_target = new HashMap<String, String>();
+        Map<String, Long> intermediate_cnt = new LinkedHashMap<String, Long>();
+        Set<TDP_State_Node> visited = new HashSet<TDP_State_Node>();
+        Queue<TDP_State_Node> queue = new ArrayDeque<TDP_State_Node>();
+        TDP_State_Node curr_node;
+        String label, source;
+        queue.add(starting_node);
+        visited.add(starting_node);
+
+        while (!queue.isEmpty())
+        {
+            curr_node = queue.remove();
+            label = null;
+            if (curr_node == starting_node)
+            {
+                stats.nodes += 1;
+            }
+            else if (curr_node.state_info instanceof Tuple)
+            {
+                label = Graph_Statistics.stage_label((Tuple) curr_node.state_info);
+                stats.add_stage_node(label);
+            }
+            else
+            {
+                intermediate_cnt.merge(edge_source.get(curr_node), 1L, Long::sum);
+            }
+
+            for (int b = 0; b < curr_node.decisions.size(); b++)
+            {
+                TDP_DecisionSet decision_set = curr_node.decisions.get(b);
+                stats.add_decision_set(decision_set, decision_set.list_of_decisions.size(), seen_sets);
+                // The children of an intermediate node belong to the same join edge
+                if (curr_node == starting_node) source = null;
+                else if (label != null) source = label + "#" + b;
+                else source = edge_source.get(curr_node);
+
+                for (TDP_Decision dec : decision_set.list_of_decisions)
+                {
+                    TDP_State_Node child = dec.target;
+                    if (source != null && child.state_info instanceof Tuple)
+                        edge_target.putIfAbsent(source, Graph_Statistics.stage_label((Tuple) child.state_info));
+                    if (visited.add(child))
+                    {
+                        if (!(child.state_info instanceof Tuple)) edge_source.put(child, source);
+                        queue.add(child);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, Long> e : intermediate_cnt.entrySet())
+        {
+            String parent = e.getKey().substring(0, e.getKey().lastIndexOf('#'));
+            stats.add_intermediate_nodes(parent + " -> " + edge_target.getOrDefault(e.getKey(), "?"), e.getValue());
+        }
+        stats.answers = count_solutions();
+        return stats;
+    }
+
     /** 
      * Adds a stage to the tree structure given that all of its children stages are provided.
      * @param stage The index of the stage to be added.
@@ -8,6 +8,7 @@ import java.util.Queue;
 
 import entities.Relation;
 import entities.Tuple;
+import util.Engine_Events;
 
 /** 
  * A class for Τ-DP problems that are equi-join star queries:
@@ -63,6 +64,8 @@ public class TDP_Star_Equijoin_Instance extends TDP_Problem_Instance
         for (int sg = 2; sg <= l; sg++)
         {
             relation_index = sg - 1; // The indexing of star_query.relations starts with 0 
+            Engine_Events.Instance_Stage stage_event = new Engine_Events.Instance_Stage();
+            stage_event.begin();
             relation = star_query.relations.get(relation_index);
             new_stage = new ArrayList<TDP_State_Node>(relation.tuples.size());
 
@@ -76,10 +79,13 @@ public class TDP_Star_Equijoin_Instance extends TDP_Problem_Instance
                 new_stage.add(new_node);
             } 
             stages.add(new_stage);
+            commit_stage_event(stage_event, relation_index, relation, new_stage);
             // These relations are leaf nodes, hence they have no children (empty list)
             this.add_parent_stage_to_tree(sg, new ArrayList<Integer>());
         }
 
+        Engine_Events.Instance_Stage stage_event = new Engine_Events.Instance_Stage();
+        stage_event.begin();
         // Build one hash table for each child relation
         List<HashMap<Double, List<TDP_State_Node>>> children_hashes = 
             new ArrayList<HashMap<Double, List<TDP_State_Node>>>();
@@ -155,6 +161,7 @@ public class TDP_Star_Equijoin_Instance extends TDP_Problem_Instance
             //System.out.println("Node " + new_node + " of R1 has min ach cost = " + new_node.get_subtree_opt_cost());
         }
         stages.add(new_stage);
+        commit_stage_event(stage_event, relation_index, relation, new_stage);
         List<Integer> children_of_R1 = new ArrayList<Integer>();
         for (int j = 2; j <= l; j++) children_of_R1.add(j);
         this.add_parent_stage_to_tree(sg, children_of_R1);
@@ -175,6 +182,20 @@ public class TDP_Star_Equijoin_Instance extends TDP_Problem_Instance
         this.add_parent_stage_to_tree(0, children_of_R0);
     }
 
+    private static void commit_stage_event(Engine_Events.Instance_Stage event, int relation_idx, Relation relation,
+        List<TDP_State_Node> stage)
+    {
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.problem_setting = "T-DP";
+            event.relation_idx = relation_idx;
+            event.tuples = relation.tuples.size();
+            event.nodes = stage.size();
+            event.commit();
+        }
+    }
+
     /** 
      * Hashes the nodes of a particular stage of T-DP.
      * The key is one of the attributes of the associated tuples that will be used for the join.
@@ -3,20 +3,30 @@ package entities.trees;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
 import algorithms.trees.TDP_Anyk_Iterator;
 import algorithms.trees.TDP_Eager;
+import entities.Graph_Statistics;
 import entities.Join_Predicate;
 import entities.Relation;
 import entities.State_Node;
+import entities.Topk_Listener;
 import entities.Tuple;
 import factorization.Binary_Partitioning;
+import factorization.Method_Selector;
+import factorization.Multiway_Partitioning;
 import factorization.Node_Connector;
 import util.Common;
+import util.Engine_Events;
 
 /**
  * A class for Τ-DP problems that are theta-join tree queries.
@@ -30,8 +40,10 @@ import util.Common;
  * Inside this class it is safe to downcast
  * {@link entities.trees.TDP_State_Node#state_info} to {@link entities.Tuple}
  * (except the starting_state).
- * Currently only the binary partitioning method is supported as a factorization
- * method.
+ * The joins are factorized with binary or multiway partitioning (the latter
+ * creates 2 intermediate stages per join instead of 1).
+ * Unless a method is specified, it is selected for each join by
+ * {@link factorization.Method_Selector}.
  * 
  * @author Nikolaos Tziavelis
  */
@@ -40,6 +52,22 @@ public class TDP_Thetajoin_Instance extends TDP_Problem_Instance {
      * The query from which we create an instance of T-DP.
      */
     Tree_ThetaJoin_Query query;
+    /**
+     * The factorization method used for each join (keyed as "parent relation -> child relation").
+     */
+    LinkedHashMap<String, String> edge_methods;
+    /**
+     * Created by the first update (see {@link #insert} and {@link #delete}).
+     */
+    private TDP_Update_Index update_index = null;
+    /**
+     * The standing top-k queries that are notified of the updates (see {@link #monitor_topk}).
+     */
+    private List<TDP_Topk_Monitor> monitors = new ArrayList<TDP_Topk_Monitor>();
+    /**
+     * The number of joins reused from other instances (see {@link TDP_Join_Cache}).
+     */
+    private int shared_joins = 0;
 
     /**
      * Creates a T-DP state/node for each tuple.
@@ -49,11 +77,36 @@ public class TDP_Thetajoin_Instance extends TDP_Problem_Instance {
      *               null, method selection is automatic.
      */
     public TDP_Thetajoin_Instance(Tree_ThetaJoin_Query query, String method) {
+        this(query, method, null);
+    }
+
+    /**
+     * Creates a T-DP state/node for each tuple, reusing the joins that other
+     * instances have already factorized.
+     * A join is reused if it has the same parent relation, join condition and
+     * factorization method, and the subtree of its child is reused too
+     * (see {@link entities.trees.TDP_Join_Cache}).
+     * Then, the tuples of the parent get the decision sets that the other instance
+     * built for them and the nodes of the subtree are not created again.
+     * IMPORTANT: The instances that share joins must not be updated
+     * (e.g., with {@link #insert}) and their any-k iterators must not keep
+     * iterator-specific state in the decision sets (like
+     * {@link algorithms.trees.TDP_QuickPlus} does).
+     * 
+     * @param query  A theta-join query.
+     * @param method Sets a particular method for the factorization of the join. If
+     *               null, method selection is automatic.
+     * @param cache  The joins factorized by the instances created before this one,
+     *               where the joins of this one are added. If null, nothing is shared.
+     */
+    public TDP_Thetajoin_Instance(Tree_ThetaJoin_Query query, String method, TDP_Join_Cache cache) {
         super();
         this.query = query;
+        this.edge_methods = new LinkedHashMap<String, String>();
 
-        if (method != null && !method.equals("binary_part"))
-            System.out.println("Warning: currently only binary partitioning is supported for tree queries");
+        if (method != null && !method.equals("binary_part") && !method.equals("multi_part"))
+            System.out.println(
+                    "Warning: currently only binary and multiway partitioning are supported for tree queries");
 
         Relation relation;
         TDP_State_Node new_node;
@@ -69,6 +122,14 @@ public class TDP_Thetajoin_Instance extends TDP_Problem_Instance {
         List<Integer> relation_idx_to_stage_idx = new ArrayList<Integer>();
         for (int relation_idx = 0; relation_idx < query.length; relation_idx++)
             relation_idx_to_stage_idx.add(null);
+        // The keys of the subtrees in the cache (see TDP_Join_Cache)
+        List<List<Object>> subtree_keys = new ArrayList<List<Object>>();
+        for (int relation_idx = 0; relation_idx < query.length; relation_idx++)
+            subtree_keys.add(null);
+        // A subtree appears at most once in the graph (in case a relation is joined
+        // with itself)
+        Set<List<TDP_State_Node>> used_stages = Collections.newSetFromMap(
+                new IdentityHashMap<List<TDP_State_Node>, Boolean>());
         // Throughout the bottom-up pass we use this counter to label the stages
         // and at the end we will reverse the labeling so that the leaf stages appear
         // last
@@ -77,87 +138,122 @@ public class TDP_Thetajoin_Instance extends TDP_Problem_Instance {
         // We traverse the join-tree in bottom-up order
         // (We assume that the order of the indexes agrees with the tree order!!)
         for (int relation_idx = query.length - 1; relation_idx >= 0; relation_idx--) {
+            Engine_Events.Instance_Stage stage_event = new Engine_Events.Instance_Stage();
+            stage_event.begin();
             relation = query.relations.get(relation_idx);
-            current_stage = new ArrayList<TDP_State_Node>(relation.tuples.size());
-            // Create state nodes for the tuples of the relation
-            int num_branches = query.num_children(relation_idx);
-            for (Tuple t : relation.tuples) {
-                new_node = new TDP_State_Node(num_branches, t);
-                if (num_branches == 0)
-                    new_node.set_to_terminal();
-                current_stage.add(new_node);
+            List<Integer> children = query.get_children(relation_idx);
+
+            // Look up the joins with the children that have been factorized by other
+            // instances
+            // The whole subtree is reused if all of them have been
+            List<List<Object>> edge_keys = new ArrayList<List<Object>>();
+            List<TDP_Join_Cache.Join> cached_joins = new ArrayList<TDP_Join_Cache.Join>();
+            List<TDP_State_Node> shared_stage = null;
+            if (cache != null) {
+                boolean all_cached = true;
+                for (Integer child_relation_idx : children) {
+                    List<Object> edge_key = Arrays.asList(relation, method,
+                            condition_key(query.join_conditions.get(child_relation_idx)),
+                            subtree_keys.get(child_relation_idx));
+                    TDP_Join_Cache.Join cached_join = cache.joins.get(edge_key);
+                    // The decisions have to lead to the nodes of the child in this instance
+                    if (cached_join != null && cached_join.child_stage != relation_stages.get(child_relation_idx))
+                        cached_join = null;
+                    edge_keys.add(edge_key);
+                    cached_joins.add(cached_join);
+                    all_cached = all_cached && cached_join != null;
+                }
+                subtree_keys.set(relation_idx, Arrays.asList(relation, edge_keys));
+                if (all_cached) {
+                    shared_stage = cache.stages.get(subtree_keys.get(relation_idx));
+                    if (shared_stage != null && !used_stages.add(shared_stage))
+                        shared_stage = null;
+                }
+            }
+
+            if (shared_stage != null) {
+                current_stage = shared_stage;
+            } else {
+                current_stage = new ArrayList<TDP_State_Node>(relation.tuples.size());
+                // Create state nodes for the tuples of the relation
+                int num_branches = query.num_children(relation_idx);
+                for (Tuple t : relation.tuples) {
+                    new_node = new TDP_State_Node(num_branches, t);
+                    if (num_branches == 0)
+                        new_node.set_to_terminal();
+                    current_stage.add(new_node);
+                }
             }
             relation_stages.set(relation_idx, current_stage);
 
             // Create the connections between this stage and its children
             List<Integer> child_stage_indexes = new ArrayList<Integer>();
             int branch = 0;
-            for (Integer child_relation_idx : query.get_children(relation_idx)) {
+            for (Integer child_relation_idx : children) {
                 child_stage = relation_stages.get(child_relation_idx);
                 int child_stage_idx = relation_idx_to_stage_idx.get(child_relation_idx);
                 List<List<Join_Predicate>> join_condition = query.join_conditions.get(child_relation_idx);
+                TDP_Join_Cache.Join cached_join = cache == null ? null : cached_joins.get(branch);
+                String edge_method;
 
-                // Handle equi-join without intermediate nodes
-                if (Common.is_conjunction_of_simple_equalities(join_condition)) {
+                if (cached_join != null) {
+                    // The nodes of the relation are in the order of its tuples, as in the
+                    // cached join
+                    if (shared_stage == null)
+                        for (int i = 0; i < current_stage.size(); i++)
+                            current_stage.get(i).decisions.set(branch, cached_join.decisions.get(i));
+                    edge_method = cached_join.method;
+                    shared_joins += 1;
+                } else {
+                    edge_method = factorize_join(current_stage, child_stage, join_condition, method, branch,
+                            child_relation_idx);
+                    if (cache != null) {
+                        List<TDP_DecisionSet> decisions = new ArrayList<TDP_DecisionSet>(current_stage.size());
+                        for (TDP_State_Node node : current_stage)
+                            decisions.add(node.decisions.get(branch));
+                        cache.joins.putIfAbsent(edge_keys.get(branch),
+                                new TDP_Join_Cache.Join(child_stage, decisions, edge_method));
+                    }
+                }
+
+                if (edge_method.equals("hash")) {
                     // Add stage to tree structure as a direct child of parent
                     child_stage_indexes.add(child_stage_idx);
-
-                    // Convert predicates to lists of indexes of the attributes in the schema
-                    int[] join_attributes_parent = join_condition.get(0).stream().mapToInt(p -> p.attr_idx_1).toArray();
-                    int[] join_attributes_child = join_condition.get(0).stream().mapToInt(p -> p.attr_idx_2).toArray();
-
-                    // Hash the nodes of the child and the parent so that they are grouped by the
-                    // join attribute values
-                    HashMap<List<Double>, List<State_Node>> child_hash = Common.hash_stage(child_stage,
-                            join_attributes_child);
-                    HashMap<List<Double>, List<State_Node>> parent_hash = Common.hash_stage(current_stage,
-                            join_attributes_parent);
-
-                    // For each child bucket
-                    for (Map.Entry<List<Double>, List<State_Node>> map_entry : child_hash.entrySet()) {
-                        List<Double> join_values = map_entry.getKey();
-                        List<State_Node> child_nodes = map_entry.getValue();
-
-                        // Look up parent bucket
-                        List<State_Node> parent_nodes = parent_hash.get(join_values);
-                        if (parent_nodes != null) {
-                            int j = 0;
-                            for (State_Node parent_node : parent_nodes) {
-                                TDP_State_Node parent_node_tdp = (TDP_State_Node) parent_node;
-                                if (j == 0) {
-                                    for (State_Node child_node : child_nodes) {
-                                        TDP_State_Node child_node_tdp = (TDP_State_Node) child_node;
-                                        parent_node_tdp.add_decision(branch, child_node_tdp,
-                                                ((Tuple) child_node_tdp.state_info).cost);
-                                    }
-                                } else {
-                                    // Share the same decisions with the first node in the parent bucket
-                                    parent_node_tdp.share_decisions(((TDP_State_Node) parent_nodes.get(0)), branch);
-                                }
-                                j += 1;
-                            }
-                        }
-                    }
                 } else {
-                    // The join condition between the two relations is given in DNF form
-                    // To handle the disjunctions, construct a graph independently for each one
-                    for (List<Join_Predicate> conjunction : join_condition) {
-                        Node_Connector.problem_setting = "T-DP";
-                        Node_Connector.branch = branch;
-                        Binary_Partitioning.factorize_conjunction(current_stage, child_stage, conjunction);
+                    // Add the intermediate factorization stage(s) to the tree structure
+                    // Binary partitioning creates 1 layer of intermediate nodes, multiway
+                    // partitioning 2
+                    int intermediate_stages_no = edge_method.equals("multi_part") ? 2 : 1;
+                    int stage_below = child_stage_idx;
+                    for (int i = 0; i < intermediate_stages_no; i++) {
+                        this.add_parent_stage_to_tree(stage_counter, Arrays.asList(stage_below));
+                        stage_below = stage_counter;
+                        stage_counter += 1;
                     }
-
-                    // Add the intermediate factorization stage to the tree structure
-                    this.add_parent_stage_to_tree(stage_counter, Arrays.asList(child_stage_idx));
-                    child_stage_indexes.add(stage_counter);
-                    stage_counter += 1;
+                    child_stage_indexes.add(stage_below);
                 }
 
+                edge_methods.put(relation.relation_id + " -> " + query.relations.get(child_relation_idx).relation_id,
+                        edge_method);
                 branch += 1;
             }
 
-            // Remove dangling nodes
-            current_stage.removeIf(node -> !node.is_terminal() && node.is_dead_end());
+            if (shared_stage == null) {
+                // Remove dangling nodes
+                current_stage.removeIf(node -> !node.is_terminal() && node.is_dead_end());
+                if (cache != null) {
+                    cache.stages.putIfAbsent(subtree_keys.get(relation_idx), current_stage);
+                    used_stages.add(current_stage);
+                }
+            }
+            stage_event.end();
+            if (stage_event.shouldCommit()) {
+                stage_event.problem_setting = "T-DP";
+                stage_event.relation_idx = relation_idx;
+                stage_event.tuples = relation.tuples.size();
+                stage_event.nodes = current_stage.size();
+                stage_event.commit();
+            }
             // Add current stage to the tree structure
             this.add_parent_stage_to_tree(stage_counter, child_stage_indexes);
             relation_idx_to_stage_idx.set(relation_idx, stage_counter);
@@ -180,6 +276,109 @@ public class TDP_Thetajoin_Instance extends TDP_Problem_Instance {
         this.reverse_indexing();
     }
 
+    /**
+     * Inserts a tuple in the relation it belongs to and updates the graph incrementally:
+     * only the decisions of the nodes that join with it change
+     * and the optimal costs are propagated only to the ancestors whose minimum changed.
+     * Supported only if all the joins are equi-joins.
+     * The first update indexes the whole graph, thus it is as expensive as a traversal.
+     * IMPORTANT: The bottom-up phase must have already run.
+     * Any-k iterators must be created after the update.
+     * 
+     * @param t The new tuple. Its relation field specifies the relation of the query it is inserted into
+     *          (it is inserted in all the positions of that relation if it appears more than once).
+     */
+    public void insert(Tuple t) {
+        get_update_index().insert(t);
+        for (TDP_Topk_Monitor monitor : new ArrayList<TDP_Topk_Monitor>(monitors))
+            monitor.inserted(t);
+    }
+
+    /**
+     * Deletes a tuple from the relation it belongs to and updates the graph incrementally
+     * (see {@link #insert}).
+     * 
+     * @param t The tuple to be deleted (the same object that is stored in the relation).
+     */
+    public void delete(Tuple t) {
+        get_update_index().delete(t);
+        for (TDP_Topk_Monitor monitor : new ArrayList<TDP_Topk_Monitor>(monitors))
+            monitor.deleted(Collections.singletonList(t));
+    }
+
+    /**
+     * Deletes a batch of tuples (e.g., the ones that expire from a window) and updates the graph incrementally,
+     * propagating the optimal costs once for the whole batch (see {@link #insert}).
+     * 
+     * @param ts The tuples to be deleted (the same objects that are stored in the relations).
+     */
+    public void delete(Collection<Tuple> ts) {
+        get_update_index().delete(ts);
+        for (TDP_Topk_Monitor monitor : new ArrayList<TDP_Topk_Monitor>(monitors))
+            monitor.deleted(ts);
+    }
+
+    /**
+     * Changes the costs of the tuples of some relations (see {@link entities.trees.TDP_Problem_Instance#reweight}).
+     * If the instance has been updated or is monitored, the change goes through the index of the incremental updates
+     * (see {@link #insert}), which only propagates the costs of the tuples that changed,
+     * and the monitors only search for the answers that contain them.
+     */
+    @Override
+    public void reweight(Map<Relation, double[]> new_costs) {
+        if (update_index == null && monitors.isEmpty()) {
+            super.reweight(new_costs);
+            return;
+        }
+        List<Tuple> changed = get_update_index().reweight(new_costs);
+        for (TDP_Topk_Monitor monitor : new ArrayList<TDP_Topk_Monitor>(monitors))
+            monitor.reweighted(changed);
+    }
+
+    /**
+     * Registers a standing top-k query: the k cheapest answers are maintained under the updates of the instance
+     * (see {@link #insert}, {@link #delete} and {@link #reweight})
+     * and the answers that enter or leave them are reported to the listener after every update.
+     * Supported only if all the joins are equi-joins.
+     * The initial top-k is computed with an any-k iterator and reported as entered.
+     * IMPORTANT: The bottom-up phase must have already run.
+     * 
+     * @param k        The number of answers to maintain.
+     * @param listener Receives the changes of the top-k.
+     * @return TDP_Topk_Monitor The monitor, which gives access to the current top-k.
+     */
+    public TDP_Topk_Monitor monitor_topk(int k, Topk_Listener listener) {
+        TDP_Topk_Monitor monitor = new TDP_Topk_Monitor(this, k, listener);
+        monitors.add(monitor);
+        return monitor;
+    }
+
+    void remove_monitor(TDP_Topk_Monitor monitor) {
+        monitors.remove(monitor);
+    }
+
+    /**
+     * @return TDP_Update_Index The index of the incremental updates, created by the first call.
+     */
+    TDP_Update_Index get_update_index() {
+        if (update_index == null)
+            update_index = new TDP_Update_Index(this);
+        return update_index;
+    }
+
+    /**
+     * @return int The number of joins that were reused from other instances instead
+     *         of being factorized (see {@link TDP_Join_Cache}).
+     */
+    public int get_shared_joins() {
+        return shared_joins;
+    }
+
+    @Override
+    protected void prepare_lower_bounds() {
+        set_tree_lower_bounds(query.relations, query.parents);
+    }
+
     /**
      * Constructs the top-1 solution of the DP problem.
      */
@@ -208,6 +407,174 @@ public class TDP_Thetajoin_Instance extends TDP_Problem_Instance {
         return current.solutionToTuples_strict_order();
     }
 
+    /**
+     * Connects the nodes of a parent stage to the nodes of a child stage that join
+     * with them in the given branch.
+     * Equi-joins are connected directly, the other joins through intermediate
+     * nodes.
+     * 
+     * @param method The method requested by the user (null for automatic
+     *               selection).
+     * @return String The method used: "hash", "binary_part" or "multi_part".
+     */
+    private static String factorize_join(List<TDP_State_Node> current_stage, List<TDP_State_Node> child_stage,
+            List<List<Join_Predicate>> join_condition, String method, int branch, int child_relation_idx) {
+        Engine_Events.Factorization factorization_event = new Engine_Events.Factorization();
+        factorization_event.begin();
+        long intermediate_nodes_before = Node_Connector.get_intermediate_nodes_created();
+        String edge_method = "hash";
+
+        // Handle equi-join without intermediate nodes
+        if (Common.is_conjunction_of_simple_equalities(join_condition)) {
+            // Convert predicates to lists of indexes of the attributes in the schema
+            int[] join_attributes_parent = join_condition.get(0).stream().mapToInt(p -> p.attr_idx_1).toArray();
+            int[] join_attributes_child = join_condition.get(0).stream().mapToInt(p -> p.attr_idx_2).toArray();
+
+            // Hash the nodes of the child and the parent so that they are grouped by the
+            // join attribute values
+            HashMap<List<Double>, List<State_Node>> child_hash = Common.hash_stage(child_stage,
+                    join_attributes_child);
+            HashMap<List<Double>, List<State_Node>> parent_hash = Common.hash_stage(current_stage,
+                    join_attributes_parent);
+
+            // For each child bucket
+            for (Map.Entry<List<Double>, List<State_Node>> map_entry : child_hash.entrySet()) {
+                List<Double> join_values = map_entry.getKey();
+                List<State_Node> child_nodes = map_entry.getValue();
+
+                // Look up parent bucket
+                List<State_Node> parent_nodes = parent_hash.get(join_values);
+                if (parent_nodes != null) {
+                    int j = 0;
+                    for (State_Node parent_node : parent_nodes) {
+                        TDP_State_Node parent_node_tdp = (TDP_State_Node) parent_node;
+                        if (j == 0) {
+                            for (State_Node child_node : child_nodes) {
+                                TDP_State_Node child_node_tdp = (TDP_State_Node) child_node;
+                                parent_node_tdp.add_decision(branch, child_node_tdp,
+                                        ((Tuple) child_node_tdp.state_info).cost);
+                            }
+                        } else {
+                            // Share the same decisions with the first node in the parent bucket
+                            parent_node_tdp.share_decisions(((TDP_State_Node) parent_nodes.get(0)), branch);
+                        }
+                        j += 1;
+                    }
+                }
+            }
+        } else {
+            // All the disjuncts have to be factorized with the same method
+            // so that every path from the parent to the child goes through the same intermediate stages
+            edge_method = choose_method(current_stage, child_stage, join_condition, method);
+
+            // The join condition between the two relations is given in DNF form
+            // To handle the disjunctions, construct a graph independently for each one
+            for (List<Join_Predicate> conjunction : join_condition) {
+                Node_Connector.set_problem_setting("T-DP");
+                Node_Connector.set_branch(branch);
+                if (edge_method.equals("multi_part"))
+                    factorize_multiway(current_stage, child_stage, conjunction);
+                else
+                    Binary_Partitioning.factorize_conjunction(current_stage, child_stage, conjunction);
+            }
+        }
+
+        factorization_event.end();
+        if (factorization_event.shouldCommit()) {
+            factorization_event.problem_setting = "T-DP";
+            factorization_event.relation_idx = child_relation_idx;
+            factorization_event.method = edge_method;
+            factorization_event.conjunctions = join_condition.size();
+            factorization_event.intermediate_nodes = Node_Connector.get_intermediate_nodes_created()
+                    - intermediate_nodes_before;
+            factorization_event.commit();
+        }
+        return edge_method;
+    }
+
+    /**
+     * @return List<Object> A key of the join condition that is equal for equal
+     *         conditions (the predicates do not override equals).
+     */
+    private static List<Object> condition_key(List<List<Join_Predicate>> join_condition) {
+        List<Object> key = new ArrayList<Object>();
+        for (List<Join_Predicate> conjunction : join_condition) {
+            List<Object> conjunction_key = new ArrayList<Object>();
+            if (conjunction != null)
+                for (Join_Predicate p : conjunction)
+                    conjunction_key.add(Arrays.asList(p.type, p.attr_idx_1, p.attr_idx_2, p.parameter));
+            key.add(conjunction_key);
+        }
+        return key;
+    }
+
+    /**
+     * Chooses one factorization method for all the conjunctions of a join
+     * condition.
+     * Multiway partitioning is used only if it is applicable to all of them (a
+     * single inequality, non-equality or band after the equalities) and
+     * {@link factorization.Method_Selector} expects it to create the smaller graph
+     * for all of them.
+     * Shared ranges are not supported for T-DP.
+     * 
+     * @param method The method requested by the user (null for automatic
+     *               selection).
+     * @return String "binary_part" or "multi_part".
+     */
+    private static String choose_method(List<TDP_State_Node> parent_stage, List<TDP_State_Node> child_stage,
+            List<List<Join_Predicate>> join_condition, String method) {
+        boolean multiway_applicable = true;
+        for (List<Join_Predicate> conjunction : join_condition) {
+            int non_equalities = 0;
+            for (Join_Predicate p : conjunction)
+                if (!p.type.equals("E"))
+                    non_equalities += 1;
+            if (non_equalities != 1)
+                multiway_applicable = false;
+        }
+
+        if (method != null && method.equals("multi_part")) {
+            if (!multiway_applicable) {
+                System.err.println(
+                        "Multiway Partitioning is currently supported only for a single ineq/non-eq/band predicate");
+                System.exit(1);
+            }
+            return "multi_part";
+        } else if (method != null || !multiway_applicable) {
+            return "binary_part";
+        }
+        for (List<Join_Predicate> conjunction : join_condition)
+            if (!Method_Selector.choose(parent_stage, child_stage, conjunction, false).equals("multi_part"))
+                return "binary_part";
+        return "multi_part";
+    }
+
+    /**
+     * Factorizes a conjunction of equalities followed by a single inequality,
+     * non-equality or band with multiway partitioning.
+     */
+    private static void factorize_multiway(List<TDP_State_Node> parent_stage, List<TDP_State_Node> child_stage,
+            List<Join_Predicate> conjunction) {
+        String type = conjunction.get(conjunction.size() - 1).type;
+        if (type.equals("IL") || type.equals("IG"))
+            Multiway_Partitioning.factorize_inequality(parent_stage, child_stage, conjunction);
+        else if (type.equals("N"))
+            Multiway_Partitioning.factorize_nonequality(parent_stage, child_stage, conjunction);
+        else if (type.equals("B"))
+            Multiway_Partitioning.factorize_band(parent_stage, child_stage, conjunction);
+        else {
+            System.err.println("Join condition currently unsupported!");
+            System.exit(1);
+        }
+    }
+
+    @Override
+    public Graph_Statistics collect_statistics() {
+        Graph_Statistics stats = super.collect_statistics();
+        stats.method_per_edge.putAll(edge_methods);
+        return stats;
+    }
+
     public static void main(String args[]) {
         Tree_ThetaJoin_Query query = new Tree_ThetaJoin_Query(3);
 
@@ -0,0 +1,233 @@
+package entities.trees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import algorithms.Configuration;
+import algorithms.trees.TDP_Take2;
+import entities.Relation;
+import entities.Topk_Listener;
+import entities.Topk_Monitor;
+import entities.Tuple;
+
+/**
+ * Maintains the top-k answers of a {@link entities.trees.TDP_Thetajoin_Instance} with equi-joins
+ * under inserts, deletes and reweights (see {@link entities.trees.TDP_Thetajoin_Instance#monitor_topk}).
+ * As for paths (see {@link entities.paths.DP_Topk_Monitor}), after an insert we only search for the answers
+ * that go through one of the nodes of the inserted tuple and beat the most expensive kept answer.
+ * The search keeps a stack of the branches that are still open below the chosen nodes
+ * and a set above them, through which the answer continues towards the root.
+ * An owner of that set closes it, opening its other branches.
+ * The bound of a partial answer is the cost of its tuples plus the optimal costs of the open branches
+ * plus the cheapest way to complete it above the set (see {@link entities.trees.TDP_Update_Index#prefix_cost}),
+ * which are all exact.
+ * The kept answers that contain a deleted or reweighted tuple are dropped and replaced from the reserve,
+ * and after a reweight the same search as for inserts runs through the reweighted tuples.
+ * The top-k is recomputed with an any-k iterator only when the reserve runs out.
+ * @author Nikolaos Tziavelis
+*/
+public class TDP_Topk_Monitor extends Topk_Monitor
+{
+    private TDP_Thetajoin_Instance instance;
+    private List<Relation> relations;
+    private int n;
+    private TDP_Update_Index index;
+    /**
+     * The answer that the search is currently constructing, one tuple per relation.
+    */
+    private Tuple[] answer;
+    /**
+     * The open branches of the search: a set and the relation that its decisions lead to.
+    */
+    private List<TDP_DecisionSet> open_sets;
+    private List<Integer> open_relations;
+
+    TDP_Topk_Monitor(TDP_Thetajoin_Instance instance, int k, Topk_Listener listener)
+    {
+        super(k, listener);
+        this.instance = instance;
+        this.relations = instance.query.relations;
+        this.n = instance.query.length;
+        this.answer = new Tuple[n];
+        this.open_sets = new ArrayList<TDP_DecisionSet>();
+        this.open_relations = new ArrayList<Integer>();
+        refresh();
+    }
+
+    /**
+     * Stops monitoring the instance. No more changes are reported to the listener.
+     */
+    public void cancel()
+    {
+        instance.remove_monitor(this);
+    }
+
+    /**
+     * Recomputes the top-k and the reserve from scratch with an any-k iterator.
+     */
+    void refresh()
+    {
+        TDP_Take2 iter = new TDP_Take2(instance, new Configuration());
+        List<List<Tuple>> answers = new ArrayList<List<Tuple>>();
+        List<Double> costs = new ArrayList<Double>();
+        boolean exhausted = false;
+        while (answers.size() < capacity)
+        {
+            TDP_Solution sol = iter.get_next();
+            if (sol == null)
+            {
+                exhausted = true;
+                break;
+            }
+            answers.add(sol.solutionToTuples_strict_order());
+            costs.add(sol.get_cost());
+        }
+        replace_all(answers, costs, exhausted);
+        publish();
+    }
+
+    /**
+     * Finds the new answers that enter the top-k after a tuple was inserted in the graph.
+     * @param t The inserted tuple.
+     */
+    void inserted(Tuple t)
+    {
+        index = instance.get_update_index();
+        search_through(t);
+        index = null;
+        publish();
+    }
+
+    /**
+     * Updates the top-k after some tuples were deleted from the graph.
+     * @param ts The deleted tuples.
+     */
+    void deleted(Collection<Tuple> ts)
+    {
+        remove_containing(ts);
+        if (needs_refresh()) refresh();
+        else publish();
+    }
+
+    /**
+     * Updates the top-k after the costs of some tuples changed.
+     * @param ts The tuples whose cost changed.
+     */
+    void reweighted(Collection<Tuple> ts)
+    {
+        remove_containing(ts);
+        index = instance.get_update_index();
+        for (Tuple t : ts) search_through(t);
+        index = null;
+        if (needs_refresh()) refresh();
+        else publish();
+    }
+
+    /**
+     * Offers the answers that go through one of the nodes of a tuple and beat the search threshold.
+     */
+    private void search_through(Tuple t)
+    {
+        for (int i = 0; i < n; i++)
+        {
+            if (relations.get(i) != t.relation) continue;
+            TDP_State_Node node = index.get_node(i, t);
+            if (node == null || !index.is_alive(node)) continue;
+            TDP_DecisionSet up = index.parent_set(i, node);
+            if (up == null) continue;
+            if (t.cost + node.get_opt_cost() + index.prefix_cost(i, up) >= search_threshold()) continue;
+            answer[i] = t;
+            int opened = open(node, i, -1);
+            search(t.cost, up, i);
+            close(opened);
+        }
+    }
+
+    /**
+     * Completes the answer, first closing the open branches and then moving above the set.
+     * @param fixed The cost of the tuples of the answer so far.
+     * @param up The set through which the answer continues towards the root.
+     * @param up_relation The relation that the decisions of the set lead to.
+     */
+    private void search(double fixed, TDP_DecisionSet up, int up_relation)
+    {
+        if (!open_sets.isEmpty())
+        {
+            int last = open_sets.size() - 1;
+            TDP_DecisionSet set = open_sets.remove(last);
+            int c = open_relations.remove(last);
+            double rest = open_cost();
+            double up_cost = index.prefix_cost(up_relation, up);
+            for (TDP_Decision dec : set.list_of_decisions)
+            {
+                if (fixed + dec.opt_achievable_cost() + rest + up_cost >= search_threshold()) continue;
+                answer[c] = dec.target.toTuple();
+                int opened = open(dec.target, c, -1);
+                search(fixed + dec.cost, up, up_relation);
+                close(opened);
+            }
+            open_sets.add(set);
+            open_relations.add(c);
+            return;
+        }
+        if (up_relation == 0)
+        {
+            offer(new ArrayList<Tuple>(Arrays.asList(answer)), fixed);
+            return;
+        }
+        int p = index.get_parent(up_relation);
+        int b = index.get_branch_in_parent(up_relation);
+        for (TDP_State_Node owner : index.get_owners(up))
+        {
+            if (!index.is_alive(owner)) continue;
+            TDP_DecisionSet parent_set = index.parent_set(p, owner);
+            if (parent_set == null) continue;
+            Tuple t = owner.toTuple();
+            double other_branches = index.other_branches_cost(owner, b);
+            if (fixed + t.cost + other_branches + index.prefix_cost(p, parent_set) >= search_threshold()) continue;
+            answer[p] = t;
+            int opened = open(owner, p, b);
+            search(fixed + t.cost, parent_set, p);
+            close(opened);
+        }
+    }
+
+    /**
+     * @return double The sum of the optimal costs of the open branches.
+     */
+    private double open_cost()
+    {
+        double sum = 0.0;
+        for (TDP_DecisionSet set : open_sets) sum += set.best_decision.opt_achievable_cost();
+        return sum;
+    }
+
+    /**
+     * Pushes the branches of a node of relation i (except one) to the open ones.
+     * @return int The number of branches that were pushed.
+     */
+    private int open(TDP_State_Node node, int i, int skipped)
+    {
+        List<Integer> children = index.get_children(i);
+        int opened = 0;
+        for (int b = 0; b < children.size(); b++)
+        {
+            if (b == skipped) continue;
+            open_sets.add(node.decisions.get(b));
+            open_relations.add(children.get(b));
+            opened++;
+        }
+        return opened;
+    }
+
+    private void close(int opened)
+    {
+        for (int j = 0; j < opened; j++)
+        {
+            open_sets.remove(open_sets.size() - 1);
+            open_relations.remove(open_relations.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,767 @@
+package entities.trees;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import util.Common;
+
+/**
+ * Indexes the graph of a {@link entities.trees.TDP_Thetajoin_Instance} so that tuples can be inserted
+ * and deleted without rebuilding it.
+ * Supported only if all the joins are equi-joins (i.e., the graph has no intermediate factorization nodes).
+ * Every tuple of relation i gets a node (also the ones that were removed by the constructor because they are dead-ends).
+ * For each branch, the nodes of relation i that agree on the attributes joined with the child relation
+ * share one DecisionSet (a group), which contains a decision for every alive node of the child with the same join values.
+ * A node is alive if it is terminal or all its branches have at least one decision
+ * and only alive nodes are targets of decisions.
+ * <br><br>
+ * An update first changes the decisions (a set that becomes empty or non-empty may change the liveness of its owners,
+ * which is propagated to their parents immediately).
+ * Then, the groups whose decisions changed are recomputed from the leaves to the root
+ * and a change is propagated to the parent groups only if the optimal cost of their owners changed.
+ * A group is scanned again only if its best decision got worse or was removed,
+ * otherwise the best decision is found among the old one and the decisions that were added or improved.
+ * The partial orders of the any-k algorithms are discarded only for the recomputed groups,
+ * while the memoized subtrees are also discarded for the ancestors that have memoized any.
+ * @author Nikolaos Tziavelis
+*/
+class TDP_Update_Index
+{
+    private TDP_Thetajoin_Instance instance;
+    private Tree_ThetaJoin_Query query;
+    private int n;
+    /**
+     * For relation i, its parent, its branch in the parent and its children (one per branch).
+    */
+    private int[] parent, branch_in_parent;
+    private List<List<Integer>> children;
+    /**
+     * For relation i and branch b, the attributes of i that are joined with the child (parent_attributes)
+     * and, for relation i, the attributes of i that are joined with its parent (child_attributes).
+    */
+    private int[][][] parent_attributes;
+    private int[][] child_attributes;
+    /**
+     * The node of each tuple, per relation.
+    */
+    private List<IdentityHashMap<Tuple, TDP_State_Node>> nodes;
+    /**
+     * The groups of each relation and branch, keyed by the values of the parent attributes.
+    */
+    private List<List<HashMap<List<Double>, TDP_DecisionSet>>> groups;
+    /**
+     * The nodes of each relation (except the root), keyed by the values of the child attributes.
+    */
+    private List<HashMap<List<Double>, List<TDP_State_Node>>> child_index;
+    private IdentityHashMap<TDP_DecisionSet, List<TDP_State_Node>> owners;
+    /**
+     * The position of each tuple in the list of its relation, so that a deletion does not scan the relation.
+     * A deleted tuple is replaced by the last tuple of the list (the order of the tuples is not preserved).
+    */
+    private IdentityHashMap<Tuple, Integer> positions;
+    /**
+     * The position of each decision in the list of its set.
+     * It is only a hint, since the any-k algorithms reorder the decisions in place,
+     * and it is recomputed for the whole set when it is found stale.
+    */
+    private IdentityHashMap<TDP_Decision, Integer> decision_positions;
+    /**
+     * The decision that leads to each alive node (except the starting node).
+    */
+    private IdentityHashMap<TDP_State_Node, TDP_Decision> incoming;
+    /**
+     * The sets that have to be recomputed (or whose memoized subtrees have to be discarded),
+     * indexed by the relation of their owners plus one (the starting node is at 0).
+    */
+    private List<Set<TDP_DecisionSet>> dirty_sets, dirty_suffixes;
+    /**
+     * For the dirty sets, the best among the decisions that were added or whose targets improved.
+    */
+    private IdentityHashMap<TDP_DecisionSet, TDP_Decision> improved;
+    /**
+     * The dirty sets that have to be scanned because their best decision may have changed arbitrarily.
+    */
+    private Set<TDP_DecisionSet> rescan;
+    /**
+     * The memoized prefix costs of the sets (see {@link #prefix_cost}).
+     * A set is memoized only after the sets above it that its cost depends on,
+     * thus a change discards the sets below the changed nodes (see {@link #invalidate_prefix}) and keeps the rest.
+    */
+    private IdentityHashMap<TDP_DecisionSet, Double> prefix_costs;
+
+    /**
+     * Builds the index from the graph that was constructed and went through the bottom-up phase.
+    */
+    TDP_Update_Index(TDP_Thetajoin_Instance instance)
+    {
+        this.instance = instance;
+        this.query = instance.query;
+        this.n = query.length;
+        this.parent = new int[n];
+        this.branch_in_parent = new int[n];
+        this.children = new ArrayList<List<Integer>>();
+        this.parent_attributes = new int[n][][];
+        this.child_attributes = new int[n][];
+        for (int i = 0; i < n; i++) children.add(query.get_children(i));
+        for (int i = 0; i < n; i++)
+        {
+            parent_attributes[i] = new int[children.get(i).size()][];
+            for (int b = 0; b < children.get(i).size(); b++)
+            {
+                int c = children.get(i).get(b);
+                List<List<Join_Predicate>> join_condition = query.join_conditions.get(c);
+                if (!Common.is_conjunction_of_simple_equalities(join_condition))
+                {
+                    System.err.println("Updates are supported only for tree queries with equi-joins");
+                    System.exit(1);
+                }
+                parent_attributes[i][b] = join_condition.get(0).stream().mapToInt(p -> p.attr_idx_1).toArray();
+                child_attributes[c] = join_condition.get(0).stream().mapToInt(p -> p.attr_idx_2).toArray();
+                parent[c] = i;
+                branch_in_parent[c] = b;
+            }
+        }
+        this.owners = new IdentityHashMap<TDP_DecisionSet, List<TDP_State_Node>>();
+        this.positions = new IdentityHashMap<Tuple, Integer>();
+        this.decision_positions = new IdentityHashMap<TDP_Decision, Integer>();
+        for (Relation relation : query.relations)
+            for (int i = 0; i < relation.tuples.size(); i++) positions.put(relation.tuples.get(i), i);
+        this.incoming = new IdentityHashMap<TDP_State_Node, TDP_Decision>();
+        this.improved = new IdentityHashMap<TDP_DecisionSet, TDP_Decision>();
+        this.rescan = Collections.newSetFromMap(new IdentityHashMap<TDP_DecisionSet, Boolean>());
+        this.prefix_costs = new IdentityHashMap<TDP_DecisionSet, Double>();
+        this.dirty_sets = new ArrayList<Set<TDP_DecisionSet>>();
+        this.dirty_suffixes = new ArrayList<Set<TDP_DecisionSet>>();
+        for (int i = 0; i <= n; i++)
+        {
+            dirty_sets.add(Collections.newSetFromMap(new IdentityHashMap<TDP_DecisionSet, Boolean>()));
+            dirty_suffixes.add(Collections.newSetFromMap(new IdentityHashMap<TDP_DecisionSet, Boolean>()));
+        }
+        this.nodes = new ArrayList<IdentityHashMap<Tuple, TDP_State_Node>>();
+        this.groups = new ArrayList<List<HashMap<List<Double>, TDP_DecisionSet>>>();
+        this.child_index = new ArrayList<HashMap<List<Double>, List<TDP_State_Node>>>();
+        for (int i = 0; i < n; i++)
+        {
+            nodes.add(new IdentityHashMap<Tuple, TDP_State_Node>());
+            List<HashMap<List<Double>, TDP_DecisionSet>> branch_groups = new ArrayList<HashMap<List<Double>, TDP_DecisionSet>>();
+            for (int b = 0; b < children.get(i).size(); b++) branch_groups.add(new HashMap<List<Double>, TDP_DecisionSet>());
+            groups.add(branch_groups);
+            child_index.add(new HashMap<List<Double>, List<TDP_State_Node>>());
+        }
+
+        TDP_DecisionSet starting_set = instance.starting_node.decisions.get(0);
+        if (starting_set.best_decision == null && !starting_set.list_of_decisions.isEmpty())
+        {
+            System.err.println("The bottom-up phase has to run before the instance is updated");
+            System.exit(1);
+        }
+        owners.put(starting_set, new ArrayList<TDP_State_Node>(Collections.singletonList(instance.starting_node)));
+
+        // Recover the nodes that are reachable from the starting node, from the root to the leaves
+        // (resolving the targets that the demand-driven bottom-up may have skipped)
+        List<IdentityHashMap<Tuple, TDP_State_Node>> reached = new ArrayList<IdentityHashMap<Tuple, TDP_State_Node>>();
+        for (int i = 0; i < n; i++) reached.add(new IdentityHashMap<Tuple, TDP_State_Node>());
+        starting_set.resolve_targets();
+        for (TDP_Decision dec : starting_set.list_of_decisions) reached.get(0).put(dec.target.toTuple(), dec.target);
+        for (int i = 0; i < n; i++)
+        {
+            for (int b = 0; b < children.get(i).size(); b++)
+            {
+                int c = children.get(i).get(b);
+                Set<TDP_DecisionSet> visited = Collections.newSetFromMap(new IdentityHashMap<TDP_DecisionSet, Boolean>());
+                for (TDP_State_Node node : reached.get(i).values())
+                {
+                    TDP_DecisionSet set = node.decisions.get(b);
+                    if (!visited.add(set)) continue;
+                    set.resolve_targets();
+                    for (TDP_Decision dec : set.list_of_decisions) reached.get(c).put(dec.target.toTuple(), dec.target);
+                }
+            }
+        }
+
+        // Index the relations from the leaves to the root (children have greater indexes),
+        // creating nodes for the tuples that are not reachable
+        for (int i = n - 1; i >= 0; i--)
+        {
+            // The reachable nodes go first so that the others can share their groups
+            for (Tuple t : query.relations.get(i).tuples)
+            {
+                TDP_State_Node node = reached.get(i).get(t);
+                if (node == null) continue;
+                nodes.get(i).put(t, node);
+                for (int b = 0; b < children.get(i).size(); b++)
+                    groups.get(i).get(b).putIfAbsent(parent_key(i, b, t), node.decisions.get(b));
+                add_owner(node);
+            }
+            for (Tuple t : query.relations.get(i).tuples)
+                if (!nodes.get(i).containsKey(t)) create_node(i, t);
+            if (i > 0)
+                for (Tuple t : query.relations.get(i).tuples)
+                    add_to_child_index(i, nodes.get(i).get(t));
+        }
+        for (TDP_DecisionSet set : owners.keySet())
+        {
+            List<TDP_Decision> decisions = set.list_of_decisions;
+            for (int j = 0; j < decisions.size(); j++)
+            {
+                incoming.put(decisions.get(j).target, decisions.get(j));
+                decision_positions.put(decisions.get(j), j);
+            }
+        }
+    }
+
+    /**
+     * Inserts a tuple in all the positions of the tree that correspond to its relation.
+     * @param t The new tuple.
+     */
+    void insert(Tuple t)
+    {
+        if (!contains_relation(t.relation))
+        {
+            System.err.println("Inserted tuple " + t + " does not belong to any relation of the query");
+            System.exit(1);
+        }
+        t.relation.insert(t);
+        positions.put(t, t.relation.tuples.size() - 1);
+        // From the leaves to the root so that a group created for the tuple
+        // sees the node created for the same tuple in a descendant
+        for (int i = n - 1; i >= 0; i--)
+        {
+            if (query.relations.get(i) != t.relation) continue;
+            TDP_State_Node node = create_node(i, t);
+            if (i > 0) add_to_child_index(i, node);
+            if (is_alive(node)) attach(i, node);
+        }
+        propagate();
+    }
+
+    /**
+     * Deletes a tuple from all the positions of the tree that correspond to its relation.
+     * @param t The tuple (the same object that was inserted in the relation).
+     */
+    void delete(Tuple t)
+    {
+        if (!contains_relation(t.relation) || !remove_from_relation(t))
+        {
+            System.err.println("Deleted tuple " + t + " does not exist");
+            System.exit(1);
+        }
+        remove_nodes(t);
+        propagate();
+    }
+
+    /**
+     * Deletes a batch of tuples (e.g., the ones that expire from a window)
+     * and propagates the changes once for all of them.
+     * @param ts The tuples (the same objects that were inserted in their relations).
+     */
+    void delete(Collection<Tuple> ts)
+    {
+        for (Tuple t : ts)
+        {
+            if (!contains_relation(t.relation) || !remove_from_relation(t))
+            {
+                System.err.println("Deleted tuple " + t + " does not exist");
+                System.exit(1);
+            }
+        }
+        for (Tuple t : ts) remove_nodes(t);
+        propagate();
+    }
+
+    /**
+     * Changes the costs of the tuples of some relations.
+     * Only the decisions to the nodes of the tuples whose cost changed are updated
+     * and the optimal costs are propagated as for inserts and deletes.
+     * @param new_costs The new costs of all the tuples of each relation, in the order they are stored.
+     * @return List<Tuple> The tuples whose cost changed.
+     */
+    List<Tuple> reweight(Map<Relation, double[]> new_costs)
+    {
+        List<Tuple> changed = new ArrayList<Tuple>();
+        for (Map.Entry<Relation, double[]> entry : new_costs.entrySet())
+        {
+            List<Tuple> tuples = entry.getKey().tuples;
+            double[] costs = entry.getValue();
+            if (costs.length != tuples.size())
+            {
+                System.err.println("Expected " + tuples.size() + " costs for relation " + entry.getKey().relation_id + " but got " + costs.length);
+                System.exit(1);
+            }
+            for (int j = 0; j < costs.length; j++)
+            {
+                if (Double.compare(tuples.get(j).cost, costs[j]) == 0) continue;
+                tuples.get(j).cost = costs[j];
+                changed.add(tuples.get(j));
+            }
+        }
+        for (Tuple t : changed)
+        {
+            for (int i = 0; i < n; i++)
+            {
+                if (query.relations.get(i) != t.relation) continue;
+                TDP_State_Node node = nodes.get(i).get(t);
+                invalidate_prefix(node);
+                if (!is_alive(node)) continue;
+                TDP_DecisionSet parent_set = parent_set(i, node);
+                if (parent_set == null) continue;
+                TDP_Decision dec = incoming.get(node);
+                double old_cost = dec.cost;
+                dec.cost = t.cost;
+                int p = (i == 0) ? -1 : parent[i];
+                dirty_sets.get(p + 1).add(parent_set);
+                if (t.cost < old_cost) improve(parent_set, dec);
+                else worsen(parent_set, dec);
+            }
+        }
+        propagate();
+        return changed;
+    }
+
+    /**
+     * Removes the nodes of a deleted tuple from all the positions of the tree that correspond to its relation.
+     * Their parents are marked dirty, but nothing is propagated.
+     */
+    private void remove_nodes(Tuple t)
+    {
+        for (int i = n - 1; i >= 0; i--)
+        {
+            if (query.relations.get(i) != t.relation) continue;
+            TDP_State_Node node = nodes.get(i).remove(t);
+            invalidate_prefix(node);
+            if (is_alive(node)) detach(i, node);
+            if (i > 0)
+            {
+                List<Double> key = Common.createSublist(t.values, child_attributes[i]);
+                List<TDP_State_Node> same_key = child_index.get(i).get(key);
+                remove_reference(same_key, node);
+                if (same_key.isEmpty()) child_index.get(i).remove(key);
+            }
+            for (int b = 0; b < children.get(i).size(); b++)
+            {
+                TDP_DecisionSet group = node.decisions.get(b);
+                List<TDP_State_Node> group_owners = owners.get(group);
+                remove_reference(group_owners, node);
+                if (group_owners.isEmpty())
+                {
+                    owners.remove(group);
+                    groups.get(i).get(b).remove(parent_key(i, b, t));
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a tuple from its relation in constant time by moving the last tuple of the relation to its position.
+     * @return boolean True if the tuple was found.
+     */
+    private boolean remove_from_relation(Tuple t)
+    {
+        Integer position = positions.remove(t);
+        if (position == null) return false;
+        List<Tuple> tuples = t.relation.tuples;
+        Tuple last = tuples.remove(tuples.size() - 1);
+        if (last != t)
+        {
+            tuples.set(position, last);
+            positions.put(last, position);
+        }
+        return true;
+    }
+
+    /**
+     * Creates and indexes the node of a tuple in a relation.
+     * In each branch, it shares the group of its join values or, if there is none, creates it
+     * with decisions to all the alive nodes of the child that join with it.
+     */
+    private TDP_State_Node create_node(int i, Tuple t)
+    {
+        int branches_no = children.get(i).size();
+        TDP_State_Node node = new TDP_State_Node(branches_no, t);
+        nodes.get(i).put(t, node);
+        if (branches_no == 0)
+        {
+            node.set_to_terminal();
+            node.set_opt_cost(0.0);
+            return node;
+        }
+        for (int b = 0; b < branches_no; b++)
+        {
+            List<Double> key = parent_key(i, b, t);
+            TDP_DecisionSet group = groups.get(i).get(b).get(key);
+            if (group != null)
+            {
+                node.share_decisions(owners.get(group).get(0), b);
+            }
+            else
+            {
+                List<TDP_State_Node> joining_nodes = child_index.get(children.get(i).get(b)).get(key);
+                if (joining_nodes != null)
+                    for (TDP_State_Node child : joining_nodes)
+                    {
+                        if (!is_alive(child)) continue;
+                        node.add_decision(b, child, child.toTuple().cost);
+                        List<TDP_Decision> added = node.decisions.get(b).list_of_decisions;
+                        incoming.put(child, added.get(added.size() - 1));
+                        decision_positions.put(added.get(added.size() - 1), added.size() - 1);
+                        // The prefix costs below the child now go through the new set
+                        invalidate_prefix(child);
+                    }
+                groups.get(i).get(b).put(key, node.decisions.get(b));
+                compute_best(node.decisions.get(b));
+            }
+        }
+        node.set_opt_cost(compute_opt_cost(node));
+        add_owner(node);
+        invalidate_prefix(node);
+        return node;
+    }
+
+    /**
+     * Adds a decision to a node that became alive from the set of its parents.
+     * If that set was empty, its owners may become alive too.
+     */
+    private void attach(int i, TDP_State_Node node)
+    {
+        invalidate_prefix(node);
+        TDP_DecisionSet parent_set = parent_set(i, node);
+        if (parent_set == null) return;
+        boolean was_empty = parent_set.list_of_decisions.isEmpty();
+        TDP_Decision dec = new TDP_Decision(node, node.toTuple().cost, parent_set);
+        parent_set.add(dec);
+        incoming.put(node, dec);
+        decision_positions.put(dec, parent_set.list_of_decisions.size() - 1);
+        int p = (i == 0) ? -1 : parent[i];
+        dirty_sets.get(p + 1).add(parent_set);
+        improve(parent_set, dec);
+        if (was_empty && i > 0)
+            for (TDP_State_Node parent_node : owners.get(parent_set))
+                if (is_alive(parent_node)) attach(p, parent_node);
+    }
+
+    /**
+     * Removes the decision to a node that is no longer alive from the set of its parents.
+     * If that set becomes empty, its owners that were alive are no longer alive.
+     */
+    private void detach(int i, TDP_State_Node node)
+    {
+        invalidate_prefix(node);
+        TDP_DecisionSet parent_set = parent_set(i, node);
+        if (parent_set == null) return;
+        TDP_Decision dec = incoming.remove(node);
+        remove_decision(parent_set, dec);
+        int p = (i == 0) ? -1 : parent[i];
+        dirty_sets.get(p + 1).add(parent_set);
+        worsen(parent_set, dec);
+        if (parent_set.list_of_decisions.isEmpty() && i > 0)
+            for (TDP_State_Node parent_node : owners.get(parent_set))
+                if (alive_except(parent_node, parent_set)) detach(p, parent_node);
+    }
+
+    /**
+     * Recomputes the best decisions of the dirty sets from the leaves to the root.
+     * The parents of a set are recomputed only if the optimal cost of its owners changed.
+     */
+    private void propagate()
+    {
+        for (int idx = n; idx >= 0; idx--)
+        {
+            int i = idx - 1;  // the relation of the owners
+            for (TDP_DecisionSet set : dirty_sets.get(idx))
+            {
+                List<TDP_State_Node> set_owners = owners.get(set);
+                // The set may have lost all of its owners
+                if (set_owners == null)
+                {
+                    improved.remove(set);
+                    rescan.remove(set);
+                    continue;
+                }
+                set.reset_partial_order();
+                update_best(set);
+                for (TDP_State_Node owner : set_owners)
+                {
+                    // The prefix costs of the other branches of the owner include the optimal cost of this one
+                    invalidate_prefix(owner);
+                    double opt_cost = compute_opt_cost(owner);
+                    double old_cost = owner.get_opt_cost();
+                    owner.set_opt_cost(opt_cost);
+                    owner.lawler_future_costs = null;
+                    if (i < 0 || !is_alive(owner)) continue;
+                    TDP_DecisionSet parent_set = parent_set(i, owner);
+                    if (parent_set == null) continue;
+                    int p = (i == 0) ? -1 : parent[i];
+                    if (Double.compare(old_cost, opt_cost) == 0)
+                    {
+                        dirty_suffixes.get(p + 1).add(parent_set);
+                        continue;
+                    }
+                    dirty_sets.get(p + 1).add(parent_set);
+                    if (opt_cost < old_cost) improve(parent_set, incoming.get(owner));
+                    else worsen(parent_set, incoming.get(owner));
+                }
+            }
+            for (TDP_DecisionSet set : dirty_suffixes.get(idx))
+            {
+                if (dirty_sets.get(idx).contains(set) || !owners.containsKey(set)) continue;
+                // Only the ancestors of memoized subtrees can have memoized subtrees through this set
+                if (!set.reset_suffixes() || i < 0) continue;
+                int p = (i == 0) ? -1 : parent[i];
+                for (TDP_State_Node owner : owners.get(set))
+                {
+                    TDP_DecisionSet parent_set = parent_set(i, owner);
+                    if (parent_set != null && is_alive(owner)) dirty_suffixes.get(p + 1).add(parent_set);
+                }
+            }
+            dirty_sets.get(idx).clear();
+            dirty_suffixes.get(idx).clear();
+        }
+        // The lower bounds of the demand-driven bottom-up may no longer hold
+        instance.node_lower_bounds = null;
+        instance.branch_lower_bounds = null;
+    }
+
+    /**
+     * Sets the best decision of a dirty set, scanning it only if needed.
+     */
+    private void update_best(TDP_DecisionSet set)
+    {
+        TDP_Decision candidate = improved.remove(set);
+        if (rescan.remove(set)) compute_best(set);
+        else if (candidate != null && (set.best_decision == null || candidate.compareTo(set.best_decision) < 0))
+            set.best_decision = candidate;
+    }
+
+    /**
+     * Records a decision of a set that was added or whose target improved.
+     */
+    private void improve(TDP_DecisionSet set, TDP_Decision dec)
+    {
+        TDP_Decision candidate = improved.get(set);
+        if (candidate == null || dec.compareTo(candidate) < 0) improved.put(set, dec);
+    }
+
+    /**
+     * Records a decision of a set that was removed or whose target got worse.
+     * The set has to be scanned if it was the best decision (or the best improved one).
+     */
+    private void worsen(TDP_DecisionSet set, TDP_Decision dec)
+    {
+        if (dec == set.best_decision || dec == improved.get(set)) rescan.add(set);
+    }
+
+    /**
+     * Sets the best decision of a set by scanning it.
+     */
+    private void compute_best(TDP_DecisionSet set)
+    {
+        TDP_Decision best_decision = null;
+        for (TDP_Decision dec : set.list_of_decisions)
+            if (best_decision == null || dec.compareTo(best_decision) < 0) best_decision = dec;
+        set.best_decision = best_decision;
+    }
+
+    /**
+     * @return double The sum of the optimal costs of the branches of a node (infinity if one is empty).
+     */
+    private double compute_opt_cost(TDP_State_Node node)
+    {
+        double opt_cost = 0.0;
+        for (TDP_DecisionSet set : node.decisions)
+        {
+            if (set.best_decision == null) return Double.POSITIVE_INFINITY;
+            opt_cost += set.best_decision.opt_achievable_cost();
+        }
+        return opt_cost;
+    }
+
+    /**
+     * @param set A non-empty set that contains decisions to nodes of relation i.
+     * @return double The minimum cost of the tuples that complete an answer above the set,
+     * i.e., of the relations that are not in the subtree of i (infinity if there is none).
+     * It is memoized across updates.
+     */
+    double prefix_cost(int i, TDP_DecisionSet set)
+    {
+        if (i == 0) return 0.0;
+        Double memoized = prefix_costs.get(set);
+        if (memoized != null) return memoized;
+        int p = parent[i];
+        int b = branch_in_parent[i];
+        double min = Double.POSITIVE_INFINITY;
+        for (TDP_State_Node owner : owners.get(set))
+        {
+            if (!is_alive(owner)) continue;
+            TDP_DecisionSet parent_set = parent_set(p, owner);
+            if (parent_set == null) continue;
+            min = Math.min(min, owner.toTuple().cost + other_branches_cost(owner, b) + prefix_cost(p, parent_set));
+        }
+        prefix_costs.put(set, min);
+        return min;
+    }
+
+    /**
+     * @return double The sum of the optimal costs of the branches of an alive node except one.
+     */
+    double other_branches_cost(TDP_State_Node node, int skipped)
+    {
+        double sum = 0.0;
+        for (int b = 0; b < node.decisions.size(); b++)
+            if (b != skipped) sum += node.decisions.get(b).best_decision.opt_achievable_cost();
+        return sum;
+    }
+
+    /**
+     * Discards the memoized prefix costs that depend on a node, i.e., of its sets and of the memoized sets below them.
+     * It is called whenever the node is created, removed, reweighted, becomes alive or dead
+     * or the optimal cost of one of its branches may have changed.
+     */
+    private void invalidate_prefix(TDP_State_Node node)
+    {
+        for (TDP_DecisionSet set : node.decisions) invalidate_prefix(set);
+    }
+
+    private void invalidate_prefix(TDP_DecisionSet set)
+    {
+        // The sets below a set that is not memoized are not memoized either
+        if (prefix_costs.remove(set) == null) return;
+        for (TDP_Decision dec : set.list_of_decisions) invalidate_prefix(dec.target);
+    }
+
+    /**
+     * @return TDP_DecisionSet The set that contains the decisions to the nodes of relation i
+     * with the same join values as the node (null if it doesn't exist).
+     */
+    TDP_DecisionSet parent_set(int i, TDP_State_Node node)
+    {
+        if (i == 0) return instance.starting_node.decisions.get(0);
+        List<Double> key = Common.createSublist(node.toTuple().values, child_attributes[i]);
+        return groups.get(parent[i]).get(branch_in_parent[i]).get(key);
+    }
+
+    boolean is_alive(TDP_State_Node node)
+    {
+        return node.is_terminal() || !node.is_dead_end();
+    }
+
+    /**
+     * @return TDP_State_Node The node of a tuple in relation i (null if it doesn't exist).
+     */
+    TDP_State_Node get_node(int i, Tuple t)
+    {
+        return nodes.get(i).get(t);
+    }
+
+    /**
+     * @return List<TDP_State_Node> The nodes that share a set.
+     */
+    List<TDP_State_Node> get_owners(TDP_DecisionSet set)
+    {
+        return owners.get(set);
+    }
+
+    /**
+     * @return int The parent of relation i in the tree.
+     */
+    int get_parent(int i)
+    {
+        return parent[i];
+    }
+
+    /**
+     * @return int The branch of the parent of relation i that leads to i.
+     */
+    int get_branch_in_parent(int i)
+    {
+        return branch_in_parent[i];
+    }
+
+    /**
+     * @return List<Integer> The children of relation i (one per branch).
+     */
+    List<Integer> get_children(int i)
+    {
+        return children.get(i);
+    }
+
+    /**
+     * @return boolean True if all the branches of a node except the given set are non-empty.
+     */
+    private boolean alive_except(TDP_State_Node node, TDP_DecisionSet set)
+    {
+        for (TDP_DecisionSet other : node.decisions)
+            if (other != set && other.list_of_decisions.isEmpty()) return false;
+        return true;
+    }
+
+    private List<Double> parent_key(int i, int b, Tuple t)
+    {
+        return Common.createSublist(t.values, parent_attributes[i][b]);
+    }
+
+    private void add_owner(TDP_State_Node node)
+    {
+        for (TDP_DecisionSet set : node.decisions)
+            owners.computeIfAbsent(set, k -> new ArrayList<TDP_State_Node>()).add(node);
+    }
+
+    private void add_to_child_index(int i, TDP_State_Node node)
+    {
+        List<Double> key = Common.createSublist(node.toTuple().values, child_attributes[i]);
+        child_index.get(i).computeIfAbsent(key, k -> new ArrayList<TDP_State_Node>()).add(node);
+    }
+
+    private boolean contains_relation(Relation relation)
+    {
+        for (Relation r : query.relations) if (r == relation) return true;
+        return false;
+    }
+
+    /**
+     * Removes a decision from its set in constant time by moving the last decision of the set to its position.
+     * The order of the decisions does not matter, since the partial order of a changed set is discarded.
+     */
+    private void remove_decision(TDP_DecisionSet set, TDP_Decision dec)
+    {
+        List<TDP_Decision> decisions = set.list_of_decisions;
+        Integer position = decision_positions.remove(dec);
+        if (position == null || position >= decisions.size() || decisions.get(position) != dec)
+        {
+            // An any-k algorithm has reordered the set since the positions were recorded
+            for (int j = 0; j < decisions.size(); j++) decision_positions.put(decisions.get(j), j);
+            position = decision_positions.remove(dec);
+        }
+        TDP_Decision last = decisions.remove(decisions.size() - 1);
+        if (last != dec)
+        {
+            decisions.set(position, last);
+            decision_positions.put(last, position);
+        }
+    }
+
+    /**
+     * Removes an object from a list by reference (tuples with the same values are equal).
+     * @return boolean True if the object was found.
+     */
+    private static <T> boolean remove_reference(List<T> list, T element)
+    {
+        for (int i = list.size() - 1; i >= 0; i--)
+        {
+            if (list.get(i) == element)
+            {
+                list.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -24,6 +24,8 @@ public class Tree_Query_Solution extends TDP_Solution implements Comparable<Tree
         this.tuple_list = new ArrayList<Tuple>();
         for (TDP_State_Node node : node_list)
         {
+            // Skip the intermediate nodes of theta-join factorization
+            if (!(node.state_info instanceof Tuple)) continue;
             t = (Tuple) node.state_info;
             this.tuple_list.add(t);
             this.cost += t.cost;
@@ -11,6 +11,9 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import algorithms.cycles.Cyclic_Anyk_Iterator;
+import algorithms.cycles.Generic_Join;
+import algorithms.cycles.Generic_Join_Sort;
 import algorithms.cycles.NPRR;
 import algorithms.cycles.NPRR_Sort;
 import algorithms.cycles.SimpleCycle_Anyk_Iterator;
@@ -19,6 +22,7 @@ import data.Cycle_HeavyLightPattern;
 import data.Database_Query_Generator;
 import entities.Relation;
 import entities.Tuple;
+import entities.cycles.Cyclic_Equijoin_Query;
 import entities.cycles.SimpleCycle_Equijoin_Query;
 import util.DatabaseParser;
 import util.Measurements;
@@ -71,6 +75,10 @@ public class SimpleCycle_Equijoin
         heap_type_option.setRequired(false);
         options.addOption(heap_type_option);
 
+        Option parallel_option = new Option("par", "parallel", false, "build and enumerate the acyclic queries of the decomposition in parallel");
+        parallel_option.setRequired(false);
+        options.addOption(parallel_option);
+
         // This option is needed when calling without an input file
         Option n_option = new Option("n", "relationSize", true, "number of tuples per relation");
         n_option.setRequired(false);
@@ -112,6 +120,7 @@ public class SimpleCycle_Equijoin
         else heap_type = null;   // let the classes choose by themselves
         boolean self_join = false;
         if (cmd.hasOption("selfJoin")) self_join = true;
+        boolean parallel = cmd.hasOption("parallel");
         if (cmd.hasOption("downsample")) 
         {
             long estimated_result_size = 0;
@@ -193,7 +202,7 @@ public class SimpleCycle_Equijoin
         // ======= Warm-up phase =======
         double dummy_counter = 0.0;  // to verify the computation is not removed by the compiler 
         for (int i = 0; i < 10000; i++) 
-            dummy_counter += warm_up_cycle_equijoin(algorithm, heap_type);
+            dummy_counter += warm_up_cycle_equijoin(algorithm, heap_type, parallel);
         System.out.println("Dummy counter = " + dummy_counter);
 
 
@@ -224,9 +233,33 @@ public class SimpleCycle_Equijoin
                 else measurements.add_k(solution_tuple);
             }
         }
+        else if (algorithm.startsWith("GenericJoin"))
+        {
+            Generic_Join iter = create_generic_join(algorithm, query);
+
+            Tuple solution_tuple;
+            for (int k = 1; k <= max_k; k++)
+            {
+                solution_tuple = iter.get_next();
+                if (solution_tuple == null) break;
+                else measurements.add_k(solution_tuple);
+            }
+        }
+        else if (algorithm.startsWith("Decomposed_"))
+        {
+            Cyclic_Anyk_Iterator iter = create_decomposed(algorithm, query, heap_type, parallel);
+
+            Tuple solution_tuple;
+            for (int k = 1; k <= max_k; k++)
+            {
+                solution_tuple = iter.get_next();
+                if (solution_tuple == null) break;
+                else measurements.add_k(solution_tuple);
+            }
+        }
         else
         {
-            SimpleCycle_Anyk_Iterator iter = new SimpleCycle_Anyk_Iterator(query, algorithm, heap_type);
+            SimpleCycle_Anyk_Iterator iter = new SimpleCycle_Anyk_Iterator(query, algorithm, heap_type, parallel);
 
             // Run any-k
             Tuple solution_tuple;
@@ -240,7 +273,7 @@ public class SimpleCycle_Equijoin
         measurements.print();
     }
 
-    private static double warm_up_cycle_equijoin(String algorithm, String heap_type)
+    private static double warm_up_cycle_equijoin(String algorithm, String heap_type, boolean parallel)
     {
         Database_Query_Generator gen;
         SimpleCycle_Equijoin_Query query;
@@ -271,9 +304,29 @@ public class SimpleCycle_Equijoin
                 dummy_counter += solution_tuple.values[0];
             }
         }
+        else if (algorithm.startsWith("GenericJoin"))
+        {
+            Generic_Join iter = create_generic_join(algorithm, query);
+            while (true)
+            {
+                solution_tuple = iter.get_next();
+                if (solution_tuple == null) break;
+                dummy_counter += solution_tuple.values[0];
+            }
+        }
+        else if (algorithm.startsWith("Decomposed_"))
+        {
+            Cyclic_Anyk_Iterator iter = create_decomposed(algorithm, query, heap_type, parallel);
+            while (true)
+            {
+                solution_tuple = iter.get_next();
+                if (solution_tuple == null) break;
+                dummy_counter += solution_tuple.values[0];
+            }
+        }
         else
         {
-            SimpleCycle_Anyk_Iterator iter = new SimpleCycle_Anyk_Iterator(query, algorithm, heap_type);
+            SimpleCycle_Anyk_Iterator iter = new SimpleCycle_Anyk_Iterator(query, algorithm, heap_type, parallel);
             while (true)
             {
                 solution_tuple = iter.get_next();
@@ -306,9 +359,29 @@ public class SimpleCycle_Equijoin
                 dummy_counter += solution_tuple.values[0];
             }
         }
+        else if (algorithm.startsWith("GenericJoin"))
+        {
+            Generic_Join iter = create_generic_join(algorithm, query);
+            while (true)
+            {
+                solution_tuple = iter.get_next();
+                if (solution_tuple == null) break;
+                dummy_counter += solution_tuple.values[0];
+            }
+        }
+        else if (algorithm.startsWith("Decomposed_"))
+        {
+            Cyclic_Anyk_Iterator iter = create_decomposed(algorithm, query, heap_type, parallel);
+            while (true)
+            {
+                solution_tuple = iter.get_next();
+                if (solution_tuple == null) break;
+                dummy_counter += solution_tuple.values[0];
+            }
+        }
         else
         {
-            SimpleCycle_Anyk_Iterator iter = new SimpleCycle_Anyk_Iterator(query, algorithm, heap_type);
+            SimpleCycle_Anyk_Iterator iter = new SimpleCycle_Anyk_Iterator(query, algorithm, heap_type, parallel);
             while (true)
             {
                 solution_tuple = iter.get_next();
@@ -319,4 +392,28 @@ public class SimpleCycle_Equijoin
 
         return dummy_counter;
     }
-}
\ No newline at end of file
+
+    /**
+     * @param algorithm GenericJoin (unsorted), GenericJoin_Sort or GenericJoin_Parallel (sorted, with parallel enumeration).
+     * @return Generic_Join The worst-case optimal join for the cycle.
+     */
+    private static Generic_Join create_generic_join(String algorithm, SimpleCycle_Equijoin_Query query)
+    {
+        Cyclic_Equijoin_Query cyclic_query = new Cyclic_Equijoin_Query(query);
+        if (algorithm.equals("GenericJoin")) return new Generic_Join(cyclic_query);
+        else if (algorithm.equals("GenericJoin_Sort")) return new Generic_Join_Sort(cyclic_query);
+        else if (algorithm.equals("GenericJoin_Parallel")) return new Generic_Join_Sort(cyclic_query, null, true);
+        System.err.println("Unknown algorithm " + algorithm);
+        System.exit(1);
+        return null;
+    }
+
+    /**
+     * @param algorithm Decomposed_ followed by an any-k algorithm for trees (e.g., Decomposed_Lazy).
+     * @return Cyclic_Anyk_Iterator The any-k algorithm over the heavy/light decomposition of the cycle.
+     */
+    private static Cyclic_Anyk_Iterator create_decomposed(String algorithm, SimpleCycle_Equijoin_Query query, String heap_type, boolean parallel)
+    {
+        return new Cyclic_Anyk_Iterator(new Cyclic_Equijoin_Query(query), algorithm.substring("Decomposed_".length()), heap_type, null, parallel);
+    }
+}
@@ -0,0 +1,98 @@
+package factorization;
+
+import java.util.List;
+
+import entities.Join_Predicate;
+import entities.State_Node;
+import util.Common;
+
+/**
+ * Chooses a factorization method for the join between 2 relations
+ * by estimating the size of the graph that each method would create.
+ * The estimates depend on the number of tuples n (of both relations),
+ * the number of distinct values D of the predicate attributes (see {@link util.Common#count_distinct_vals}),
+ * and the predicate mix of the conjunction:
+ * <ul>
+ * <li>"equality": only equalities (or a cartesian product), O(n) with {@link factorization.Equality}.</li>
+ * <li>"binary_part": every tuple appears in one intermediate node per level of a recursion with log(D) levels,
+ * i.e., n * log(D) per predicate, multiplied across predicates ({@link factorization.Binary_Partitioning}).</li>
+ * <li>"multi_part": a single predicate, log(log(D)) levels each connecting every tuple with 2 edges and
+ * the sqrt(D) partitions with D/2 edges ({@link factorization.Multiway_Partitioning}).</li>
+ * <li>"shared_ranges": a single less-than predicate, 2n + D edges but a chain of up to D intermediate nodes
+ * that every answer has to go through ({@link factorization.Shared_Ranges}).
+ * To keep the delay of enumeration low, it is considered only if D is small.</li>
+ * </ul>
+ * Non-equalities and bands are handled as two inequalities, thus their estimates are doubled.
+ * @author Nikolaos Tziavelis
+*/
+public class Method_Selector
+{
+    /**
+     * Shared ranges is considered only if the chain of intermediate nodes it creates is at most this long.
+     */
+    static final int SHARED_RANGES_MAX_DISTINCT = 16;
+
+    /**
+     * @param left The first relation/stage as a list of state-nodes.
+     * @param right The second relation/stage as a list of state-nodes.
+     * @param ps A conjunction of predicates with all the equalities at the start of the list.
+     * @param allow_shared_ranges Whether the chains of shared ranges can be handled (not in T-DP).
+     * @return String One of "equality", "binary_part", "multi_part", "shared_ranges".
+     */
+    public static String choose(List<? extends State_Node> left, List<? extends State_Node> right, List<Join_Predicate> ps,
+        boolean allow_shared_ranges)
+    {
+        int ineq_cnt = 0, neq_cnt = 0, band_cnt = 0;
+        for (Join_Predicate p : ps)
+        {
+            if (p.type.equals("IL") || p.type.equals("IG")) ineq_cnt += 1;
+            else if (p.type.equals("N")) neq_cnt += 1;
+            else if (p.type.equals("B")) band_cnt += 1;
+        }
+        if (ineq_cnt + neq_cnt + band_cnt == 0) return "equality";
+        // Multiway partitioning and shared ranges only support a single predicate
+        if (ineq_cnt + neq_cnt + band_cnt > 1) return "binary_part";
+
+        Join_Predicate p = ps.get(ps.size() - 1);
+        double n = left.size() + right.size();
+        double distinct = Common.count_distinct_vals(left, right, p.attr_idx_1, p.attr_idx_2, p.parameter);
+        double factor = (ineq_cnt == 1) ? 1.0 : 2.0;
+
+        String best = "binary_part";
+        double best_size = estimate_binary(n, distinct, factor);
+        double multi_size = estimate_multiway(n, distinct, factor);
+        if (multi_size < best_size)
+        {
+            best = "multi_part";
+            best_size = multi_size;
+        }
+        if (allow_shared_ranges && p.type.equals("IL") && distinct <= SHARED_RANGES_MAX_DISTINCT)
+        {
+            double shared_size = 2 * n + distinct;
+            if (shared_size < best_size) best = "shared_ranges";
+        }
+        return best;
+    }
+
+    /**
+     * @return double The estimated number of edges created by binary partitioning.
+     */
+    static double estimate_binary(double n, double distinct, double factor)
+    {
+        return factor * n * log2(Math.max(distinct, 2.0));
+    }
+
+    /**
+     * @return double The estimated number of edges created by multiway partitioning.
+     */
+    static double estimate_multiway(double n, double distinct, double factor)
+    {
+        double levels = Math.max(1.0, log2(log2(Math.max(distinct, 2.0))) + 1);
+        return factor * (2 * n + distinct / 2) * levels;
+    }
+
+    private static double log2(double x)
+    {
+        return Math.log(x) / Math.log(2);
+    }
+}
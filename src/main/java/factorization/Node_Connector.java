@@ -8,19 +8,55 @@ import entities.trees.TDP_State_Node;
 
 /**
  * This class is responsible for connecting the nodes and creating the graph structure.
- * The static variables of this class have to be set prior to using it.
+ * The settings of this class have to be set prior to using it (see {@link #set_problem_setting}, {@link #set_branch}).
+ * They are kept per thread, since each graph is built by a single thread,
+ * but different graphs may be built concurrently (e.g., by {@link algorithms.cycles.Cyclic_Anyk_Iterator}).
  * @author Nikolaos Tziavelis
 */
 public class Node_Connector 
 {
+    private static class Settings
+    {
+        /** 
+         * "DP" or "T-DP".
+         */
+        String problem_setting = "T-DP";
+        /** 
+         * For T-DP, we need to know the number of branches of the parent.
+         */
+        int branch = 0;
+        /** 
+         * Counts all the intermediate nodes created so far by the thread (never reset).
+         */
+        long intermediate_nodes_created = 0;
+    }
+
+    private static final ThreadLocal<Settings> settings = ThreadLocal.withInitial(Settings::new);
+
+    /** 
+     * @param problem_setting "DP" or "T-DP".
+     */
+    public static void set_problem_setting(String problem_setting)
+    {
+        settings.get().problem_setting = problem_setting;
+    }
+
     /** 
-     * "DP" or "T-DP".
+     * @param branch For T-DP, the branch of the parent that the nodes are connected to.
      */
-    public static String problem_setting = "T-DP";
+    public static void set_branch(int branch)
+    {
+        settings.get().branch = branch;
+    }
+
     /** 
-     * For T-DP, we need to know the number of branches of the parent.
+     * @return long The number of intermediate nodes created so far by the current thread.
+     * The difference before and after a factorization gives the number of nodes it added.
      */
-    public static int branch = 0;
+    public static long get_intermediate_nodes_created()
+    {
+        return settings.get().intermediate_nodes_created;
+    }
 
     /** 
      * Creates a new intermediate node.
@@ -30,7 +66,9 @@ public class Node_Connector
     public static State_Node create_intermediate_node(String intermediate_string)
     {
         State_Node res = null;
-        if (problem_setting.equals("T-DP")) res = new TDP_State_Node(1, intermediate_string);
+        Settings current = settings.get();
+        current.intermediate_nodes_created += 1;
+        if (current.problem_setting.equals("T-DP")) res = new TDP_State_Node(1, intermediate_string);
         else res = new DP_State_Node(intermediate_string);
         return res;
     }
@@ -51,9 +89,10 @@ public class Node_Connector
             res = create_intermediate_node(intermediate_string);
             right = res;
         }
+        Settings current = settings.get();
         for (State_Node node : left)
         {
-            if (problem_setting.equals("T-DP")) ((TDP_State_Node) node).add_decision(branch, (TDP_State_Node) right, 0.0);
+            if (current.problem_setting.equals("T-DP")) ((TDP_State_Node) node).add_decision(current.branch, (TDP_State_Node) right, 0.0);
             else ((DP_State_Node) node).add_decision((DP_State_Node) right, 0.0);
         }
         return res;
@@ -75,9 +114,10 @@ public class Node_Connector
             res = create_intermediate_node(intermediate_string);
             left = res;
         }
+        boolean tdp = settings.get().problem_setting.equals("T-DP");
         for (State_Node node : right)
         {
-            if (problem_setting.equals("T-DP")) ((TDP_State_Node) left).add_decision(0, (TDP_State_Node) node, node.toTuple().cost);
+            if (tdp) ((TDP_State_Node) left).add_decision(0, (TDP_State_Node) node, node.toTuple().cost);
             else ((DP_State_Node) left).add_decision((DP_State_Node) node, node.toTuple().cost);
         }
         return res;
@@ -105,7 +145,7 @@ public class Node_Connector
             res = create_intermediate_node(intermediate_string);
             right = res;
         }
-        if (problem_setting.equals("T-DP")) ((TDP_State_Node) left).add_decision(0, (TDP_State_Node) right, 0.0);
+        if (settings.get().problem_setting.equals("T-DP")) ((TDP_State_Node) left).add_decision(0, (TDP_State_Node) right, 0.0);
         else ((DP_State_Node) left).add_decision((DP_State_Node) right, 0.0);
         return res;
     }
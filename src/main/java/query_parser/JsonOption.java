@@ -3,6 +3,7 @@ package query_parser;
 public class JsonOption {
     private String result_output_file;
     private String timings_output_file;
+    private String delays_output_file;
     private String algorithm;
     private Integer max_k;
     private Double weight_cutoff;
@@ -11,6 +12,9 @@ public class JsonOption {
     private Integer estimated_result_size;
     private String factorization_method;
     private String path_optimization;
+    private String bottom_up;
+    private Integer run_size;
+    private Integer pq_memory_limit;
 
     public String getResult_Output_File() {
         return result_output_file;
@@ -20,6 +24,10 @@ public class JsonOption {
         return timings_output_file;
     }
 
+    public String getDelays_Output_File() {
+        return delays_output_file;
+    }
+
     public String getAlgorithm() {
         return algorithm;
     }
@@ -51,4 +59,16 @@ public class JsonOption {
     public String getPath_optimization() {
         return path_optimization;
     }
+
+    public String getBottom_up() {
+        return bottom_up;
+    }
+
+    public Integer getRun_size() {
+        return run_size;
+    }
+
+    public Integer getPq_memory_limit() {
+        return pq_memory_limit;
+    }
 }
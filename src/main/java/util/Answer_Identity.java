@@ -0,0 +1,47 @@
+package util;
+
+import java.util.List;
+
+import entities.Tuple;
+
+/**
+ * Identifies a query answer by the tuples it consists of.
+ * Unlike {@link entities.Tuple#equals}, tuples are compared by reference,
+ * so that duplicate tuples of the input (equal values) still give distinct answers.
+ * Used to recognize the same answer when it is produced by two different algorithms.
+ * @author Nikolaos Tziavelis
+*/
+public class Answer_Identity
+{
+    private final Tuple[] tuples;
+    private final int hash;
+
+    /**
+     * @param tuple_list The tuples of the answer in a fixed order (e.g., strict order).
+    */
+    public Answer_Identity(List<Tuple> tuple_list)
+    {
+        this.tuples = tuple_list.toArray(new Tuple[0]);
+        int h = 1;
+        for (Tuple t : tuples) h = 31 * h + System.identityHashCode(t);
+        this.hash = h;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (o == this) return true;
+        if (!(o instanceof Answer_Identity)) return false;
+        Answer_Identity other = (Answer_Identity) o;
+        if (other.hash != this.hash || other.tuples.length != this.tuples.length) return false;
+        for (int i = 0; i < tuples.length; i++)
+            if (tuples[i] != other.tuples[i]) return false;
+        return true;
+    }
+}
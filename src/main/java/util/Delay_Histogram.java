@@ -0,0 +1,150 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of delays (in nanoseconds) with logarithmically sized buckets,
+ * in the spirit of HdrHistogram.
+ * Each power of two is split into {@link #SUB_BUCKETS_HALF} linear sub-buckets,
+ * thus every recorded value is kept with a relative error of at most 1/64.
+ * Recording a value is constant time and allocation-free
+ * (a few bit operations and an array increment),
+ * so that it can be called after every single answer without distorting the measured delay.
+ * @author Nikolaos Tziavelis
+*/
+public class Delay_Histogram
+{
+    /**
+     * Values smaller than 2^SUB_BUCKET_BITS are stored exactly.
+    */
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKETS_HALF = SUB_BUCKETS >> 1;
+    /**
+     * Enough buckets to cover all the non-negative long values.
+    */
+    private static final int BUCKETS_NO = (63 - SUB_BUCKET_BITS + 2) * SUB_BUCKETS_HALF;
+
+    private long[] counts;
+    private long total_count;
+    private long max_value;
+    private long min_value;
+
+    public Delay_Histogram()
+    {
+        this.counts = new long[BUCKETS_NO];
+        reset();
+    }
+
+    /**
+     * Clears all the recorded values.
+    */
+    public void reset()
+    {
+        Arrays.fill(counts, 0);
+        this.total_count = 0;
+        this.max_value = 0;
+        this.min_value = Long.MAX_VALUE;
+    }
+
+    /**
+     * Records a single delay.
+     * @param delay_ns The delay in nanoseconds. Negative values are treated as 0.
+    */
+    public void record(long delay_ns)
+    {
+        if (delay_ns < 0) delay_ns = 0;
+        counts[bucket_index(delay_ns)] += 1;
+        total_count += 1;
+        if (delay_ns > max_value) max_value = delay_ns;
+        if (delay_ns < min_value) min_value = delay_ns;
+    }
+
+    /**
+     * Maps a value to its bucket.
+     * Values in [0, 2^SUB_BUCKET_BITS) map to themselves.
+     * Larger values keep only their SUB_BUCKET_BITS most significant bits.
+    */
+    private static int bucket_index(long value)
+    {
+        if (value < SUB_BUCKETS) return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        // sub is in [SUB_BUCKETS_HALF, SUB_BUCKETS)
+        int sub = (int) (value >>> shift);
+        return (shift + 1) * SUB_BUCKETS_HALF + (sub - SUB_BUCKETS_HALF);
+    }
+
+    /**
+     * @return long The largest value that maps to the given bucket.
+    */
+    private static long highest_equivalent_value(int index)
+    {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS_HALF - 1;
+        long sub = index % SUB_BUCKETS_HALF + SUB_BUCKETS_HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * @param percentile A number in [0, 100].
+     * @return long The delay (in nanoseconds) below which the given percentage of the recorded delays fall.
+     * The result may overestimate the true value by at most the bucket width, but never exceeds the maximum.
+    */
+    public long value_at_percentile(double percentile)
+    {
+        if (total_count == 0) return 0;
+        if (percentile > 100.0) percentile = 100.0;
+        long rank = (long) Math.ceil(percentile / 100.0 * total_count);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_NO; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(highest_equivalent_value(i), max_value);
+        }
+        return max_value;
+    }
+
+    public long get_count()
+    {
+        return total_count;
+    }
+
+    public long get_max()
+    {
+        return max_value;
+    }
+
+    public long get_min()
+    {
+        return total_count == 0 ? 0 : min_value;
+    }
+
+    /**
+     * @return String A line with the tail-latency statistics (in seconds).
+    */
+    public String summary()
+    {
+        return "Count= " + total_count +
+            " P50= " + to_sec(value_at_percentile(50.0)) +
+            " P99= " + to_sec(value_at_percentile(99.0)) +
+            " P99.9= " + to_sec(value_at_percentile(99.9)) +
+            " Max= " + to_sec(max_value) + " sec";
+    }
+
+    public static double to_sec(long nanos)
+    {
+        return (double) nanos / 1_000_000_000.0;
+    }
+
+    public static void main(String args[])
+    {
+        Delay_Histogram hist = new Delay_Histogram();
+        for (long v = 1; v <= 1_000_000; v++) hist.record(v);
+        System.out.println("p50 ~ 500000: " + hist.value_at_percentile(50.0));
+        System.out.println("p99 ~ 990000: " + hist.value_at_percentile(99.0));
+        System.out.println("max = 1000000: " + hist.get_max());
+        System.out.println(hist.summary());
+    }
+}
@@ -0,0 +1,135 @@
+package util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Custom JDK Flight Recorder events emitted by the engine.
+ * All of them are disabled by default, in which case creating and committing an event
+ * is practically free (the JIT eliminates the allocation).
+ * To record them, enable them in a JFR settings file, e.g.:
+ * java -XX:StartFlightRecording:filename=rec.jfr,settings=anyk.jfc ...
+ * where anyk.jfc contains &lt;event name="anyk.BottomUp"&gt;&lt;setting name="enabled"&gt;true&lt;/setting&gt;&lt;/event&gt;
+ * (and similarly for the other event names).
+ * @author Nikolaos Tziavelis
+*/
+public class Engine_Events
+{
+    /**
+     * The construction of the nodes of a single stage of a (T-)DP instance.
+    */
+    @Name("anyk.InstanceStage")
+    @Label("Instance Stage Construction")
+    @Category({"Any-k", "Construction"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Instance_Stage extends Event
+    {
+        @Label("Problem Setting")
+        @Description("DP or T-DP")
+        public String problem_setting;
+
+        @Label("Relation Index")
+        public int relation_idx;
+
+        @Label("Tuples")
+        public int tuples;
+
+        @Label("Nodes")
+        @Description("Nodes that remain in the stage after dangling nodes are removed")
+        public int nodes;
+    }
+
+    /**
+     * The factorization of the join between two stages.
+    */
+    @Name("anyk.Factorization")
+    @Label("Join Edge Factorization")
+    @Category({"Any-k", "Construction"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Factorization extends Event
+    {
+        @Label("Problem Setting")
+        public String problem_setting;
+
+        @Label("Child Relation Index")
+        public int relation_idx;
+
+        @Label("Method")
+        public String method;
+
+        @Label("Conjunctions")
+        @Description("Number of disjuncts in the DNF join condition")
+        public int conjunctions;
+
+        @Label("Intermediate Nodes")
+        @Description("Number of intermediate nodes created by the factorization")
+        public long intermediate_nodes;
+    }
+
+    /**
+     * The bottom-up phase of (T-)DP.
+    */
+    @Name("anyk.BottomUp")
+    @Label("Bottom-Up Phase")
+    @Category({"Any-k", "Preprocessing"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Bottom_Up extends Event
+    {
+        @Label("Problem Setting")
+        public String problem_setting;
+
+        @Label("Implementation")
+        @Description("Recursive or iterative")
+        public String implementation;
+
+        @Label("Optimal Cost")
+        public double opt_cost;
+    }
+
+    /**
+     * The initialization of the partial order of a single decision set.
+     * For the lazy variants this happens during enumeration, the first time a successor is requested.
+    */
+    @Name("anyk.PartialOrderInit")
+    @Label("Partial Order Initialization")
+    @Category({"Any-k", "Enumeration"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Partial_Order_Init extends Event
+    {
+        @Label("Problem Setting")
+        public String problem_setting;
+
+        @Label("Decisions")
+        public int decisions;
+    }
+
+    /**
+     * A snapshot of the size of the global priority queue of Anyk-Part.
+    */
+    @Name("anyk.PQSnapshot")
+    @Label("Global PQ Snapshot")
+    @Category({"Any-k", "Enumeration"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static class PQ_Snapshot extends Event
+    {
+        @Label("Algorithm")
+        public String algorithm;
+
+        @Label("PQ Size")
+        public int pq_size;
+
+        @Label("Candidates Inserted")
+        @Description("Candidates inserted into the PQ in this call")
+        public int candidates;
+    }
+}
@@ -0,0 +1,240 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts a stream of pairs of a double key and a long id (e.g., the cost and the id of a query answer)
+ * that may not fit in memory.
+ * The pairs are collected into runs of a fixed size; every full run is sorted
+ * with {@link util.Parallel_Merge_Sort} and spilled to a temporary file as a sequence of
+ * 16-byte (key, id) records. The sorted pairs are then served by a k-way merge over the
+ * memory-mapped runs, thus the heap only holds one run at a time.
+ * If only the k smallest keys are needed, every run keeps only its k smallest pairs.
+ * If all the pairs fit in a single run, nothing is written to disk.
+ * @author Nikolaos Tziavelis
+*/
+public class External_Merge_Sort
+{
+    static final int RECORD_BYTES = 16;
+    static final int WRITE_BUFFER_RECORDS = 1 << 16;
+
+    private int run_size, k;
+    private double[] run_keys;
+    private long[] run_ids;
+    private int run_length;
+    private List<Path> run_files;
+    private ByteBuffer write_buffer;
+    private boolean finished;
+
+    // For a single in-memory run
+    private double[] sorted_keys;
+    private long[] sorted_ids;
+    private int[] sorted_positions;
+    private int sorted_no;
+    private int current_index;
+
+    // For the merge of the spilled runs
+    private PriorityQueue<Run_Cursor> merge_heap;
+    private long returned_no;
+    private double last_key;
+
+    /**
+     * @param run_size The number of pairs that are kept in memory before they are spilled to disk.
+     * @param k The number of smallest pairs needed (Integer.MAX_VALUE for all).
+     */
+    public External_Merge_Sort(int run_size, int k)
+    {
+        if (run_size <= 0 || run_size > Integer.MAX_VALUE / RECORD_BYTES)
+        {
+            System.err.println("Run size has to be between 1 and " + (Integer.MAX_VALUE / RECORD_BYTES));
+            System.exit(1);
+        }
+        this.run_size = run_size;
+        this.k = k;
+        this.run_keys = new double[run_size];
+        this.run_ids = new long[run_size];
+        this.run_length = 0;
+        this.run_files = new ArrayList<Path>();
+        this.finished = false;
+    }
+
+    /**
+     * Adds a pair. Must not be called after {@link #finish}.
+     */
+    public void add(double key, long id)
+    {
+        if (run_length == run_size) spill();
+        run_keys[run_length] = key;
+        run_ids[run_length] = id;
+        run_length++;
+    }
+
+    /**
+     * Marks the end of the input and prepares the merge.
+     */
+    public void finish()
+    {
+        this.finished = true;
+        if (run_files.isEmpty())
+        {
+            // Everything fits in memory
+            sort_run();
+            this.current_index = -1;
+            return;
+        }
+        if (run_length > 0) spill();
+        this.run_keys = null;
+        this.run_ids = null;
+        this.merge_heap = new PriorityQueue<Run_Cursor>(run_files.size());
+        for (Path file : run_files)
+        {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+            {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                Run_Cursor cursor = new Run_Cursor(buffer);
+                if (cursor.advance()) merge_heap.add(cursor);
+            }
+            catch (IOException e)
+            {
+                System.err.println("Failed to read sorted run " + file + ": " + e.getMessage());
+                System.exit(1);
+            }
+            // The mapping stays valid after the file is deleted (where the OS allows it)
+            try { Files.deleteIfExists(file); }
+            catch (IOException e) { file.toFile().deleteOnExit(); }
+        }
+        this.returned_no = 0;
+    }
+
+    /**
+     * @return long The id of the next pair in ascending order of keys or -1 if there are no other pairs.
+     */
+    public long next()
+    {
+        if (!finished)
+        {
+            System.err.println("External_Merge_Sort: next() called before finish()");
+            System.exit(1);
+        }
+        if (merge_heap == null)
+        {
+            current_index++;
+            if (current_index >= sorted_no) return -1;
+            last_key = sorted_keys[current_index];
+            return sorted_ids[sorted_positions[current_index]];
+        }
+        if (returned_no >= k || merge_heap.isEmpty()) return -1;
+        Run_Cursor cursor = merge_heap.poll();
+        long id = cursor.id;
+        last_key = cursor.key;
+        if (cursor.advance()) merge_heap.add(cursor);
+        returned_no++;
+        return id;
+    }
+
+    /**
+     * @return double The key of the pair that was last returned by {@link #next}.
+     */
+    public double last_key()
+    {
+        return last_key;
+    }
+
+    /**
+     * @return int The number of runs that have been written to disk.
+     */
+    public int get_runs_no()
+    {
+        return run_files.size();
+    }
+
+    /**
+     * Sorts the current run and keeps its k smallest pairs in sorted_*.
+     */
+    private void sort_run()
+    {
+        double[] keys = (run_length == run_keys.length) ? run_keys : Arrays.copyOf(run_keys, run_length);
+        int[] positions = new int[run_length];
+        for (int i = 0; i < run_length; i++) positions[i] = i;
+        this.sorted_no = Parallel_Merge_Sort.sort(keys, positions, k);
+        this.sorted_keys = keys;
+        this.sorted_ids = run_ids;
+        this.sorted_positions = positions;
+    }
+
+    private void spill()
+    {
+        sort_run();
+        try
+        {
+            Path file = Files.createTempFile("anyk_run_", ".bin");
+            file.toFile().deleteOnExit();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+            {
+                if (write_buffer == null)
+                    write_buffer = ByteBuffer.allocateDirect(Math.min(run_size, WRITE_BUFFER_RECORDS) * RECORD_BYTES);
+                ByteBuffer buffer = write_buffer;
+                buffer.clear();
+                for (int i = 0; i < sorted_no; i++)
+                {
+                    if (!buffer.hasRemaining())
+                    {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) channel.write(buffer);
+                        buffer.clear();
+                    }
+                    buffer.putDouble(sorted_keys[i]);
+                    buffer.putLong(sorted_ids[sorted_positions[i]]);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            run_files.add(file);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Failed to spill a sorted run to disk: " + e.getMessage());
+            System.exit(1);
+        }
+        // The run buffers are reused for the next run
+        this.sorted_keys = null;
+        this.sorted_positions = null;
+        this.run_length = 0;
+    }
+
+    private static class Run_Cursor implements Comparable<Run_Cursor>
+    {
+        final MappedByteBuffer buffer;
+        double key;
+        long id;
+
+        Run_Cursor(MappedByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        boolean advance()
+        {
+            if (buffer.remaining() < RECORD_BYTES) return false;
+            key = buffer.getDouble();
+            id = buffer.getLong();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Run_Cursor other)
+        {
+            return Double.compare(this.key, other.key);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package util;
+
+import java.util.Random;
+
+/**
+ * Random keys for weighted sampling without replacement.
+ * If every item gets the key log(w) + G for its weight w and an independent standard Gumbel variable G,
+ * then the k items with the largest keys are a sample without replacement proportional to the weights
+ * (this is the logarithmic form of the keys of Efraimidis and Spirakis, u^(1/w) for a uniform u).
+ * <br><br>
+ * When the items are the leaves of a tree (e.g., the answers that extend a prefix),
+ * the keys can be assigned top-down: the key of a node is the maximum key of its leaves,
+ * and the keys of its children are drawn with {@link #sample} and then conditioned with {@link #truncate}
+ * so that their maximum equals it.
+ * Thus, only the nodes on the paths to the k largest keys have to be expanded.
+ * All the computations are in log space, so tiny weights do not underflow.
+ * See <a href="https://arxiv.org/abs/1903.06059">https://arxiv.org/abs/1903.06059</a>.
+ * @author Nikolaos Tziavelis
+*/
+public class Gumbel_Keys
+{
+    /**
+     * @param location The logarithm of the weight.
+     * @return double A Gumbel variable with the given location.
+     */
+    public static double sample(Random rand, double location)
+    {
+        double u;
+        do
+        {
+            u = rand.nextDouble();
+        } while (u == 0.0);
+        return location - Math.log(-Math.log(u));
+    }
+
+    /**
+     * Conditions the key of a child on the maximum of the keys of its siblings being the key of the parent.
+     * @param key The key of the child as drawn by {@link #sample}.
+     * @param max The maximum of the keys of the child and its siblings as drawn by {@link #sample}.
+     * @param parent_key The key of the parent.
+     * @return double The conditioned key (the one with key == max becomes parent_key).
+     */
+    public static double truncate(double key, double max, double parent_key)
+    {
+        double v = parent_key - key + log1mexp(key - max);
+        return parent_key - Math.max(0.0, v) - Math.log1p(Math.exp(-Math.abs(v)));
+    }
+
+    /**
+     * @return double log(1 - exp(a)) for a <= 0, computed accurately for every a.
+     */
+    private static double log1mexp(double a)
+    {
+        return a > -0.693 ? Math.log(-Math.expm1(a)) : Math.log1p(-Math.exp(a));
+    }
+}
@@ -0,0 +1,119 @@
+package util;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Merges k sorted sources with a tournament tree of losers.
+ * Every internal node stores the source that lost the match played there and the root stores the overall winner.
+ * After the winner is removed, only the matches on the path from its leaf to the root are replayed,
+ * thus a call to {@link #poll} costs exactly ceil(log k) comparisons (a binary heap needs up to twice as many).
+ * Exhausted sources lose every match. Ties are won by the source with the smaller index.
+ * @author Nikolaos Tziavelis
+*/
+public class Loser_Tree<T>
+{
+    /**
+     * A sorted sequence of elements.
+    */
+    public interface Source<T>
+    {
+        /**
+         * @return T The next element of the source in sorted order or null if there are no more.
+        */
+        T next();
+    }
+
+    private List<? extends Source<T>> sources;
+    private Comparator<? super T> comparator;
+    private int k;
+    /**
+     * The current element of every source (null if it is exhausted).
+    */
+    private Object[] heads;
+    /**
+     * tree[1..k-1] are the losers of the internal nodes and tree[0] is the winner.
+     * The leaf of source s is the (implicit) node k + s and the children of node i are 2i and 2i + 1.
+    */
+    private int[] tree;
+    private int last_source = -1;
+
+    /**
+     * Pulls the first element of every source.
+     * @param sources The sources to merge.
+     * @param comparator The order of the elements in every source.
+    */
+    public Loser_Tree(List<? extends Source<T>> sources, Comparator<? super T> comparator)
+    {
+        this.sources = sources;
+        this.comparator = comparator;
+        this.k = sources.size();
+        this.heads = new Object[k];
+        for (int s = 0; s < k; s++) heads[s] = sources.get(s).next();
+        this.tree = new int[Math.max(k, 1)];
+        if (k > 0) tree[0] = play(1);
+    }
+
+    /**
+     * Removes the smallest element among all the sources and advances its source.
+     * @return T The next element in sorted order or null if all the sources are exhausted.
+    */
+    @SuppressWarnings("unchecked")
+    public T poll()
+    {
+        if (k == 0) return null;
+        int winner = tree[0];
+        T res = (T) heads[winner];
+        if (res == null) return null;
+        last_source = winner;
+        heads[winner] = sources.get(winner).next();
+        // Replay the matches from the leaf of the winner to the root
+        for (int node = (winner + k) / 2; node >= 1; node /= 2)
+        {
+            if (beats(tree[node], winner))
+            {
+                int tmp = tree[node];
+                tree[node] = winner;
+                winner = tmp;
+            }
+        }
+        tree[0] = winner;
+        return res;
+    }
+
+    /**
+     * @return int The index of the source of the element returned by the last call to {@link #poll} (-1 if none).
+    */
+    public int get_last_source()
+    {
+        return last_source;
+    }
+
+    /**
+     * Plays all the matches of a subtree, storing the losers.
+     * @return int The winner of the subtree.
+    */
+    private int play(int node)
+    {
+        if (node >= k) return node - k;
+        int left = play(2 * node);
+        int right = play(2 * node + 1);
+        if (beats(right, left))
+        {
+            tree[node] = left;
+            return right;
+        }
+        tree[node] = right;
+        return left;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean beats(int s1, int s2)
+    {
+        T head1 = (T) heads[s1], head2 = (T) heads[s2];
+        if (head1 == null) return false;
+        if (head2 == null) return true;
+        int cmp = comparator.compare(head1, head2);
+        return cmp < 0 || (cmp == 0 && s1 < s2);
+    }
+}
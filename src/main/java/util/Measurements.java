@@ -45,6 +45,11 @@ public class Measurements
     */
     private int record_iters;
 
+    /** 
+     * For each run, a histogram of the delays between consecutive answers.
+    */
+    private List<Delay_Histogram> delay_histograms;
+
     private int k, max_k;
     // For timing
     private long startTime;
@@ -63,6 +68,8 @@ public class Measurements
 
         this.runs = 1;
         this.record_iters = 0;
+        this.delay_histograms = new ArrayList<Delay_Histogram>();
+        this.delay_histograms.add(new Delay_Histogram());
 
         // Clear the memory (hopefully)
         System.gc();
@@ -80,6 +87,7 @@ public class Measurements
         this.k = 1;
         this.runs += 1;
         this.record_iters = 0;
+        this.delay_histograms.add(new Delay_Histogram());
 
         // Clear the memory (hopefully)
         System.gc();
@@ -166,6 +174,26 @@ public class Measurements
         k += 1;
     }
 
+    /** 
+     * Records the delay of a single call that returned an answer
+     * (the final call that finds no more answers is not an answer delay and should not be recorded).
+     * Unlike the elapsed time, which is sampled every sample_rate answers,
+     * every delay is recorded so that the tail of the distribution is visible.
+     * @param delay_ns The duration of the call in nanoseconds.
+    */
+    public void add_delay(long delay_ns)
+    {
+        delay_histograms.get(runs - 1).record(delay_ns);
+    }
+
+    /** 
+     * @return Delay_Histogram The delays recorded in the current run.
+    */
+    public Delay_Histogram get_delay_histogram()
+    {
+        return delay_histograms.get(runs - 1);
+    }
+
     /** 
      * Prints out (in the standard output) the measurements that have been sampled from the execution.
     */
@@ -177,6 +205,11 @@ public class Measurements
             System.out.println("k= " + k_list.get(i) +" Time= " + median(time_list.get(i)) + " sec");
             System.out.println(memory_list.get(i));
         }
+        for (int r = 0; r < delay_histograms.size(); r++)
+        {
+            if (delay_histograms.get(r).get_count() > 0)
+                System.out.println("Run= " + (r + 1) + " Delay: " + delay_histograms.get(r).summary());
+        }
         System.out.println("(Ignore) Dummy counter = " + dummy_counter);
     }
 
@@ -199,6 +232,27 @@ public class Measurements
         openCsv.closeWriter();
     }
 
+    /** 
+     * Prints out in csv format
+     * the tail-latency statistics of the delays of each run.
+    */
+    public void print_delays_to_csv_file(String path_to_delays_file) throws IOException
+    { 
+        OpenCsvWriter openCsv = new OpenCsvWriter(path_to_delays_file);
+        openCsv.writeLine("Run Count P50(sec) P99(sec) P99.9(sec) Max(sec)");
+        for (int r = 0; r < delay_histograms.size(); r++)
+        {
+            Delay_Histogram hist = delay_histograms.get(r);
+            openCsv.writeLine((r + 1) + " " + hist.get_count() + " " + 
+                Delay_Histogram.to_sec(hist.value_at_percentile(50.0)) + " " + 
+                Delay_Histogram.to_sec(hist.value_at_percentile(99.0)) + " " + 
+                Delay_Histogram.to_sec(hist.value_at_percentile(99.9)) + " " + 
+                Delay_Histogram.to_sec(hist.get_max()));
+        }
+        openCsv.flushWriter();
+        openCsv.closeWriter();
+    }
+
     /** 
      * Helper function that records the state of the memory.
      * @return A string that lists the memory usage.
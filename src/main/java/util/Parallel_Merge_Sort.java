@@ -0,0 +1,133 @@
+package util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts pairs of a double key and an int id (e.g., the cost and the id of a query answer)
+ * that are stored in two primitive arrays, avoiding the boxing of {@link java.util.Collections#sort}.
+ * It is a merge sort whose two halves are sorted in parallel in the common fork-join pool.
+ * If only the k smallest keys are needed, every merge stops after k elements (partial selection),
+ * which reduces the work to O(n log(n / k) + n) for small k.
+ * The sort is stable.
+ * @author Nikolaos Tziavelis
+*/
+public class Parallel_Merge_Sort
+{
+    /**
+     * Ranges smaller than this are sorted by a single thread.
+    */
+    static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+    /**
+     * Ranges smaller than this are sorted with insertion sort.
+    */
+    static final int INSERTION_THRESHOLD = 32;
+
+    /**
+     * Sorts the pairs in ascending order of keys, or only the k smallest ones.
+     * @param keys The keys of the pairs.
+     * @param ids The ids of the pairs (same length as the keys).
+     * @param k The number of smallest pairs needed (Integer.MAX_VALUE for all).
+     * @return int The number of pairs that are sorted at the beginning of the arrays, i.e., min(k, n).
+     *  The rest of the positions are left in an arbitrary state.
+     */
+    public static int sort(double[] keys, int[] ids, int k)
+    {
+        int n = keys.length;
+        int limit = Math.min(k, n);
+        if (limit <= 0) return 0;
+        double[] tmp_keys = new double[n];
+        int[] tmp_ids = new int[n];
+        ForkJoinPool.commonPool().invoke(new Sort_Task(keys, ids, tmp_keys, tmp_ids, 0, n, limit));
+        return limit;
+    }
+
+    private static class Sort_Task extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        final double[] keys, tmp_keys;
+        final int[] ids, tmp_ids;
+        final int lo, hi, k;
+
+        Sort_Task(double[] keys, int[] ids, double[] tmp_keys, int[] tmp_ids, int lo, int hi, int k)
+        {
+            this.keys = keys;
+            this.ids = ids;
+            this.tmp_keys = tmp_keys;
+            this.tmp_ids = tmp_ids;
+            this.lo = lo;
+            this.hi = hi;
+            this.k = k;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (hi - lo <= SEQUENTIAL_THRESHOLD)
+            {
+                sort_sequential(lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Sort_Task(keys, ids, tmp_keys, tmp_ids, lo, mid, k),
+                      new Sort_Task(keys, ids, tmp_keys, tmp_ids, mid, hi, k));
+            merge(lo, mid, hi);
+        }
+
+        private void sort_sequential(int from, int to)
+        {
+            if (to - from <= INSERTION_THRESHOLD)
+            {
+                for (int i = from + 1; i < to; i++)
+                {
+                    double key = keys[i];
+                    int id = ids[i];
+                    int j = i - 1;
+                    while (j >= from && keys[j] > key)
+                    {
+                        keys[j + 1] = keys[j];
+                        ids[j + 1] = ids[j];
+                        j--;
+                    }
+                    keys[j + 1] = key;
+                    ids[j + 1] = id;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            sort_sequential(from, mid);
+            sort_sequential(mid, to);
+            merge(from, mid, to);
+        }
+
+        /**
+         * Merges the sorted prefixes of [from, mid) and [mid, to) and keeps only the first k pairs.
+         */
+        private void merge(int from, int mid, int to)
+        {
+            int left_end = from + Math.min(k, mid - from);
+            int right_end = mid + Math.min(k, to - mid);
+            int out = Math.min(k, to - from);
+            // Nothing to do if the halves are already in order
+            if (keys[mid - 1] <= keys[mid] && left_end == mid) return;
+            int i = from, j = mid;
+            for (int pos = from; pos < from + out; pos++)
+            {
+                if (j >= right_end || (i < left_end && keys[i] <= keys[j]))
+                {
+                    tmp_keys[pos] = keys[i];
+                    tmp_ids[pos] = ids[i];
+                    i++;
+                }
+                else
+                {
+                    tmp_keys[pos] = keys[j];
+                    tmp_ids[pos] = ids[j];
+                    j++;
+                }
+            }
+            System.arraycopy(tmp_keys, from, keys, from, out);
+            System.arraycopy(tmp_ids, from, ids, from, out);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * A min-priority queue that keeps at most a fixed number of elements in memory.
+ * The cheapest elements are kept in an in-memory binary heap (hot part) whose keys are all at most a bound.
+ * When the hot part exceeds its capacity, its more expensive half is evicted to a bucket
+ * that covers the key range between the new bound and the previous one,
+ * and every element added later with a key above the bound goes directly to the bucket of its range.
+ * Buckets are buffered in small chunks and appended to temporary files.
+ * When the hot part becomes empty, the bucket with the lowest range is read back into it
+ * (and split again if it is too large).
+ * The elements are written and read by a {@link Spill_Codec}.
+ * @param <T> The type of the elements, compared with their natural ordering which has to agree with {@link Spill_Codec#key}.
+ * @author Nikolaos Tziavelis
+*/
+public class Spilling_Priority_Queue<T extends Comparable<T>>
+{
+    /**
+     * Converts elements to and from a binary encoding.
+     * @param <T> The type of the elements.
+    */
+    public interface Spill_Codec<T>
+    {
+        /**
+         * @return double The key by which the element is ranked.
+         */
+        double key(T element);
+
+        void write(T element, DataOutputStream out) throws IOException;
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * The size of the in-memory buffer of a bucket before it is appended to its file.
+    */
+    static final int BUCKET_BUFFER_BYTES = 1 << 14;
+
+    private Spill_Codec<T> codec;
+    private int hot_capacity;
+    private PriorityQueue<T> hot;
+    /**
+     * All the elements of the hot part have keys at most this bound and all the spilled ones at least this bound.
+    */
+    private double hot_bound;
+    /**
+     * The buckets indexed by the lower end of their key range.
+     * The range of a bucket ends where the range of the next one starts.
+    */
+    private TreeMap<Double, Bucket> buckets;
+    private long cold_size;
+    private int spills_no;
+
+    /**
+     * @param hot_capacity The maximum number of elements kept in memory.
+     * @param codec Converts the elements to and from bytes.
+     */
+    public Spilling_Priority_Queue(int hot_capacity, Spill_Codec<T> codec)
+    {
+        if (hot_capacity < 2)
+        {
+            System.err.println("The in-memory capacity of the priority queue has to be at least 2");
+            System.exit(1);
+        }
+        this.hot_capacity = hot_capacity;
+        this.codec = codec;
+        this.hot = new PriorityQueue<T>();
+        this.hot_bound = Double.POSITIVE_INFINITY;
+        this.buckets = new TreeMap<Double, Bucket>();
+        this.cold_size = 0;
+        this.spills_no = 0;
+    }
+
+    public void add(T element)
+    {
+        double key = codec.key(element);
+        if (buckets.isEmpty() || key < hot_bound)
+        {
+            hot.add(element);
+            if (hot.size() > hot_capacity) evict();
+        }
+        else
+        {
+            // The bucket whose range contains the key (the lowest one starts at the bound)
+            buckets.floorEntry(key).getValue().write(element);
+            cold_size++;
+        }
+    }
+
+    public void addAll(Collection<T> elements)
+    {
+        for (T element : elements) add(element);
+    }
+
+    /**
+     * @return T The element with the minimum key or null if the queue is empty.
+     */
+    public T poll()
+    {
+        if (hot.isEmpty() && !buckets.isEmpty()) reload();
+        return hot.poll();
+    }
+
+    public boolean isEmpty()
+    {
+        return hot.isEmpty() && cold_size == 0;
+    }
+
+    /**
+     * @return long The total number of elements (in memory and on disk).
+     */
+    public long size()
+    {
+        return hot.size() + cold_size;
+    }
+
+    /**
+     * @return int The number of times that elements were evicted from memory.
+     */
+    public int get_spills_no()
+    {
+        return spills_no;
+    }
+
+    /**
+     * Moves the more expensive half of the hot part to a new bucket.
+     */
+    private void evict()
+    {
+        List<T> sorted = new ArrayList<T>(hot);
+        Collections.sort(sorted);
+        int keep = hot_capacity / 2;
+        double new_bound = codec.key(sorted.get(keep));
+        // With ties, the bound may coincide with the start of an existing bucket
+        Bucket bucket = buckets.computeIfAbsent(new_bound, k -> new Bucket());
+        for (int i = keep; i < sorted.size(); i++) bucket.write(sorted.get(i));
+        cold_size += sorted.size() - keep;
+        this.hot = new PriorityQueue<T>(sorted.subList(0, keep));
+        this.hot_bound = new_bound;
+        spills_no++;
+    }
+
+    /**
+     * Reads the bucket with the lowest range into the (empty) hot part.
+     */
+    private void reload()
+    {
+        Map.Entry<Double, Bucket> lowest = buckets.pollFirstEntry();
+        List<T> elements = lowest.getValue().read_all();
+        cold_size -= elements.size();
+        this.hot_bound = buckets.isEmpty() ? Double.POSITIVE_INFINITY : buckets.firstKey();
+        this.hot = new PriorityQueue<T>(elements);
+        if (hot.size() > hot_capacity) evict();
+    }
+
+    private class Bucket
+    {
+        private Path file;
+        private ByteArrayOutputStream buffer;
+        private DataOutputStream out;
+        private int size;
+
+        Bucket()
+        {
+            this.file = null;
+            this.buffer = new ByteArrayOutputStream();
+            this.out = new DataOutputStream(buffer);
+            this.size = 0;
+        }
+
+        void write(T element)
+        {
+            try
+            {
+                codec.write(element, out);
+                size++;
+                if (buffer.size() >= BUCKET_BUFFER_BYTES) flush();
+            }
+            catch (IOException e)
+            {
+                System.err.println("Failed to spill priority queue elements to disk: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        private void flush() throws IOException
+        {
+            if (file == null)
+            {
+                file = Files.createTempFile("anyk_pq_", ".bin");
+                file.toFile().deleteOnExit();
+            }
+            out.flush();
+            Files.write(file, buffer.toByteArray(), StandardOpenOption.APPEND);
+            buffer.reset();
+        }
+
+        List<T> read_all()
+        {
+            List<T> res = new ArrayList<T>(size);
+            try
+            {
+                InputStream memory_part = new ByteArrayInputStream(buffer.toByteArray());
+                InputStream stream = (file == null) ? memory_part :
+                    new SequenceInputStream(new BufferedInputStream(Files.newInputStream(file)), memory_part);
+                try (DataInputStream in = new DataInputStream(stream))
+                {
+                    for (int i = 0; i < size; i++) res.add(codec.read(in));
+                }
+                if (file != null) Files.deleteIfExists(file);
+            }
+            catch (IOException e)
+            {
+                System.err.println("Failed to read priority queue elements from disk: " + e.getMessage());
+                System.exit(1);
+            }
+            return res;
+        }
+    }
+}
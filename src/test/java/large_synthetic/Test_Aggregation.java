@@ -0,0 +1,220 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Aggregate;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.paths.DP_Path_ThetaJoin_Instance;
+import entities.paths.Path_ThetaJoin_Query;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+class Test_Aggregation
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "20, 3, 5",
+        "30, 4, 10",
+        "50, 2, 20",
+        "10, 4, 200"
+    };
+    static String[] queries = new String[] { "path_equality", "path_inequality", "tree_equality", "tree_inequality" };
+    static double epsilon = 1e-9;
+
+    private static Stream<Arguments> provide_Test_Params()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                for (String query : queries)
+                    for (int group_relation = 0; group_relation < rel_num; group_relation++)
+                        arg_stream = Stream.concat(Stream.of(Arguments.of(query, rel_size, rel_num, domain_size, group_relation)), arg_stream);
+            }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")
+    void test_aggregation(String query, int rel_size, int rel_num, int domain_size, int group_relation)
+    {
+        String msg = query + " with n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size + " grouped by relation " + group_relation;
+        List<List<Tuple>> true_result = new ArrayList<List<Tuple>>();
+        Aggregate total;
+        Map<List<Double>, Aggregate> by_first, by_both;
+        List<Relation> db;
+
+        if (query.startsWith("path"))
+        {
+            Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+            gen.create();
+            db = gen.get_database();
+            Path_ThetaJoin_Query q = new Path_ThetaJoin_Query(db);
+            if (query.equals("path_equality")) q.set_join_conditions_as_conjunction(Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+            else q.set_join_conditions_as_conjunction(Arrays.asList(new Join_Predicate("IL", 0, 1, null), new Join_Predicate("B", 1, 0, 3.0)));
+            true_result.addAll(Naive_For_Verification.produce_all_result_tuples_path_theta(q));
+            DP_Path_ThetaJoin_Instance inst = new DP_Path_ThetaJoin_Instance(q, null);
+            total = inst.aggregate();
+            by_first = inst.aggregate(db.get(group_relation), 0);
+            by_both = inst.aggregate(db.get(group_relation), 1, 0);
+        }
+        else
+        {
+            Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+            gen.create();
+            db = gen.get_database();
+            Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+            q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+            for (int r = 1; r < rel_num; r++)
+            {
+                if (query.equals("tree_equality"))
+                    q.add_to_tree_wConjunction(db.get(r), r, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+                else
+                {
+                    // A branching tree where the children of the root have children of their own
+                    int parent = r <= 2 ? 0 : r - 2;
+                    q.add_to_tree_wConjunction(db.get(r), r, parent, Arrays.asList(new Join_Predicate("IL", 1, 1, null)));
+                }
+            }
+            true_result.addAll(Naive_For_Verification.produce_all_result_tuples_tree(q));
+            TDP_Thetajoin_Instance inst = new TDP_Thetajoin_Instance(q, null);
+            total = inst.aggregate();
+            by_first = inst.aggregate(db.get(group_relation), 0);
+            by_both = inst.aggregate(db.get(group_relation), 1, 0);
+        }
+
+        assert_aggregate(naive_aggregate(true_result), total, "Total for " + msg);
+        assert_groups(naive_groups(true_result, db.get(group_relation), new int[]{ 0 }), by_first, "Groups by the first attribute for " + msg);
+        assert_groups(naive_groups(true_result, db.get(group_relation), new int[]{ 1, 0 }), by_both, "Groups by both attributes for " + msg);
+    }
+
+    @Test
+    void test_count_overflow()
+    {
+        // A cartesian product of a star with 9 relations has 300^9 > 2^63 answers
+        int rel_size = 300, rel_num = 9;
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, 20, "star");
+        gen.create();
+        List<Relation> db = gen.get_database();
+        Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+        q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+        for (int r = 1; r < rel_num; r++)
+            q.add_to_tree_wConjunction(db.get(r), r, 0, new ArrayList<Join_Predicate>());
+        TDP_Thetajoin_Instance inst = new TDP_Thetajoin_Instance(q, null);
+        Aggregate total = inst.aggregate();
+
+        BigInteger count = BigInteger.valueOf(rel_size).pow(rel_num);
+        assertEquals(inst.count_solutions(), total.get_count(), "Count not the same as the graph");
+        assertEquals(count, total.get_count(), "Incorrect count");
+        // Every tuple appears in rel_size^(rel_num-1) answers
+        double sum = 0.0, min = 0.0, max = 0.0;
+        for (Relation r : db)
+        {
+            double rel_min = Double.POSITIVE_INFINITY, rel_max = Double.NEGATIVE_INFINITY;
+            for (Tuple t : r.tuples)
+            {
+                sum += t.cost;
+                rel_min = Math.min(rel_min, t.cost);
+                rel_max = Math.max(rel_max, t.cost);
+            }
+            min += rel_min;
+            max += rel_max;
+        }
+        sum *= BigInteger.valueOf(rel_size).pow(rel_num - 1).doubleValue();
+        assertEquals(sum, total.get_sum(), epsilon * Math.abs(sum), "Incorrect sum");
+        assertEquals(min, total.get_min(), epsilon * Math.abs(min), "Incorrect min");
+        assertEquals(max, total.get_max(), epsilon * Math.abs(max), "Incorrect max");
+        assertEquals(sum / count.doubleValue(), total.get_avg(), epsilon * Math.abs(sum / count.doubleValue()), "Incorrect avg");
+
+        // Grouped by a leaf, every group has the answers of its tuples
+        Map<List<Double>, Aggregate> groups = inst.aggregate(db.get(3), 0);
+        Map<List<Double>, Integer> tuples_per_group = new LinkedHashMap<List<Double>, Integer>();
+        for (Tuple t : db.get(3).tuples) tuples_per_group.merge(Arrays.asList(t.values[0]), 1, Integer::sum);
+        assertEquals(tuples_per_group.keySet(), groups.keySet(), "Incorrect groups");
+        for (Map.Entry<List<Double>, Integer> e : tuples_per_group.entrySet())
+            assertEquals(BigInteger.valueOf(rel_size).pow(rel_num - 1).multiply(BigInteger.valueOf(e.getValue())), groups.get(e.getKey()).get_count(), "Incorrect count of group " + e.getKey());
+    }
+
+    /**
+     * @return double[] The count, sum, min and max of the costs of the answers.
+     */
+    private static double[] naive_aggregate(List<List<Tuple>> answers)
+    {
+        double[] res = new double[]{ 0.0, 0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (List<Tuple> answer : answers)
+        {
+            double c = 0.0;
+            for (Tuple t : answer) c += t.cost;
+            res[0] += 1;
+            res[1] += c;
+            res[2] = Math.min(res[2], c);
+            res[3] = Math.max(res[3], c);
+        }
+        return res;
+    }
+
+    private static Map<List<Double>, double[]> naive_groups(List<List<Tuple>> answers, Relation relation, int[] attributes)
+    {
+        Map<List<Double>, List<List<Tuple>>> groups = new LinkedHashMap<List<Double>, List<List<Tuple>>>();
+        for (List<Tuple> answer : answers)
+            for (Tuple t : answer)
+                if (t.relation == relation)
+                {
+                    List<Double> key = new ArrayList<Double>();
+                    for (int attribute : attributes) key.add(t.values[attribute]);
+                    groups.computeIfAbsent(key, k -> new ArrayList<List<Tuple>>()).add(answer);
+                }
+        Map<List<Double>, double[]> res = new LinkedHashMap<List<Double>, double[]>();
+        for (Map.Entry<List<Double>, List<List<Tuple>>> e : groups.entrySet()) res.put(e.getKey(), naive_aggregate(e.getValue()));
+        return res;
+    }
+
+    private static void assert_aggregate(double[] expected, Aggregate actual, String msg)
+    {
+        assertEquals((long) expected[0], actual.get_count().longValue(), "Incorrect count: " + msg);
+        if (expected[0] == 0)
+        {
+            assertTrue(actual.is_empty(), "Not empty: " + msg);
+            assertTrue(Double.isNaN(actual.get_avg()), "Average of no answers: " + msg);
+            return;
+        }
+        double tolerance = epsilon * (1 + Math.abs(expected[1]));
+        assertEquals(expected[1], actual.get_sum(), tolerance, "Incorrect sum: " + msg);
+        assertEquals(expected[2], actual.get_min(), tolerance, "Incorrect min: " + msg);
+        assertEquals(expected[3], actual.get_max(), tolerance, "Incorrect max: " + msg);
+        assertEquals(expected[1] / expected[0], actual.get_avg(), tolerance, "Incorrect avg: " + msg);
+    }
+
+    private static void assert_groups(Map<List<Double>, double[]> expected, Map<List<Double>, Aggregate> actual, String msg)
+    {
+        assertEquals(expected.keySet(), actual.keySet(), "Incorrect groups: " + msg);
+        for (Map.Entry<List<Double>, double[]> e : expected.entrySet())
+            assert_aggregate(e.getValue(), actual.get(e.getKey()), "Group " + e.getKey() + " " + msg);
+    }
+}
@@ -0,0 +1,182 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Algorithm_Selector;
+import algorithms.Configuration;
+import algorithms.paths.DP_Anyk_Iterator;
+import algorithms.paths.DP_Eager;
+import algorithms.paths.DP_Lazy;
+import algorithms.paths.DP_Quick;
+import algorithms.paths.DP_Recursive;
+import algorithms.paths.Path_BatchSorting;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Graph_Statistics;
+import entities.Relation;
+import entities.Tuple;
+import entities.paths.DP_Path_Equijoin_Instance;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.Path_Equijoin_Query;
+
+public class Test_Algorithm_Selector
+{
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "1000, 4, 500",
+        "1000, 4, 100",
+        "2000, 6, 400",
+        "100, 3, 20"
+    };
+
+    private static Stream<Arguments> provide_Test_Params()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (String input : input_properties)
+        {
+            String[] input_as_string_arr = input.split(", ");
+            int rel_size = Integer.parseInt(input_as_string_arr[0]);
+            int rel_num = Integer.parseInt(input_as_string_arr[1]);
+            int domain_size = Integer.parseInt(input_as_string_arr[2]);
+            arg_stream = Stream.concat(Stream.of(Arguments.of(rel_size, rel_num, domain_size)), arg_stream);
+        }
+        return arg_stream;
+    }
+
+    @ParameterizedTest(name = "{index}: n={0} l={1} d={2}")
+    @MethodSource("provide_Test_Params")
+    void test_monotone_in_k(int rel_size, int rel_num, int domain_size)
+    {
+        Graph_Statistics stats = create_instance(create_database(rel_size, rel_num, domain_size)).collect_statistics();
+        long answers = stats.answers.longValue();
+
+        // Requesting more answers can only cost more (and BatchSorting costs the same regardless of k)
+        Map<String, Double> previous = null;
+        for (long k = 1; ; k *= 10)
+        {
+            Algorithm_Selector selector = new Algorithm_Selector();
+            selector.choose(stats, Math.min(k, answers), Double.MAX_VALUE);
+            if (previous != null)
+            {
+                for (Map.Entry<String, Double> e : selector.estimates.entrySet())
+                {
+                    if (e.getKey().equals("BatchSorting")) assertEquals(previous.get(e.getKey()), e.getValue(), 1e-6, selector.explanation);
+                    else assertTrue(e.getValue() >= previous.get(e.getKey()), "Estimate of " + e.getKey() + " decreased with k: " + selector.explanation);
+                }
+            }
+            previous = new HashMap<String, Double>(selector.estimates);
+            if (k >= answers) break;
+        }
+    }
+
+    @Test
+    void test_monotone_in_fanout()
+    {
+        // The same number of tuples over smaller domains: the decision sets become fewer and larger
+        int[] domains = new int[]{ 1000, 200, 50, 40 };
+        double previous_fanout = 0.0, previous_sort = 0.0;
+        for (int domain_size : domains)
+        {
+            Graph_Statistics stats = create_instance(create_database(1000, 4, domain_size)).collect_statistics();
+            Algorithm_Selector selector = new Algorithm_Selector();
+            selector.choose(stats, 10, Double.MAX_VALUE);
+            assertTrue(stats.avg_fanout() > previous_fanout);
+            // For a few answers, a full sort of the touched decision sets becomes more expensive than a heap over them
+            double sort = selector.estimates.get("Eager") - selector.estimates.get("Lazy");
+            assertTrue(sort > previous_sort, "Sorting did not become more expensive with the fan-out: " + selector.explanation);
+            assertTrue(!selector.estimates.get("Eager").equals(min_estimate(selector)) || stats.avg_fanout() < 2,
+                "Eager chosen for 10 answers with large decision sets: " + selector.explanation);
+            previous_fanout = stats.avg_fanout();
+            previous_sort = sort;
+        }
+    }
+
+    @Test
+    void test_skewed_fanout()
+    {
+        // One join value of the second relation gets many tuples
+        List<Relation> db = create_database(1000, 4, 500);
+        for (int i = 0; i < 400; i++) db.get(2).insert(new Tuple(new double[]{ 7, i % 500 }, 1.0 + i, db.get(2)));
+        Graph_Statistics stats = create_instance(db).collect_statistics();
+        Algorithm_Selector selector = new Algorithm_Selector();
+        selector.choose(stats, Integer.MAX_VALUE, Double.MAX_VALUE);
+        double skewed = selector.estimates.get("Eager");
+
+        // With the same total of decisions spread evenly, sorting the sets is cheaper
+        Graph_Statistics uniform = create_instance(db).collect_statistics();
+        Arrays.fill(uniform.fanout_histogram, 0);
+        selector.choose(uniform, Integer.MAX_VALUE, Double.MAX_VALUE);
+        assertTrue(skewed > selector.estimates.get("Eager"), selector.explanation);
+    }
+
+    @Test
+    void test_choice_against_measured()
+    {
+        // Full enumeration of about a million answers, where every variant takes hundreds of milliseconds
+        List<Relation> db = create_database(1000, 4, 100);
+        Graph_Statistics stats = create_instance(db).collect_statistics();
+        Algorithm_Selector selector = new Algorithm_Selector();
+        String chosen = selector.choose(stats, Integer.MAX_VALUE, Double.MAX_VALUE);
+
+        Map<String, Double> measured = new HashMap<String, Double>();
+        for (String algorithm : new String[]{ "Lazy", "Quick", "Eager", "Recursive", "BatchSorting" })
+        {
+            double best_time = Double.MAX_VALUE;
+            for (int r = 0; r < 2; r++)
+            {
+                DP_Problem_Instance instance = create_instance(db);
+                long start = System.nanoTime();
+                DP_Anyk_Iterator iter = create_iterator(algorithm, instance);
+                while (iter.get_next() != null);
+                best_time = Math.min(best_time, (System.nanoTime() - start) / 1e6);
+            }
+            measured.put(algorithm, best_time);
+        }
+        double best = measured.values().stream().min(Double::compare).get();
+        assertTrue(measured.get(chosen) <= 3 * best, "Measured ms " + measured + " for " + selector.explanation);
+    }
+
+    private static double min_estimate(Algorithm_Selector selector)
+    {
+        return selector.estimates.values().stream().min(Double::compare).get();
+    }
+
+    private static DP_Anyk_Iterator create_iterator(String algorithm, DP_Problem_Instance instance)
+    {
+        Configuration conf = new Configuration();
+        if (algorithm.equals("Lazy")) return new DP_Lazy(instance, conf);
+        else if (algorithm.equals("Quick")) return new DP_Quick(instance, conf);
+        else if (algorithm.equals("Eager")) return new DP_Eager(instance, conf);
+        else if (algorithm.equals("Recursive")) return new DP_Recursive(instance, conf);
+        else return new Path_BatchSorting(instance, conf);
+    }
+
+    private static DP_Problem_Instance create_instance(List<Relation> db)
+    {
+        Path_Equijoin_Query q = new Path_Equijoin_Query(db);
+        q.set_join_conditions(new int[]{1}, new int[]{0});
+        DP_Problem_Instance instance = new DP_Path_Equijoin_Instance(q);
+        instance.bottom_up();
+        return instance;
+    }
+
+    private static List<Relation> create_database(int rel_size, int rel_num, int domain_size)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+        gen.create();
+        return gen.get_database();
+    }
+}
@@ -97,8 +97,21 @@ class Test_Cycle_Equijoin
     @MethodSource("provide_Test_Params")                                        
     void test_anyk(SimpleCycle_Equijoin_Query q, int rel_size, int rel_num, String join_pattern, String anyk_alg, ArrayList<Tuple> true_result) 
     {
+        check_anyk(q, rel_size, rel_num, join_pattern, anyk_alg, true_result, false);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")                                        
+    void test_anyk_parallel(SimpleCycle_Equijoin_Query q, int rel_size, int rel_num, String join_pattern, String anyk_alg, ArrayList<Tuple> true_result) 
+    {
+        check_anyk(q, rel_size, rel_num, join_pattern, anyk_alg, true_result, true);
+    }
+
+    private void check_anyk(SimpleCycle_Equijoin_Query q, int rel_size, int rel_num, String join_pattern, String anyk_alg, ArrayList<Tuple> true_result, boolean parallel) 
+    {
+        String msg = anyk_alg + (parallel ? " (parallel)" : "") + " with n=" + rel_size + ", l=" + rel_num + ", " + join_pattern;
         // Run the any-k algorithm
-        SimpleCycle_Anyk_Iterator iter = new SimpleCycle_Anyk_Iterator(q, anyk_alg, null);
+        SimpleCycle_Anyk_Iterator iter = new SimpleCycle_Anyk_Iterator(q, anyk_alg, null, parallel);
         ArrayList<Tuple> iter_results = new ArrayList<Tuple>();
         while (true)
         {
@@ -107,15 +120,13 @@ class Test_Cycle_Equijoin
             else break;
         }
 
-        assertEquals(true_result.size(), iter_results.size(), 
-            "Incorrect size of result for " + anyk_alg + " with n=" + rel_size + ", l=" + rel_num + ", " + join_pattern);
+        assertEquals(true_result.size(), iter_results.size(), "Incorrect size of result for " + msg);
         // Test if the output is the same (only check for cost equality)
         for (int j = 0; j < true_result.size(); j++)
         {
             String true_cost = String.format ("%.5f", true_result.get(j).cost);
             String returned_cost = String.format ("%.5f", iter_results.get(j).cost);
-            assertEquals(true_cost, returned_cost, 
-                "Results not the same as naive for " + anyk_alg + " with n=" + rel_size + ", l=" + rel_num + ", " + join_pattern);
+            assertEquals(true_cost, returned_cost, "Results not the same as naive for " + msg);
         }        
     }
 
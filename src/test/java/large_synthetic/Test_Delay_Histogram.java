@@ -0,0 +1,73 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import util.Delay_Histogram;
+
+class Test_Delay_Histogram
+{
+    static double[] percentiles = new double[] { 0.0, 1.0, 10.0, 25.0, 50.0, 75.0, 90.0, 99.0, 99.9, 99.99, 100.0 };
+    static String[] distributions = new String[] { "uniform", "small", "constant", "exponential", "pareto", "powers_of_two" };
+    static int[] sizes = new int[] { 1, 10, 1000, 100000 };
+
+    private static Stream<Arguments> provide_Test_Params()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (String distribution : distributions)
+            for (int n : sizes)
+                arg_stream = Stream.concat(Stream.of(Arguments.of(distribution, n)), arg_stream);
+        return arg_stream;
+    }
+
+    @ParameterizedTest(name = "{index}: {0} n={1}")
+    @MethodSource("provide_Test_Params")
+    void test_percentiles(String distribution, int n)
+    {
+        long[] values = create_values(distribution, n, new Random(n));
+        Delay_Histogram hist = new Delay_Histogram();
+        for (long v : values) hist.record(v);
+        Arrays.sort(values);
+
+        assertEquals(n, hist.get_count());
+        assertEquals(values[0], hist.get_min());
+        assertEquals(values[n - 1], hist.get_max());
+        for (double p : percentiles)
+        {
+            long rank = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+            long exact = values[(int) rank - 1];
+            long estimate = hist.value_at_percentile(p);
+            String msg = distribution + " p" + p + ": exact=" + exact + " estimate=" + estimate;
+            // The estimate is the top of the bucket of the exact value, which is at most 1/64 of it above
+            assertTrue(estimate >= exact, msg);
+            assertTrue((estimate - exact) * 64 <= exact, msg);
+            assertTrue(estimate <= values[n - 1], msg);
+            if (exact < 128) assertEquals(exact, estimate, msg);
+        }
+    }
+
+    private static long[] create_values(String distribution, int n, Random rand)
+    {
+        long[] values = new long[n];
+        for (int i = 0; i < n; i++)
+        {
+            if (distribution.equals("uniform")) values[i] = 1 + rand.nextInt(1_000_000);
+            else if (distribution.equals("small")) values[i] = rand.nextInt(128);
+            else if (distribution.equals("constant")) values[i] = 123_457;
+            else if (distribution.equals("exponential")) values[i] = (long) (-50_000 * Math.log(1.0 - rand.nextDouble()));
+            // Heavy tail: a few delays are several orders of magnitude above the median
+            else if (distribution.equals("pareto")) values[i] = (long) (10_000 / Math.pow(1.0 - rand.nextDouble(), 1.0 / 1.1));
+            // The edges of the buckets
+            else values[i] = (1L << rand.nextInt(62)) + rand.nextInt(3) - 1;
+        }
+        return values;
+    }
+}
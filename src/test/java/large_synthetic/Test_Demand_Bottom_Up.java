@@ -0,0 +1,278 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static large_synthetic.Verification.cost;
+import static large_synthetic.Verification.check;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Configuration;
+import algorithms.Naive_For_Verification;
+import algorithms.paths.DP_All;
+import algorithms.paths.DP_Anyk_Iterator;
+import algorithms.paths.DP_Eager;
+import algorithms.paths.DP_Lazy;
+import algorithms.paths.DP_Quick;
+import algorithms.paths.DP_Recursive;
+import algorithms.paths.DP_Take2;
+import algorithms.trees.TDP_All;
+import algorithms.trees.TDP_Eager;
+import algorithms.trees.TDP_Iterator;
+import algorithms.trees.TDP_Lazy;
+import algorithms.trees.TDP_Quick;
+import algorithms.trees.TDP_Recursive;
+import algorithms.trees.TDP_Take2;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.paths.DP_Path_Equijoin_Instance;
+import entities.paths.DP_Path_ThetaJoin_Instance;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.DP_Solution;
+import entities.paths.Path_Equijoin_Query;
+import entities.paths.Path_ThetaJoin_Query;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+class Test_Demand_Bottom_Up
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "50, 4, 50",
+        "20, 4, 5",
+        "12, 4, 4"
+    };
+    static List<List<Join_Predicate>> theta_cond = Arrays.asList(
+        Arrays.asList(new Join_Predicate("E", 1, 0, null), new Join_Predicate("IL", 0, 1, null)));
+
+    static Class<?>[] anyk_algs = new Class[]
+    {
+        DP_Quick.class,
+        DP_Lazy.class,
+        DP_Eager.class,
+        DP_All.class,
+        DP_Take2.class,
+        DP_Recursive.class
+    };
+
+    static Class<?>[] tree_anyk_algs = new Class[]
+    {
+        TDP_Quick.class,
+        TDP_Lazy.class,
+        TDP_Eager.class,
+        TDP_All.class,
+        TDP_Take2.class,
+        TDP_Recursive.class
+    };
+
+    private static Stream<Arguments> provide_Test_Params_Path_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+                gen.create();
+                List<Relation> db = gen.get_database();
+
+                // An equi-join and a theta-join on the same database
+                Path_Equijoin_Query q_equi = new Path_Equijoin_Query(db);
+                q_equi.set_join_conditions(new int[]{1}, new int[]{0});
+                ArrayList<ArrayList<Tuple>> true_result_equi = Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db);
+                Path_ThetaJoin_Query q_theta = new Path_ThetaJoin_Query(db);
+                q_theta.set_join_conditions_as_dnf(theta_cond);
+                ArrayList<ArrayList<Tuple>> true_result_theta = Naive_For_Verification.produce_all_result_tuples_path_theta(q_theta);
+
+                for (Class<?> anyk_alg : anyk_algs)
+                {
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(q_equi, rel_size, rel_num, domain_size, anyk_alg, true_result_equi)), arg_stream);
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(q_theta, rel_size, rel_num, domain_size, anyk_alg, true_result_theta)), arg_stream);
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Tree_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+
+                // A star equi-join
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+                gen.create();
+                List<Relation> db = gen.get_database();
+                Tree_ThetaJoin_Query q_star = new Tree_ThetaJoin_Query();
+                q_star.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++) q_star.add_to_tree_wConjunction(db.get(j), j, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+                ArrayList<ArrayList<Tuple>> true_result_star = Naive_For_Verification.produce_all_result_tuples_4_star_2attrs(db);
+
+                // A theta-join that has the shape of a path (with intermediate factorization nodes)
+                gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+                gen.create();
+                db = gen.get_database();
+                Tree_ThetaJoin_Query q_theta = new Tree_ThetaJoin_Query();
+                q_theta.add_to_tree_wDNF(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++) q_theta.add_to_tree_wDNF(db.get(j), j, j - 1, theta_cond);
+                Path_ThetaJoin_Query path_q = new Path_ThetaJoin_Query(db);
+                path_q.set_join_conditions_as_dnf(theta_cond);
+                ArrayList<ArrayList<Tuple>> true_result_theta = Naive_For_Verification.produce_all_result_tuples_path_theta(path_q);
+
+                for (Class<?> anyk_alg : tree_anyk_algs)
+                {
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(q_star, rel_size, rel_num, domain_size, anyk_alg, true_result_star)), arg_stream);
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(q_theta, rel_size, rel_num, domain_size, anyk_alg, true_result_theta)), arg_stream);
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Path_Ties()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+                gen.create();
+                List<Relation> db = gen.get_database();
+                zero_costs(db);
+
+                Path_Equijoin_Query q_equi = new Path_Equijoin_Query(db);
+                q_equi.set_join_conditions(new int[]{1}, new int[]{0});
+                ArrayList<ArrayList<Tuple>> true_result_equi = Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db);
+                Path_ThetaJoin_Query q_theta = new Path_ThetaJoin_Query(db);
+                q_theta.set_join_conditions_as_dnf(theta_cond);
+                ArrayList<ArrayList<Tuple>> true_result_theta = Naive_For_Verification.produce_all_result_tuples_path_theta(q_theta);
+
+                for (Class<?> anyk_alg : anyk_algs)
+                {
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(q_equi, rel_size, rel_num, domain_size, anyk_alg, true_result_equi)), arg_stream);
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(q_theta, rel_size, rel_num, domain_size, anyk_alg, true_result_theta)), arg_stream);
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Tree_Ties()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+                gen.create();
+                List<Relation> db = gen.get_database();
+                zero_costs(db);
+                Tree_ThetaJoin_Query q_star = new Tree_ThetaJoin_Query();
+                q_star.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++) q_star.add_to_tree_wConjunction(db.get(j), j, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+                ArrayList<ArrayList<Tuple>> true_result_star = Naive_For_Verification.produce_all_result_tuples_4_star_2attrs(db);
+
+                for (Class<?> anyk_alg : tree_anyk_algs)
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(q_star, rel_size, rel_num, domain_size, anyk_alg, true_result_star)), arg_stream);
+            }
+        }
+        return arg_stream;
+    }
+
+    /**
+     * Sets the costs of all the tuples to 0 so that all the decisions have the same bound and cost.
+     */
+    private static void zero_costs(List<Relation> db)
+    {
+        for (Relation r : db)
+            for (Tuple t : r.tuples) t.cost = 0.0;
+    }
+
+    @ParameterizedTest
+    @MethodSource({"provide_Test_Params_Path_BinaryRandomDist", "provide_Test_Params_Path_Ties"})
+    void test_Path_BinaryRandomDist(Object q, int rel_size, int rel_num, int domain_size, Class<?> anyk_alg, ArrayList<ArrayList<Tuple>> true_result)
+    {
+        DP_Problem_Instance inst;
+        if (q instanceof Path_Equijoin_Query) inst = new DP_Path_Equijoin_Instance((Path_Equijoin_Query) q);
+        else inst = new DP_Path_ThetaJoin_Instance((Path_ThetaJoin_Query) q, null);
+        inst.set_bottom_up_implementation("demand");
+        inst.bottom_up();
+        DP_Anyk_Iterator iter = null;
+        try{
+            iter = (DP_Anyk_Iterator) anyk_alg.getDeclaredConstructor(DP_Problem_Instance.class, Configuration.class).newInstance(inst, null);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+        List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+        while (true)
+        {
+            DP_Solution sol = iter.get_next();
+            if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+            else break;
+            // An iterator that repeats answers would never stop
+            if (iter_results.size() > true_result.size()) break;
+        }
+        check(iter_results, true_result, "path " + q.getClass().getSimpleName() + " with " + anyk_alg.getName() + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
+    }
+
+    @ParameterizedTest
+    @MethodSource({"provide_Test_Params_Tree_BinaryRandomDist", "provide_Test_Params_Tree_Ties"})
+    void test_Tree_BinaryRandomDist(Tree_ThetaJoin_Query q, int rel_size, int rel_num, int domain_size, Class<?> anyk_alg, ArrayList<ArrayList<Tuple>> true_result)
+    {
+        TDP_Problem_Instance inst = new TDP_Thetajoin_Instance(q, null);
+        inst.set_bottom_up_implementation("demand");
+        inst.bottom_up();
+        TDP_Iterator iter = null;
+        try{
+            iter = (TDP_Iterator) anyk_alg.getDeclaredConstructor(TDP_Problem_Instance.class, Configuration.class).newInstance(inst, null);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+        List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+        while (true)
+        {
+            TDP_Solution sol = iter.get_next();
+            if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+            else break;
+            // An iterator that repeats answers would never stop
+            if (iter_results.size() > true_result.size()) break;
+        }
+        check(iter_results, true_result, "tree with " + anyk_alg.getName() + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
+    }
+}
@@ -0,0 +1,249 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import algorithms.paths.DP_Anyk_Iterator;
+import algorithms.paths.DP_Direct_Access;
+import algorithms.paths.DP_Eager;
+import algorithms.paths.DP_Quick;
+import algorithms.trees.TDP_Anyk_Iterator;
+import algorithms.trees.TDP_Direct_Access;
+import algorithms.trees.TDP_Eager;
+import algorithms.trees.TDP_Quick;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.paths.DP_Path_ThetaJoin_Instance;
+import entities.paths.DP_Solution;
+import entities.paths.Path_ThetaJoin_Query;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+class Test_Direct_Access
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "20, 3, 5",
+        "30, 4, 10",
+        "50, 2, 20",
+        "10, 4, 200"
+    };
+    static String[] queries = new String[] { "path_equality", "path_inequality", "tree_equality", "tree_inequality" };
+
+    private static Stream<Arguments> provide_Test_Params()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                for (String query : queries)
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(query, rel_size, rel_num, domain_size)), arg_stream);
+            }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")
+    void test_direct_access(String query, int rel_size, int rel_num, int domain_size)
+    {
+        String msg = query + " with n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+        List<List<Tuple>> true_result = new ArrayList<List<Tuple>>();
+        // Every answer by its index, followed by the answers of the pages and the ones out of range
+        List<List<Tuple>> accessed = new ArrayList<List<Tuple>>();
+        List<List<List<Tuple>>> pages = new ArrayList<List<List<Tuple>>>();
+        BigInteger count, graph_count;
+        Random rand = new Random();
+        int[][] page_params = new int[5][];
+
+        if (query.startsWith("path"))
+        {
+            Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+            gen.create();
+            Path_ThetaJoin_Query q = new Path_ThetaJoin_Query(gen.get_database());
+            if (query.equals("path_equality")) q.set_join_conditions_as_conjunction(Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+            else q.set_join_conditions_as_conjunction(Arrays.asList(new Join_Predicate("IL", 0, 1, null), new Join_Predicate("B", 1, 0, 3.0)));
+            true_result.addAll(Naive_For_Verification.produce_all_result_tuples_path_theta(q));
+
+            DP_Path_ThetaJoin_Instance inst = new DP_Path_ThetaJoin_Instance(q, null);
+            DP_Direct_Access access = new DP_Direct_Access(inst);
+            count = access.count();
+            graph_count = inst.count_solutions();
+            for (long i = 0; i < count.longValue(); i++) accessed.add(access.get(i).solutionToTuples_strict_order());
+            assertNull(access.get(count), "Access out of range for " + msg);
+            assertNull(access.get(-1), "Access out of range for " + msg);
+            for (int p = 0; p < page_params.length; p++)
+            {
+                page_params[p] = random_page(rand, count.intValue());
+                List<List<Tuple>> page = new ArrayList<List<Tuple>>();
+                for (DP_Solution sol : access.get_page(page_params[p][0], page_params[p][1])) page.add(sol.solutionToTuples_strict_order());
+                pages.add(page);
+            }
+        }
+        else
+        {
+            Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+            gen.create();
+            List<Relation> db = gen.get_database();
+            Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+            q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+            for (int r = 1; r < rel_num; r++)
+            {
+                if (query.equals("tree_equality"))
+                    q.add_to_tree_wConjunction(db.get(r), r, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+                else
+                {
+                    // A branching tree where the children of the root have children of their own
+                    int parent = r <= 2 ? 0 : r - 2;
+                    q.add_to_tree_wConjunction(db.get(r), r, parent, Arrays.asList(new Join_Predicate("IL", 1, 1, null)));
+                }
+            }
+            true_result.addAll(Naive_For_Verification.produce_all_result_tuples_tree(q));
+
+            TDP_Thetajoin_Instance inst = new TDP_Thetajoin_Instance(q, null);
+            TDP_Direct_Access access = new TDP_Direct_Access(inst);
+            count = access.count();
+            graph_count = inst.count_solutions();
+            for (long i = 0; i < count.longValue(); i++) accessed.add(access.get(i).solutionToTuples_strict_order());
+            assertNull(access.get(count), "Access out of range for " + msg);
+            assertNull(access.get(-1), "Access out of range for " + msg);
+            for (int p = 0; p < page_params.length; p++)
+            {
+                page_params[p] = random_page(rand, count.intValue());
+                List<List<Tuple>> page = new ArrayList<List<Tuple>>();
+                for (TDP_Solution sol : access.get_page(page_params[p][0], page_params[p][1])) page.add(sol.solutionToTuples_strict_order());
+                pages.add(page);
+            }
+        }
+
+        assertEquals(graph_count, count, "Count not the same as the graph for " + msg);
+        assertEquals(true_result.size(), count.intValue(), "Incorrect count for " + msg);
+        // Every index gives a different answer and all the answers are accessed
+        List<String> true_strings = new ArrayList<String>();
+        for (List<Tuple> res : true_result) true_strings.add(to_string(res));
+        List<String> accessed_strings = new ArrayList<String>();
+        for (List<Tuple> res : accessed) accessed_strings.add(to_string(res));
+        Collections.sort(true_strings);
+        Collections.sort(accessed_strings);
+        assertEquals(true_strings, accessed_strings, "Results not the same as naive for " + msg);
+
+        // A page is a contiguous range of indexes
+        for (int p = 0; p < page_params.length; p++)
+        {
+            int from = Math.min(page_params[p][0], accessed.size());
+            int to = Math.min(page_params[p][0] + page_params[p][1], accessed.size());
+            assertEquals(accessed.subList(from, to), pages.get(p), "Page " + Arrays.toString(page_params[p]) + " incorrect for " + msg);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")
+    void test_interleaved_anyk(String query, int rel_size, int rel_num, int domain_size)
+    {
+        // Quick and Eager reorder the decisions of the graph in place while they enumerate
+        for (String anyk_alg : new String[] { "Quick", "Eager" })
+        {
+            String msg = query + " with " + anyk_alg + " and n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+            Random rand = new Random();
+            // The answers by index before the enumeration starts
+            List<String> accessed = new ArrayList<String>();
+            int enumerated = 0;
+            if (query.startsWith("path"))
+            {
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+                gen.create();
+                Path_ThetaJoin_Query q = new Path_ThetaJoin_Query(gen.get_database());
+                if (query.equals("path_equality")) q.set_join_conditions_as_conjunction(Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+                else q.set_join_conditions_as_conjunction(Arrays.asList(new Join_Predicate("IL", 0, 1, null), new Join_Predicate("B", 1, 0, 3.0)));
+                DP_Path_ThetaJoin_Instance inst = new DP_Path_ThetaJoin_Instance(q, null);
+                inst.bottom_up();
+                DP_Direct_Access access = new DP_Direct_Access(inst);
+                int count = access.count().intValue();
+                for (int i = 0; i < count; i++) accessed.add(to_string(access.get(i).solutionToTuples_strict_order()));
+                DP_Anyk_Iterator iter = anyk_alg.equals("Quick") ? new DP_Quick(inst, null) : new DP_Eager(inst, null);
+                while (iter.get_next() != null)
+                {
+                    enumerated++;
+                    if (count == 0) continue;
+                    int i = rand.nextInt(count);
+                    assertEquals(accessed.get(i), to_string(access.get(i).solutionToTuples_strict_order()), "Access " + i + " changed during the enumeration for " + msg);
+                    int[] page_params = random_page(rand, count);
+                    List<DP_Solution> page = access.get_page(page_params[0], page_params[1]);
+                    for (int j = 0; j < page.size(); j++)
+                        assertEquals(accessed.get(page_params[0] + j), to_string(page.get(j).solutionToTuples_strict_order()), "Page " + Arrays.toString(page_params) + " changed during the enumeration for " + msg);
+                }
+            }
+            else
+            {
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+                gen.create();
+                List<Relation> db = gen.get_database();
+                Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+                q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                for (int r = 1; r < rel_num; r++)
+                {
+                    if (query.equals("tree_equality"))
+                        q.add_to_tree_wConjunction(db.get(r), r, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+                    else
+                        q.add_to_tree_wConjunction(db.get(r), r, r <= 2 ? 0 : r - 2, Arrays.asList(new Join_Predicate("IL", 1, 1, null)));
+                }
+                TDP_Thetajoin_Instance inst = new TDP_Thetajoin_Instance(q, null);
+                inst.bottom_up();
+                TDP_Direct_Access access = new TDP_Direct_Access(inst);
+                int count = access.count().intValue();
+                for (int i = 0; i < count; i++) accessed.add(to_string(access.get(i).solutionToTuples_strict_order()));
+                TDP_Anyk_Iterator iter = anyk_alg.equals("Quick") ? new TDP_Quick(inst, null) : new TDP_Eager(inst, null);
+                while (iter.get_next() != null)
+                {
+                    enumerated++;
+                    if (count == 0) continue;
+                    int i = rand.nextInt(count);
+                    assertEquals(accessed.get(i), to_string(access.get(i).solutionToTuples_strict_order()), "Access " + i + " changed during the enumeration for " + msg);
+                    int[] page_params = random_page(rand, count);
+                    List<TDP_Solution> page = access.get_page(page_params[0], page_params[1]);
+                    for (int j = 0; j < page.size(); j++)
+                        assertEquals(accessed.get(page_params[0] + j), to_string(page.get(j).solutionToTuples_strict_order()), "Page " + Arrays.toString(page_params) + " changed during the enumeration for " + msg);
+                }
+            }
+            assertEquals(accessed.size(), enumerated, "Incorrect number of answers enumerated for " + msg);
+        }
+    }
+
+    /**
+     * @return int[] An offset (sometimes out of range) and a limit.
+     */
+    private static int[] random_page(Random rand, int count)
+    {
+        return new int[]{ rand.nextInt(count + 3), rand.nextInt(10) };
+    }
+
+    private static String to_string(List<Tuple> answer)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Tuple t : answer) sb.append(t.flat_format()).append(" | ");
+        return sb.toString();
+    }
+}
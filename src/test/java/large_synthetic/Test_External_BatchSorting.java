@@ -0,0 +1,214 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static large_synthetic.Verification.cost;
+import static large_synthetic.Verification.check;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import algorithms.paths.Path_External_BatchSorting;
+import algorithms.trees.Tree_External_BatchSorting;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.paths.DP_Path_Equijoin_Instance;
+import entities.paths.DP_Path_ThetaJoin_Instance;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.DP_Solution;
+import entities.paths.Path_Equijoin_Query;
+import entities.paths.Path_ThetaJoin_Query;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+import util.External_Merge_Sort;
+
+class Test_External_BatchSorting
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "50, 4, 50",
+        "100, 4, 10",
+        "20, 4, 5"
+    };
+    // Limits on the number of answers (Integer.MAX_VALUE for all)
+    static int[] max_ks = new int[] { Integer.MAX_VALUE, 1, 100 };
+    // Small run sizes so that the answers are spilled to many runs
+    static int[] run_sizes = new int[] { 1000, 30000, Path_External_BatchSorting.DEFAULT_RUN_SIZE };
+    static List<List<Join_Predicate>> theta_cond = Arrays.asList(
+        Arrays.asList(new Join_Predicate("E", 1, 0, null), new Join_Predicate("IL", 0, 1, null)));
+
+    private static Stream<Arguments> provide_Test_Params_Path_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+                gen.create();
+                List<Relation> db = gen.get_database();
+
+                Path_Equijoin_Query q_equi = new Path_Equijoin_Query(db);
+                q_equi.set_join_conditions(new int[]{1}, new int[]{0});
+                ArrayList<ArrayList<Tuple>> true_result_equi = Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db);
+                Path_ThetaJoin_Query q_theta = new Path_ThetaJoin_Query(db);
+                q_theta.set_join_conditions_as_dnf(theta_cond);
+                ArrayList<ArrayList<Tuple>> true_result_theta = Naive_For_Verification.produce_all_result_tuples_path_theta(q_theta);
+
+                for (int max_k : max_ks)
+                {
+                    for (int run_size : run_sizes)
+                    {
+                        arg_stream = Stream.concat(Stream.of(Arguments.of(q_equi, rel_size, rel_num, domain_size, max_k, run_size, true_result_equi)), arg_stream);
+                        arg_stream = Stream.concat(Stream.of(Arguments.of(q_theta, rel_size, rel_num, domain_size, max_k, run_size, true_result_theta)), arg_stream);
+                    }
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Tree_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+
+                // A star equi-join
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+                gen.create();
+                List<Relation> db = gen.get_database();
+                Tree_ThetaJoin_Query q_star = new Tree_ThetaJoin_Query();
+                q_star.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++) q_star.add_to_tree_wConjunction(db.get(j), j, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+                ArrayList<ArrayList<Tuple>> true_result_star = Naive_For_Verification.produce_all_result_tuples_4_star_2attrs(db);
+
+                // A theta-join that has the shape of a path (with intermediate factorization nodes)
+                gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+                gen.create();
+                db = gen.get_database();
+                Tree_ThetaJoin_Query q_theta = new Tree_ThetaJoin_Query();
+                q_theta.add_to_tree_wDNF(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++) q_theta.add_to_tree_wDNF(db.get(j), j, j - 1, theta_cond);
+                Path_ThetaJoin_Query path_q = new Path_ThetaJoin_Query(db);
+                path_q.set_join_conditions_as_dnf(theta_cond);
+                ArrayList<ArrayList<Tuple>> true_result_theta = Naive_For_Verification.produce_all_result_tuples_path_theta(path_q);
+
+                for (int max_k : max_ks)
+                {
+                    for (int run_size : run_sizes)
+                    {
+                        arg_stream = Stream.concat(Stream.of(Arguments.of(q_star, rel_size, rel_num, domain_size, max_k, run_size, true_result_star)), arg_stream);
+                        arg_stream = Stream.concat(Stream.of(Arguments.of(q_theta, rel_size, rel_num, domain_size, max_k, run_size, true_result_theta)), arg_stream);
+                    }
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Path_BinaryRandomDist")
+    void test_Path_BinaryRandomDist(Object q, int rel_size, int rel_num, int domain_size, int max_k, int run_size, ArrayList<ArrayList<Tuple>> true_result)
+    {
+        DP_Problem_Instance inst;
+        if (q instanceof Path_Equijoin_Query) inst = new DP_Path_Equijoin_Instance((Path_Equijoin_Query) q);
+        else inst = new DP_Path_ThetaJoin_Instance((Path_ThetaJoin_Query) q, null);
+        inst.bottom_up();
+        Path_External_BatchSorting iter = new Path_External_BatchSorting(inst, null, max_k, run_size);
+        List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+        while (true)
+        {
+            DP_Solution sol = iter.get_next();
+            if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+            else break;
+        }
+        check(iter_results, true_result, max_k, "path " + q.getClass().getSimpleName() + " with max_k=" + max_k + " run_size=" + run_size + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Tree_BinaryRandomDist")
+    void test_Tree_BinaryRandomDist(Tree_ThetaJoin_Query q, int rel_size, int rel_num, int domain_size, int max_k, int run_size, ArrayList<ArrayList<Tuple>> true_result)
+    {
+        TDP_Problem_Instance inst = new TDP_Thetajoin_Instance(q, null);
+        inst.bottom_up();
+        Tree_External_BatchSorting iter = new Tree_External_BatchSorting(inst, null, max_k, run_size);
+        List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+        while (true)
+        {
+            TDP_Solution sol = iter.get_next();
+            if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+            else break;
+        }
+        check(iter_results, true_result, max_k, "tree with max_k=" + max_k + " run_size=" + run_size + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
+    }
+
+    @Test
+    void test_External_Merge_Sort()
+    {
+        Random rand = new Random(7);
+        for (int n : new int[] { 0, 1, 31, 1000, 100000 })
+        {
+            for (int k : new int[] { Integer.MAX_VALUE, 1, 50, 20000 })
+            {
+                for (int run_size : new int[] { 1, 10, 4096, 1 << 20 })
+                {
+                    if (n / run_size > 200) continue;
+                    double[] keys = new double[n];
+                    External_Merge_Sort sorter = new External_Merge_Sort(run_size, k);
+                    // Few distinct values so that there are many ties
+                    for (int i = 0; i < n; i++)
+                    {
+                        keys[i] = rand.nextInt(500) / 7.0;
+                        sorter.add(keys[i], 3L * i);
+                    }
+                    sorter.finish();
+                    double[] expected = keys.clone();
+                    Arrays.sort(expected);
+
+                    String msg = "n=" + n + " k=" + k + " run_size=" + run_size;
+                    Set<Long> distinct_ids = new HashSet<Long>();
+                    int returned_no = 0;
+                    while (true)
+                    {
+                        long id = sorter.next();
+                        if (id < 0) break;
+                        assertEquals(expected[returned_no], sorter.last_key(), "Key not sorted for " + msg);
+                        assertEquals(keys[(int) (id / 3)], sorter.last_key(), "Id does not match its key for " + msg);
+                        distinct_ids.add(id);
+                        returned_no++;
+                    }
+                    assertEquals(Math.min(n, k), returned_no, "Incorrect number of sorted keys for " + msg);
+                    assertEquals(returned_no, distinct_ids.size(), "Duplicate ids for " + msg);
+                }
+            }
+        }
+    }
+}
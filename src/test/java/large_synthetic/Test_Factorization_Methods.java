@@ -7,6 +7,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.params.ParameterizedTest;
@@ -18,6 +20,9 @@ import algorithms.Naive_For_Verification;
 import algorithms.paths.DP_Anyk_Iterator;
 import algorithms.paths.DP_Quick;
 import algorithms.paths.DP_Recursive;
+import algorithms.trees.TDP_Iterator;
+import algorithms.trees.TDP_Quick;
+import algorithms.trees.TDP_Recursive;
 import data.BinaryRandomPattern;
 import data.Database_Query_Generator;
 import entities.Join_Predicate;
@@ -27,6 +32,10 @@ import entities.paths.DP_Path_ThetaJoin_Instance;
 import entities.paths.DP_Problem_Instance;
 import entities.paths.DP_Solution;
 import entities.paths.Path_ThetaJoin_Query;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
 
 class Test_Factorization_Methods
 {
@@ -55,6 +64,12 @@ class Test_Factorization_Methods
         DP_Quick.class
     };
 
+    static Class<?>[] tree_anyk_algs = new Class[] 
+    {
+        TDP_Recursive.class,
+        TDP_Quick.class
+    };
+
     private static Stream<Arguments> provide_Test_Params_Path_BinaryRandomDist() 
     {
         Stream<Arguments> arg_stream = Stream.of();
@@ -93,7 +108,8 @@ class Test_Factorization_Methods
                 { 
                     "binary_part",
                     "multi_part",
-                    "shared_ranges"
+                    "shared_ranges",
+                    null
                 };
 
                 for (String fact_method : factorization_methods)
@@ -140,4 +156,126 @@ class Test_Factorization_Methods
         assertEquals(true_result, iter_results_as_tuples, 
             "Results not the same as naive for " + q_id + " with " + fact_method + " and " + anyk_alg.getName() + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
     }
-}
\ No newline at end of file
+
+    private static Stream<Arguments> provide_Test_Params_Tree_BinaryRandomDist() 
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            int j = 0;
+            for (String input : input_properties)
+            {
+                // Set up the query as a tree that has the shape of a path
+                String[] input_as_string_arr = input.split(", ");
+                String q_id = input_as_string_arr[0];
+                int rel_size = Integer.parseInt(input_as_string_arr[1]);
+                int rel_num = Integer.parseInt(input_as_string_arr[2]);
+                int domain_size = Integer.parseInt(input_as_string_arr[3]);
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+                gen.create();
+                List<Relation> db = gen.get_database();
+                Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+                q.add_to_tree_wDNF(db.get(0), 0, -1, null);
+                for (int r = 1; r < rel_num; r++) q.add_to_tree_wDNF(db.get(r), r, r - 1, conds.get(j));
+
+                // Compute the true result with a naive method on the equivalent path query
+                Path_ThetaJoin_Query path_q = new Path_ThetaJoin_Query(db);
+                path_q.set_join_conditions_as_dnf(conds.get(j));
+                ArrayList<ArrayList<Tuple>> true_result = Naive_For_Verification.produce_all_result_tuples_path_theta(path_q);
+                Collections.sort(true_result, new Comparator<ArrayList<Tuple>>() {
+                    @Override
+                    public int compare(ArrayList<Tuple> list_Of_tuples1, ArrayList<Tuple> list_Of_tuples2) 
+                    {
+                        double sum1 = 0.0;
+                        for (Tuple t : list_Of_tuples1) sum1 += t.cost;
+                        double sum2 = 0.0;
+                        for (Tuple t : list_Of_tuples2) sum2 += t.cost;     
+                        return Double.valueOf(sum1).compareTo(Double.valueOf(sum2));           
+                    }
+                });
+
+                // Shared ranges are not supported for trees
+                String[] factorization_methods = new String[] 
+                { 
+                    "binary_part",
+                    "multi_part",
+                    null
+                };
+
+                for (String fact_method : factorization_methods)
+                {
+                    for (Class<?> anyk_alg : tree_anyk_algs)
+                    {
+                        arg_stream = Stream.concat(Stream.of(Arguments.of(q_id, q, rel_size, rel_num, domain_size, fact_method, anyk_alg, true_result)), arg_stream);
+                    } 
+                }
+
+                j += 1;
+            }
+        }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Tree_BinaryRandomDist")                                        
+    void test_Tree_BinaryRandomDist(String q_id, Tree_ThetaJoin_Query q, int rel_size, int rel_num, int domain_size, String fact_method, Class<?> anyk_alg, ArrayList<ArrayList<Tuple>> true_result) 
+    {
+        // Run the any-k algorithm
+        TDP_Problem_Instance inst = new TDP_Thetajoin_Instance(q, fact_method);
+        inst.bottom_up();
+        TDP_Iterator iter = null;
+        try{
+            iter = (TDP_Iterator) anyk_alg.getDeclaredConstructor(TDP_Problem_Instance.class, Configuration.class).newInstance(inst, null);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+        }
+        List<List<Tuple>> iter_results_as_tuples = new ArrayList<List<Tuple>>();
+        while (true)
+        {
+            TDP_Solution sol = iter.get_next();
+            if (sol != null) iter_results_as_tuples.add(sol.solutionToTuples_strict_order());
+            else break;
+        }
+
+        assertEquals(true_result.size(), iter_results_as_tuples.size(), 
+            "Incorrect size of result for tree " + q_id + " with " + fact_method + " and " + anyk_alg.getName() + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
+        assertEquals(true_result, iter_results_as_tuples, 
+            "Results not the same as naive for tree " + q_id + " with " + fact_method + " and " + anyk_alg.getName() + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Tree_BinaryRandomDist")
+    void test_Concurrent_Factorization(String q_id, Tree_ThetaJoin_Query q, int rel_size, int rel_num, int domain_size, String fact_method, Class<?> anyk_alg, ArrayList<ArrayList<Tuple>> true_result)
+    {
+        // Build DP and T-DP graphs of the same query on different threads at the same time
+        // (the tree has the shape of a path)
+        Path_ThetaJoin_Query path_q = new Path_ThetaJoin_Query(q.relations.get(0));
+        for (int r = 1; r < q.length; r++) path_q.insert_wDNF(q.relations.get(r), q.join_conditions.get(r));
+        List<List<List<Tuple>>> results = IntStream.range(0, 8).parallel().mapToObj(i ->
+        {
+            List<List<Tuple>> res = new ArrayList<List<Tuple>>();
+            if (i % 2 == 0)
+            {
+                DP_Problem_Instance inst = new DP_Path_ThetaJoin_Instance(path_q, fact_method);
+                inst.bottom_up();
+                DP_Anyk_Iterator iter = new DP_Recursive(inst, null);
+                DP_Solution sol;
+                while ((sol = iter.get_next()) != null) res.add(sol.solutionToTuples_strict_order());
+            }
+            else
+            {
+                TDP_Problem_Instance inst = new TDP_Thetajoin_Instance(q, fact_method);
+                inst.bottom_up();
+                TDP_Iterator iter = new TDP_Recursive(inst, null);
+                TDP_Solution sol;
+                while ((sol = iter.get_next()) != null) res.add(sol.solutionToTuples_strict_order());
+            }
+            return res;
+        }).collect(Collectors.toList());
+
+        for (int i = 0; i < results.size(); i++)
+            assertEquals(true_result, results.get(i),
+                "Results not the same as naive for concurrent " + (i % 2 == 0 ? "path " : "tree ") + q_id + " with " + fact_method + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
+    }
+}
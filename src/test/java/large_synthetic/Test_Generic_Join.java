@@ -0,0 +1,185 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import algorithms.cycles.Generic_Join;
+import algorithms.cycles.Generic_Join_Sort;
+import algorithms.cycles.NPRR_Sort;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Relation;
+import entities.Tuple;
+import entities.cycles.Cyclic_Equijoin_Query;
+import entities.cycles.SimpleCycle_Equijoin_Query;
+
+class Test_Generic_Join
+{
+    static int times_to_repeat = 2;
+    // rel_size, domain_size
+    static String[] input_properties = new String[]
+    {
+        "30, 8",
+        "50, 20",
+        "15, 4"
+    };
+    static String[] queries = new String[] { "triangle", "cycle5", "clique4", "two_triangles", "self_triangle", "loops" };
+
+    private static Stream<Arguments> provide_Test_Params()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int domain_size = Integer.parseInt(input_as_string_arr[1]);
+                for (String query : queries)
+                    for (boolean parallel : new boolean[] { false, true })
+                        for (boolean reverse_order : new boolean[] { false, true })
+                            arg_stream = Stream.concat(Stream.of(Arguments.of(query, rel_size, domain_size, parallel, reverse_order)), arg_stream);
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Simple_Cycle()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+            for (String input : input_properties)
+                for (int l : new int[] { 4, 6 })
+                {
+                    String[] input_as_string_arr = input.split(", ");
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(Integer.parseInt(input_as_string_arr[0]), l, Integer.parseInt(input_as_string_arr[1]))), arg_stream);
+                }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")
+    void test_generic_join(String query, int rel_size, int domain_size, boolean parallel, boolean reverse_order)
+    {
+        Cyclic_Equijoin_Query q = create_query(query, rel_size, domain_size);
+        List<String> order = null;
+        if (reverse_order)
+        {
+            order = q.get_variables();
+            Collections.reverse(order);
+        }
+        String msg = query + " with n=" + rel_size + ", d=" + domain_size + (parallel ? " (parallel)" : "") + (reverse_order ? " (reverse order)" : "");
+
+        // Unsorted output: compare as multisets of values and costs
+        Generic_Join iter = new Generic_Join(q, order, parallel);
+        List<String> iter_results = new ArrayList<String>();
+        Tuple sol;
+        while ((sol = iter.get_next()) != null) iter_results.add(sol.flat_format());
+        ArrayList<Tuple> true_result = Naive_For_Verification.produce_all_result_tuples_cyclic(q);
+        List<String> true_strings = new ArrayList<String>();
+        for (Tuple t : true_result) true_strings.add(t.flat_format());
+        Collections.sort(iter_results);
+        Collections.sort(true_strings);
+        assertEquals(true_strings, iter_results, "Results not the same as naive for " + msg);
+
+        // Sorted output: ranked order of costs
+        Generic_Join_Sort iter_sort = new Generic_Join_Sort(q, order, parallel);
+        Collections.sort(true_result);
+        for (int j = 0; j < true_result.size(); j++)
+            assertEquals(true_result.get(j).cost, iter_sort.get_next().cost, "Costs not in ranked order for " + msg);
+        assertEquals(null, iter_sort.get_next(), "Incorrect size of result for " + msg);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Simple_Cycle")
+    void test_against_nprr(int rel_size, int rel_num, int domain_size)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "cycle");
+        gen.create();
+        SimpleCycle_Equijoin_Query q = new SimpleCycle_Equijoin_Query(gen.get_database());
+        NPRR_Sort iter_nprr = new NPRR_Sort(q);
+        Generic_Join_Sort iter = new Generic_Join_Sort(new Cyclic_Equijoin_Query(q));
+        String msg = "cycle with n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+        Tuple expected;
+        while ((expected = iter_nprr.get_next()) != null)
+        {
+            Tuple sol = iter.get_next();
+            assertEquals(String.format("%.5f", expected.cost), String.format("%.5f", sol.cost), "Results not the same as NPRR for " + msg);
+        }
+        assertEquals(null, iter.get_next(), "Incorrect size of result for " + msg);
+    }
+
+    private static Cyclic_Equijoin_Query create_query(String query, int rel_size, int domain_size)
+    {
+        Cyclic_Equijoin_Query q = new Cyclic_Equijoin_Query();
+        List<Relation> db;
+        switch (query)
+        {
+            case "triangle":
+                db = create_database(rel_size, 3, domain_size);
+                q.add_atom(db.get(0), "A", "B");
+                q.add_atom(db.get(1), "B", "C");
+                q.add_atom(db.get(2), "C", "A");
+                break;
+            case "cycle5":
+                db = create_database(rel_size, 5, domain_size);
+                for (int i = 0; i < 5; i++) q.add_atom(db.get(i), "A" + i, "A" + ((i + 1) % 5));
+                break;
+            case "clique4":
+                db = create_database(rel_size, 6, domain_size);
+                q.add_atom(db.get(0), "A", "B");
+                q.add_atom(db.get(1), "A", "C");
+                q.add_atom(db.get(2), "A", "D");
+                q.add_atom(db.get(3), "B", "C");
+                q.add_atom(db.get(4), "B", "D");
+                q.add_atom(db.get(5), "C", "D");
+                break;
+            case "two_triangles":
+                // Two triangles that share the edge B-C
+                db = create_database(rel_size, 5, domain_size);
+                q.add_atom(db.get(0), "A", "B");
+                q.add_atom(db.get(1), "B", "C");
+                q.add_atom(db.get(2), "C", "A");
+                q.add_atom(db.get(3), "C", "D");
+                q.add_atom(db.get(4), "D", "B");
+                break;
+            case "self_triangle":
+                // The same relation in every atom, with duplicate tuples
+                db = create_database(rel_size, 1, domain_size);
+                Relation r = db.get(0);
+                for (int i = 0; i < rel_size / 3; i++) r.insert(new Tuple(r.tuples.get(i).values, r.tuples.get(i).cost + 1, r));
+                q.add_atom(r, "A", "B");
+                q.add_atom(r, "B", "C");
+                q.add_atom(r, "C", "A");
+                break;
+            case "loops":
+                // A repeated variable within an atom selects the tuples with equal values
+                db = create_database(rel_size, 3, domain_size);
+                for (int i = 0; i < domain_size; i += 2) db.get(2).insert(new Tuple(new double[]{ i, i }, i, db.get(2)));
+                q.add_atom(db.get(0), "A", "B");
+                q.add_atom(db.get(1), "B", "A");
+                q.add_atom(db.get(2), "A", "A");
+                break;
+            default:
+                System.err.println("Unknown query " + query);
+                System.exit(1);
+        }
+        return q;
+    }
+
+    private static List<Relation> create_database(int rel_size, int rel_num, int domain_size)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "cycle");
+        gen.create();
+        return gen.get_database();
+    }
+}
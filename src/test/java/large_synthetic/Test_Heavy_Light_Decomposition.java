@@ -0,0 +1,156 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import algorithms.cycles.Cyclic_Anyk_Iterator;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Relation;
+import entities.Tuple;
+import entities.cycles.Cyclic_Equijoin_Query;
+
+class Test_Heavy_Light_Decomposition
+{
+    static int times_to_repeat = 2;
+    // rel_size, domain_size
+    static String[] input_properties = new String[]
+    {
+        "30, 8",
+        "50, 20",
+        "15, 4"
+    };
+    static String[] queries = new String[] { "triangle", "cycle4", "cycle5", "clique4", "two_triangles", "self_triangle", "loops" };
+    // null lets the cost model choose, 1 makes every value heavy and a large threshold every value light
+    static Double[] thresholds = new Double[] { null, 1.0, 3.0, 1000.0 };
+    static String[] anyk_algs = new String[] { "Lazy", "Recursive", "BatchSorting" };
+
+    private static Stream<Arguments> provide_Test_Params()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int domain_size = Integer.parseInt(input_as_string_arr[1]);
+                // The second repetition builds and enumerates the acyclic queries in parallel
+                boolean parallel = i % 2 == 1;
+                for (String query : queries)
+                    for (Double threshold : thresholds)
+                        for (String anyk_alg : anyk_algs)
+                            arg_stream = Stream.concat(Stream.of(Arguments.of(query, rel_size, domain_size, threshold, anyk_alg, parallel)), arg_stream);
+            }
+        }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")
+    void test_decomposition(String query, int rel_size, int domain_size, Double threshold, String anyk_alg, boolean parallel)
+    {
+        Cyclic_Equijoin_Query q = create_query(query, rel_size, domain_size);
+        String msg = anyk_alg + (parallel ? " (parallel)" : "") + " on " + query + " with n=" + rel_size + ", d=" + domain_size + ", threshold=" + threshold;
+
+        Cyclic_Anyk_Iterator iter = new Cyclic_Anyk_Iterator(q, anyk_alg, null, threshold, parallel);
+        List<Tuple> iter_results = new ArrayList<Tuple>();
+        Tuple sol;
+        while ((sol = iter.get_next()) != null) iter_results.add(sol);
+        ArrayList<Tuple> true_result = Naive_For_Verification.produce_all_result_tuples_cyclic(q);
+        Collections.sort(true_result);
+        assertEquals(true_result.size(), iter_results.size(), "Incorrect size of result for " + msg);
+
+        // Ranked order of costs (the bags of the decomposition sum the costs in a different order)
+        for (int j = 0; j < true_result.size(); j++)
+            assertEquals(String.format("%.5f", true_result.get(j).cost), String.format("%.5f", iter_results.get(j).cost), "Costs not in ranked order for " + msg);
+
+        // Same answers as multisets of values and costs
+        List<String> iter_strings = new ArrayList<String>();
+        for (Tuple t : iter_results) iter_strings.add(t.flat_format_no_cost() + " " + String.format("%.5f", t.cost));
+        List<String> true_strings = new ArrayList<String>();
+        for (Tuple t : true_result) true_strings.add(t.flat_format_no_cost() + " " + String.format("%.5f", t.cost));
+        Collections.sort(iter_strings);
+        Collections.sort(true_strings);
+        assertEquals(true_strings, iter_strings, "Results not the same as naive for " + msg);
+    }
+
+    private static Cyclic_Equijoin_Query create_query(String query, int rel_size, int domain_size)
+    {
+        Cyclic_Equijoin_Query q = new Cyclic_Equijoin_Query();
+        List<Relation> db;
+        switch (query)
+        {
+            case "triangle":
+                db = create_database(rel_size, 3, domain_size);
+                q.add_atom(db.get(0), "A", "B");
+                q.add_atom(db.get(1), "B", "C");
+                q.add_atom(db.get(2), "C", "A");
+                break;
+            case "cycle4":
+                db = create_database(rel_size, 4, domain_size);
+                for (int i = 0; i < 4; i++) q.add_atom(db.get(i), "A" + i, "A" + ((i + 1) % 4));
+                break;
+            case "cycle5":
+                db = create_database(rel_size, 5, domain_size);
+                for (int i = 0; i < 5; i++) q.add_atom(db.get(i), "A" + i, "A" + ((i + 1) % 5));
+                break;
+            case "clique4":
+                db = create_database(rel_size, 6, domain_size);
+                q.add_atom(db.get(0), "A", "B");
+                q.add_atom(db.get(1), "A", "C");
+                q.add_atom(db.get(2), "A", "D");
+                q.add_atom(db.get(3), "B", "C");
+                q.add_atom(db.get(4), "B", "D");
+                q.add_atom(db.get(5), "C", "D");
+                break;
+            case "two_triangles":
+                // Two triangles that share the edge B-C, plus a dangling atom
+                db = create_database(rel_size, 6, domain_size);
+                q.add_atom(db.get(0), "A", "B");
+                q.add_atom(db.get(1), "B", "C");
+                q.add_atom(db.get(2), "C", "A");
+                q.add_atom(db.get(3), "C", "D");
+                q.add_atom(db.get(4), "D", "B");
+                q.add_atom(db.get(5), "D", "E");
+                break;
+            case "self_triangle":
+                // The same relation in every atom, with duplicate tuples
+                db = create_database(rel_size, 1, domain_size);
+                Relation r = db.get(0);
+                for (int i = 0; i < rel_size / 3; i++) r.insert(new Tuple(r.tuples.get(i).values, r.tuples.get(i).cost + 1, r));
+                q.add_atom(r, "A", "B");
+                q.add_atom(r, "B", "C");
+                q.add_atom(r, "C", "A");
+                break;
+            case "loops":
+                // A repeated variable within an atom selects the tuples with equal values
+                db = create_database(rel_size, 3, domain_size);
+                for (int i = 0; i < domain_size; i += 2) db.get(2).insert(new Tuple(new double[]{ i, i }, i, db.get(2)));
+                q.add_atom(db.get(0), "A", "B");
+                q.add_atom(db.get(1), "B", "A");
+                q.add_atom(db.get(2), "A", "A");
+                break;
+            default:
+                System.err.println("Unknown query " + query);
+                System.exit(1);
+        }
+        return q;
+    }
+
+    private static List<Relation> create_database(int rel_size, int rel_num, int domain_size)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "cycle");
+        gen.create();
+        return gen.get_database();
+    }
+}
@@ -0,0 +1,247 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static large_synthetic.Verification.cost;
+import static large_synthetic.Verification.check;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import algorithms.paths.Path_Hybrid;
+import algorithms.trees.Tree_Hybrid;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.paths.DP_Path_Equijoin_Instance;
+import entities.paths.DP_Path_ThetaJoin_Instance;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.DP_Solution;
+import entities.paths.Path_Equijoin_Query;
+import entities.paths.Path_ThetaJoin_Query;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+class Test_Hybrid
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "50, 4, 50",
+        "20, 4, 5",
+        "12, 4, 4"
+    };
+    // Fractions of the answers after which the iterator switches to batch (> 1 means never)
+    static double[] switch_fractions = new double[] { 0.0, 0.001, 0.3, 0.9, 2.0 };
+
+    private static Stream<Arguments> provide_Test_Params_Path_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                // Set up the query
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+                gen.create();
+                List<Relation> db = gen.get_database();
+                Path_Equijoin_Query q = new Path_Equijoin_Query(db);
+                q.set_join_conditions(new int[]{1}, new int[]{0});
+
+                // Compute the true result with a naive method
+                ArrayList<ArrayList<Tuple>> true_result = Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db);
+
+                for (double fraction : switch_fractions)
+                {
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(q, rel_size, rel_num, domain_size, fraction, true_result)), arg_stream);
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Tree_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                // Set up a star query
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+                gen.create();
+                List<Relation> db = gen.get_database();
+                Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+                q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++) q.add_to_tree_wConjunction(db.get(j), j, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+
+                // Compute the true result with a naive method
+                ArrayList<ArrayList<Tuple>> true_result = Naive_For_Verification.produce_all_result_tuples_4_star_2attrs(db);
+
+                for (double fraction : switch_fractions)
+                {
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(q, rel_size, rel_num, domain_size, fraction, true_result)), arg_stream);
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Path_Theta()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                // Set up a path query with inequalities (whose graph has intermediate nodes)
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+                gen.create();
+                Path_ThetaJoin_Query q = new Path_ThetaJoin_Query(gen.get_database());
+                q.set_join_conditions_as_conjunction(Arrays.asList(new Join_Predicate("IL", 0, 1, null), new Join_Predicate("B", 1, 0, 3.0)));
+
+                // Compute the true result with a naive method
+                ArrayList<ArrayList<Tuple>> true_result = Naive_For_Verification.produce_all_result_tuples_path_theta(q);
+
+                for (double fraction : switch_fractions)
+                {
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(q, rel_size, rel_num, domain_size, fraction, true_result)), arg_stream);
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Tree_Theta()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                // Set up a branching tree query with inequalities (whose graph has intermediate nodes)
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+                gen.create();
+                List<Relation> db = gen.get_database();
+                Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+                q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++)
+                {
+                    int parent = j <= 2 ? 0 : j - 2;
+                    q.add_to_tree_wConjunction(db.get(j), j, parent, Arrays.asList(new Join_Predicate("IL", 1, 1, null)));
+                }
+
+                // Compute the true result with a naive method
+                ArrayList<ArrayList<Tuple>> true_result = Naive_For_Verification.produce_all_result_tuples_tree(q);
+
+                for (double fraction : switch_fractions)
+                {
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(q, rel_size, rel_num, domain_size, fraction, true_result)), arg_stream);
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Path_BinaryRandomDist")
+    void test_Path_BinaryRandomDist(Path_Equijoin_Query q, int rel_size, int rel_num, int domain_size, double fraction, ArrayList<ArrayList<Tuple>> true_result)
+    {
+        DP_Problem_Instance inst = new DP_Path_Equijoin_Instance(q);
+        inst.bottom_up();
+        Path_Hybrid iter = new Path_Hybrid(inst, null, switch_after(fraction, true_result.size()));
+        List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+        while (true)
+        {
+            DP_Solution sol = iter.get_next();
+            if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+            else break;
+        }
+        check(iter_results, true_result, "path with fraction= " + fraction + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Tree_BinaryRandomDist")
+    void test_Tree_BinaryRandomDist(Tree_ThetaJoin_Query q, int rel_size, int rel_num, int domain_size, double fraction, ArrayList<ArrayList<Tuple>> true_result)
+    {
+        TDP_Problem_Instance inst = new TDP_Thetajoin_Instance(q, null);
+        inst.bottom_up();
+        Tree_Hybrid iter = new Tree_Hybrid(inst, null, switch_after(fraction, true_result.size()));
+        List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+        while (true)
+        {
+            TDP_Solution sol = iter.get_next();
+            if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+            else break;
+        }
+        check(iter_results, true_result, "tree with fraction= " + fraction + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Path_Theta")
+    void test_Path_Theta(Path_ThetaJoin_Query q, int rel_size, int rel_num, int domain_size, double fraction, ArrayList<ArrayList<Tuple>> true_result)
+    {
+        DP_Problem_Instance inst = new DP_Path_ThetaJoin_Instance(q, null);
+        inst.bottom_up();
+        Path_Hybrid iter = new Path_Hybrid(inst, null, switch_after(fraction, true_result.size()));
+        List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+        while (true)
+        {
+            DP_Solution sol = iter.get_next();
+            if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+            else break;
+        }
+        check(iter_results, true_result, "theta path with fraction= " + fraction + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Tree_Theta")
+    void test_Tree_Theta(Tree_ThetaJoin_Query q, int rel_size, int rel_num, int domain_size, double fraction, ArrayList<ArrayList<Tuple>> true_result)
+    {
+        TDP_Problem_Instance inst = new TDP_Thetajoin_Instance(q, null);
+        inst.bottom_up();
+        Tree_Hybrid iter = new Tree_Hybrid(inst, null, switch_after(fraction, true_result.size()));
+        List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+        while (true)
+        {
+            TDP_Solution sol = iter.get_next();
+            if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+            else break;
+        }
+        check(iter_results, true_result, "theta tree with fraction= " + fraction + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size);
+    }
+
+    private static long switch_after(double fraction, int answers)
+    {
+        if (fraction > 1.0) return Long.MAX_VALUE;
+        return (long) (fraction * answers);
+    }
+}
@@ -0,0 +1,239 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static large_synthetic.Verification.cost;
+import static large_synthetic.Verification.check;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Configuration;
+import algorithms.Naive_For_Verification;
+import algorithms.paths.DP_All;
+import algorithms.paths.DP_Anyk_Iterator;
+import algorithms.paths.DP_Eager;
+import algorithms.paths.DP_Lazy;
+import algorithms.paths.DP_Quick;
+import algorithms.paths.DP_QuickPlus;
+import algorithms.paths.DP_Recursive;
+import algorithms.paths.DP_Take2;
+import algorithms.trees.TDP_All;
+import algorithms.trees.TDP_Eager;
+import algorithms.trees.TDP_Iterator;
+import algorithms.trees.TDP_Lazy;
+import algorithms.trees.TDP_Quick;
+import algorithms.trees.TDP_QuickPlus;
+import algorithms.trees.TDP_Recursive;
+import algorithms.trees.TDP_Take2;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.paths.DP_Path_Equijoin_Instance;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.DP_Solution;
+import entities.paths.Path_Equijoin_Query;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+class Test_Incremental_Updates
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "50, 4, 50",
+        "20, 4, 5",
+        "12, 4, 4"
+    };
+    static String[] bottom_up_implementations = new String[] { "recursive", "demand" };
+    // The Anyk-Part variants reuse their partial orders across iterators, thus they are checked after every batch of updates
+    static Class<?>[] anyk_algs = new Class[]
+    {
+        DP_Quick.class,
+        DP_Lazy.class,
+        DP_Eager.class,
+        DP_All.class,
+        DP_Take2.class
+    };
+    static Class<?>[] tree_anyk_algs = new Class[]
+    {
+        TDP_Quick.class,
+        TDP_Lazy.class,
+        TDP_Eager.class,
+        TDP_All.class,
+        TDP_Take2.class
+    };
+    // The memoized solutions of these are consumed by an iterator, thus they are checked once
+    static Class<?>[] single_use_anyk_algs = new Class[] { DP_Recursive.class, DP_QuickPlus.class };
+    static Class<?>[] single_use_tree_anyk_algs = new Class[] { TDP_Recursive.class, TDP_QuickPlus.class };
+    static int batches_no = 3;
+
+    private static Stream<Arguments> provide_Test_Params_Path_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        int seed = 0;
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                for (String impl : bottom_up_implementations)
+                {
+                    for (Class<?> anyk_alg : anyk_algs)
+                        arg_stream = Stream.concat(Stream.of(Arguments.of(rel_size, rel_num, domain_size, impl, anyk_alg, batches_no, seed++)), arg_stream);
+                    for (Class<?> anyk_alg : single_use_anyk_algs)
+                        arg_stream = Stream.concat(Stream.of(Arguments.of(rel_size, rel_num, domain_size, impl, anyk_alg, 1, seed++)), arg_stream);
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Tree_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        int seed = 0;
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                for (String shape : new String[] { "star", "path" })
+                {
+                    for (String impl : bottom_up_implementations)
+                    {
+                        for (Class<?> anyk_alg : tree_anyk_algs)
+                            arg_stream = Stream.concat(Stream.of(Arguments.of(shape, rel_size, rel_num, domain_size, impl, anyk_alg, batches_no, seed++)), arg_stream);
+                        for (Class<?> anyk_alg : single_use_tree_anyk_algs)
+                            arg_stream = Stream.concat(Stream.of(Arguments.of(shape, rel_size, rel_num, domain_size, impl, anyk_alg, 1, seed++)), arg_stream);
+                    }
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Path_BinaryRandomDist")
+    void test_Path_BinaryRandomDist(int rel_size, int rel_num, int domain_size, String impl, Class<?> anyk_alg, int batches, int seed)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+        gen.create();
+        List<Relation> db = gen.get_database();
+        Path_Equijoin_Query q = new Path_Equijoin_Query(db);
+        q.set_join_conditions(new int[]{1}, new int[]{0});
+        DP_Path_Equijoin_Instance inst = new DP_Path_Equijoin_Instance(q);
+        inst.set_bottom_up_implementation(impl);
+        inst.bottom_up();
+        String msg = "path with " + anyk_alg.getName() + " (" + impl + ") n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+
+        Random rand = new Random(seed);
+        for (int batch = 0; batch < batches; batch++)
+        {
+            // Interleave inserts and deletes
+            for (int u = 0; u < rel_size / 4 + 1; u++)
+            {
+                Relation r = db.get(rand.nextInt(rel_num));
+                if (rand.nextBoolean() && !r.tuples.isEmpty()) inst.delete(r.tuples.get(rand.nextInt(r.tuples.size())));
+                else inst.insert(random_tuple(rand, domain_size, r));
+            }
+
+            // The optimal cost has to be the same as the one computed from scratch
+            DP_Path_Equijoin_Instance fresh = new DP_Path_Equijoin_Instance(q);
+            fresh.bottom_up();
+            assertEquals(fresh.starting_node.get_opt_cost(), inst.starting_node.get_opt_cost(), "Incorrect optimal cost for " + msg);
+
+            DP_Anyk_Iterator iter = null;
+            try{
+                iter = (DP_Anyk_Iterator) anyk_alg.getDeclaredConstructor(DP_Problem_Instance.class, Configuration.class).newInstance(inst, new Configuration());
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+            List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+            while (true)
+            {
+                DP_Solution sol = iter.get_next();
+                if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+                else break;
+            }
+            check(iter_results, Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db), msg + " after batch " + batch);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Tree_BinaryRandomDist")
+    void test_Tree_BinaryRandomDist(String shape, int rel_size, int rel_num, int domain_size, String impl, Class<?> anyk_alg, int batches, int seed)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, shape);
+        gen.create();
+        List<Relation> db = gen.get_database();
+        Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+        q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+        if (shape.equals("star"))
+            for (int j = 1; j < rel_num; j++) q.add_to_tree_wConjunction(db.get(j), j, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+        else
+            for (int j = 1; j < rel_num; j++) q.add_to_tree_wConjunction(db.get(j), j, j - 1, Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+        TDP_Thetajoin_Instance inst = new TDP_Thetajoin_Instance(q, null);
+        inst.set_bottom_up_implementation(impl);
+        inst.bottom_up();
+        String msg = shape + " with " + anyk_alg.getName() + " (" + impl + ") n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+
+        Random rand = new Random(seed);
+        for (int batch = 0; batch < batches; batch++)
+        {
+            for (int u = 0; u < rel_size / 4 + 1; u++)
+            {
+                Relation r = db.get(rand.nextInt(rel_num));
+                if (rand.nextBoolean() && !r.tuples.isEmpty()) inst.delete(r.tuples.get(rand.nextInt(r.tuples.size())));
+                else inst.insert(random_tuple(rand, domain_size, r));
+            }
+
+            TDP_Thetajoin_Instance fresh = new TDP_Thetajoin_Instance(q, null);
+            fresh.bottom_up();
+            assertEquals(fresh.starting_node.get_opt_cost(), inst.starting_node.get_opt_cost(), "Incorrect optimal cost for " + msg);
+
+            TDP_Iterator iter = null;
+            try{
+                iter = (TDP_Iterator) anyk_alg.getDeclaredConstructor(TDP_Problem_Instance.class, Configuration.class).newInstance(inst, new Configuration());
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+            List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+            while (true)
+            {
+                TDP_Solution sol = iter.get_next();
+                if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+                else break;
+            }
+            ArrayList<ArrayList<Tuple>> true_result = shape.equals("star") ?
+                Naive_For_Verification.produce_all_result_tuples_4_star_2attrs(db) :
+                Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db);
+            check(iter_results, true_result, msg + " after batch " + batch);
+        }
+    }
+
+    private static Tuple random_tuple(Random rand, int domain_size, Relation r)
+    {
+        // Integer costs to create ties
+        return new Tuple(new double[]{ rand.nextInt(domain_size), rand.nextInt(domain_size) }, rand.nextInt(20), r);
+    }
+}
@@ -0,0 +1,80 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import util.Loser_Tree;
+
+class Test_Loser_Tree
+{
+    static int times_to_repeat = 3;
+    static int[] source_numbers = new int[] { 0, 1, 2, 3, 5, 8, 13 };
+    // max source size, value domain (a small domain creates ties)
+    static String[] input_properties = new String[]
+    {
+        "20, 1000",
+        "10, 3",
+        "1, 5"
+    };
+
+    private static Stream<Arguments> provide_Test_Params()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+            for (String input : input_properties)
+                for (int k : source_numbers)
+                {
+                    String[] input_as_string_arr = input.split(", ");
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(k, Integer.parseInt(input_as_string_arr[0]), Integer.parseInt(input_as_string_arr[1]))), arg_stream);
+                }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")
+    void test_merge(int k, int max_size, int domain)
+    {
+        Random rand = new Random();
+        List<List<int[]>> lists = new ArrayList<List<int[]>>();
+        List<int[]> expected = new ArrayList<int[]>();
+        for (int s = 0; s < k; s++)
+        {
+            // Some sources are empty
+            List<int[]> list = new ArrayList<int[]>();
+            int size = rand.nextInt(max_size + 1);
+            for (int j = 0; j < size; j++) list.add(new int[]{ rand.nextInt(domain), s });
+            list.sort((a, b) -> Integer.compare(a[0], b[0]));
+            lists.add(list);
+            expected.addAll(list);
+        }
+        // Stable sort by value: ties are won by the source with the smaller index
+        Collections.sort(expected, (a, b) -> Integer.compare(a[0], b[0]));
+
+        List<Loser_Tree.Source<int[]>> sources = new ArrayList<Loser_Tree.Source<int[]>>();
+        for (List<int[]> list : lists)
+        {
+            Iterator<int[]> it = list.iterator();
+            sources.add(() -> it.hasNext() ? it.next() : null);
+        }
+        Loser_Tree<int[]> tree = new Loser_Tree<int[]>(sources, (a, b) -> Integer.compare(a[0], b[0]));
+        String msg = "Merge of " + k + " sources with max size " + max_size + " and domain " + domain;
+        for (int[] e : expected)
+        {
+            int[] polled = tree.poll();
+            assertEquals(e[0] + "@" + e[1], polled[0] + "@" + polled[1], msg);
+            assertEquals(e[1], tree.get_last_source(), msg);
+        }
+        assertEquals(null, tree.poll(), msg);
+        assertEquals(null, tree.poll(), msg);
+    }
+}
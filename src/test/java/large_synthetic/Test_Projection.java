@@ -0,0 +1,157 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import algorithms.trees.Free_Connex_Projection;
+import algorithms.trees.TDP_Anyk_Iterator;
+import algorithms.trees.TDP_Lazy;
+import algorithms.trees.TDP_Recursive;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+class Test_Projection
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "20, 3, 5",
+        "30, 4, 10",
+        "50, 2, 20",
+        "10, 4, 200"
+    };
+    static String[] queries = new String[] { "path_equality", "path_inequality", "tree_equality", "tree_inequality" };
+    static double epsilon = 1e-6;
+
+    private static Stream<Arguments> provide_Test_Params()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                for (String query : queries)
+                    // The first output_relations relations have output attributes and the rest are aggregated away
+                    for (int output_relations = 1; output_relations < rel_num; output_relations++)
+                        arg_stream = Stream.concat(Stream.of(Arguments.of(query, rel_size, rel_num, domain_size, output_relations)), arg_stream);
+            }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")
+    void test_projection(String query, int rel_size, int rel_num, int domain_size, int output_relations)
+    {
+        String msg = query + " with n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size + " projected on " + output_relations + " relations";
+        Tree_ThetaJoin_Query q = create_query(query, rel_size, rel_num, domain_size);
+
+        // Output the first attribute of every output relation and the attributes of the joins between them
+        int[][] output_attributes = new int[rel_num][];
+        List<Set<Integer>> attributes = new ArrayList<Set<Integer>>();
+        for (int r = 0; r < output_relations; r++) attributes.add(new LinkedHashSet<Integer>(Arrays.asList(0)));
+        for (int r = 1; r < output_relations; r++)
+            for (List<Join_Predicate> conjunction : q.join_conditions.get(r))
+                for (Join_Predicate p : conjunction)
+                {
+                    attributes.get(q.parents.get(r)).add(p.attr_idx_1);
+                    attributes.get(r).add(p.attr_idx_2);
+                }
+        for (int r = 0; r < output_relations; r++) output_attributes[r] = attributes.get(r).stream().mapToInt(Integer::intValue).toArray();
+
+        // The minimum cost of every projected answer
+        List<ArrayList<Tuple>> true_result = Naive_For_Verification.produce_all_result_tuples_tree(q);
+        Map<List<Double>, Double> true_costs = new HashMap<List<Double>, Double>();
+        for (List<Tuple> answer : true_result)
+        {
+            List<Double> key = new ArrayList<Double>();
+            double cost = 0.0;
+            for (int r = 0; r < rel_num; r++)
+            {
+                cost += answer.get(r).cost;
+                if (output_attributes[r] != null)
+                    for (int attr : output_attributes[r]) key.add(answer.get(r).values[attr]);
+            }
+            true_costs.merge(key, cost, Math::min);
+        }
+        List<Double> sorted_costs = new ArrayList<Double>(true_costs.values());
+        Collections.sort(sorted_costs);
+
+        Free_Connex_Projection projection = new Free_Connex_Projection(q, output_attributes, null);
+        assertEquals(output_relations, projection.projected_query.length, "Incorrect number of projected relations for " + msg);
+        for (String algorithm : new String[] { "Lazy", "Recursive" })
+        {
+            TDP_Thetajoin_Instance instance = new TDP_Thetajoin_Instance(projection.projected_query, null);
+            instance.bottom_up();
+            TDP_Anyk_Iterator iter = algorithm.equals("Lazy") ? new TDP_Lazy(instance, null) : new TDP_Recursive(instance, null);
+            Set<List<Double>> returned = new LinkedHashSet<List<Double>>();
+            TDP_Solution sol;
+            int k = 0;
+            while ((sol = iter.get_next()) != null)
+            {
+                List<Double> key = new ArrayList<Double>();
+                for (Tuple t : sol.solutionToTuples_strict_order())
+                    for (double v : t.values) key.add(v);
+                assertTrue(returned.add(key), algorithm + " returned the projected answer " + key + " twice for " + msg);
+                Double true_cost = true_costs.get(key);
+                assertNotNull(true_cost, algorithm + " returned the projected answer " + key + " that does not exist for " + msg);
+                assertEquals(true_cost, sol.get_cost(), epsilon, algorithm + " returned the wrong cost of " + key + " for " + msg);
+                assertTrue(k < sorted_costs.size(), algorithm + " returned too many answers for " + msg);
+                assertEquals(sorted_costs.get(k), sol.get_cost(), epsilon, algorithm + " returned the answer with rank " + k + " out of order for " + msg);
+                k++;
+            }
+            assertEquals(true_costs.size(), k, algorithm + " returned the wrong number of answers for " + msg);
+        }
+    }
+
+    private static Tree_ThetaJoin_Query create_query(String query, int rel_size, int rel_num, int domain_size)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, query.startsWith("path") ? "path" : "star");
+        gen.create();
+        List<Relation> db = gen.get_database();
+        Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+        q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+        for (int r = 1; r < rel_num; r++)
+        {
+            if (query.equals("path_equality"))
+                q.add_to_tree_wConjunction(db.get(r), r, r - 1, Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+            else if (query.equals("path_inequality"))
+                q.add_to_tree_wConjunction(db.get(r), r, r - 1, Arrays.asList(new Join_Predicate("IL", 1, 0, null)));
+            else if (query.equals("tree_equality"))
+                q.add_to_tree_wConjunction(db.get(r), r, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+            else
+            {
+                // A branching tree where the children of the root have children of their own
+                int parent = r <= 2 ? 0 : r - 2;
+                q.add_to_tree_wConjunction(db.get(r), r, parent, Arrays.asList(new Join_Predicate("IL", 1, 1, null)));
+            }
+        }
+        return q;
+    }
+}
@@ -0,0 +1,110 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static large_synthetic.Verification.cost;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import algorithms.Rank_Join;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.trees.Tree_ThetaJoin_Query;
+import util.Answer_Identity;
+
+class Test_Rank_Join
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "50, 4, 50",
+        "50, 4, 300",
+        "20, 4, 5"
+    };
+
+    private static Stream<Arguments> provide_Test_Params_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+
+                // A path as a join tree
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+                gen.create();
+                List<Relation> db = gen.get_database();
+                Tree_ThetaJoin_Query q_path = new Tree_ThetaJoin_Query();
+                q_path.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++) q_path.add_to_tree_wConjunction(db.get(j), j, j - 1, Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+                ArrayList<ArrayList<Tuple>> true_result_path = Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db);
+
+                // A star
+                gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+                gen.create();
+                db = gen.get_database();
+                Tree_ThetaJoin_Query q_star = new Tree_ThetaJoin_Query();
+                q_star.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++) q_star.add_to_tree_wConjunction(db.get(j), j, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+                ArrayList<ArrayList<Tuple>> true_result_star = Naive_For_Verification.produce_all_result_tuples_4_star_2attrs(db);
+
+                for (boolean presorted : new boolean[] { false, true })
+                {
+                    arg_stream = Stream.concat(Stream.of(Arguments.of("path", q_path, rel_size, rel_num, domain_size, presorted, true_result_path)), arg_stream);
+                    arg_stream = Stream.concat(Stream.of(Arguments.of("star", q_star, rel_size, rel_num, domain_size, presorted, true_result_star)), arg_stream);
+                }
+            }
+        }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_BinaryRandomDist")
+    void test_BinaryRandomDist(String q_type, Tree_ThetaJoin_Query q, int rel_size, int rel_num, int domain_size, boolean presorted, ArrayList<ArrayList<Tuple>> true_result)
+    {
+        String msg = q_type + " presorted= " + presorted + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+        if (presorted) for (Relation r : q.relations) r.sort();
+        Rank_Join rank_join = new Rank_Join(q, presorted);
+        List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+        while (true)
+        {
+            List<Tuple> answer = rank_join.get_next_answer();
+            if (answer != null) iter_results.add(answer);
+            else break;
+        }
+        assertTrue(rank_join.tuples_read() <= rel_size * rel_num, "Read more tuples than the input for " + msg);
+
+        assertEquals(true_result.size(), iter_results.size(), "Incorrect size of result for " + msg);
+        List<Double> true_costs = new ArrayList<Double>();
+        for (List<Tuple> answer : true_result) true_costs.add(cost(answer));
+        true_costs.sort(null);
+        List<Double> iter_costs = new ArrayList<Double>();
+        for (List<Tuple> answer : iter_results) iter_costs.add(cost(answer));
+        assertEquals(true_costs, iter_costs, "Costs not in ranked order for " + msg);
+
+        Set<Answer_Identity> true_set = new HashSet<Answer_Identity>();
+        for (List<Tuple> answer : true_result) true_set.add(new Answer_Identity(answer));
+        Set<Answer_Identity> iter_set = new HashSet<Answer_Identity>();
+        for (List<Tuple> answer : iter_results) iter_set.add(new Answer_Identity(answer));
+        assertEquals(iter_results.size(), iter_set.size(), "Duplicate answers for " + msg);
+        assertEquals(true_set, iter_set, "Results not the same as naive for " + msg);
+    }
+}
@@ -0,0 +1,253 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static large_synthetic.Verification.cost;
+import static large_synthetic.Verification.check;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Configuration;
+import algorithms.Naive_For_Verification;
+import algorithms.paths.DP_All;
+import algorithms.paths.DP_Anyk_Iterator;
+import algorithms.paths.DP_Eager;
+import algorithms.paths.DP_Lazy;
+import algorithms.paths.DP_Quick;
+import algorithms.paths.DP_Take2;
+import algorithms.trees.TDP_All;
+import algorithms.trees.TDP_Eager;
+import algorithms.trees.TDP_Iterator;
+import algorithms.trees.TDP_Lazy;
+import algorithms.trees.TDP_Quick;
+import algorithms.trees.TDP_Take2;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.paths.DP_Path_Equijoin_Instance;
+import entities.paths.DP_Path_ThetaJoin_Instance;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.DP_Solution;
+import entities.paths.Path_Equijoin_Query;
+import entities.paths.Path_ThetaJoin_Query;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+class Test_Reweighting
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "50, 4, 50",
+        "20, 4, 5",
+        "12, 4, 4"
+    };
+    static List<List<Join_Predicate>> theta_cond = Arrays.asList(
+        Arrays.asList(new Join_Predicate("E", 1, 0, null), new Join_Predicate("IL", 0, 1, null)));
+    static String[] bottom_up_implementations = new String[] { "recursive", "parallel", "demand" };
+    // The Anyk-Part variants keep their partial orders in the graph, thus they have to be reset by the re-weighting
+    static Class<?>[] anyk_algs = new Class[]
+    {
+        DP_Quick.class,
+        DP_Lazy.class,
+        DP_Eager.class,
+        DP_All.class,
+        DP_Take2.class
+    };
+    static Class<?>[] tree_anyk_algs = new Class[]
+    {
+        TDP_Quick.class,
+        TDP_Lazy.class,
+        TDP_Eager.class,
+        TDP_All.class,
+        TDP_Take2.class
+    };
+    static int reweights_no = 3;
+
+    private static Stream<Arguments> provide_Test_Params_Path_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        int seed = 0;
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                for (String join : new String[] { "equi", "theta" })
+                    for (String impl : bottom_up_implementations)
+                        for (Class<?> anyk_alg : anyk_algs)
+                            arg_stream = Stream.concat(Stream.of(Arguments.of(join, rel_size, rel_num, domain_size, impl, anyk_alg, seed++)), arg_stream);
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Tree_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        int seed = 0;
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                for (String join : new String[] { "star", "theta" })
+                    for (String impl : bottom_up_implementations)
+                        for (Class<?> anyk_alg : tree_anyk_algs)
+                            arg_stream = Stream.concat(Stream.of(Arguments.of(join, rel_size, rel_num, domain_size, impl, anyk_alg, seed++)), arg_stream);
+            }
+        }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Path_BinaryRandomDist")
+    void test_Path_BinaryRandomDist(String join, int rel_size, int rel_num, int domain_size, String impl, Class<?> anyk_alg, int seed)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+        gen.create();
+        List<Relation> db = gen.get_database();
+        DP_Problem_Instance inst;
+        Path_ThetaJoin_Query q_theta = null;
+        if (join.equals("equi"))
+        {
+            Path_Equijoin_Query q = new Path_Equijoin_Query(db);
+            q.set_join_conditions(new int[]{1}, new int[]{0});
+            inst = new DP_Path_Equijoin_Instance(q);
+        }
+        else
+        {
+            q_theta = new Path_ThetaJoin_Query(db);
+            q_theta.set_join_conditions_as_dnf(theta_cond);
+            inst = new DP_Path_ThetaJoin_Instance(q_theta, null);
+        }
+        inst.set_bottom_up_implementation(impl);
+        inst.bottom_up();
+        String msg = "path " + join + " with " + anyk_alg.getName() + " (" + impl + ") n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+
+        Random rand = new Random(seed);
+        for (int round = 0; round <= reweights_no; round++)
+        {
+            // Every iterator but the last stops early, leaving partial orders behind
+            DP_Anyk_Iterator iter = null;
+            try{
+                iter = (DP_Anyk_Iterator) anyk_alg.getDeclaredConstructor(DP_Problem_Instance.class, Configuration.class).newInstance(inst, new Configuration());
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+            List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+            int k = (round == reweights_no) ? Integer.MAX_VALUE : rand.nextInt(20);
+            while (iter_results.size() < k)
+            {
+                DP_Solution sol = iter.get_next();
+                if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+                else break;
+            }
+            if (round == reweights_no)
+            {
+                ArrayList<ArrayList<Tuple>> true_result = join.equals("equi") ?
+                    Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db) :
+                    Naive_For_Verification.produce_all_result_tuples_path_theta(q_theta);
+                check(iter_results, true_result, msg);
+            }
+            else inst.reweight(random_costs(rand, db));
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Tree_BinaryRandomDist")
+    void test_Tree_BinaryRandomDist(String join, int rel_size, int rel_num, int domain_size, String impl, Class<?> anyk_alg, int seed)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, join.equals("star") ? "star" : "path");
+        gen.create();
+        List<Relation> db = gen.get_database();
+        Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+        Path_ThetaJoin_Query path_q = null;
+        if (join.equals("star"))
+        {
+            q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+            for (int j = 1; j < rel_num; j++) q.add_to_tree_wConjunction(db.get(j), j, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+        }
+        else
+        {
+            // A theta-join that has the shape of a path (with intermediate factorization nodes)
+            q.add_to_tree_wDNF(db.get(0), 0, -1, null);
+            for (int j = 1; j < rel_num; j++) q.add_to_tree_wDNF(db.get(j), j, j - 1, theta_cond);
+            path_q = new Path_ThetaJoin_Query(db);
+            path_q.set_join_conditions_as_dnf(theta_cond);
+        }
+        TDP_Problem_Instance inst = new TDP_Thetajoin_Instance(q, null);
+        inst.set_bottom_up_implementation(impl);
+        inst.bottom_up();
+        String msg = "tree " + join + " with " + anyk_alg.getName() + " (" + impl + ") n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+
+        Random rand = new Random(seed);
+        for (int round = 0; round <= reweights_no; round++)
+        {
+            TDP_Iterator iter = null;
+            try{
+                iter = (TDP_Iterator) anyk_alg.getDeclaredConstructor(TDP_Problem_Instance.class, Configuration.class).newInstance(inst, new Configuration());
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+            List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+            int k = (round == reweights_no) ? Integer.MAX_VALUE : rand.nextInt(20);
+            while (iter_results.size() < k)
+            {
+                TDP_Solution sol = iter.get_next();
+                if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+                else break;
+            }
+            if (round == reweights_no)
+            {
+                ArrayList<ArrayList<Tuple>> true_result = join.equals("star") ?
+                    Naive_For_Verification.produce_all_result_tuples_4_star_2attrs(db) :
+                    Naive_For_Verification.produce_all_result_tuples_path_theta(path_q);
+                check(iter_results, true_result, msg);
+            }
+            else inst.reweight(random_costs(rand, db));
+        }
+    }
+
+    /**
+     * New costs for a random non-empty subset of the relations.
+     */
+    private static Map<Relation, double[]> random_costs(Random rand, List<Relation> db)
+    {
+        Map<Relation, double[]> new_costs = new HashMap<Relation, double[]>();
+        while (new_costs.isEmpty())
+        {
+            for (Relation r : db)
+            {
+                if (!rand.nextBoolean()) continue;
+                double[] costs = new double[r.tuples.size()];
+                // Integer costs to create ties
+                for (int i = 0; i < costs.length; i++) costs[i] = rand.nextInt(20);
+                new_costs.put(r, costs);
+            }
+        }
+        return new_costs;
+    }
+}
@@ -0,0 +1,320 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static large_synthetic.Verification.cost;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import algorithms.paths.DP_Anyk_Iterator;
+import algorithms.paths.DP_Eager;
+import algorithms.paths.DP_Quick;
+import algorithms.paths.DP_Sampler;
+import algorithms.paths.DP_Selection;
+import algorithms.trees.TDP_Anyk_Iterator;
+import algorithms.trees.TDP_Eager;
+import algorithms.trees.TDP_Quick;
+import algorithms.trees.TDP_Sampler;
+import algorithms.trees.TDP_Selection;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.paths.DP_Path_ThetaJoin_Instance;
+import entities.paths.DP_Solution;
+import entities.paths.Path_ThetaJoin_Query;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+class Test_Sampling
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "20, 3, 5",
+        "12, 3, 10",
+        "30, 2, 40"
+    };
+    static String[] queries = new String[] { "path", "tree" };
+    // The samples of a distribution are compared to it with the total variation distance
+    static int samples_per_answer = 100;
+    static double max_distance = 0.1;
+
+    private static Stream<Arguments> provide_Test_Params()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        long seed = 0;
+        for (int i = 0; i < times_to_repeat; i++)
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                for (String query : queries)
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(query, rel_size, rel_num, domain_size, seed++)), arg_stream);
+            }
+        return arg_stream;
+    }
+
+    /**
+     * Wraps the path and the tree samplers so that their solutions are returned as lists of tuples.
+     */
+    private interface Sampler
+    {
+        List<List<Tuple>> sample(int k, boolean with_replacement);
+        List<List<Tuple>> sample_weighted(double lambda, int k, boolean with_replacement);
+        List<List<Tuple>> sample_weighted(DoubleUnaryOperator f, double f_max, int k);
+        /**
+         * Returns the next answer of the any-k iterator over the same instance (if there is one)
+         * and midway also runs a selection over it.
+         * @return boolean False if the enumeration has finished.
+         */
+        boolean enumerate_next();
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")
+    void test_sampling(String query, int rel_size, int rel_num, int domain_size, long seed)
+    {
+        String msg = query + " with n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size + ", seed=" + seed;
+        Random rand = new Random(seed);
+        List<List<Tuple>> true_result = new ArrayList<List<Tuple>>();
+        Sampler sampler = create_sampler(query, rel_size, rel_num, domain_size, rand, true_result, null);
+        int count = true_result.size();
+        Map<String, Double> costs = new HashMap<String, Double>();
+        double min_cost = Double.POSITIVE_INFINITY, max_cost = Double.NEGATIVE_INFINITY;
+        for (List<Tuple> res : true_result)
+        {
+            double c = cost(res);
+            costs.put(to_string(res), c);
+            min_cost = Math.min(min_cost, c);
+            max_cost = Math.max(max_cost, c);
+        }
+        if (count == 0)
+        {
+            assertEquals(0, sampler.sample(5, true).size(), "Samples without answers for " + msg);
+            return;
+        }
+
+        // Without replacement, asking for more samples than answers returns every answer once
+        assertEquals(sorted_strings(true_result), sorted_strings(sampler.sample(count + 5, false)), "Uniform samples without replacement not a permutation for " + msg);
+        double lambda = 3.0 / Math.max(max_cost - min_cost, 1.0);
+        assertEquals(sorted_strings(true_result), sorted_strings(sampler.sample_weighted(lambda, count + 5, false)), "Weighted samples without replacement not a permutation for " + msg);
+        List<List<Tuple>> partial = sampler.sample(count / 2, false);
+        assertEquals(count / 2, partial.size(), "Incorrect number of samples for " + msg);
+        assertEquals(count / 2, new HashSet<String>(sorted_strings(partial)).size(), "Repeated samples without replacement for " + msg);
+
+        // The samples follow the distributions
+        int n = samples_per_answer * count;
+        Map<String, Double> uniform = new HashMap<String, Double>();
+        Map<String, Double> favor_cheap = new HashMap<String, Double>();
+        Map<String, Double> favor_expensive = new HashMap<String, Double>();
+        Map<String, Double> step = new HashMap<String, Double>();
+        double median = sorted_costs(costs).get(count / 2);
+        DoubleUnaryOperator f = c -> c < median ? 1.0 : 0.25;
+        for (Map.Entry<String, Double> e : costs.entrySet())
+        {
+            uniform.put(e.getKey(), 1.0);
+            favor_cheap.put(e.getKey(), Math.exp(-lambda * (e.getValue() - min_cost)));
+            favor_expensive.put(e.getKey(), Math.exp(lambda * (e.getValue() - max_cost)));
+            step.put(e.getKey(), f.applyAsDouble(e.getValue()));
+        }
+        assert_distribution(uniform, sampler.sample(n, true), "Uniform samples for " + msg);
+        assert_distribution(favor_cheap, sampler.sample_weighted(lambda, n, true), "Samples favoring cheap answers for " + msg);
+        assert_distribution(favor_expensive, sampler.sample_weighted(-lambda, n, true), "Samples favoring expensive answers for " + msg);
+        // The first sample without replacement follows the same distribution
+        List<List<Tuple>> first_samples = new ArrayList<List<Tuple>>();
+        for (int i = 0; i < n; i++) first_samples.addAll(sampler.sample_weighted(lambda, 1, false));
+        assert_distribution(favor_cheap, first_samples, "First samples without replacement favoring cheap answers for " + msg);
+        assert_distribution(step, sampler.sample_weighted(f, 1.0, n), "Rejection samples for " + msg);
+
+        // When the weights of all the answers except for the cheapest underflow, only those are sampled with replacement
+        List<List<Tuple>> cheapest = sampler.sample_weighted(1e6, count + 5, true);
+        for (List<Tuple> res : cheapest)
+            assertTrue(cost(res) - min_cost < 1e-3, "Sample with an underflowing weight for " + msg);
+        // Without replacement, they are all drawn in ascending order of cost
+        List<List<Tuple>> ranked = sampler.sample_weighted(1e6, count + 5, false);
+        assertEquals(sorted_strings(true_result), sorted_strings(ranked), "Samples without replacement with underflows not a permutation for " + msg);
+        for (int i = 1; i < ranked.size(); i++)
+            assertTrue(cost(ranked.get(i)) > cost(ranked.get(i - 1)) - 1e-3, "Expensive sample before a cheap one with underflows for " + msg);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")
+    void test_interleaved_anyk(String query, int rel_size, int rel_num, int domain_size, long seed)
+    {
+        // Quick and Eager reorder the decisions of the graph in place while they enumerate
+        // and a selection replaces the snapshot of the decisions with a sorted one
+        for (String anyk_alg : new String[] { "Quick", "Eager" })
+        {
+            String msg = query + " with " + anyk_alg + " and n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size + ", seed=" + seed;
+            Random rand = new Random(seed);
+            List<List<Tuple>> true_result = new ArrayList<List<Tuple>>();
+            Sampler sampler = create_sampler(query, rel_size, rel_num, domain_size, rand, true_result, anyk_alg);
+            int count = true_result.size();
+            if (count == 0) continue;
+            Map<String, Double> uniform = new HashMap<String, Double>();
+            Map<String, Double> favor_cheap = new HashMap<String, Double>();
+            double min_cost = Double.POSITIVE_INFINITY, max_cost = Double.NEGATIVE_INFINITY;
+            for (List<Tuple> res : true_result)
+            {
+                min_cost = Math.min(min_cost, cost(res));
+                max_cost = Math.max(max_cost, cost(res));
+            }
+            double lambda = 3.0 / Math.max(max_cost - min_cost, 1.0);
+            for (List<Tuple> res : true_result)
+            {
+                uniform.put(to_string(res), 1.0);
+                favor_cheap.put(to_string(res), Math.exp(-lambda * (cost(res) - min_cost)));
+            }
+
+            // The weights are computed before the enumeration starts
+            sampler.sample_weighted(lambda, 1, true);
+            List<List<Tuple>> uniform_samples = new ArrayList<List<Tuple>>();
+            List<List<Tuple>> weighted_samples = new ArrayList<List<Tuple>>();
+            int enumerated = 0;
+            while (sampler.enumerate_next())
+            {
+                enumerated++;
+                uniform_samples.addAll(sampler.sample(samples_per_answer, true));
+                weighted_samples.addAll(sampler.sample_weighted(lambda, samples_per_answer, true));
+            }
+            assertEquals(count, enumerated, "Incorrect number of answers enumerated for " + msg);
+            assert_distribution(uniform, uniform_samples, "Uniform samples during the enumeration for " + msg);
+            assert_distribution(favor_cheap, weighted_samples, "Weighted samples during the enumeration for " + msg);
+            assertEquals(sorted_strings(true_result), sorted_strings(sampler.sample(count + 5, false)), "Uniform samples without replacement not a permutation for " + msg);
+            assertEquals(sorted_strings(true_result), sorted_strings(sampler.sample_weighted(lambda, count + 5, false)), "Weighted samples without replacement not a permutation for " + msg);
+        }
+    }
+
+    private static void assert_distribution(Map<String, Double> weights, List<List<Tuple>> samples, String msg)
+    {
+        double total = 0.0;
+        for (double w : weights.values()) total += w;
+        Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        for (List<Tuple> res : samples)
+        {
+            String s = to_string(res);
+            assertTrue(weights.containsKey(s), "Sample that is not an answer: " + msg);
+            frequencies.merge(s, 1, Integer::sum);
+        }
+        double distance = 0.0;
+        for (Map.Entry<String, Double> e : weights.entrySet())
+            distance += Math.abs(e.getValue() / total - frequencies.getOrDefault(e.getKey(), 0) / (double) samples.size());
+        distance /= 2;
+        assertTrue(distance < max_distance, "Total variation distance " + distance + " too large: " + msg);
+    }
+
+    /**
+     * @param anyk_alg The any-k algorithm (Quick or Eager) that enumerates the same instance or null for none.
+     */
+    private static Sampler create_sampler(String query, int rel_size, int rel_num, int domain_size, Random rand, List<List<Tuple>> true_result, String anyk_alg)
+    {
+        if (query.equals("path"))
+        {
+            Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+            gen.create();
+            Path_ThetaJoin_Query q = new Path_ThetaJoin_Query(gen.get_database());
+            q.set_join_conditions_as_conjunction(Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+            true_result.addAll(Naive_For_Verification.produce_all_result_tuples_path_theta(q));
+            DP_Path_ThetaJoin_Instance inst = new DP_Path_ThetaJoin_Instance(q, null);
+            if (anyk_alg != null) inst.bottom_up();
+            DP_Sampler sampler = new DP_Sampler(inst, rand);
+            DP_Anyk_Iterator iter = anyk_alg == null ? null : anyk_alg.equals("Quick") ? new DP_Quick(inst, null) : new DP_Eager(inst, null);
+            return new Sampler()
+            {
+                int enumerated = 0;
+                public boolean enumerate_next()
+                {
+                    if (iter == null || iter.get_next() == null) return false;
+                    if (enumerated++ == true_result.size() / 2) new DP_Selection(inst).quantile(0.5);
+                    return true;
+                }
+                public List<List<Tuple>> sample(int k, boolean with_replacement) { return to_tuples(sampler.sample(k, with_replacement)); }
+                public List<List<Tuple>> sample_weighted(double lambda, int k, boolean with_replacement) { return to_tuples(sampler.sample_weighted(lambda, k, with_replacement)); }
+                public List<List<Tuple>> sample_weighted(DoubleUnaryOperator f, double f_max, int k) { return to_tuples(sampler.sample_weighted(f, f_max, k)); }
+                private List<List<Tuple>> to_tuples(List<DP_Solution> sols)
+                {
+                    List<List<Tuple>> res = new ArrayList<List<Tuple>>();
+                    for (DP_Solution sol : sols) res.add(sol.solutionToTuples_strict_order());
+                    return res;
+                }
+            };
+        }
+        else
+        {
+            // A branching tree with inequalities
+            Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+            gen.create();
+            List<Relation> db = gen.get_database();
+            Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+            q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+            for (int r = 1; r < rel_num; r++)
+                q.add_to_tree_wConjunction(db.get(r), r, r <= 2 ? 0 : r - 2, Arrays.asList(new Join_Predicate("IL", 1, 1, null)));
+            true_result.addAll(Naive_For_Verification.produce_all_result_tuples_tree(q));
+            TDP_Thetajoin_Instance inst = new TDP_Thetajoin_Instance(q, null);
+            if (anyk_alg != null) inst.bottom_up();
+            TDP_Sampler sampler = new TDP_Sampler(inst, rand);
+            TDP_Anyk_Iterator iter = anyk_alg == null ? null : anyk_alg.equals("Quick") ? new TDP_Quick(inst, null) : new TDP_Eager(inst, null);
+            return new Sampler()
+            {
+                int enumerated = 0;
+                public boolean enumerate_next()
+                {
+                    if (iter == null || iter.get_next() == null) return false;
+                    if (enumerated++ == true_result.size() / 2) new TDP_Selection(inst).quantile(0.5);
+                    return true;
+                }
+                public List<List<Tuple>> sample(int k, boolean with_replacement) { return to_tuples(sampler.sample(k, with_replacement)); }
+                public List<List<Tuple>> sample_weighted(double lambda, int k, boolean with_replacement) { return to_tuples(sampler.sample_weighted(lambda, k, with_replacement)); }
+                public List<List<Tuple>> sample_weighted(DoubleUnaryOperator f, double f_max, int k) { return to_tuples(sampler.sample_weighted(f, f_max, k)); }
+                private List<List<Tuple>> to_tuples(List<TDP_Solution> sols)
+                {
+                    List<List<Tuple>> res = new ArrayList<List<Tuple>>();
+                    for (TDP_Solution sol : sols) res.add(sol.solutionToTuples_strict_order());
+                    return res;
+                }
+            };
+        }
+    }
+
+    private static List<Double> sorted_costs(Map<String, Double> costs)
+    {
+        List<Double> res = new ArrayList<Double>(costs.values());
+        Collections.sort(res);
+        return res;
+    }
+
+    private static List<String> sorted_strings(List<List<Tuple>> answers)
+    {
+        List<String> res = new ArrayList<String>();
+        for (List<Tuple> ans : answers) res.add(to_string(ans));
+        Collections.sort(res);
+        return res;
+    }
+
+    private static String to_string(List<Tuple> answer)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Tuple t : answer) sb.append(t.flat_format()).append(" | ");
+        return sb.toString();
+    }
+}
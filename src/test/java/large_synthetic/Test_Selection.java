@@ -0,0 +1,217 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static large_synthetic.Verification.cost;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import algorithms.paths.DP_Selection;
+import algorithms.trees.TDP_Selection;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.paths.DP_Path_ThetaJoin_Instance;
+import entities.paths.DP_Solution;
+import entities.paths.Path_ThetaJoin_Query;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+class Test_Selection
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "20, 3, 5",
+        "30, 4, 10",
+        "50, 2, 20",
+        "10, 4, 200"
+    };
+    // The queries with ties have integer costs
+    static String[] queries = new String[] { "path_equality", "path_inequality", "path_ties", "tree_equality", "tree_inequality", "tree_ties" };
+    static int ranks_to_check = 60;
+    static double epsilon = 1e-6;
+
+    private static Stream<Arguments> provide_Test_Params()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                for (String query : queries)
+                    arg_stream = Stream.concat(Stream.of(Arguments.of(query, rel_size, rel_num, domain_size)), arg_stream);
+            }
+        return arg_stream;
+    }
+
+    /**
+     * Wraps the path and the tree selection so that their solutions are returned as lists of tuples.
+     */
+    private interface Selection
+    {
+        BigInteger count();
+        BigInteger count_below(double threshold);
+        BigInteger count_at_most(double threshold);
+        List<Tuple> select(long k);
+        List<Tuple> quantile(double q);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")
+    void test_selection(String query, int rel_size, int rel_num, int domain_size)
+    {
+        String msg = query + " with n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+        boolean ties = query.endsWith("ties");
+        List<List<Tuple>> true_result = new ArrayList<List<Tuple>>();
+        Selection selection = create_selection(query, rel_size, rel_num, domain_size, true_result);
+        int count = true_result.size();
+        assertEquals(count, selection.count().intValue(), "Incorrect count for " + msg);
+        List<Double> costs = new ArrayList<Double>();
+        Set<String> answers = new HashSet<String>();
+        for (List<Tuple> res : true_result)
+        {
+            costs.add(cost(res));
+            answers.add(to_string(res));
+        }
+        Collections.sort(costs);
+        assertNull(selection.select(count), "Selection out of range for " + msg);
+        assertNull(selection.select(-1), "Selection out of range for " + msg);
+        if (count == 0)
+        {
+            assertNull(selection.quantile(0.5), "Quantile without answers for " + msg);
+            return;
+        }
+
+        // Counts below thresholds (those equal to the costs of answers only when the costs are integers)
+        Random rand = new Random();
+        List<Double> thresholds = new ArrayList<Double>(Arrays.asList(costs.get(0) - 1, costs.get(count - 1) + 1));
+        for (int i = 0; i < ranks_to_check; i++)
+        {
+            int j = rand.nextInt(count);
+            if (ties) thresholds.add(costs.get(j));
+            if (j + 1 < count && costs.get(j + 1) - costs.get(j) > epsilon) thresholds.add((costs.get(j) + costs.get(j + 1)) / 2);
+        }
+        for (double threshold : thresholds)
+        {
+            int below = 0, at_most = 0;
+            for (double c : costs)
+            {
+                if (c < threshold) below++;
+                if (c <= threshold) at_most++;
+            }
+            assertEquals(below, selection.count_below(threshold).intValue(), "Incorrect count below " + threshold + " for " + msg);
+            assertEquals(at_most, selection.count_at_most(threshold).intValue(), "Incorrect count at most " + threshold + " for " + msg);
+        }
+
+        // The selected answers have the costs of their ranks
+        List<Integer> ranks = new ArrayList<Integer>(Arrays.asList(0, count - 1, count / 2));
+        for (int i = 0; i < ranks_to_check; i++) ranks.add(rand.nextInt(count));
+        for (int k : ranks)
+        {
+            List<Tuple> res = selection.select(k);
+            assertTrue(answers.contains(to_string(res)), "Selected an answer that does not exist for " + msg);
+            assertEquals(costs.get(k), cost(res), epsilon, "Incorrect answer with rank " + k + " for " + msg);
+        }
+        assertEquals(costs.get(0), cost(selection.quantile(0.0)), epsilon, "Incorrect minimum for " + msg);
+        assertEquals(costs.get(count - 1), cost(selection.quantile(1.0)), epsilon, "Incorrect maximum for " + msg);
+        int median_rank = (int) Math.ceil(0.5 * count) - 1;
+        assertEquals(costs.get(median_rank), cost(selection.quantile(0.5)), epsilon, "Incorrect median for " + msg);
+    }
+
+    private static Selection create_selection(String query, int rel_size, int rel_num, int domain_size, List<List<Tuple>> true_result)
+    {
+        boolean ties = query.endsWith("ties");
+        if (query.startsWith("path"))
+        {
+            Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+            gen.create();
+            if (ties) round_costs(gen.get_database());
+            Path_ThetaJoin_Query q = new Path_ThetaJoin_Query(gen.get_database());
+            if (query.equals("path_inequality")) q.set_join_conditions_as_conjunction(Arrays.asList(new Join_Predicate("IL", 0, 1, null), new Join_Predicate("B", 1, 0, 3.0)));
+            else q.set_join_conditions_as_conjunction(Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+            true_result.addAll(Naive_For_Verification.produce_all_result_tuples_path_theta(q));
+            DP_Selection selection = new DP_Selection(new DP_Path_ThetaJoin_Instance(q, null));
+            return new Selection()
+            {
+                public BigInteger count() { return selection.count(); }
+                public BigInteger count_below(double threshold) { return selection.count_below(threshold); }
+                public BigInteger count_at_most(double threshold) { return selection.count_at_most(threshold); }
+                public List<Tuple> select(long k) { return to_tuples(selection.select(k)); }
+                public List<Tuple> quantile(double q) { return to_tuples(selection.quantile(q)); }
+                private List<Tuple> to_tuples(DP_Solution sol) { return sol == null ? null : sol.solutionToTuples_strict_order(); }
+            };
+        }
+        else
+        {
+            Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+            gen.create();
+            List<Relation> db = gen.get_database();
+            if (ties) round_costs(db);
+            Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+            q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+            for (int r = 1; r < rel_num; r++)
+            {
+                if (query.equals("tree_equality"))
+                    q.add_to_tree_wConjunction(db.get(r), r, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+                else
+                {
+                    // A branching tree where the children of the root have children of their own
+                    int parent = r <= 2 ? 0 : r - 2;
+                    q.add_to_tree_wConjunction(db.get(r), r, parent, Arrays.asList(new Join_Predicate("IL", 1, 1, null)));
+                }
+            }
+            true_result.addAll(Naive_For_Verification.produce_all_result_tuples_tree(q));
+            TDP_Selection selection = new TDP_Selection(new TDP_Thetajoin_Instance(q, null));
+            return new Selection()
+            {
+                public BigInteger count() { return selection.count(); }
+                public BigInteger count_below(double threshold) { return selection.count_below(threshold); }
+                public BigInteger count_at_most(double threshold) { return selection.count_at_most(threshold); }
+                public List<Tuple> select(long k) { return to_tuples(selection.select(k)); }
+                public List<Tuple> quantile(double q) { return to_tuples(selection.quantile(q)); }
+                private List<Tuple> to_tuples(TDP_Solution sol) { return sol == null ? null : sol.solutionToTuples_strict_order(); }
+            };
+        }
+    }
+
+    /**
+     * Rounds the costs of the tuples to few integer values so that many answers have the same cost.
+     */
+    private static void round_costs(List<Relation> db)
+    {
+        double max = 0.0;
+        for (Relation r : db)
+            for (Tuple t : r.tuples) max = Math.max(max, t.cost);
+        for (Relation r : db)
+            for (Tuple t : r.tuples) t.cost = Math.floor(4 * t.cost / (max + 1));
+    }
+
+    private static String to_string(List<Tuple> answer)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Tuple t : answer) sb.append(t.flat_format()).append(" | ");
+        return sb.toString();
+    }
+}
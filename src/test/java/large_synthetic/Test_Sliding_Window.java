@@ -0,0 +1,213 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static large_synthetic.Verification.cost;
+import static large_synthetic.Verification.check;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Configuration;
+import algorithms.Naive_For_Verification;
+import algorithms.paths.DP_Anyk_Iterator;
+import algorithms.paths.DP_Lazy;
+import algorithms.paths.DP_Recursive;
+import algorithms.paths.DP_Take2;
+import algorithms.trees.TDP_Iterator;
+import algorithms.trees.TDP_Lazy;
+import algorithms.trees.TDP_Recursive;
+import algorithms.trees.TDP_Take2;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Sliding_Window;
+import entities.Tuple;
+import entities.paths.DP_Path_Equijoin_Instance;
+import entities.paths.DP_Problem_Instance;
+import entities.paths.DP_Solution;
+import entities.paths.Path_Equijoin_Query;
+import entities.trees.TDP_Problem_Instance;
+import entities.trees.TDP_Solution;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+
+class Test_Sliding_Window
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "30, 4, 10",
+        "20, 4, 5"
+    };
+    // range, slide
+    static long[][] windows = new long[][] { {10, 10}, {10, 1}, {12, 4} };
+    static int max_time = 40;
+    static String[] bottom_up_implementations = new String[] { "recursive", "demand" };
+    static Class<?>[] anyk_algs = new Class[] { DP_Lazy.class, DP_Take2.class, DP_Recursive.class };
+    static Class<?>[] tree_anyk_algs = new Class[] { TDP_Lazy.class, TDP_Take2.class, TDP_Recursive.class };
+
+    private static Stream<Arguments> provide_Test_Params(String[] shapes, Class<?>[] algs)
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        int seed = 0;
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                for (String shape : shapes)
+                    for (long[] window : windows)
+                        for (String impl : bottom_up_implementations)
+                            for (Class<?> anyk_alg : algs)
+                                arg_stream = Stream.concat(Stream.of(Arguments.of(shape, rel_size, rel_num, domain_size, window[0], window[1], impl, anyk_alg, seed++)), arg_stream);
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Path()
+    {
+        return provide_Test_Params(new String[] { "path" }, anyk_algs);
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Tree()
+    {
+        return provide_Test_Params(new String[] { "star", "path" }, tree_anyk_algs);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Path")
+    void test_Path_Window(String shape, int rel_size, int rel_num, int domain_size, long range, long slide, String impl, Class<?> anyk_alg, int seed)
+    {
+        List<Relation> db = new ArrayList<Relation>();
+        List<Integer> timestamps = new ArrayList<Integer>();
+        List<Tuple> stream = create_stream(shape, rel_size, rel_num, domain_size, seed, db, timestamps);
+        Path_Equijoin_Query q = new Path_Equijoin_Query(db);
+        q.set_join_conditions(new int[]{1}, new int[]{0});
+        DP_Path_Equijoin_Instance inst = new DP_Path_Equijoin_Instance(q);
+        inst.set_bottom_up_implementation(impl);
+        inst.bottom_up();
+        Sliding_Window window = new Sliding_Window(inst, range, slide);
+        String msg = "path with " + anyk_alg.getName() + " (" + impl + ") range=" + range + ", slide=" + slide + ", n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+
+        for (int time = 0; time < max_time; time++)
+        {
+            for (int i = 0; i < stream.size(); i++) if (timestamps.get(i) == time) window.arrive(stream.get(i), time);
+            window.advance(time);
+            check_window_contents(window, time, db, stream, timestamps, msg + " at time " + time);
+
+            DP_Anyk_Iterator iter = null;
+            try{
+                iter = (DP_Anyk_Iterator) anyk_alg.getDeclaredConstructor(DP_Problem_Instance.class, Configuration.class).newInstance(inst, new Configuration());
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+            List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+            while (true)
+            {
+                DP_Solution sol = iter.get_next();
+                if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+                else break;
+            }
+            check(iter_results, Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db), msg + " at time " + time);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Tree")
+    void test_Tree_Window(String shape, int rel_size, int rel_num, int domain_size, long range, long slide, String impl, Class<?> anyk_alg, int seed)
+    {
+        List<Relation> db = new ArrayList<Relation>();
+        List<Integer> timestamps = new ArrayList<Integer>();
+        List<Tuple> stream = create_stream(shape, rel_size, rel_num, domain_size, seed, db, timestamps);
+        Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+        q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+        if (shape.equals("star"))
+            for (int j = 1; j < rel_num; j++) q.add_to_tree_wConjunction(db.get(j), j, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+        else
+            for (int j = 1; j < rel_num; j++) q.add_to_tree_wConjunction(db.get(j), j, j - 1, Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+        TDP_Thetajoin_Instance inst = new TDP_Thetajoin_Instance(q, null);
+        inst.set_bottom_up_implementation(impl);
+        inst.bottom_up();
+        Sliding_Window window = new Sliding_Window(inst, range, slide);
+        String msg = shape + " with " + anyk_alg.getName() + " (" + impl + ") range=" + range + ", slide=" + slide + ", n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+
+        for (int time = 0; time < max_time; time++)
+        {
+            for (int i = 0; i < stream.size(); i++) if (timestamps.get(i) == time) window.arrive(stream.get(i), time);
+            window.advance(time);
+            check_window_contents(window, time, db, stream, timestamps, msg + " at time " + time);
+
+            TDP_Iterator iter = null;
+            try{
+                iter = (TDP_Iterator) anyk_alg.getDeclaredConstructor(TDP_Problem_Instance.class, Configuration.class).newInstance(inst, new Configuration());
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+            List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+            while (true)
+            {
+                TDP_Solution sol = iter.get_next();
+                if (sol != null) iter_results.add(sol.solutionToTuples_strict_order());
+                else break;
+            }
+            ArrayList<ArrayList<Tuple>> true_result = shape.equals("star") ?
+                Naive_For_Verification.produce_all_result_tuples_4_star_2attrs(db) :
+                Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db);
+            check(iter_results, true_result, msg + " at time " + time);
+        }
+    }
+
+    /**
+     * Generates the relations and moves their tuples to a stream with random timestamps and costs.
+     * The relations of the database are left empty.
+     */
+    private static List<Tuple> create_stream(String shape, int rel_size, int rel_num, int domain_size, int seed, List<Relation> db, List<Integer> timestamps)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, shape);
+        gen.create();
+        Random rand = new Random(seed);
+        List<Tuple> stream = new ArrayList<Tuple>();
+        for (Relation r : gen.get_database())
+        {
+            for (Tuple t : r.tuples)
+            {
+                // Integer costs to create ties
+                stream.add(new Tuple(t.values, rand.nextInt(20), r));
+                timestamps.add(rand.nextInt(max_time));
+            }
+            r.tuples.clear();
+            db.add(r);
+        }
+        return stream;
+    }
+
+    /**
+     * The relations must contain exactly the tuples of the stream that have arrived and are in the window.
+     */
+    private static void check_window_contents(Sliding_Window window, int time, List<Relation> db, List<Tuple> stream, List<Integer> timestamps, String msg)
+    {
+        for (Relation r : db)
+        {
+            int expected = 0;
+            for (int i = 0; i < stream.size(); i++)
+                if (stream.get(i).relation == r && timestamps.get(i) > window.get_window_start() && timestamps.get(i) <= time) expected++;
+            assertEquals(expected, r.tuples.size(), "Incorrect window size for " + msg);
+            assertEquals(expected, window.get_window_size(r), "Incorrect buffer size for " + msg);
+        }
+    }
+}
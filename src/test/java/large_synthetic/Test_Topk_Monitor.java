@@ -0,0 +1,242 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static large_synthetic.Verification.cost;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Topk_Listener;
+import entities.Topk_Monitor;
+import entities.Tuple;
+import entities.paths.DP_Path_Equijoin_Instance;
+import entities.paths.Path_Equijoin_Query;
+import entities.trees.TDP_Thetajoin_Instance;
+import entities.trees.Tree_ThetaJoin_Query;
+import util.Answer_Identity;
+
+class Test_Topk_Monitor
+{
+    static int times_to_repeat = 3;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "20, 4, 10",
+        "15, 4, 4"
+    };
+    static int[] ks = new int[] { 1, 5, 30 };
+    static int updates = 40;
+    static String[] bottom_up_implementations = new String[] { "recursive", "demand" };
+
+    private static Stream<Arguments> provide_Test_Params(String[] shapes)
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        int seed = 0;
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+                for (String shape : shapes)
+                    for (int k : ks)
+                        for (String impl : bottom_up_implementations)
+                            arg_stream = Stream.concat(Stream.of(Arguments.of(shape, rel_size, rel_num, domain_size, k, impl, seed++)), arg_stream);
+            }
+        }
+        return arg_stream;
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Path()
+    {
+        return provide_Test_Params(new String[] { "path" });
+    }
+
+    private static Stream<Arguments> provide_Test_Params_Tree()
+    {
+        return provide_Test_Params(new String[] { "star", "path" });
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Path")
+    void test_Path_Monitor(String shape, int rel_size, int rel_num, int domain_size, int k, String impl, int seed)
+    {
+        List<Relation> db = new ArrayList<Relation>();
+        List<Tuple> pending = create_database(shape, rel_size, rel_num, domain_size, seed, db);
+        Path_Equijoin_Query q = new Path_Equijoin_Query(db);
+        q.set_join_conditions(new int[]{1}, new int[]{0});
+        DP_Path_Equijoin_Instance inst = new DP_Path_Equijoin_Instance(q);
+        inst.set_bottom_up_implementation(impl);
+        inst.bottom_up();
+        Replaying_Listener listener = new Replaying_Listener();
+        Topk_Monitor monitor = inst.monitor_topk(k, listener);
+        String msg = "path (" + impl + ") k=" + k + ", n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+        check(monitor, listener, k, Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db), msg + " initially");
+
+        Random rand = new Random(seed);
+        for (int u = 0; u < updates; u++)
+        {
+            if (apply_update(rand, db, pending, inst::insert, inst::delete, inst::reweight) == null) break;
+            check(monitor, listener, k, Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db), msg + " after update " + u);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Tree")
+    void test_Tree_Monitor(String shape, int rel_size, int rel_num, int domain_size, int k, String impl, int seed)
+    {
+        List<Relation> db = new ArrayList<Relation>();
+        List<Tuple> pending = create_database(shape, rel_size, rel_num, domain_size, seed, db);
+        Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+        q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+        if (shape.equals("star"))
+            for (int j = 1; j < rel_num; j++) q.add_to_tree_wConjunction(db.get(j), j, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+        else
+            for (int j = 1; j < rel_num; j++) q.add_to_tree_wConjunction(db.get(j), j, j - 1, Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+        TDP_Thetajoin_Instance inst = new TDP_Thetajoin_Instance(q, null);
+        inst.set_bottom_up_implementation(impl);
+        inst.bottom_up();
+        Replaying_Listener listener = new Replaying_Listener();
+        Topk_Monitor monitor = inst.monitor_topk(k, listener);
+        String msg = shape + " (" + impl + ") k=" + k + ", n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+        check(monitor, listener, k, true_result(shape, db), msg + " initially");
+
+        Random rand = new Random(seed);
+        for (int u = 0; u < updates; u++)
+        {
+            if (apply_update(rand, db, pending, inst::insert, inst::delete, inst::reweight) == null) break;
+            check(monitor, listener, k, true_result(shape, db), msg + " after update " + u);
+        }
+    }
+
+    private static ArrayList<ArrayList<Tuple>> true_result(String shape, List<Relation> db)
+    {
+        return shape.equals("star") ?
+            Naive_For_Verification.produce_all_result_tuples_4_star_2attrs(db) :
+            Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db);
+    }
+
+    /**
+     * Generates the relations and keeps half of their tuples aside to be inserted later.
+     */
+    private static List<Tuple> create_database(String shape, int rel_size, int rel_num, int domain_size, int seed, List<Relation> db)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, shape);
+        gen.create();
+        Random rand = new Random(seed);
+        List<Tuple> pending = new ArrayList<Tuple>();
+        for (Relation r : gen.get_database())
+        {
+            List<Tuple> kept = new ArrayList<Tuple>();
+            for (Tuple t : r.tuples)
+            {
+                // Integer costs to create ties
+                Tuple copy = new Tuple(t.values, rand.nextInt(20), r);
+                if (rand.nextBoolean()) kept.add(copy);
+                else pending.add(copy);
+            }
+            r.tuples.clear();
+            r.tuples.addAll(kept);
+            db.add(r);
+        }
+        return pending;
+    }
+
+    /**
+     * Inserts a random pending tuple, or (with probability 1/4 each) deletes a random tuple of the database
+     * or changes the costs of a few tuples of a random relation.
+     * @return Tuple The tuple that was updated (null if there was nothing to do).
+     */
+    private static Tuple apply_update(Random rand, List<Relation> db, List<Tuple> pending,
+        Consumer<Tuple> inserter, Consumer<Tuple> deleter, Consumer<Map<Relation, double[]>> reweighter)
+    {
+        int choice = rand.nextInt(4);
+        if (pending.isEmpty() || choice <= 1)
+        {
+            Relation r = db.get(rand.nextInt(db.size()));
+            if (r.tuples.isEmpty()) return pending.isEmpty() ? null : apply_update(rand, db, pending, inserter, deleter, reweighter);
+            Tuple t = r.tuples.get(rand.nextInt(r.tuples.size()));
+            if (choice == 0) deleter.accept(t);
+            else
+            {
+                // The tuple and possibly a couple more get new integer costs (some of them may stay the same)
+                double[] costs = new double[r.tuples.size()];
+                for (int i = 0; i < costs.length; i++) costs[i] = r.tuples.get(i).cost;
+                costs[r.tuples.indexOf(t)] = rand.nextInt(20);
+                for (int j = rand.nextInt(3); j > 0; j--) costs[rand.nextInt(costs.length)] = rand.nextInt(20);
+                Map<Relation, double[]> new_costs = new HashMap<Relation, double[]>();
+                new_costs.put(r, costs);
+                reweighter.accept(new_costs);
+            }
+            return t;
+        }
+        Tuple t = pending.remove(rand.nextInt(pending.size()));
+        inserter.accept(t);
+        return t;
+    }
+
+    /**
+     * The top-k must have the k smallest costs and consist of answers of the query
+     * (ties are broken arbitrarily).
+     * Replaying the reported changes must give the current top-k.
+     */
+    private static void check(Topk_Monitor monitor, Replaying_Listener listener, int k, ArrayList<ArrayList<Tuple>> true_result, String msg)
+    {
+        List<Double> true_costs = new ArrayList<Double>();
+        for (List<Tuple> answer : true_result) true_costs.add(cost(answer));
+        true_costs.sort(null);
+        List<List<Tuple>> topk = monitor.get_topk();
+        List<Double> topk_costs = new ArrayList<Double>();
+        for (List<Tuple> answer : topk) topk_costs.add(cost(answer));
+        assertEquals(true_costs.subList(0, Math.min(k, true_costs.size())), topk_costs, "Incorrect top-k costs for " + msg);
+
+        Set<Answer_Identity> true_set = new HashSet<Answer_Identity>();
+        for (List<Tuple> answer : true_result) true_set.add(new Answer_Identity(answer));
+        Set<Answer_Identity> topk_set = new HashSet<Answer_Identity>();
+        for (List<Tuple> answer : topk) topk_set.add(new Answer_Identity(answer));
+        assertTrue(true_set.containsAll(topk_set), "Top-k contains answers that do not exist for " + msg);
+        assertEquals(topk_set, listener.replayed, "Reported changes do not match the top-k for " + msg);
+    }
+
+    /**
+     * Applies the reported changes to a set of answers.
+     * An answer is only reported to enter if it is not there and to leave if it is.
+     */
+    private static class Replaying_Listener implements Topk_Listener
+    {
+        Set<Answer_Identity> replayed = new HashSet<Answer_Identity>();
+
+        @Override
+        public void entered(List<Tuple> answer, double cost)
+        {
+            assertEquals(cost(answer), cost, "Incorrect cost reported");
+            assertTrue(replayed.add(new Answer_Identity(answer)), "Answer entered twice");
+        }
+
+        @Override
+        public void left(List<Tuple> answer, double cost)
+        {
+            assertTrue(replayed.remove(new Answer_Identity(answer)), "Answer left without entering");
+        }
+    }
+}
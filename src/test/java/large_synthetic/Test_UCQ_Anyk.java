@@ -0,0 +1,237 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static large_synthetic.Verification.cost;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import algorithms.trees.UCQ_Anyk_Iterator;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.trees.Tree_ThetaJoin_Query;
+
+class Test_UCQ_Anyk
+{
+    static int times_to_repeat = 2;
+    // rel_size, domain_size
+    static String[] input_properties = new String[]
+    {
+        "15, 4",
+        "40, 10",
+        "8, 3"
+    };
+    static String[] unions = new String[] { "overlapping_conditions", "disjoint_conditions", "overlapping_relations", "identical_branches", "branching_trees", "shared_subtrees" };
+    static String[] anyk_algs = new String[] { "Lazy", "Eager", "Recursive", "BatchSorting" };
+
+    private static Stream<Arguments> provide_Test_Params()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int domain_size = Integer.parseInt(input_as_string_arr[1]);
+                for (String union : unions)
+                    for (String anyk_alg : anyk_algs)
+                        arg_stream = Stream.concat(Stream.of(Arguments.of(union, rel_size, domain_size, anyk_alg)), arg_stream);
+            }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params")
+    void test_union(String union, int rel_size, int domain_size, String anyk_alg)
+    {
+        List<Tree_ThetaJoin_Query> branches = create_union(union, rel_size, domain_size);
+        String msg = anyk_alg + " on " + union + " with n=" + rel_size + ", d=" + domain_size;
+
+        UCQ_Anyk_Iterator iter = new UCQ_Anyk_Iterator(branches, anyk_alg, null);
+        List<List<Tuple>> iter_results = new ArrayList<List<Tuple>>();
+        List<Integer> iter_branches = new ArrayList<Integer>();
+        List<Tuple> answer;
+        while ((answer = iter.get_next_tuples()) != null)
+        {
+            iter_results.add(answer);
+            iter_branches.add(iter.get_last_branch());
+        }
+        List<List<Tuple>> true_result = new ArrayList<List<Tuple>>();
+        List<Integer> true_branches = new ArrayList<Integer>();
+        naive_union(branches, true_result, true_branches);
+        assertEquals(true_result.size(), iter_results.size(), "Incorrect size of result for " + msg);
+        assertEquals(expected_shared_joins(union), iter.get_shared_joins(), "Joins not shared for " + msg);
+
+        // Ranked order of costs
+        List<Double> true_costs = new ArrayList<Double>();
+        for (List<Tuple> res : true_result) true_costs.add(cost(res));
+        Collections.sort(true_costs);
+        for (int j = 0; j < true_costs.size(); j++)
+            assertEquals(String.format("%.5f", true_costs.get(j)), String.format("%.5f", cost(iter_results.get(j))), "Costs not in ranked order for " + msg);
+
+        // Same answers, each one returned by the first branch that produces it
+        List<String> iter_strings = new ArrayList<String>();
+        for (int j = 0; j < iter_results.size(); j++) iter_strings.add(to_string(iter_results.get(j)) + " from " + iter_branches.get(j));
+        List<String> true_strings = new ArrayList<String>();
+        for (int j = 0; j < true_result.size(); j++) true_strings.add(to_string(true_result.get(j)) + " from " + true_branches.get(j));
+        Collections.sort(iter_strings);
+        Collections.sort(true_strings);
+        assertEquals(true_strings, iter_strings, "Results not the same as naive for " + msg);
+    }
+
+    private static List<Tree_ThetaJoin_Query> create_union(String union, int rel_size, int domain_size)
+    {
+        List<Tree_ThetaJoin_Query> branches = new ArrayList<Tree_ThetaJoin_Query>();
+        List<Relation> db;
+        switch (union)
+        {
+            case "overlapping_conditions":
+                // A = B, A <= B and a cartesian product on the last join of a path
+                db = create_database(rel_size, 3, domain_size, "path");
+                branches.add(path(db, new Join_Predicate("E", 1, 0, null)));
+                branches.add(path(db, new Join_Predicate("IL", 1, 0, 1.0)));
+                branches.add(path(db));
+                break;
+            case "disjoint_conditions":
+                // A < B and A > B
+                db = create_database(rel_size, 3, domain_size, "path");
+                branches.add(path(db, new Join_Predicate("IL", 1, 0, null)));
+                branches.add(path(db, new Join_Predicate("IG", 1, 0, null)));
+                break;
+            case "overlapping_relations":
+                // The first relation differs but shares some tuples (with the same costs)
+                db = create_database(rel_size, 4, domain_size, "path");
+                for (int i = 0; i < rel_size / 2; i++) db.get(3).insert(new Tuple(db.get(0).tuples.get(i).values, db.get(0).tuples.get(i).cost, db.get(3)));
+                branches.add(path(db, new Join_Predicate("E", 1, 0, null)));
+                branches.add(path(Arrays.asList(db.get(3), db.get(1), db.get(2)), new Join_Predicate("E", 1, 0, null)));
+                branches.add(path(Arrays.asList(db.get(3), db.get(1), db.get(2)), new Join_Predicate("IG", 1, 0, 1.0)));
+                break;
+            case "identical_branches":
+                db = create_database(rel_size, 3, domain_size, "path");
+                branches.add(path(db, new Join_Predicate("IL", 1, 0, null)));
+                branches.add(path(db, new Join_Predicate("E", 1, 0, null)));
+                branches.add(path(db, new Join_Predicate("IL", 1, 0, null)));
+                break;
+            case "branching_trees":
+                // Trees whose preorder differs from the order of the relations, one of them with a self-join
+                db = create_database(rel_size, 4, domain_size, "star");
+                for (int b = 0; b < 3; b++)
+                {
+                    Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+                    q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                    q.add_to_tree_wConjunction(db.get(1), 1, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+                    q.add_to_tree_wConjunction(db.get(2), 2, 0, Arrays.asList(new Join_Predicate(b == 1 ? "IL" : "E", 0, 0, b == 1 ? 1.0 : null)));
+                    q.add_to_tree_wConjunction(b == 2 ? db.get(1) : db.get(3), 3, 1, Arrays.asList(new Join_Predicate("E", 1, 1, null)));
+                    branches.add(q);
+                }
+                break;
+            case "shared_subtrees":
+                // The first join differs, the second (A < B) is the same
+                db = create_database(rel_size, 3, domain_size, "path");
+                for (String first_join : new String[]{ "E", "IL", "IG" })
+                {
+                    Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+                    q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                    q.add_to_tree_wConjunction(db.get(1), 1, 0, Arrays.asList(new Join_Predicate(first_join, 1, 0, null)));
+                    q.add_to_tree_wConjunction(db.get(2), 2, 1, Arrays.asList(new Join_Predicate("IL", 1, 0, null)));
+                    branches.add(q);
+                }
+                break;
+            default:
+                System.err.println("Unknown union " + union);
+                System.exit(1);
+        }
+        return branches;
+    }
+
+    /**
+     * The number of joins of a union that are the same as a join of an earlier branch
+     * (the same parent relation, condition and child subtree).
+     */
+    private static int expected_shared_joins(String union)
+    {
+        switch (union)
+        {
+            case "overlapping_relations":
+                // The join of the second relation with the third in the first two branches
+                return 1;
+            case "branching_trees":
+                // The joins of the second relation with its parent and its child in the first two branches
+                // and the join with the third relation in the first and the last branch
+                return 3;
+            case "shared_subtrees":
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * A path over the first three relations where the first join is an equality
+     * and the second is the given conjunction.
+     */
+    private static Tree_ThetaJoin_Query path(List<Relation> db, Join_Predicate... last_join)
+    {
+        Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+        q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+        q.add_to_tree_wConjunction(db.get(1), 1, 0, Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+        q.add_to_tree_wConjunction(db.get(2), 2, 1, Arrays.asList(last_join));
+        return q;
+    }
+
+    /**
+     * Computes the answers of every branch by brute force and keeps the ones not produced by a preceding branch
+     * (answers are the same if they agree on the values).
+     */
+    private static void naive_union(List<Tree_ThetaJoin_Query> branches, List<List<Tuple>> result, List<Integer> result_branches)
+    {
+        HashSet<String> seen = new HashSet<String>();
+        for (int b = 0; b < branches.size(); b++)
+        {
+            List<ArrayList<Tuple>> answers = Naive_For_Verification.produce_all_result_tuples_tree(branches.get(b));
+            HashSet<String> branch_answers = new HashSet<String>();
+            for (List<Tuple> ans : answers)
+            {
+                String s = values_to_string(ans);
+                branch_answers.add(s);
+                if (!seen.contains(s))
+                {
+                    result.add(ans);
+                    result_branches.add(b);
+                }
+            }
+            seen.addAll(branch_answers);
+        }
+    }
+
+    private static String values_to_string(List<Tuple> answer)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Tuple t : answer) sb.append(t.flat_format_no_cost()).append(" | ");
+        return sb.toString();
+    }
+
+    private static String to_string(List<Tuple> answer)
+    {
+        return values_to_string(answer) + String.format("%.5f", cost(answer));
+    }
+
+    private static List<Relation> create_database(int rel_size, int rel_num, int domain_size, String pattern)
+    {
+        Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, pattern);
+        gen.create();
+        return gen.get_database();
+    }
+}
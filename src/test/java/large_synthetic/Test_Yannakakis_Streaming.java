@@ -0,0 +1,119 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import algorithms.Naive_For_Verification;
+import algorithms.YannakakisStreaming;
+import data.BinaryRandomPattern;
+import data.Database_Query_Generator;
+import entities.Join_Predicate;
+import entities.Relation;
+import entities.Tuple;
+import entities.paths.Path_ThetaJoin_Query;
+import entities.trees.Tree_ThetaJoin_Query;
+import util.Answer_Identity;
+
+class Test_Yannakakis_Streaming
+{
+    static int times_to_repeat = 2;
+    // rel_size, rel_num, domain_size
+    static String[] input_properties = new String[]
+    {
+        "50, 4, 50",
+        "50, 4, 300",
+        "20, 4, 8"
+    };
+
+    private static Stream<Arguments> provide_Test_Params_Tree_BinaryRandomDist()
+    {
+        Stream<Arguments> arg_stream = Stream.of();
+        for (int i = 0; i < times_to_repeat; i++)
+        {
+            for (String input : input_properties)
+            {
+                String[] input_as_string_arr = input.split(", ");
+                int rel_size = Integer.parseInt(input_as_string_arr[0]);
+                int rel_num = Integer.parseInt(input_as_string_arr[1]);
+                int domain_size = Integer.parseInt(input_as_string_arr[2]);
+
+                // Star query
+                Database_Query_Generator gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "star");
+                gen.create();
+                List<Relation> db = gen.get_database();
+                Tree_ThetaJoin_Query q = new Tree_ThetaJoin_Query();
+                q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++) q.add_to_tree_wConjunction(db.get(j), j, 0, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+                ArrayList<ArrayList<Tuple>> true_result = Naive_For_Verification.produce_all_result_tuples_4_star_2attrs(db);
+                arg_stream = Stream.concat(Stream.of(Arguments.of("star", q, rel_size, rel_num, domain_size, true_result)), arg_stream);
+
+                // OneBranch query
+                gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "onebranch");
+                gen.create();
+                db = gen.get_database();
+                q = new Tree_ThetaJoin_Query();
+                q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num - 1; j++) q.add_to_tree_wConjunction(db.get(j), j, j - 1, Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+                q.add_to_tree_wConjunction(db.get(rel_num - 1), rel_num - 1, rel_num - 3, Arrays.asList(new Join_Predicate("E", 0, 0, null)));
+                true_result = Naive_For_Verification.produce_all_result_tuples_4_onebranch_2attrs(db);
+                arg_stream = Stream.concat(Stream.of(Arguments.of("onebranch", q, rel_size, rel_num, domain_size, true_result)), arg_stream);
+
+                // Path query
+                gen = new BinaryRandomPattern(rel_size, rel_num, domain_size, "path");
+                gen.create();
+                db = gen.get_database();
+                q = new Tree_ThetaJoin_Query();
+                q.add_to_tree_wConjunction(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++) q.add_to_tree_wConjunction(db.get(j), j, j - 1, Arrays.asList(new Join_Predicate("E", 1, 0, null)));
+                true_result = Naive_For_Verification.produce_all_result_tuples_4_path_2attrs(db);
+                arg_stream = Stream.concat(Stream.of(Arguments.of("path", q, rel_size, rel_num, domain_size, true_result)), arg_stream);
+
+                // Path query with inequalities (handled by factorization)
+                List<List<Join_Predicate>> theta_cond = Arrays.asList(
+                    Arrays.asList(new Join_Predicate("E", 1, 0, null), new Join_Predicate("IL", 0, 1, null)));
+                q = new Tree_ThetaJoin_Query();
+                q.add_to_tree_wDNF(db.get(0), 0, -1, null);
+                for (int j = 1; j < rel_num; j++) q.add_to_tree_wDNF(db.get(j), j, j - 1, theta_cond);
+                Path_ThetaJoin_Query path_q = new Path_ThetaJoin_Query(db);
+                path_q.set_join_conditions_as_dnf(theta_cond);
+                true_result = Naive_For_Verification.produce_all_result_tuples_path_theta(path_q);
+                arg_stream = Stream.concat(Stream.of(Arguments.of("path_theta", q, rel_size, rel_num, domain_size, true_result)), arg_stream);
+            }
+        }
+        return arg_stream;
+    }
+
+    @ParameterizedTest
+    @MethodSource("provide_Test_Params_Tree_BinaryRandomDist")
+    void test_Tree_BinaryRandomDist(String q_type, Tree_ThetaJoin_Query q, int rel_size, int rel_num, int domain_size, ArrayList<ArrayList<Tuple>> true_result)
+    {
+        String msg = q_type + " n=" + rel_size + ", l=" + rel_num + ", d=" + domain_size;
+        YannakakisStreaming yann = new YannakakisStreaming(q);
+        List<List<Tuple>> results = new ArrayList<List<Tuple>>();
+        while (true)
+        {
+            List<Tuple> answer = yann.get_next_tuples();
+            if (answer != null) results.add(answer);
+            else break;
+        }
+
+        // The order is arbitrary, thus we compare the sets of answers
+        assertEquals(true_result.size(), results.size(), "Incorrect size of result for " + msg);
+        Set<Answer_Identity> true_set = new HashSet<Answer_Identity>();
+        for (List<Tuple> answer : true_result) true_set.add(new Answer_Identity(answer));
+        Set<Answer_Identity> iter_set = new HashSet<Answer_Identity>();
+        for (List<Tuple> answer : results) iter_set.add(new Answer_Identity(answer));
+        assertEquals(results.size(), iter_set.size(), "Duplicate answers for " + msg);
+        assertEquals(true_set, iter_set, "Results not the same as naive for " + msg);
+    }
+}
@@ -0,0 +1,65 @@
+package large_synthetic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import entities.Tuple;
+import util.Answer_Identity;
+
+/**
+ * Checks of the answers of an algorithm against the answers computed naively (e.g., with
+ * {@link algorithms.Naive_For_Verification}), shared by the tests.
+ */
+final class Verification
+{
+    private Verification() {}
+
+    /**
+     * @return double The sum of the costs of the tuples of an answer.
+     */
+    static double cost(List<Tuple> answer)
+    {
+        double res = 0.0;
+        for (Tuple t : answer) res += t.cost;
+        return res;
+    }
+
+    /**
+     * Checks that the answers are all the true answers, without duplicates and in ranked order.
+     * Answers are compared by the tuples they consist of.
+     */
+    static void check(List<? extends List<Tuple>> iter_results, List<? extends List<Tuple>> true_result, String msg)
+    {
+        check(iter_results, true_result, Integer.MAX_VALUE, msg);
+    }
+
+    /**
+     * Checks that the answers are the max_k best of the true answers, without duplicates and in ranked order.
+     * Answers are compared by the tuples they consist of.
+     */
+    static void check(List<? extends List<Tuple>> iter_results, List<? extends List<Tuple>> true_result, int max_k, String msg)
+    {
+        assertEquals(Math.min(max_k, true_result.size()), iter_results.size(), "Incorrect size of result for " + msg);
+
+        List<Double> true_costs = new ArrayList<Double>();
+        for (List<Tuple> answer : true_result) true_costs.add(cost(answer));
+        true_costs.sort(null);
+        true_costs = true_costs.subList(0, iter_results.size());
+        List<Double> iter_costs = new ArrayList<Double>();
+        for (List<Tuple> answer : iter_results) iter_costs.add(cost(answer));
+        assertEquals(true_costs, iter_costs, "Costs not in ranked order for " + msg);
+
+        Set<Answer_Identity> true_set = new HashSet<Answer_Identity>();
+        for (List<Tuple> answer : true_result) true_set.add(new Answer_Identity(answer));
+        Set<Answer_Identity> iter_set = new HashSet<Answer_Identity>();
+        for (List<Tuple> answer : iter_results) iter_set.add(new Answer_Identity(answer));
+        assertEquals(iter_results.size(), iter_set.size(), "Duplicate answers for " + msg);
+        if (max_k >= true_result.size()) assertEquals(true_set, iter_set, "Results not the same as naive for " + msg);
+        else assertTrue(true_set.containsAll(iter_set), "Answers not in the result of naive for " + msg);
+    }
+}